@@ -17,8 +17,42 @@
  */
 package com.exxeta.iss.sonar.msgflow;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import com.exxeta.iss.sonar.msgflow.batch.AggregateControlSensor;
+import com.exxeta.iss.sonar.msgflow.batch.CollectorNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.ComputeNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.DSNSensor;
+import com.exxeta.iss.sonar.msgflow.batch.DatabaseNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.FileInputNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.FileOutputNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.FilterNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.HttpInputNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.HttpReplyNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.HttpRequestNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.IMSRequestNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.LabelNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.MQGetNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.MQHeaderNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.MQInputNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.MQOutputNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.MQReplyNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.MessageFlowConnectionSensor;
+import com.exxeta.iss.sonar.msgflow.batch.MessageFlowDescriptionSensor;
+import com.exxeta.iss.sonar.msgflow.batch.MessageFlowGenericSensor;
+import com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitor;
+import com.exxeta.iss.sonar.msgflow.batch.MessageMapSensor;
+import com.exxeta.iss.sonar.msgflow.batch.MiscellaneousNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.NamingConventionSensor;
+import com.exxeta.iss.sonar.msgflow.batch.ResetContentDescriptorNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.RouteNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.SoapInputNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.SoapRequestNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.TimeoutControlNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.TimeoutNotificationNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.TraceNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.TryCatchNodeSensor;
 import com.exxeta.iss.sonar.msgflow.check.ComputeNodeNameCheck;
 import com.google.common.collect.ImmutableList;
 
@@ -70,4 +104,67 @@ public final class MessageFlowCheckList {
 				// add checks if necessary
 				);
 	}
+	
+	/**
+	 * The method returns the checks executed by the 
+	 * {@link com.exxeta.iss.sonar.msgflow.batch.MessageFlowSensor}. The list
+	 * does not depend on the SonarQube API, so the checks can be executed 
+	 * outside of a scanner, too.
+	 * 
+	 * @return a list of check classes
+	 */
+	public static List<Class<? extends MessageFlowVisitor>> getVisitors() {
+		return ImmutableList.<Class<? extends MessageFlowVisitor>>builder()
+				.add(CollectorNodeSensor.class)
+				.add(ComputeNodeSensor.class)
+				.add(FileInputNodeSensor.class)
+				.add(FileOutputNodeSensor.class)
+				.add(HttpInputNodeSensor.class)
+				.add(HttpRequestNodeSensor.class)
+				.add(HttpReplyNodeSensor.class)
+				.add(MQInputNodeSensor.class)
+				.add(MQOutputNodeSensor.class)
+				.add(MQGetNodeSensor.class)
+				.add(MQHeaderNodeSensor.class)
+				.add(MQReplyNodeSensor.class)
+				.add(ResetContentDescriptorNodeSensor.class)
+				.add(SoapInputNodeSensor.class)
+				.add(SoapRequestNodeSensor.class)
+				.add(TimeoutControlNodeSensor.class)
+				.add(TimeoutNotificationNodeSensor.class)
+				.add(TryCatchNodeSensor.class)
+				.add(MessageFlowConnectionSensor.class)
+				.add(IMSRequestNodeSensor.class)
+				.add(MessageFlowDescriptionSensor.class)
+				.add(FilterNodeSensor.class)
+				.add(TraceNodeSensor.class)
+				.add(MiscellaneousNodeSensor.class)
+				.add(LabelNodeSensor.class)
+				.add(MessageFlowGenericSensor.class)
+				.add(AggregateControlSensor.class)
+				.add(DatabaseNodeSensor.class)
+				.add(RouteNodeSensor.class)
+				.add(MessageMapSensor.class)
+				.add(DSNSensor.class)
+				.add(NamingConventionSensor.class)
+				.build();
+	}
+	
+	/**
+	 * The method creates an instance of every check of {@link #getVisitors()},
+	 * for an analysis without the dependency injection of the scanner.
+	 * 
+	 * @return the checks
+	 */
+	public static MessageFlowVisitor[] createVisitors() {
+		List<MessageFlowVisitor> visitors = new ArrayList<MessageFlowVisitor>();
+		for (Class<? extends MessageFlowVisitor> visitorClass : getVisitors()) {
+			try {
+				visitors.add(visitorClass.getDeclaredConstructor().newInstance());
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException("Cannot create the check " + visitorClass.getName(), e);
+			}
+		}
+		return visitors.toArray(new MessageFlowVisitor[visitors.size()]);
+	}
 }
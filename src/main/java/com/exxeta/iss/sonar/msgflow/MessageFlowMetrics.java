@@ -17,7 +17,7 @@
  */
 package com.exxeta.iss.sonar.msgflow;
 
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.sonar.api.measures.CoreMetrics;
@@ -25,7 +25,8 @@ import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.Metrics;
 
 /**
- * The class defines the metrics of the plug-in.
+ * The class defines the metrics of the plug-in. Only the skipped files are
+ * published, the project metric {@link #MSGFLOW} is not measured.
  * 
  * @author Hendrik Scholz (EXXETA AG)
  */
@@ -49,17 +50,32 @@ public class MessageFlowMetrics implements Metrics {
 		    .setDomain(CoreMetrics.DOMAIN_GENERAL)
 		    .create();
 	
+	/**
+	 * Defines the metric for the files skipped because their analysis 
+	 * exceeded the time budget (see {@link MessageFlowPlugin#FILE_TIMEOUT_KEY}).
+	 */
+	public static final Metric SKIPPED_FILES =
+			new Metric.Builder(
+		        "msgflow_skipped_files",		// metric identifier
+		        "Skipped Message Flow Files", 	// metric name
+		        Metric.ValueType.INT)			// metric data type
+		    .setDescription("Message flow and message map files skipped because of the time budget")
+		    .setDirection(Metric.DIRECTION_WORST)
+		    .setQualitative(true)
+		    .setDomain(CoreMetrics.DOMAIN_GENERAL)
+		    .create();
+	
 	/* (non-Javadoc)
 	 * @see org.sonar.api.measures.Metrics#getMetrics()
 	 */
 	/**
-	 * The method returns a list of defined metrics.
+	 * The method returns a list of published metrics.
 	 * 
-	 * @return a list of defined metrics
+	 * @return a list of published metrics
 	 */
 	@Override
 	public List<Metric> getMetrics() {
-		return Arrays.asList(MSGFLOW);
+		return Collections.<Metric>singletonList(SKIPPED_FILES);
 	}
 
 }
@@ -3,6 +3,9 @@
  */
 package com.exxeta.iss.sonar.msgflow;
 
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * @author Arjav Shah
  *
@@ -80,6 +83,17 @@ public enum MessageFlowNodeWithInputTerminals {
 	TIMEOUTCONTROL("TimeoutControl")
 	;
 
+	/**
+	 * the node types with input terminals, built once
+	 */
+	private static final Set<String> VALUES = new HashSet<String>();
+
+	static {
+		for (MessageFlowNodeWithInputTerminals node : values()) {
+			VALUES.add(node.getValue());
+		}
+	}
+
 	private final String value;
 
 	private MessageFlowNodeWithInputTerminals(String value) {
@@ -94,6 +108,16 @@ public enum MessageFlowNodeWithInputTerminals {
 	}
 	
 
+	/**
+	 * The method checks whether nodes of the given type have input terminals.
+	 * 
+	 * @param type the (short) node type, e.g. 'MQOutput'
+	 * @return true if the node type has input terminals
+	 */
+	public static boolean contains(String type) {
+		return VALUES.contains(type);
+	}
+
 	public static String[] keywordValues() {
 		MessageFlowNodeWithInputTerminals[] keywordsEnum = MessageFlowNodeWithInputTerminals.values();
 		String[] keywords = new String[keywordsEnum.length];
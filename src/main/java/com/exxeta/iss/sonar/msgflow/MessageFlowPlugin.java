@@ -17,43 +17,21 @@
  */
 package com.exxeta.iss.sonar.msgflow;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import org.sonar.api.Plugin;
+import org.sonar.api.PropertyType;
+import org.sonar.api.SonarProduct;
+import org.sonar.api.config.PropertyDefinition;
+import org.sonar.api.resources.Qualifiers;
 
-import com.exxeta.iss.sonar.msgflow.batch.AggregateControlSensor;
-import com.exxeta.iss.sonar.msgflow.batch.CollectorNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.ComputeNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.DSNSensor;
-import com.exxeta.iss.sonar.msgflow.batch.DatabaseNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.FileInputNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.FileOutputNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.FilterNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.HttpInputNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.HttpReplyNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.HttpRequestNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.IMSRequestNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.LabelNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.MQGetNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.MQHeaderNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.MQInputNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.MQOutputNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.MQReplyNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.MessageFlowConnectionSensor;
-import com.exxeta.iss.sonar.msgflow.batch.MessageFlowDescriptionSensor;
-import com.exxeta.iss.sonar.msgflow.batch.MessageFlowGenericSensor;
-import com.exxeta.iss.sonar.msgflow.batch.MessageMapSensor;
-import com.exxeta.iss.sonar.msgflow.batch.MiscellaneousNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.NamingConventionSensor;
-import com.exxeta.iss.sonar.msgflow.batch.ResetContentDescriptorNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.RouteNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.SoapInputNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.SoapRequestNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.TimeoutControlNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.TimeoutNotificationNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.TraceNodeSensor;
-import com.exxeta.iss.sonar.msgflow.batch.TryCatchNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.IncrementalAnalysis;
+import com.exxeta.iss.sonar.msgflow.batch.MessageFlowLintSensor;
+import com.exxeta.iss.sonar.msgflow.batch.MessageFlowModelSensor;
+import com.exxeta.iss.sonar.msgflow.batch.MessageFlowSensor;
+import com.exxeta.iss.sonar.msgflow.model.XmlInput;
 
 /**
  * The class is the entry point of the plug-in.
@@ -81,10 +59,210 @@ public class MessageFlowPlugin implements Plugin {
 	public static final String [] MAP_PATH_PATTERNS = {"**/*.map"};
 	public static final String [] ESQL_PATH_PATTERNS = {"**/*.esql"};
 	public static final String [] POM_PATH_PATTERNS = {"**/*pom.xml"};
+	
+	/**
+	 * The PARSER_KEY for the plug-in, selects the parser for the message flow files.
+	 */
+	public static final String PARSER_KEY = "sonar.msgflow.parser";
+	
+	/**
+	 * The value of PARSER_KEY for the single pass StAX parser.
+	 */
+	public static final String PARSER_STAX = "stax";
+	
+	/**
+	 * The value of PARSER_KEY for the XPath based parser.
+	 */
+	public static final String PARSER_XPATH = "xpath";
+	
+	/**
+	 * The PARSER_DEFAULTVALUE for the plug-in.
+	 */
+	public static final String PARSER_DEFAULTVALUE = PARSER_STAX;
+	
+	/**
+	 * The THREADS_KEY for the plug-in, the number of threads used to parse the files.
+	 */
+	public static final String THREADS_KEY = "sonar.msgflow.threads";
+	
+	/**
+	 * The CACHE_ENABLED_KEY for the plug-in, enables the persistent model cache.
+	 */
+	public static final String CACHE_ENABLED_KEY = "sonar.msgflow.cache.enabled";
+	
+	/**
+	 * The CACHE_PATH_KEY for the plug-in, the directory of the persistent model cache.
+	 */
+	public static final String CACHE_PATH_KEY = "sonar.msgflow.cache.path";
+	
+	/**
+	 * The MODELS_MAX_ENTRIES_KEY for the plug-in, the maximum number of models kept in memory.
+	 */
+	public static final String MODELS_MAX_ENTRIES_KEY = "sonar.msgflow.models.maxEntries";
+	
+	/**
+	 * The MODELS_MAX_MEMORY_KEY for the plug-in, the maximum estimated size (MB) of the models kept in memory.
+	 */
+	public static final String MODELS_MAX_MEMORY_KEY = "sonar.msgflow.models.maxMemory";
+	
+	/**
+	 * The MODELS_SOFT_REFERENCES_KEY for the plug-in, lets the garbage collector release the models kept in memory.
+	 */
+	public static final String MODELS_SOFT_REFERENCES_KEY = "sonar.msgflow.models.softReferences";
+	
+	/**
+	 * The XML_MAX_FILE_SIZE_KEY for the plug-in, the maximum size (MB) of a parsed XML file.
+	 */
+	public static final String XML_MAX_FILE_SIZE_KEY = "sonar.msgflow.xml.maxFileSize";
+	
+	/**
+	 * The XML_MAX_DEPTH_KEY for the plug-in, the maximum element depth of a parsed XML file.
+	 */
+	public static final String XML_MAX_DEPTH_KEY = "sonar.msgflow.xml.maxDepth";
+	
+	/**
+	 * The XML_MAX_ATTRIBUTE_LENGTH_KEY for the plug-in, the maximum length of an attribute value of a parsed XML file.
+	 */
+	public static final String XML_MAX_ATTRIBUTE_LENGTH_KEY = "sonar.msgflow.xml.maxAttributeLength";
+	
+	/**
+	 * The FILE_TIMEOUT_KEY for the plug-in, the time budget (ms) of the analysis of a single file.
+	 */
+	public static final String FILE_TIMEOUT_KEY = "sonar.msgflow.fileTimeoutMs";
+	
+	/**
+	 * The INCREMENTAL_KEY for the plug-in, enables the incremental analysis of the changed files.
+	 */
+	public static final String INCREMENTAL_KEY = "sonar.msgflow.incremental";
+	
+	/**
+	 * The category of the properties of the plug-in.
+	 */
+	private static final String CATEGORY = "Message Flow";
 
 	@Override
 	public void define(Context context) {
-		context.addExtensions(getExtensions());
+		if (context.getRuntime().getProduct() == SonarProduct.SONARLINT) {
+			context.addExtensions(getSonarLintExtensions());
+		} else {
+			context.addExtensions(getExtensions());
+		}
+		context.addExtensions(getProperties());
+	}
+	
+	/**
+	 * The method contains the property definitions of the plug-in.
+	 * 
+	 * @return a list of property definitions
+	 */
+	public List<PropertyDefinition> getProperties() {
+		return Arrays.asList(
+			PropertyDefinition.builder(PARSER_KEY)
+				.name("Message flow parser")
+				.description("The parser for the message flow files: '" + PARSER_STAX + "' (single pass) or '" 
+						+ PARSER_XPATH + "' (XPath based, fallback).")
+				.category(CATEGORY)
+				.defaultValue(PARSER_DEFAULTVALUE)
+				.onQualifiers(Qualifiers.PROJECT)
+				.build(),
+			PropertyDefinition.builder(THREADS_KEY)
+				.name("Parser threads")
+				.description("The number of threads used to parse the message flow and message map files. "
+						+ "By default the number of available processors is used.")
+				.category(CATEGORY)
+				.type(PropertyType.INTEGER)
+				.onQualifiers(Qualifiers.PROJECT)
+				.build(),
+			PropertyDefinition.builder(CACHE_ENABLED_KEY)
+				.name("Model cache")
+				.description("Keeps the models of the message flow and message map files between analyses, "
+						+ "unchanged files are not parsed again.")
+				.category(CATEGORY)
+				.type(PropertyType.BOOLEAN)
+				.defaultValue("false")
+				.onQualifiers(Qualifiers.PROJECT)
+				.build(),
+			PropertyDefinition.builder(CACHE_PATH_KEY)
+				.name("Model cache directory")
+				.description("The directory of the model cache. By default the directory 'msgflow-cache' "
+						+ "in the working directory of the scanner is used.")
+				.category(CATEGORY)
+				.onQualifiers(Qualifiers.PROJECT)
+				.build(),
+			PropertyDefinition.builder(MODELS_MAX_ENTRIES_KEY)
+				.name("Maximum models in memory")
+				.description("The maximum number of message flow models (and of message map models) kept in memory. "
+						+ "The least recently used models are evicted and parsed again if needed. By default all "
+						+ "models are kept until the end of the analysis.")
+				.category(CATEGORY)
+				.type(PropertyType.INTEGER)
+				.onQualifiers(Qualifiers.PROJECT)
+				.build(),
+			PropertyDefinition.builder(MODELS_MAX_MEMORY_KEY)
+				.name("Maximum memory of the models")
+				.description("The maximum estimated size in MB of the message flow models (and of the message map "
+						+ "models) kept in memory. If set, the maximum number of models is ignored.")
+				.category(CATEGORY)
+				.type(PropertyType.INTEGER)
+				.onQualifiers(Qualifiers.PROJECT)
+				.build(),
+			PropertyDefinition.builder(MODELS_SOFT_REFERENCES_KEY)
+				.name("Soft references to the models")
+				.description("Lets the garbage collector release the models kept in memory if the heap runs short. "
+						+ "Released models are parsed again if needed.")
+				.category(CATEGORY)
+				.type(PropertyType.BOOLEAN)
+				.defaultValue("false")
+				.onQualifiers(Qualifiers.PROJECT)
+				.build(),
+			PropertyDefinition.builder(XML_MAX_FILE_SIZE_KEY)
+				.name("Maximum XML file size")
+				.description("The maximum size in MB of a message flow, message map or POM file. Larger files "
+						+ "are skipped with a warning.")
+				.category(CATEGORY)
+				.type(PropertyType.INTEGER)
+				.defaultValue(String.valueOf(XmlInput.DEFAULT_MAX_FILE_SIZE / 1024 / 1024))
+				.onQualifiers(Qualifiers.PROJECT)
+				.build(),
+			PropertyDefinition.builder(XML_MAX_DEPTH_KEY)
+				.name("Maximum XML element depth")
+				.description("The maximum depth of the elements of a message flow, message map or POM file. "
+						+ "Deeper files are skipped with a warning.")
+				.category(CATEGORY)
+				.type(PropertyType.INTEGER)
+				.defaultValue(String.valueOf(XmlInput.DEFAULT_MAX_DEPTH))
+				.onQualifiers(Qualifiers.PROJECT)
+				.build(),
+			PropertyDefinition.builder(XML_MAX_ATTRIBUTE_LENGTH_KEY)
+				.name("Maximum XML attribute length")
+				.description("The maximum length in characters of an attribute value of a message flow, message "
+						+ "map or POM file. Files with longer values are skipped with a warning.")
+				.category(CATEGORY)
+				.type(PropertyType.INTEGER)
+				.defaultValue(String.valueOf(XmlInput.DEFAULT_MAX_ATTRIBUTE_LENGTH))
+				.onQualifiers(Qualifiers.PROJECT)
+				.build(),
+			PropertyDefinition.builder(FILE_TIMEOUT_KEY)
+				.name("File timeout")
+				.description("The time budget in milliseconds for parsing and checking a single message flow or "
+						+ "message map file. A file exceeding the budget is skipped with a warning and counted "
+						+ "in the measure 'Skipped Message Flow Files'. By default there is no limit.")
+				.category(CATEGORY)
+				.type(PropertyType.INTEGER)
+				.onQualifiers(Qualifiers.PROJECT)
+				.build(),
+			PropertyDefinition.builder(INCREMENTAL_KEY)
+				.name("Incremental analysis")
+				.description("Analyses only the changed message flow and message map files and the files depending "
+						+ "on them, e.g. the flows referencing a changed sub flow or ESQL file. The issues of the other "
+						+ "files are taken from the previous analysis. The dependency graph is kept in the directory "
+						+ "of the model cache.")
+				.category(CATEGORY)
+				.type(PropertyType.BOOLEAN)
+				.defaultValue("false")
+				.onQualifiers(Qualifiers.PROJECT)
+				.build()
+		);
 	}
 	
 	/**
@@ -93,48 +271,42 @@ public class MessageFlowPlugin implements Plugin {
 	 * @return a list of classes necessary for the plug-in
 	 */
 	public List<Class<? extends Object>> getExtensions() {
-		return Arrays.asList(
+		List<Class<? extends Object>> extensions = new ArrayList<Class<? extends Object>>(Arrays.<Class<? extends Object>>asList(
 			// Definitions
 			MessageFlowLanguage.class, // class extends AbstractLanguage
 			MessageFlowRulesDefinition.class, // class implements RulesDefinition
 			MessageFlowProfile.class, // class extends ProfileDefinition
-			//MessageFlowMetrics.class, ???
+			MessageFlowMetrics.class, // class implements Metrics
+			MessageFlowProjectSession.class, // class implements Startable
+			IncrementalAnalysis.class, // class holds the dependency graph of the incremental analysis
 				
 			// Batch
-			CollectorNodeSensor.class, // class extends Sensor
-			ComputeNodeSensor.class, // class extends Sensor
-			FileInputNodeSensor.class, // class extends Sensor
-			FileOutputNodeSensor.class, // class extends Sensor
-			HttpInputNodeSensor.class, // class extends Sensor
-			HttpRequestNodeSensor.class, // class extends Sensor
-			HttpReplyNodeSensor.class, // class extends Sensor
-			MQInputNodeSensor.class, // class extends Sensor
-			MQOutputNodeSensor.class, // class extends Sensor
-			MQGetNodeSensor.class, // class extends Sensor
-			MQHeaderNodeSensor.class, // class extends Sensor
-			MQReplyNodeSensor.class, // class extends Sensor
-			ResetContentDescriptorNodeSensor.class, // class extends Sensor
-			SoapInputNodeSensor.class, // class extends Sensor
-			SoapRequestNodeSensor.class, // class extends Sensor
-			TimeoutControlNodeSensor.class, // class extends Sensor
-			TimeoutNotificationNodeSensor.class, // class extends Sensor
-			TryCatchNodeSensor.class,		// class extends Sensor
-			MessageFlowConnectionSensor.class,		// class extends Sensor 
-			IMSRequestNodeSensor.class,// class extends Sensor 
-			MessageFlowDescriptionSensor.class, // class extends Sensor 
-			FilterNodeSensor.class, //class extends Sensor 
-			TraceNodeSensor.class, // class extends Sensor
-			MiscellaneousNodeSensor.class, // class extends Sensor
-			LabelNodeSensor.class, // class extends Sensor
-			MessageFlowGenericSensor.class, // class extends Sensor
-			AggregateControlSensor.class, // class extends Sensor
-			DatabaseNodeSensor.class, // class extends Sensor
-			RouteNodeSensor.class, // class extends Sensor
-			MessageMapSensor.class, // class extends Sensor
-			DSNSensor.class, //class extends Sensor
-			NamingConventionSensor.class //class extends Sensor
+			MessageFlowModelSensor.class, // class extends Sensor, executed first
+			MessageFlowSensor.class // class extends Sensor, executes the checks
 			// UI
 			// ...
+		));
+		// the checks, classes extend MessageFlowVisitor
+		extensions.addAll(MessageFlowCheckList.getVisitors());
+		return extensions;
+	}
+
+	/**
+	 * The method contains the classes of the plug-in in SonarLint. The
+	 * checks are executed on the analysed files only, see
+	 * {@link MessageFlowLintSensor}.
+	 * 
+	 * @return a list of classes necessary for the plug-in in SonarLint
+	 */
+	public List<Class<? extends Object>> getSonarLintExtensions() {
+		return Arrays.<Class<? extends Object>>asList(
+			// Definitions
+			MessageFlowLanguage.class, // class extends AbstractLanguage
+			MessageFlowRulesDefinition.class, // class implements RulesDefinition
+			MessageFlowProfile.class, // class extends ProfileDefinition
+				
+			// Batch
+			MessageFlowLintSensor.class // class implements the sensor API, executes the checks
 		);
 	}
 
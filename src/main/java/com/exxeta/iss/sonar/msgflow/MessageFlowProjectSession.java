@@ -0,0 +1,207 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.Startable;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.api.config.Configuration;
+
+import com.exxeta.iss.sonar.msgflow.model.FileDeadline;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowModelCache;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowParser;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowStaxParser;
+import com.exxeta.iss.sonar.msgflow.model.XmlInput;
+
+/**
+ * The class ties the {@link MessageFlowProject} to the scanner session. It
+ * opens the project with the parser selected by the scanner property 
+ * {@link MessageFlowPlugin#PARSER_KEY} before the sensors are executed and
+ * releases all models at the end of the analysis.
+ * 
+ * If {@link MessageFlowPlugin#CACHE_ENABLED_KEY} is set, the project uses a
+ * persistent {@link MessageFlowModelCache}. The cache is invalidated if the
+ * plug-in, the parser or the active rules change.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+@ScannerSide
+public class MessageFlowProjectSession implements Startable {
+
+	/**
+	 * The logger for the class.
+	 */
+	private static final Logger LOG = LoggerFactory.getLogger(MessageFlowProjectSession.class);
+
+	/**
+	 * Variable to hold the configuration settings.
+	 */
+	private final Configuration configuration;
+
+	/**
+	 * Variable to hold file system information, e.g. the working directory.
+	 */
+	private final FileSystem fs;
+
+	/**
+	 * Variable to hold the rules of the quality profile.
+	 */
+	private final ActiveRules activeRules;
+
+	/**
+	 * the persistent model cache of the session or null
+	 */
+	private MessageFlowModelCache modelCache;
+
+	/**
+	 * the project of the session or null
+	 */
+	private MessageFlowProject project;
+
+	/**
+	 * Constructor
+	 *
+	 * @param configuration The configuration settings set by IoC.
+	 * @param fs The file system set by IoC.
+	 * @param activeRules The active rules set by IoC.
+	 */
+	public MessageFlowProjectSession(Configuration configuration, FileSystem fs, ActiveRules activeRules) {
+		this.configuration = configuration;
+		this.fs = fs;
+		this.activeRules = activeRules;
+	}
+
+	/**
+	 * The method returns true if the single pass StAX parser should be used.
+	 *
+	 * @return true for the StAX parser, false for the XPath based parser
+	 */
+	public boolean isStreamingParser() {
+		String parser = configuration.get(MessageFlowPlugin.PARSER_KEY).orElse(MessageFlowPlugin.PARSER_DEFAULTVALUE);
+
+		return !MessageFlowPlugin.PARSER_XPATH.equalsIgnoreCase(parser.trim());
+	}
+
+	/**
+	 * The method returns the name of the parser selected by 
+	 * {@link MessageFlowPlugin#PARSER_KEY}.
+	 *
+	 * @return {@link MessageFlowPlugin#PARSER_STAX} or {@link MessageFlowPlugin#PARSER_XPATH}
+	 */
+	public String getParserName() {
+		return isStreamingParser() ? MessageFlowPlugin.PARSER_STAX : MessageFlowPlugin.PARSER_XPATH;
+	}
+
+	/**
+	 * The method returns the directory of the persistent model cache.
+	 *
+	 * @return the value of {@link MessageFlowPlugin#CACHE_PATH_KEY} or the 
+	 *         directory 'msgflow-cache' in the working directory
+	 */
+	public File getCacheDirectory() {
+		String path = configuration.get(MessageFlowPlugin.CACHE_PATH_KEY).orElse("");
+
+		return path.trim().isEmpty() ? new File(fs.workDir(), "msgflow-cache") : new File(path.trim());
+	}
+
+	/**
+	 * The method returns the fingerprint of the models. It consists of the 
+	 * version and the file of the plug-in, the parser, the limits of the XML
+	 * files and the active rules.
+	 *
+	 * @param parserName the name of the parser
+	 * @return the fingerprint
+	 */
+	public String getFingerprint(String parserName) {
+		StringBuilder fingerprint = new StringBuilder();
+		fingerprint.append("plugin ").append(MessageFlowPlugin.class.getPackage().getImplementationVersion());
+		File pluginFile = FileUtils.toFile(MessageFlowPlugin.class.getProtectionDomain().getCodeSource().getLocation());
+		if (pluginFile != null && pluginFile.isFile()) {
+			fingerprint.append(' ').append(pluginFile.getName()).append(' ').append(pluginFile.length())
+					.append(' ').append(pluginFile.lastModified());
+		}
+		fingerprint.append(", parser ").append(parserName);
+		fingerprint.append(", xml ").append(XmlInput.getMaxFileSize()).append(' ').append(XmlInput.getMaxDepth())
+				.append(' ').append(XmlInput.getMaxAttributeLength());
+
+		List<String> ruleKeys = new ArrayList<String>();
+		for (ActiveRule activeRule : activeRules.findByRepository(MessageFlowCheckList.REPOSITORY_KEY)) {
+			ruleKeys.add(activeRule.ruleKey().rule());
+		}
+		Collections.sort(ruleKeys);
+		fingerprint.append(", rules ").append(ruleKeys.hashCode());
+
+		return fingerprint.toString();
+	}
+
+	@Override
+	public void start() {
+		boolean streaming = isStreamingParser();
+		String parserName = getParserName();
+		LOG.debug("Message flow parser: " + parserName);
+
+		XmlInput.setLimits(configuration.getLong(MessageFlowPlugin.XML_MAX_FILE_SIZE_KEY).orElse(0L) * 1024 * 1024,
+				configuration.getInt(MessageFlowPlugin.XML_MAX_DEPTH_KEY).orElse(0),
+				configuration.getInt(MessageFlowPlugin.XML_MAX_ATTRIBUTE_LENGTH_KEY).orElse(0));
+		FileDeadline.setTimeout(configuration.getLong(MessageFlowPlugin.FILE_TIMEOUT_KEY).orElse(0L));
+
+		modelCache = null;
+		if (configuration.getBoolean(MessageFlowPlugin.CACHE_ENABLED_KEY).orElse(false)) {
+			File directory = getCacheDirectory();
+			try {
+				modelCache = new MessageFlowModelCache(directory, getFingerprint(parserName));
+			} catch (IOException e) {
+				LOG.warn("The message flow model cache " + directory + " cannot be used: " + e.getMessage());
+			}
+		}
+
+		long maxEntries = configuration.getLong(MessageFlowPlugin.MODELS_MAX_ENTRIES_KEY).orElse(0L);
+		long maxBytes = configuration.getLong(MessageFlowPlugin.MODELS_MAX_MEMORY_KEY).orElse(0L) * 1024 * 1024;
+		boolean softValues = configuration.getBoolean(MessageFlowPlugin.MODELS_SOFT_REFERENCES_KEY).orElse(false);
+
+		MessageFlowParser parser = streaming ? new MessageFlowStaxParser() : new MessageFlowParser();
+		project = MessageFlowProject.open(parser, modelCache, Math.max(0, maxEntries), Math.max(0, maxBytes), softValues);
+	}
+
+	@Override
+	public void stop() {
+		if (project != null) {
+			LOG.info("Message flow models: " + project.getHits() + " hits, " + project.getMisses() + " misses, "
+					+ project.getEvictions() + " evictions, " + project.getRebuilds() + " rebuilds");
+			project = null;
+		}
+		MessageFlowProject.close();
+		if (modelCache != null) {
+			LOG.info(modelCache.toString());
+			modelCache = null;
+		}
+	}
+
+}
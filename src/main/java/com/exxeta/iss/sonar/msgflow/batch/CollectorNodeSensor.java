@@ -17,29 +17,16 @@
  */
 package com.exxeta.iss.sonar.msgflow.batch;
 
-import java.util.Iterator;
-
-import org.sonar.api.batch.Sensor;
-import org.sonar.api.batch.SensorContext;
-import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.component.ResourcePerspectives;
-import org.sonar.api.issue.Issuable;
-import org.sonar.api.resources.Project;
-import org.sonar.api.rule.RuleKey;
-
-import com.exxeta.iss.sonar.msgflow.MessageFlowPlugin;
-import com.exxeta.iss.sonar.msgflow.model.MessageFlow;
 import com.exxeta.iss.sonar.msgflow.model.MessageFlowNode;
-import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
+import com.exxeta.iss.sonar.msgflow.model.TerminalDictionary;
 
 /**
- * The class (sensor) contains the method to analyse the connections and 
+ * The class (check) contains the method to analyse the connections and 
  * configuration of a Collector Node.
  * 
  * @author Hendrik Scholz (EXXETA AG)
  */
-public class CollectorNodeSensor implements Sensor {
+public class CollectorNodeSensor extends MessageFlowVisitor {
 
 	/**
 	 * The logger for the class.
@@ -47,114 +34,52 @@ public class CollectorNodeSensor implements Sensor {
 	//private static final Logger LOG = LoggerFactory.getLogger(CollectorNodeSensor.class);
 	
 	/**
-	 * Variable to hold file system information, e.g. the file names of the project files.
-	 */
-	private final FileSystem fs;
-	
-	/**
+	 * Constructor
 	 * 
+	 * Defines the rules reported by the check.
 	 */
-	private final ResourcePerspectives perspectives;
-	
-	/**
-	  * Use of IoC to get FileSystem and ResourcePerspectives
-	  */
-	public CollectorNodeSensor(FileSystem fs, ResourcePerspectives perspectives) {
-		this.fs = fs;
-		this.perspectives = perspectives;
+	public CollectorNodeSensor() {
+		super("CollectorNodeControlTerminal", "CollectorNodeFailureTerminal", "CollectorNodeOutTerminal",
+				"CollectorNodeExpireTerminal", "CollectorNodeCatchTerminal", "CollectorNodeMonitoringEvents",
+				"DisconnectedNode");
 	}
 	
 	/* (non-Javadoc)
-	 * @see org.sonar.api.batch.CheckProject#shouldExecuteOnProject(org.sonar.api.resources.Project)
-	 */
-	/**
-	 * The method defines the language of the file to be analysed.
-	 */
-	@Override
-	public boolean shouldExecuteOnProject(Project arg0) {
-		// This sensor is executed only when there are msgflow files
-	    return fs.hasFiles(fs.predicates().hasLanguage("msgflow"));
-	}
-
-	/* (non-Javadoc)
-	 * @see org.sonar.api.batch.Sensor#analyse(org.sonar.api.resources.Project, org.sonar.api.batch.SensorContext)
+	 * @see com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitor#visitCollectorNode(com.exxeta.iss.sonar.msgflow.batch.MessageFlowContext, com.exxeta.iss.sonar.msgflow.model.MessageFlowNode)
 	 */
 	/**
 	 * The method where the analysis of the connections and configuration of 
 	 * the message flow node takes place.
 	 */
 	@Override
-	public void analyse(Project arg0, SensorContext arg1) {
-		for (InputFile inputFile : fs.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.FLOW_PATH_PATTERNS))) {
+	public void visitCollectorNode(MessageFlowContext context, MessageFlowNode msgFlowNode) {
+		if (!msgFlowNode.isInputTerminalConnected(TerminalDictionary.IN_CONTROL)) {
+			context.addIssue("CollectorNodeControlTerminal", "The control terminal (input) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.", msgFlowNode.getLine());
+		}
+		
+		if (!msgFlowNode.isOutputTerminalConnected(TerminalDictionary.OUT_FAILURE)) {
+			context.addIssue("CollectorNodeFailureTerminal", "The failure terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.", msgFlowNode.getLine());
+		}
 			
-			/* 
-			 * retrieve the message flow object
-			 */
-			MessageFlow msgFlow = MessageFlowProject.getInstance().getMessageFlow(inputFile.absolutePath());
+		if (!msgFlowNode.isOutputTerminalConnected(TerminalDictionary.OUT)) {
+			context.addIssue("CollectorNodeOutTerminal", "The out terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.", msgFlowNode.getLine());
+		}
 			
-			// the actual rule ...
-			Iterator<MessageFlowNode> iMsgFlowNodes = msgFlow.getCollectorNodes().iterator();
+		if (!msgFlowNode.isOutputTerminalConnected(TerminalDictionary.OUT_EXPIRE)) {
+			context.addIssue("CollectorNodeExpireTerminal", "The expire terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.", msgFlowNode.getLine());
+		}
 			
-			while (iMsgFlowNodes.hasNext()) {
-				MessageFlowNode msgFlowNode = iMsgFlowNodes.next();
-				
-				if (!msgFlowNode.getInputTerminals().contains("InTerminal.control")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "CollectorNodeControlTerminal"))
-				    	        	  .message( "The control terminal (input) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.")
-				    	        	  .build());
-				}
-				
-				if (!msgFlowNode.getOutputTerminals().contains("OutTerminal.failure")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "CollectorNodeFailureTerminal"))
-				    	        	  .message("The failure terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.")
-				    	        	  .build());
-				}
-					
-				if (!msgFlowNode.getOutputTerminals().contains("OutTerminal.out")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "CollectorNodeOutTerminal"))
-				    	        	  .message("The out terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.")
-				    	        	  .build());
-				}
-					
-				if (!msgFlowNode.getOutputTerminals().contains("OutTerminal.expire")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "CollectorNodeExpireTerminal"))
-				    	        	  .message("The expire terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.")
-				    	        	  .build());
-				}
-					
-				if (!msgFlowNode.getOutputTerminals().contains("OutTerminal.catch")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "CollectorNodeCatchTerminal"))
-				    	        	  .message("The catch terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.")
-				    	        	  .build());
-				}
-				
-				if (!msgFlowNode.areMonitoringEventsEnabled()) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "CollectorNodeMonitoringEvents"))
-				    	        	  .message("There are no monitoring events defined or the "
-				    	        	  		 + "existing events are disabled for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).")
-				    	        	  .build());
-				}
-				
-				if (msgFlowNode.getInputTerminals().size()==0) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "DisconnectedNode"))
-				    	        	  .message("There are no input connections to node '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ").")
-				    	        	  .build());
-				}
-			}
+		if (!msgFlowNode.isOutputTerminalConnected(TerminalDictionary.OUT_CATCH)) {
+			context.addIssue("CollectorNodeCatchTerminal", "The catch terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.", msgFlowNode.getLine());
+		}
+		
+		if (!msgFlowNode.areMonitoringEventsEnabled()) {
+			context.addIssue("CollectorNodeMonitoringEvents", "There are no monitoring events defined or the "
+					+ "existing events are disabled for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).", msgFlowNode.getLine());
+		}
+		
+		if (msgFlowNode.getInputTerminals().size()==0) {
+			context.addIssue("DisconnectedNode", "There are no input connections to node '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ").", msgFlowNode.getLine());
 		}
 	}
 
@@ -17,165 +17,96 @@
  */
 package com.exxeta.iss.sonar.msgflow.batch;
 
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.regex.Pattern;
 
-import org.sonar.api.batch.Sensor;
-import org.sonar.api.batch.SensorContext;
-import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.component.ResourcePerspectives;
-import org.sonar.api.issue.Issuable;
-import org.sonar.api.resources.Project;
-import org.sonar.api.rule.RuleKey;
-
-import com.exxeta.iss.sonar.msgflow.MessageFlowPlugin;
 import com.exxeta.iss.sonar.msgflow.check.ComputeNodeNameCheck;
-import com.exxeta.iss.sonar.msgflow.model.MessageFlow;
 import com.exxeta.iss.sonar.msgflow.model.MessageFlowNode;
-import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
+import com.exxeta.iss.sonar.msgflow.model.TerminalDictionary;
 
 /**
- * The class (sensor) contains the method to analyse the connections and 
+ * The class (check) contains the method to analyse the connections and 
  * configuration of a Compute Node.
  * 
  * @author Hendrik Scholz (EXXETA AG)
  */
-public class ComputeNodeSensor implements Sensor {
+public class ComputeNodeSensor extends MessageFlowVisitor {
 
 	/**
 	 * The logger for the class.
 	 */
 	//private static final Logger LOG = LoggerFactory.getLogger(ComputeNodeSensor.class);
 	
-	/**
-	 * Variable to hold file system information, e.g. the file names of the project files.
-	 */
-	private final FileSystem fs;
-	
 	/**
 	 * pattern to check the compute node name
 	 */
 	public final static String PATTERN_STRING = new ComputeNodeNameCheck().format;
 	
 	/**
-	 * 
+	 * the modules referenced by the Compute nodes of the project
 	 */
-	private final ResourcePerspectives perspectives;
+	private Set<String> moduleSet = new TreeSet<String>();
 	
 	/**
-	  * Use of IoC to get FileSystem and ResourcePerspectives
-	  */
-	public ComputeNodeSensor(FileSystem fs, ResourcePerspectives perspectives) {
-		this.fs = fs;
-		this.perspectives = perspectives;
+	 * Constructor
+	 * 
+	 * Defines the rules reported by the check.
+	 */
+	public ComputeNodeSensor() {
+		super("OneModuleMultipleNodes", "ComputeNodeInTerminal", "ComputeNodeFailureTerminal",
+				"ComputeNodeOutTerminal", "ComputeNodeMonitoringEvents", "ComputeNodeNameCheck",
+				"DisconnectedNode", "NodeNameModuleName");
 	}
 	
 	/* (non-Javadoc)
-	 * @see org.sonar.api.batch.CheckProject#shouldExecuteOnProject(org.sonar.api.resources.Project)
-	 */
-	/**
-	 * The method defines the language of the file to be analysed.
+	 * @see com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitor#visitProject()
 	 */
 	@Override
-	public boolean shouldExecuteOnProject(Project arg0) {
-		// This sensor is executed only when there are msgflow files
-	    return fs.hasFiles(fs.predicates().hasLanguage("msgflow"));
+	public void visitProject() {
+		moduleSet = new TreeSet<String>();
 	}
 
 	/* (non-Javadoc)
-	 * @see org.sonar.api.batch.Sensor#analyse(org.sonar.api.resources.Project, org.sonar.api.batch.SensorContext)
+	 * @see com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitor#visitComputeNode(com.exxeta.iss.sonar.msgflow.batch.MessageFlowContext, com.exxeta.iss.sonar.msgflow.model.MessageFlowNode)
 	 */
 	/**
-	 * The method where the analysis of the connections and configuration of 
+	 * The method where the analysis of the connections and configuration of
 	 * the message flow node takes place.
 	 */
 	@Override
-	public void analyse(Project arg0, SensorContext arg1) {
-		ArrayList<String> moduleNameExpressionList = new ArrayList<String>();
-		Set<String> moduleSet = new TreeSet<String>();
-		for (InputFile inputFile : fs.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.FLOW_PATH_PATTERNS))) {
-			
-			/* 
-			 * retrieve the message flow object
-			 */
-			MessageFlow msgFlow = MessageFlowProject.getInstance().getMessageFlow(inputFile.absolutePath());
-			
-			// the actual rule ...
-			Iterator<MessageFlowNode> iMsgFlowNodes = msgFlow.getComputeNodes().iterator();
+	public void visitComputeNode(MessageFlowContext context, MessageFlowNode msgFlowNode) {
+		String moduleName = (String)msgFlowNode.getProperties().get("computeExpression");
+		if(!moduleSet.add(moduleName)){
+			context.addIssue("OneModuleMultipleNodes", "Multiple Compute nodes refers to same module '"+moduleName+"'.", msgFlowNode.getLine());
+		}
+		if (!msgFlowNode.isInputTerminalConnected(TerminalDictionary.IN)) {
+			context.addIssue("ComputeNodeInTerminal", "The in terminal (input) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.", msgFlowNode.getLine());
+		}
+		
+		if (!msgFlowNode.isOutputTerminalConnected(TerminalDictionary.OUT_FAILURE)) {
+			context.addIssue("ComputeNodeFailureTerminal", "The failure terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.", msgFlowNode.getLine());
+		}
 			
-			while (iMsgFlowNodes.hasNext()) {
-				
-				MessageFlowNode msgFlowNode = iMsgFlowNodes.next();
-				String moduleName = (String)msgFlowNode.getProperties().get("computeExpression");
-				moduleNameExpressionList.add(moduleName);
-				if(!moduleSet.add(moduleName)){
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "OneModuleMultipleNodes"))
-				    	        	  .message("Multiple Compute nodes refers to same module '"+moduleName+"'.")
-				    	        	  .build());
-				}
-				if (!msgFlowNode.getInputTerminals().contains("InTerminal.in")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "ComputeNodeInTerminal"))
-				    	        	  .message("The in terminal (input) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.")
-				    	        	  .build());
-				}
-				
-				if (!msgFlowNode.getOutputTerminals().contains("OutTerminal.failure")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "ComputeNodeFailureTerminal"))
-				    	        	  .message("The failure terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.")
-				    	        	  .build());
-				}
-					
-				if (!msgFlowNode.getOutputTerminals().contains("OutTerminal.out")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "ComputeNodeOutTerminal"))
-				    	        	  .message("The out terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.")
-				    	        	  .build());
-				}
-				
-				if (!msgFlowNode.areMonitoringEventsEnabled()) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "ComputeNodeMonitoringEvents"))
-				    	        	  .message("There are no monitoring events defined or the "
-				    	        	  		 + "existing events are disabled for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).")
-				    	        	  .build());
-				}
-				
-				if (!checkComputeNodeName(msgFlowNode.getName())) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "ComputeNodeNameCheck"))
-				    	        	  .message("The name of '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") should be in UpperCamelCase without spaces.")
-				    	        	  .build());
-				}
-				
-				if (msgFlowNode.getInputTerminals().size()==0) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "DisconnectedNode"))
-				    	        	  .message("There are no input connections to node '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ").")
-				    	        	  .build());
-				}
-				
-				if(!msgFlowNode.getName().equals(msgFlowNode.getProperties().get("computeExpression"))){
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "NodeNameModuleName"))
-				    	        	  .message("The node name and the underlaying module name should match for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ").")
-				    	        	  .build());
-				}				
-			}
+		if (!msgFlowNode.isOutputTerminalConnected(TerminalDictionary.OUT)) {
+			context.addIssue("ComputeNodeOutTerminal", "The out terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.", msgFlowNode.getLine());
+		}
+		
+		if (!msgFlowNode.areMonitoringEventsEnabled()) {
+			context.addIssue("ComputeNodeMonitoringEvents", "There are no monitoring events defined or the "
+					+ "existing events are disabled for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).", msgFlowNode.getLine());
+		}
+		
+		if (!checkComputeNodeName(msgFlowNode.getName())) {
+			context.addIssue("ComputeNodeNameCheck", "The name of '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") should be in UpperCamelCase without spaces.", msgFlowNode.getLine());
+		}
+		
+		if (msgFlowNode.getInputTerminals().size()==0) {
+			context.addIssue("DisconnectedNode", "There are no input connections to node '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ").", msgFlowNode.getLine());
+		}
+		
+		if(!msgFlowNode.getName().equals(msgFlowNode.getProperties().get("computeExpression"))){
+			context.addIssue("NodeNameModuleName", "The node name and the underlaying module name should match for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ").", msgFlowNode.getLine());
 		}
 	}
 	
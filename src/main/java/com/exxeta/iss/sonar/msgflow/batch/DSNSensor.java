@@ -1,217 +1,109 @@
 package com.exxeta.iss.sonar.msgflow.batch;
 
 import java.io.File;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
 
-import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.sonar.api.batch.Sensor;
-import org.sonar.api.batch.SensorContext;
-import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.component.ResourcePerspectives;
-import org.sonar.api.issue.Issuable;
-import org.sonar.api.resources.Project;
-import org.sonar.api.rule.RuleKey;
 
-import com.exxeta.iss.sonar.msgflow.MessageFlowPlugin;
-import com.exxeta.iss.sonar.msgflow.model.MessageFlow;
+import com.exxeta.iss.sonar.msgflow.model.EsqlModule;
+import com.exxeta.iss.sonar.msgflow.model.EsqlModuleIndex;
+import com.exxeta.iss.sonar.msgflow.model.EsqlModuleParser;
 import com.exxeta.iss.sonar.msgflow.model.MessageFlowNode;
 import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
 
 /**
- * The class (sensor) contains the method to analyse the connections and
+ * The class (check) contains the method to analyse the connections and
  * configuration of a DSN property check for compute node
  * 
  * @author Arjav Shah
  */
-public class DSNSensor implements Sensor {
+public class DSNSensor extends MessageFlowVisitor {
 
 	/**
 	 * The logger for the class.
 	 */
 	private static final Logger LOG = LoggerFactory.getLogger(DSNSensor.class);
 
-	private static ArrayList<String> calledProcs = new ArrayList<String>();
-
-	/**
-	 * Variable to hold file system information, e.g. the file names of the
-	 * project files.
-	 */
-	private final FileSystem fs;
-
 	/**
+	 * Constructor
 	 * 
+	 * Defines the rules reported by the check.
 	 */
-	private final ResourcePerspectives perspectives;
-
-	/**
-	 * Use of IoC to get FileSystem and ResourcePerspectives
-	 */
-	public DSNSensor(FileSystem fs, ResourcePerspectives perspectives) {
-		this.fs = fs;
-		this.perspectives = perspectives;
+	public DSNSensor() {
+		super("DSNWithoutDBCall");
 	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see
-	 * org.sonar.api.batch.CheckProject#shouldExecuteOnProject(org.sonar.api.
-	 * resources.Project)
-	 */
-	@Override
-	public boolean shouldExecuteOnProject(Project arg0) {
-		// This sensor is executed only when there are msgflow files
-		return fs.hasFiles(fs.predicates().hasLanguage("msgflow"));
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see org.sonar.api.batch.Sensor#analyse(org.sonar.api.resources.Project,
-	 * org.sonar.api.batch.SensorContext)
+	
+	/* (non-Javadoc)
+	 * @see com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitor#visitComputeNode(com.exxeta.iss.sonar.msgflow.batch.MessageFlowContext, com.exxeta.iss.sonar.msgflow.model.MessageFlowNode)
 	 */
 	/**
-	 * The method where the analysis of the connections and configuration of the
-	 * message flow node takes place.
+	 * The method where the analysis of the connections and configuration of
+	 * the message flow node takes place.
 	 */
 	@Override
-	public void analyse(Project arg0, SensorContext arg1) {
-
-
-		for (InputFile inputFile : fs
-				.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.FLOW_PATH_PATTERNS))) {
-
-			/*
-			 * retrieve the message flow object
-			 */
-			MessageFlow msgFlow = MessageFlowProject.getInstance().getMessageFlow(inputFile.absolutePath());
-
-			// the actual rule ...
-			Iterator<MessageFlowNode> iMsgFlowNodes = msgFlow.getComputeNodes().iterator();
-
-			while (iMsgFlowNodes.hasNext()) {
-				MessageFlowNode msgFlowNode = iMsgFlowNodes.next();
-				if (msgFlowNode.getProperties().get("dataSource") != null
-						&& !(((String) msgFlowNode.getProperties().get("dataSource")).isEmpty())) {
-
-					String moduleName = (String) msgFlowNode.getProperties().get("computeExpression");
-					String moduleNameFull = (String) msgFlowNode.getProperties().get("computeExpressionFull");
-					String folderName = moduleNameFull.substring(moduleNameFull.indexOf("esql://routine/")+15, moduleNameFull.indexOf("#"));
-					File msgflow = new  File(inputFile.absolutePath());
-					String directoryEsqlPath = "";
-					if(folderName.isEmpty()) {
-						directoryEsqlPath = msgflow.getParent();
-					}else {
-						directoryEsqlPath = msgflow.getParent()+File.separator+folderName;
-					}
-					File directoryEsql = new File(directoryEsqlPath);
-					boolean isDbCalled = false;
-					List<File> esqlList = Arrays.asList(directoryEsql.listFiles());
-					for (File esqlfile : esqlList) {
-						if (esqlfile.getAbsolutePath().endsWith(".esql")) {
-							if(checkForModule(esqlfile, moduleName)){
-								isDbCalled = isDbCalled || checkForDbcall(esqlfile, moduleName);
-							}
-						}
-					}
-					if(!isDbCalled){
-						Issuable issuable = perspectives.as(Issuable.class, inputFile);
-						issuable.addIssue(issuable.newIssueBuilder()
-								.ruleKey(RuleKey.of("msgflow", "DSNWithoutDBCall"))
-								.message("DSN property is set without DB interactions for '" + msgFlowNode.getName()
-						+ "' (type: " + msgFlowNode.getType() + ").").build());
-					}
+	public void visitComputeNode(MessageFlowContext context, MessageFlowNode msgFlowNode) {
+		if (msgFlowNode.getProperties().get("dataSource") != null
+				&& !(((String) msgFlowNode.getProperties().get("dataSource")).isEmpty())) {
+
+			String moduleNameFull = (String) msgFlowNode.getProperties().get("computeExpressionFull");
+			EsqlModuleIndex index = MessageFlowProject.getInstance().getEsqlModuleIndex();
+			List<EsqlModule> modules = index.resolve(moduleNameFull);
+			if (modules.isEmpty()) {
+				// the ESQL file is not part of the analysed sources, look next to the message flow
+				String folderName = EsqlModuleIndex.getSchema(moduleNameFull);
+				File msgflow = new  File(context.getAbsolutePath());
+				String directoryEsqlPath = "";
+				if(folderName.isEmpty()) {
+					directoryEsqlPath = msgflow.getParent();
+				}else {
+					directoryEsqlPath = msgflow.getParent()+File.separator+folderName;
 				}
+				index.addDirectory(new File(directoryEsqlPath));
+				modules = index.resolve(moduleNameFull);
+			}
+			boolean isDbCalled = false;
+			for (EsqlModule module : modules) {
+				isDbCalled = isDbCalled || module.hasDatabaseCall();
+			}
+			if(!isDbCalled){
+				context.addIssue("DSNWithoutDBCall", "DSN property is set without DB interactions for '" + msgFlowNode.getName()
+						+ "' (type: " + msgFlowNode.getType() + ").", msgFlowNode.getLine());
 			}
 		}
 	}
 
+	/**
+	 * The method checks whether a compute module of an ESQL file interacts
+	 * with a database.
+	 * 
+	 * @param file the ESQL file
+	 * @param moduleName the name of the compute module
+	 * @return true if the module contains a database interaction
+	 */
 	public static boolean checkForDbcall(File file, String moduleName) {
-		boolean dbCall = false;
-		ArrayList<String> moduleLines = new ArrayList<String>();
-		boolean isModuleLine =false;
-		try {
-			boolean commentSection = false;
-			for (String line : FileUtils.readLines(file, "UTF-8")) {
-				if (!line.trim().isEmpty() && !line.trim().startsWith("--") && !line.trim().startsWith("/*")
-						&& !commentSection) {
-					if(line.toUpperCase().replaceAll("\\s+", "").startsWith("CREATECOMPUTEMODULE"+moduleName.toUpperCase())){
-						isModuleLine = true;
-					}else if(line.toUpperCase().replaceAll("\\s+", "").startsWith("ENDMODULE;")){
-						isModuleLine = false;
-					}
-					if(isModuleLine){
-						moduleLines.add(line);
-					}
-				} else if (line.trim().startsWith("/*") && !commentSection && !line.trim().endsWith("*/")) {
-					commentSection = true;
-				} else if (commentSection && line.trim().endsWith("*/")) {
-					commentSection = false;
-				}
-
-			}
-			
-			for(String line : moduleLines){
-				if (line.trim().toUpperCase().startsWith("SELECT ")
-						|| line.trim().toUpperCase().startsWith("UPDATE ")
-						|| line.trim().toUpperCase().startsWith("DELETE ")
-						|| line.trim().toUpperCase().startsWith("INSERT ")) {
-					dbCall = true;
-					break;
-				} else if (line.contains("=") && ((line.toUpperCase()).substring(line.indexOf("=") + 1).trim()
-						.startsWith("SELECT ")
-						|| (line.toUpperCase()).substring(line.indexOf("=") + 1).trim().startsWith("UPDATE ")
-						|| (line.toUpperCase()).substring(line.indexOf("=") + 1).trim().startsWith("DELETE ")
-						|| (line.toUpperCase()).substring(line.indexOf("=") + 1).trim().startsWith("INSERT "))) {
-					dbCall = true;
-					break;
-				} else if (line.toUpperCase().replaceAll("\\s+", "").contains("PASSTHRU(")||
-						line.toUpperCase().replaceAll("\\s+", "").contains("PASSTHRU")) {
-					dbCall = true;
-					break;
-				} else if (line.toUpperCase().replaceAll("\\s+", "").startsWith("PASSTHRU")) {
-					dbCall = true;
-					break;
-				} else if (line.toUpperCase().trim().startsWith("CALL")) {
-					String tmpLine = line.replaceAll("\\s+", " ").toUpperCase();
-					String procName = tmpLine.substring(tmpLine.indexOf("CALL ") + 5, tmpLine.indexOf("("));
-					calledProcs.add(procName);
-					//enhancement for checking the called procedure from the module for the DB calls
-				}
-			}
-
-		} catch (IOException e) {
-			LOG.error(e.getMessage());
-			dbCall = false;
-
-		}
-		return dbCall;
+		EsqlModule module = findComputeModule(file, moduleName);
+		return module != null && module.hasDatabaseCall();
 	}
 	
+	/**
+	 * The method checks whether an ESQL file contains a compute module.
+	 * 
+	 * @param file the ESQL file
+	 * @param moduleName the name of the compute module
+	 * @return true if the module is defined in the file
+	 */
 	public static boolean checkForModule(File file, String moduleName) {
-		boolean moduleExists = false;
-		try{
-			String fileAsString = FileUtils.readFileToString(file, "UTF-8");
-			if (fileAsString.contains(moduleName) && (fileAsString.toUpperCase().replaceAll("\\s+", ""))
-					.contains("CREATECOMPUTEMODULE" + moduleName.toUpperCase())) {
-				moduleExists = true;
-			}else{
-				moduleExists = false;
-			}
-		}
-		 catch (IOException e) {
-				LOG.error(e.getMessage());
-				moduleExists = false;
+		return findComputeModule(file, moduleName) != null;
+	}
 
+	private static EsqlModule findComputeModule(File file, String moduleName) {
+		for (EsqlModule module : new EsqlModuleParser().parse(file.getPath())) {
+			if ("COMPUTE".equals(module.getType()) && module.getName().equalsIgnoreCase(moduleName)) {
+				return module;
 			}
-		return moduleExists;
+		}
+		return null;
 	}
 
 }
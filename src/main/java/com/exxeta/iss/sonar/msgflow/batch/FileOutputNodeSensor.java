@@ -17,29 +17,16 @@
  */
 package com.exxeta.iss.sonar.msgflow.batch;
 
-import java.util.Iterator;
-
-import org.sonar.api.batch.Sensor;
-import org.sonar.api.batch.SensorContext;
-import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.component.ResourcePerspectives;
-import org.sonar.api.issue.Issuable;
-import org.sonar.api.resources.Project;
-import org.sonar.api.rule.RuleKey;
-
-import com.exxeta.iss.sonar.msgflow.MessageFlowPlugin;
-import com.exxeta.iss.sonar.msgflow.model.MessageFlow;
 import com.exxeta.iss.sonar.msgflow.model.MessageFlowNode;
-import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
+import com.exxeta.iss.sonar.msgflow.model.TerminalDictionary;
 
 /**
- * The class (sensor) contains the method to analyse the connections and 
+ * The class (check) contains the method to analyse the connections and 
  * configuration of a File Output Node.
  * 
  * @author Hendrik Scholz (EXXETA AG)
  */
-public class FileOutputNodeSensor implements Sensor {
+public class FileOutputNodeSensor extends MessageFlowVisitor {
 
 	/**
 	 * The logger for the class.
@@ -47,131 +34,61 @@ public class FileOutputNodeSensor implements Sensor {
 	//private static final Logger LOG = LoggerFactory.getLogger(FileOutputNodeSensor.class);
 	
 	/**
-	 * Variable to hold file system information, e.g. the file names of the project files.
-	 */
-	private final FileSystem fs;
-	
-	/**
+	 * Constructor
 	 * 
+	 * Defines the rules reported by the check.
 	 */
-	private final ResourcePerspectives perspectives;
-	
-	/**
-	  * Use of IoC to get FileSystem and ResourcePerspectives
-	  */
-	public FileOutputNodeSensor(FileSystem fs, ResourcePerspectives perspectives) {
-		this.fs = fs;
-		this.perspectives = perspectives;
+	public FileOutputNodeSensor() {
+		super("FileOutputNodeInTerminal", "FileOutputNodeInEODTerminal", "FileOutputNodeFailureTerminal",
+				"FileOutputNodeOutTerminal", "FileOutputNodeOutEODTerminal", "FileOutputNodeValidation",
+				"FileOutputNodeMonitoringEvents", "DisconnectedNode", "AllInputTerminalsNotConnected");
 	}
 	
 	/* (non-Javadoc)
-	 * @see org.sonar.api.batch.CheckProject#shouldExecuteOnProject(org.sonar.api.resources.Project)
-	 */
-	/**
-	 * The method defines the language of the file to be analysed.
-	 */
-	@Override
-	public boolean shouldExecuteOnProject(Project arg0) {
-		// This sensor is executed only when there are msgflow files
-	    return fs.hasFiles(fs.predicates().hasLanguage("msgflow"));
-	}
-
-	/* (non-Javadoc)
-	 * @see org.sonar.api.batch.Sensor#analyse(org.sonar.api.resources.Project, org.sonar.api.batch.SensorContext)
+	 * @see com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitor#visitFileOutputNode(com.exxeta.iss.sonar.msgflow.batch.MessageFlowContext, com.exxeta.iss.sonar.msgflow.model.MessageFlowNode)
 	 */
 	/**
 	 * The method where the analysis of the connections and configuration of 
 	 * the message flow node takes place.
 	 */
 	@Override
-	public void analyse(Project arg0, SensorContext arg1) {
-		for (InputFile inputFile : fs.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.FLOW_PATH_PATTERNS))) {
-			
-			/* 
-			 * retrieve the message flow object
-			 */
-			MessageFlow msgFlow = MessageFlowProject.getInstance().getMessageFlow(inputFile.absolutePath());
+	public void visitFileOutputNode(MessageFlowContext context, MessageFlowNode msgFlowNode) {
+		if (!msgFlowNode.isInputTerminalConnected(TerminalDictionary.IN)) {
+			context.addIssue("FileOutputNodeInTerminal", "The in terminal (input) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.", msgFlowNode.getLine());
+		}
+		
+		if (!msgFlowNode.isInputTerminalConnected(TerminalDictionary.IN_EOD) &&
+			!msgFlowNode.getRecordDefinition().equals("")) { /* "Record is Whole File" - element "recordDefinition" does not exist */
+			context.addIssue("FileOutputNodeInEODTerminal", "The EOD terminal (input) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.", msgFlowNode.getLine());
+		}
+		
+		if (!msgFlowNode.isOutputTerminalConnected(TerminalDictionary.OUT_FAILURE)) {
+			context.addIssue("FileOutputNodeFailureTerminal", "The failure terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.", msgFlowNode.getLine());
+		}
 			
-			// the actual rule ...
-			Iterator<MessageFlowNode> iMsgFlowNodes = msgFlow.getFileOutputNodes().iterator();
+		if (!msgFlowNode.isOutputTerminalConnected(TerminalDictionary.OUT)) {
+			context.addIssue("FileOutputNodeOutTerminal", "The out terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.", msgFlowNode.getLine());
+		}
 			
-			while (iMsgFlowNodes.hasNext()) {
-				MessageFlowNode msgFlowNode = iMsgFlowNodes.next();
-				
-				if (!msgFlowNode.getInputTerminals().contains("InTerminal.in")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "FileOutputNodeInTerminal"))
-				    	        	  .message("The in terminal (input) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.")
-				    	        	  .build());
-				}
-				
-				if (!msgFlowNode.getInputTerminals().contains("InTerminal.EOD") &&
-					!msgFlowNode.getRecordDefinition().equals("")) { /* "Record is Whole File" - element "recordDefinition" does not exist */
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "FileOutputNodeInEODTerminal"))
-				    	        	  .message("The EOD terminal (input) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.")
-				    	        	  .build());
-				}
-				
-				if (!msgFlowNode.getOutputTerminals().contains("OutTerminal.failure")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "FileOutputNodeFailureTerminal"))
-				    	        	  .message("The failure terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.")
-				    	        	  .build());
-				}
-					
-				if (!msgFlowNode.getOutputTerminals().contains("OutTerminal.out")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "FileOutputNodeOutTerminal"))
-				    	        	  .message("The out terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.")
-				    	        	  .build());
-				}
-					
-				if (!msgFlowNode.getOutputTerminals().contains("OutTerminal.EOD")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "FileOutputNodeOutEODTerminal"))
-				    	        	  .message("The EOD terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.")
-				    	        	  .build());
-				}
-				
-				if (msgFlowNode.isValidateMaster() == false) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "FileOutputNodeValidation"))
-				    	        	  .message("'Validate' under 'Validation' is not set to 'Content and Value' for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).")
-				    	        	  .build());
-				}
-				
-				if (!msgFlowNode.areMonitoringEventsEnabled()) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "FileOutputNodeMonitoringEvents"))
-				    	        	  .message("There are no monitoring events defined or the "
-				    	        	  		 + "existing events are disabled for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).")
-				    	        	  .build());
-				}
-				
-				if (msgFlowNode.getInputTerminals().size()==0) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "DisconnectedNode"))
-				    	        	  .message("There are no input connections to node '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ").")
-				    	        	  .build());
-				}
-				
-				if(msgFlowNode.getInputTerminals().size()<2){
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "AllInputTerminalsNotConnected"))
-				    	        	  .message("One or more input terminals of node '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") are not connected.")
-				    	        	  .build());
-				}
-			}
+		if (!msgFlowNode.isOutputTerminalConnected(TerminalDictionary.OUT_EOD)) {
+			context.addIssue("FileOutputNodeOutEODTerminal", "The EOD terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.", msgFlowNode.getLine());
+		}
+		
+		if (msgFlowNode.isValidateMaster() == false) {
+			context.addIssue("FileOutputNodeValidation", "'Validate' under 'Validation' is not set to 'Content and Value' for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).", msgFlowNode.getLine());
+		}
+		
+		if (!msgFlowNode.areMonitoringEventsEnabled()) {
+			context.addIssue("FileOutputNodeMonitoringEvents", "There are no monitoring events defined or the "
+					+ "existing events are disabled for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).", msgFlowNode.getLine());
+		}
+		
+		if (msgFlowNode.getInputTerminals().size()==0) {
+			context.addIssue("DisconnectedNode", "There are no input connections to node '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ").", msgFlowNode.getLine());
+		}
+		
+		if(msgFlowNode.getInputTerminals().size()<2){
+			context.addIssue("AllInputTerminalsNotConnected", "One or more input terminals of node '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") are not connected.", msgFlowNode.getLine());
 		}
 	}
 
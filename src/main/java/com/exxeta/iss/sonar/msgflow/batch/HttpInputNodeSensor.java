@@ -17,29 +17,16 @@
  */
 package com.exxeta.iss.sonar.msgflow.batch;
 
-import java.util.Iterator;
-
-import org.sonar.api.batch.Sensor;
-import org.sonar.api.batch.SensorContext;
-import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.component.ResourcePerspectives;
-import org.sonar.api.issue.Issuable;
-import org.sonar.api.resources.Project;
-import org.sonar.api.rule.RuleKey;
-
-import com.exxeta.iss.sonar.msgflow.MessageFlowPlugin;
-import com.exxeta.iss.sonar.msgflow.model.MessageFlow;
 import com.exxeta.iss.sonar.msgflow.model.MessageFlowNode;
-import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
+import com.exxeta.iss.sonar.msgflow.model.TerminalDictionary;
 
 /**
- * The class (sensor) contains the method to analyse the connections and 
+ * The class (check) contains the method to analyse the connections and 
  * configuration of a Http Input Node.
  * 
  * @author Hendrik Scholz (EXXETA AG)
  */
-public class HttpInputNodeSensor implements Sensor {
+public class HttpInputNodeSensor extends MessageFlowVisitor {
 
 	/**
 	 * The logger for the class.
@@ -47,174 +34,91 @@ public class HttpInputNodeSensor implements Sensor {
 	//private static final Logger LOG = LoggerFactory.getLogger(HttpInputNodeSensor.class);
 	
 	/**
-	 * Variable to hold file system information, e.g. the file names of the project files.
-	 */
-	private final FileSystem fs;
-	
-	/**
+	 * Constructor
 	 * 
+	 * Defines the rules reported by the check.
 	 */
-	private final ResourcePerspectives perspectives;
-	
-	/**
-	  * Use of IoC to get FileSystem and ResourcePerspectives
-	  */
-	public HttpInputNodeSensor(FileSystem fs, ResourcePerspectives perspectives) {
-		this.fs = fs;
-		this.perspectives = perspectives;
+	public HttpInputNodeSensor() {
+		super("HttpInputNodeFailureTerminal", "HttpInputNodeOutTerminal", "HttpInputNodeTimeoutTerminal",
+				"HttpInputNodeCatchTerminal", "HttpInputNodeBuildTree", "HttpInputNodeRetainMixedContent",
+				"HttpInputNodeRetainComments", "HttpInputNodeValidation", "HttpInputNodeMessageDomain",
+				"HttpInputNodeMessageSet", "HttpInputNodeMonitoringEvents", "XMLNSCoverXMLNS",
+				"NodeLevelAdditionalInstances");
 	}
 	
 	/* (non-Javadoc)
-	 * @see org.sonar.api.batch.CheckProject#shouldExecuteOnProject(org.sonar.api.resources.Project)
-	 */
-	/**
-	 * The method defines the language of the file to be analysed.
-	 */
-	@Override
-	public boolean shouldExecuteOnProject(Project arg0) {
-		// This sensor is executed only when there are msgflow files
-	    return fs.hasFiles(fs.predicates().hasLanguage("msgflow"));
-	}
-
-	/* (non-Javadoc)
-	 * @see org.sonar.api.batch.Sensor#analyse(org.sonar.api.resources.Project, org.sonar.api.batch.SensorContext)
+	 * @see com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitor#visitHttpInputNode(com.exxeta.iss.sonar.msgflow.batch.MessageFlowContext, com.exxeta.iss.sonar.msgflow.model.MessageFlowNode)
 	 */
 	/**
 	 * The method where the analysis of the connections and configuration of 
 	 * the message flow node takes place.
 	 */
 	@Override
-	public void analyse(Project arg0, SensorContext arg1) {
-		for (InputFile inputFile : fs.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.FLOW_PATH_PATTERNS))) {
-			
-			/* 
-			 * retrieve the message flow object
-			 */
-			MessageFlow msgFlow = MessageFlowProject.getInstance().getMessageFlow(inputFile.absolutePath());
+	public void visitHttpInputNode(MessageFlowContext context, MessageFlowNode msgFlowNode) {
+		if (!msgFlowNode.isOutputTerminalConnected(TerminalDictionary.OUT_FAILURE)) {
+			context.addIssue("HttpInputNodeFailureTerminal", "The failure terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.", msgFlowNode.getLine());
+		}
 			
-			// the actual rule ...
-			Iterator<MessageFlowNode> iMsgFlowNodes = msgFlow.getHttpInputNodes().iterator();
+		if (!msgFlowNode.isOutputTerminalConnected(TerminalDictionary.OUT)) {
+			context.addIssue("HttpInputNodeOutTerminal", "The out terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.", msgFlowNode.getLine());
+		}
 			
-			while (iMsgFlowNodes.hasNext()) {
-				MessageFlowNode msgFlowNode = iMsgFlowNodes.next();
-
-				if (!msgFlowNode.getOutputTerminals().contains("OutTerminal.failure")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "HttpInputNodeFailureTerminal"))
-				    	        	  .message("The failure terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.")
-				    	        	  .build());
-				}
-					
-				if (!msgFlowNode.getOutputTerminals().contains("OutTerminal.out")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "HttpInputNodeOutTerminal"))
-				    	        	  .message("The out terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.")
-				    	        	  .build());
-				}
-					
-				if (!msgFlowNode.getOutputTerminals().contains("OutTerminal.timeout")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "HttpInputNodeTimeoutTerminal"))
-				    	        	  .message("The timeout terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.")
-				    	        	  .build());
-				}
-				
-				if (!msgFlowNode.getOutputTerminals().contains("OutTerminal.catch")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "HttpInputNodeCatchTerminal"))
-				    	        	  .message("The catch terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.")
-				    	        	  .build());
-				}
-				
-				if (msgFlowNode.isBuildTreeUsingSchema() == false) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "HttpInputNodeBuildTree"))
-				    	        	  .message("Loss of data types: 'Build tree using XML schema data types' under 'Parser Options' is not set for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).")
-				    	        	  .build());
-				}
-				
-				if (msgFlowNode.isMixedContentRetainMode() == false) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "HttpInputNodeRetainMixedContent"))
-				    	        	  .message("Possible loss of data: 'Retain mixed content' under 'Parser Options' is not set for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).")
-				    	        	  .build());
-				}
-				
-				if (msgFlowNode.isCommentsRetainMode() == false) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "HttpInputNodeRetainComments"))
-				    	        	  .message("Possible loss of data: 'Retain comments' under 'Parser Options' is not set for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).")
-				    	        	  .build());
-				}
-				
-				if (msgFlowNode.isValidateMaster() == false) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "HttpInputNodeValidation"))
-				    	        	  .message("'Validate' under 'Validation' is not set to 'Content and Value' for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).")
-				    	        	  .build());
-				}
-				
-				if (msgFlowNode.getMessageDomainProperty().equals("")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "HttpInputNodeMessageDomain"))
-				    	        	  .message("'Message domain' under 'Input Message Parsing' is not set for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).")
-				    	        	  .build());
-				}
-				
-				/* 
-				 * The setting of a message set is only checked for the following domains:
-				 * MRM, XMLNSC and DataObject.
-				 */
-				if (msgFlowNode.getMessageSetProperty().equals("") &&
-					(msgFlowNode.getMessageDomainProperty().equals("MRM") ||
-					 msgFlowNode.getMessageDomainProperty().equals("XMLNSC") ||
-					 msgFlowNode.getMessageDomainProperty().equals("DataObject"))) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "HttpInputNodeMessageSet"))
-				    	        	  .message("'Message set' under 'Input Message Parsing' is not set for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).")
-				    	        	  .build());
-				}
-				
-				if (!msgFlowNode.areMonitoringEventsEnabled()) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "HttpInputNodeMonitoringEvents"))
-				    	        	  .message("There are no monitoring events defined or the "
-				    	        	  		 + "existing events are disabled for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).")
-				    	        	  .build());
-				}
-				
-				if (msgFlowNode.getMessageDomainProperty().equals("XMLNS")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-					issuable.addIssue(issuable.newIssueBuilder().ruleKey(RuleKey.of("msgflow", "XMLNSCoverXMLNS"))
-							.message("'Message domain' under 'Input Message Parsing' for '"
-									+ msgFlowNode.getName() + "' (type: " + msgFlowNode.getType()
-									+ ") is set as XMLNS. XMLNSC is preferred over XMLNS.")
-							.build());
-				}
-				if ((!((String) msgFlowNode.getProperties().get("componentLevel")).isEmpty())
-						&& (((String) msgFlowNode.getProperties().get("componentLevel")).equals("node"))
-						&& (!((String) msgFlowNode.getProperties().get("additionalInstances")).isEmpty())
-						&& (Integer.parseInt((String)(msgFlowNode.getProperties().get("additionalInstances"))) > 0)) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-					issuable.addIssue(
-							issuable.newIssueBuilder().ruleKey(RuleKey.of("msgflow", "NodeLevelAdditionalInstances"))
-									.message("Additional Intances defined at the node level for"
-											+ msgFlowNode.getName() + "' (type: " + msgFlowNode.getType()
-											+ ").")
-									.build());
-				}
-			}
+		if (!msgFlowNode.isOutputTerminalConnected(TerminalDictionary.OUT_TIMEOUT)) {
+			context.addIssue("HttpInputNodeTimeoutTerminal", "The timeout terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.", msgFlowNode.getLine());
+		}
+		
+		if (!msgFlowNode.isOutputTerminalConnected(TerminalDictionary.OUT_CATCH)) {
+			context.addIssue("HttpInputNodeCatchTerminal", "The catch terminal (output) for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") is not connected.", msgFlowNode.getLine());
+		}
+		
+		if (msgFlowNode.isBuildTreeUsingSchema() == false) {
+			context.addIssue("HttpInputNodeBuildTree", "Loss of data types: 'Build tree using XML schema data types' under 'Parser Options' is not set for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).", msgFlowNode.getLine());
+		}
+		
+		if (msgFlowNode.isMixedContentRetainMode() == false) {
+			context.addIssue("HttpInputNodeRetainMixedContent", "Possible loss of data: 'Retain mixed content' under 'Parser Options' is not set for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).", msgFlowNode.getLine());
+		}
+		
+		if (msgFlowNode.isCommentsRetainMode() == false) {
+			context.addIssue("HttpInputNodeRetainComments", "Possible loss of data: 'Retain comments' under 'Parser Options' is not set for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).", msgFlowNode.getLine());
+		}
+		
+		if (msgFlowNode.isValidateMaster() == false) {
+			context.addIssue("HttpInputNodeValidation", "'Validate' under 'Validation' is not set to 'Content and Value' for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).", msgFlowNode.getLine());
+		}
+		
+		if (msgFlowNode.getMessageDomainProperty().equals("")) {
+			context.addIssue("HttpInputNodeMessageDomain", "'Message domain' under 'Input Message Parsing' is not set for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).", msgFlowNode.getLine());
+		}
+		
+		/* 
+		 * The setting of a message set is only checked for the following domains:
+		 * MRM, XMLNSC and DataObject.
+		 */
+		if (msgFlowNode.getMessageSetProperty().equals("") &&
+			(msgFlowNode.getMessageDomainProperty().equals("MRM") ||
+			 msgFlowNode.getMessageDomainProperty().equals("XMLNSC") ||
+			 msgFlowNode.getMessageDomainProperty().equals("DataObject"))) {
+			context.addIssue("HttpInputNodeMessageSet", "'Message set' under 'Input Message Parsing' is not set for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).", msgFlowNode.getLine());
+		}
+		
+		if (!msgFlowNode.areMonitoringEventsEnabled()) {
+			context.addIssue("HttpInputNodeMonitoringEvents", "There are no monitoring events defined or the "
+					+ "existing events are disabled for '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ") (see Properties).", msgFlowNode.getLine());
+		}
+		
+		if (msgFlowNode.getMessageDomainProperty().equals("XMLNS")) {
+			context.addIssue("XMLNSCoverXMLNS", "'Message domain' under 'Input Message Parsing' for '"
+					+ msgFlowNode.getName() + "' (type: " + msgFlowNode.getType()
+					+ ") is set as XMLNS. XMLNSC is preferred over XMLNS.", msgFlowNode.getLine());
+		}
+		if ((!((String) msgFlowNode.getProperties().get("componentLevel")).isEmpty())
+				&& (((String) msgFlowNode.getProperties().get("componentLevel")).equals("node"))
+				&& (!((String) msgFlowNode.getProperties().get("additionalInstances")).isEmpty())
+				&& (Integer.parseInt((String)(msgFlowNode.getProperties().get("additionalInstances"))) > 0)) {
+			context.addIssue("NodeLevelAdditionalInstances", "Additional Intances defined at the node level for"
+					+ msgFlowNode.getName() + "' (type: " + msgFlowNode.getType()
+					+ ").", msgFlowNode.getLine());
 		}
 	}
 
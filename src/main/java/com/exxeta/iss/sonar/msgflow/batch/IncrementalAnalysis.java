@@ -0,0 +1,362 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.config.Configuration;
+
+import com.exxeta.iss.sonar.msgflow.MessageFlowPlugin;
+import com.exxeta.iss.sonar.msgflow.MessageFlowProjectSession;
+import com.exxeta.iss.sonar.msgflow.model.DependencyGraph;
+import com.exxeta.iss.sonar.msgflow.model.EsqlModule;
+import com.exxeta.iss.sonar.msgflow.model.EsqlModuleParser;
+import com.exxeta.iss.sonar.msgflow.model.FileTimeoutException;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
+
+/**
+ * The class plans the incremental analysis, enabled by the property
+ * {@link MessageFlowPlugin#INCREMENTAL_KEY}. A message flow or message map
+ * file has changed if its {@link InputFile#status()} is not SAME or if its
+ * content differs from the one recorded in the {@link DependencyGraph} of the
+ * previous analysis (the status refers to the last analysis on the server,
+ * the graph may be older). Only the changed files and the files affected by
+ * them (see {@link DependencyGraph#getAffectedFiles(Set, Map, Set)}) are
+ * analysed, the issues of the other files are reported again from the graph.
+ *
+ * The graph is kept in the directory of the model cache. It is invalidated
+ * like the model cache if the plug-in, the parser or the active rules change,
+ * all files are analysed then.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+@ScannerSide
+public class IncrementalAnalysis {
+
+	/**
+	 * The logger for the class.
+	 */
+	private static final Logger LOG = LoggerFactory.getLogger(IncrementalAnalysis.class);
+
+	/**
+	 * the name of the file of the dependency graph in the cache directory
+	 */
+	public static final String GRAPH_FILE = "dependency-graph.bin";
+
+	/**
+	 * Variable to hold the configuration settings.
+	 */
+	private final Configuration configuration;
+
+	/**
+	 * Variable to hold file system information, e.g. the file names of the project files.
+	 */
+	private final FileSystem fs;
+
+	/**
+	 * the session providing the cache directory and the fingerprint
+	 */
+	private final MessageFlowProjectSession session;
+
+	/**
+	 * the graph of the previous analysis, null until it is loaded
+	 */
+	private DependencyGraph previous;
+
+	/**
+	 * the files to be analysed, null until they are planned
+	 */
+	private Set<String> affectedFiles;
+
+	/**
+	 * the message map files of the project
+	 */
+	private final Set<String> messageMaps = new HashSet<String>();
+
+	/**
+	 * the hashes of the files read in the analysis by file name
+	 */
+	private final Map<String, String> hashes = new HashMap<String, String>();
+
+	/**
+	 * the issues of the analysed files by file name
+	 */
+	private final Map<String, List<DependencyGraph.Issue>> issues = new LinkedHashMap<String, List<DependencyGraph.Issue>>();
+
+	/**
+	 * the files whose issues have been taken from the previous analysis
+	 */
+	private final Set<String> replayedFiles = new LinkedHashSet<String>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param configuration The configuration settings set by IoC.
+	 * @param fs The file system set by IoC.
+	 * @param session The session of the models set by IoC.
+	 */
+	public IncrementalAnalysis(Configuration configuration, FileSystem fs, MessageFlowProjectSession session) {
+		this.configuration = configuration;
+		this.fs = fs;
+		this.session = session;
+	}
+
+	/**
+	 * @return true if {@link MessageFlowPlugin#INCREMENTAL_KEY} is set
+	 */
+	public boolean isEnabled() {
+		return configuration.getBoolean(MessageFlowPlugin.INCREMENTAL_KEY).orElse(false);
+	}
+
+	/**
+	 * @return the file of the dependency graph
+	 */
+	public File getGraphFile() {
+		return new File(session.getCacheDirectory(), GRAPH_FILE);
+	}
+
+	/**
+	 * The method checks whether a file has to be analysed.
+	 *
+	 * @param fileName the absolute path of a message flow or message map file
+	 * @return true if the file is affected by a change
+	 */
+	public boolean isAffected(String fileName) {
+		return getAffectedFiles().contains(fileName);
+	}
+
+	/**
+	 * The method returns the files that have to be analysed. The changed
+	 * message flows are parsed to find their current dependencies.
+	 *
+	 * @return the absolute paths of the affected files, including removed files
+	 */
+	public Set<String> getAffectedFiles() {
+		if (affectedFiles == null) {
+			affectedFiles = Collections.unmodifiableSet(plan());
+		}
+		return affectedFiles;
+	}
+
+	private Set<String> plan() {
+		DependencyGraph graph = getPrevious();
+		MessageFlowProject project = MessageFlowProject.getInstance();
+		Set<String> files = new HashSet<String>();
+		Set<String> changedFiles = new TreeSet<String>();
+		Map<String, Set<String>> currentDependencies = new HashMap<String, Set<String>>();
+
+		for (InputFile inputFile : fs.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.FLOW_PATH_PATTERNS))) {
+			String fileName = inputFile.absolutePath();
+			files.add(fileName);
+			if (isChanged(graph, inputFile)) {
+				changedFiles.add(fileName);
+				try {
+					currentDependencies.put(fileName, DependencyGraph.getDependencies(project, fileName));
+				} catch (FileTimeoutException e) {
+					// the file is skipped by the rule sensor
+					currentDependencies.put(fileName, Collections.<String>emptySet());
+				}
+			}
+		}
+		for (InputFile inputFile : fs.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.MAP_PATH_PATTERNS))) {
+			String fileName = inputFile.absolutePath();
+			files.add(fileName);
+			messageMaps.add(fileName);
+			if (isChanged(graph, inputFile)) {
+				changedFiles.add(fileName);
+			}
+		}
+		for (String fileName : graph.getFiles()) {
+			if (!files.contains(fileName)) {
+				// the file has been removed
+				changedFiles.add(fileName);
+			}
+		}
+
+		Set<String> changedKeys = new HashSet<String>();
+		for (Map.Entry<String, String> fileHash : graph.getFileHashes().entrySet()) {
+			if (!fileHash.getValue().equals(getHash(fileHash.getKey()))) {
+				changedKeys.add(DependencyGraph.FILE + fileHash.getKey());
+			}
+		}
+		EsqlModuleParser parser = new EsqlModuleParser();
+		for (InputFile inputFile : fs.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.ESQL_PATH_PATTERNS))) {
+			if (inputFile.status() != InputFile.Status.SAME) {
+				// a new module may resolve a routine of an unchanged flow
+				for (EsqlModule module : parser.parse(inputFile.absolutePath())) {
+					changedKeys.add(DependencyGraph.getRoutineKey(module.getSchema(), module.getName()));
+				}
+			}
+		}
+
+		Set<String> affected = graph.getAffectedFiles(changedFiles, currentDependencies, changedKeys);
+		int analysed = 0;
+		for (String fileName : files) {
+			if (affected.contains(fileName)) {
+				analysed++;
+			}
+		}
+		LOG.info("Incremental analysis: " + changedFiles.size() + " changed files, " + analysed + " of "
+				+ files.size() + " message flow and message map files are analysed");
+		return affected;
+	}
+
+	/**
+	 * The method returns a context that records the issues of an analysed
+	 * file for the dependency graph and reports them to the given context.
+	 *
+	 * @param context the context of the file
+	 * @return the recording context
+	 */
+	public MessageFlowContext record(final MessageFlowContext context) {
+		final List<DependencyGraph.Issue> list = new ArrayList<DependencyGraph.Issue>();
+		issues.put(context.getAbsolutePath(), list);
+
+		return new MessageFlowContext() {
+			@Override
+			public String getAbsolutePath() {
+				return context.getAbsolutePath();
+			}
+
+			@Override
+			public String getRelativePath() {
+				return context.getRelativePath();
+			}
+
+			@Override
+			public void addIssue(String ruleKey, String message) {
+				list.add(new DependencyGraph.Issue(ruleKey, message, 0));
+				context.addIssue(ruleKey, message);
+			}
+
+			@Override
+			public void addIssue(String ruleKey, String message, int line) {
+				list.add(new DependencyGraph.Issue(ruleKey, message, line));
+				context.addIssue(ruleKey, message, line);
+			}
+		};
+	}
+
+	/**
+	 * The method reports the issues of an unaffected file from the previous
+	 * analysis. The sub flow references of the file are added to the
+	 * {@link com.exxeta.iss.sonar.msgflow.model.SubflowIndex}, so the checks
+	 * of the affected sub flows see them without parsing the file.
+	 *
+	 * @param fileName the absolute path of the file
+	 * @param context the context of the file
+	 */
+	public void replay(String fileName, MessageFlowContext context) {
+		DependencyGraph graph = getPrevious();
+		for (DependencyGraph.Issue issue : graph.getIssues(fileName)) {
+			context.addIssue(issue.getRuleKey(), issue.getMessage(), issue.getLine());
+		}
+		replayedFiles.add(fileName);
+
+		if (!messageMaps.contains(fileName)) {
+			List<String> types = new ArrayList<String>();
+			for (String key : graph.getDependencies(fileName)) {
+				if (key.startsWith(DependencyGraph.SUBFLOW)) {
+					types.add(key.substring(DependencyGraph.SUBFLOW.length()));
+				}
+			}
+			MessageFlowProject.getInstance().getSubflowIndex().add(fileName, types);
+		}
+	}
+
+	/**
+	 * The method writes the dependency graph of the analysis. Files skipped
+	 * because of their time budget are not recorded, so they are analysed
+	 * again in the next analysis.
+	 */
+	public void save() {
+		DependencyGraph graph = new DependencyGraph(getFingerprint());
+		DependencyGraph previousGraph = getPrevious();
+		MessageFlowProject project = MessageFlowProject.getInstance();
+
+		for (String fileName : replayedFiles) {
+			graph.put(fileName, previousGraph.getHash(fileName), previousGraph.getDependencies(fileName),
+					previousGraph.getIssues(fileName));
+		}
+		for (Map.Entry<String, List<DependencyGraph.Issue>> entry : issues.entrySet()) {
+			String fileName = entry.getKey();
+			if (project.isSkipped(fileName)) {
+				continue;
+			}
+			Set<String> dependencies = messageMaps.contains(fileName) ? Collections.<String>emptySet()
+					: DependencyGraph.getDependencies(project, fileName);
+			graph.put(fileName, getHash(fileName), dependencies, entry.getValue());
+		}
+		for (String fileName : graph.getFiles()) {
+			for (String key : graph.getDependencies(fileName)) {
+				if (key.startsWith(DependencyGraph.FILE)) {
+					String dependency = key.substring(DependencyGraph.FILE.length());
+					graph.putFileHash(dependency, getHash(dependency));
+				}
+			}
+		}
+
+		File file = getGraphFile();
+		try {
+			graph.save(file);
+		} catch (IOException e) {
+			LOG.warn("The dependency graph " + file + " cannot be written: " + e.getMessage());
+		}
+	}
+
+	private boolean isChanged(DependencyGraph graph, InputFile inputFile) {
+		String fileName = inputFile.absolutePath();
+		return inputFile.status() != InputFile.Status.SAME || !getHash(fileName).equals(graph.getHash(fileName));
+	}
+
+	private String getHash(String fileName) {
+		String hash = hashes.get(fileName);
+		if (hash == null) {
+			hash = DependencyGraph.hash(fileName);
+			hashes.put(fileName, hash);
+		}
+		return hash;
+	}
+
+	private String getFingerprint() {
+		return session.getFingerprint(session.getParserName());
+	}
+
+	private DependencyGraph getPrevious() {
+		if (previous == null) {
+			previous = DependencyGraph.load(getGraphFile(), getFingerprint());
+		}
+		return previous;
+	}
+}
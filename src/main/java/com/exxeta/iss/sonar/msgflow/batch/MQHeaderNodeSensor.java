@@ -1,25 +1,14 @@
 package com.exxeta.iss.sonar.msgflow.batch;
 
-import org.sonar.api.batch.Sensor;
-import org.sonar.api.batch.SensorContext;
-import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.component.ResourcePerspectives;
-import org.sonar.api.issue.Issuable;
-import org.sonar.api.resources.Project;
-import org.sonar.api.rule.RuleKey;
-
-import com.exxeta.iss.sonar.msgflow.MessageFlowPlugin;
 import com.exxeta.iss.sonar.msgflow.model.MessageFlow;
-import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
 
 /**
- * The class (sensor) contains the method to analyse the connections and 
+ * The class (check) contains the method to analyse the connections and 
  * configuration of a MQ Header Node.
  * 
  * @author Arjav Shah
  */
-public class MQHeaderNodeSensor implements Sensor {
+public class MQHeaderNodeSensor extends MessageFlowVisitor {
 
 	/**
 	 * The logger for the class.
@@ -27,56 +16,25 @@ public class MQHeaderNodeSensor implements Sensor {
 	//private static final Logger LOG = LoggerFactory.getLogger(MQOutputNodeSensor.class);
 	
 	/**
-	 * Variable to hold file system information, e.g. the file names of the project files.
-	 */
-	private final FileSystem fs;
-	
-	/**
+	 * Constructor
 	 * 
+	 * Defines the rules reported by the check.
 	 */
-	private final ResourcePerspectives perspectives;
-	
-	/**
-	  * Use of IoC to get FileSystem and ResourcePerspectives
-	  */
-	public MQHeaderNodeSensor(FileSystem fs, ResourcePerspectives perspectives) {
-		this.fs = fs;
-		this.perspectives = perspectives;
+	public MQHeaderNodeSensor() {
+		super("MQHeaderNodeDetection");
 	}
 	
 	/* (non-Javadoc)
-	 * @see org.sonar.api.batch.CheckProject#shouldExecuteOnProject(org.sonar.api.resources.Project)
-	 */
-	@Override
-	public boolean shouldExecuteOnProject(Project arg0) {
-		// This sensor is executed only when there are msgflow files
-	    return fs.hasFiles(fs.predicates().hasLanguage("msgflow"));
-	}
-
-	/* (non-Javadoc)
-	 * @see org.sonar.api.batch.Sensor#analyse(org.sonar.api.resources.Project, org.sonar.api.batch.SensorContext)
+	 * @see com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitor#visitMessageFlow(com.exxeta.iss.sonar.msgflow.batch.MessageFlowContext, com.exxeta.iss.sonar.msgflow.model.MessageFlow)
 	 */
 	/**
-	 * The method where the analysis of the connections and configuration of 
-	 * the message flow node takes place.
+	 * The method where the analysis of the message flow takes place.
 	 */
 	@Override
-	public void analyse(Project arg0, SensorContext arg1) {
-		for (InputFile inputFile : fs.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.FLOW_PATH_PATTERNS))) {
-			
-			/* 
-			 * retrieve the message flow object
-			 */
-			MessageFlow msgFlow = MessageFlowProject.getInstance().getMessageFlow(inputFile.absolutePath());
-			
-			// the actual rule ...
-			if(msgFlow.getMqHeaderNodes().size()>0) {
-				Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				 issuable.addIssue(issuable.newIssueBuilder()
-				    		.ruleKey(RuleKey.of("msgflow", "MQHeaderNodeDetection"))
-				    		.message("The 'MQ Header' node was detected. Usage of MQ Header node is discouraged, manipulate the headers using ESQL.")
-				    	        	  .build());
-			}
+	public void visitMessageFlow(MessageFlowContext context, MessageFlow msgFlow) {
+		// the actual rule ...
+		if(msgFlow.getMqHeaderNodes().size()>0) {
+			context.addIssue("MQHeaderNodeDetection", "The 'MQ Header' node was detected. Usage of MQ Header node is discouraged, manipulate the headers using ESQL.", msgFlow.getMqHeaderNodes().get(0).getLine());
 		}
 	}
 }
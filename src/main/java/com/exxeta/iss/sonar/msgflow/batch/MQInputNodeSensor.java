@@ -17,30 +17,18 @@
  */
 package com.exxeta.iss.sonar.msgflow.batch;
 
-import java.util.Iterator;
 import java.util.regex.Pattern;
 
-import org.sonar.api.batch.Sensor;
-import org.sonar.api.batch.SensorContext;
-import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.component.ResourcePerspectives;
-import org.sonar.api.issue.Issuable;
-import org.sonar.api.resources.Project;
-import org.sonar.api.rule.RuleKey;
-
-import com.exxeta.iss.sonar.msgflow.MessageFlowPlugin;
-import com.exxeta.iss.sonar.msgflow.model.MessageFlow;
 import com.exxeta.iss.sonar.msgflow.model.MessageFlowNode;
-import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
+import com.exxeta.iss.sonar.msgflow.model.TerminalDictionary;
 
 /**
- * The class (sensor) contains the method to analyse the connections and
+ * The class (check) contains the method to analyse the connections and
  * configuration of a MQ Input Node.
  * 
  * @author Hendrik Scholz (EXXETA AG)
  */
-public class MQInputNodeSensor implements Sensor {
+public class MQInputNodeSensor extends MessageFlowVisitor {
 
 	/**
 	 * The logger for the class.
@@ -48,222 +36,124 @@ public class MQInputNodeSensor implements Sensor {
 	// private static final Logger LOG =
 	// LoggerFactory.getLogger(MQInputNodeSensor.class);
 
-	/**
-	 * Variable to hold file system information, e.g. the file names of the
-	 * project files.
-	 */
-	private final FileSystem fs;
-	
 	public final static String PATTERN_STRING = "^[A-Za-z0-9_]+\\.[A-Za-z0-9_]+\\.[A-Za-z0-9_]+\\.(AI|AO)$";
 
 	/**
+	 * Constructor
 	 * 
+	 * Defines the rules reported by the check.
 	 */
-	private final ResourcePerspectives perspectives;
-
-	/**
-	 * Use of IoC to get FileSystem and ResourcePerspectives
-	 */
-	public MQInputNodeSensor(FileSystem fs, ResourcePerspectives perspectives) {
-		this.fs = fs;
-		this.perspectives = perspectives;
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see
-	 * org.sonar.api.batch.CheckProject#shouldExecuteOnProject(org.sonar.api.
-	 * resources.Project)
-	 */
-	/**
-	 * The method defines the language of the file to be analysed.
-	 */
-	@Override
-	public boolean shouldExecuteOnProject(Project arg0) {
-		// This sensor is executed only when there are msgflow files
-		return fs.hasFiles(fs.predicates().hasLanguage("msgflow"));
+	public MQInputNodeSensor() {
+		super("MQInputNodeFailureTerminal", "MQInputNodeOutTerminal", "MQInputNodeCatchTerminal",
+				"MQInputNodeBuildTree", "MQInputNodeRetainMixedContent", "MQInputNodeRetainComments",
+				"MQInputNodeValidation", "MQInputNodeMessageDomain", "MQInputNodeMessageSet",
+				"MQInputNodeMonitoringEvents", "MQNodeNameMatchesQueueName", "MQNodeTxnMode",
+				"XMLNSCoverXMLNS", "NodeLevelAdditionalInstances", "queueNamingConvention");
 	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see org.sonar.api.batch.Sensor#analyse(org.sonar.api.resources.Project,
-	 * org.sonar.api.batch.SensorContext)
+	
+	/* (non-Javadoc)
+	 * @see com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitor#visitMqInputNode(com.exxeta.iss.sonar.msgflow.batch.MessageFlowContext, com.exxeta.iss.sonar.msgflow.model.MessageFlowNode)
 	 */
 	/**
-	 * The method where the analysis of the connections and configuration of the
-	 * message flow node takes place.
+	 * The method where the analysis of the connections and configuration of 
+	 * the message flow node takes place.
 	 */
 	@Override
-	public void analyse(Project arg0, SensorContext arg1) {
-		for (InputFile inputFile : fs.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.FLOW_PATH_PATTERNS))) {
-
-			/*
-			 * retrieve the message flow object
-			 */
-			MessageFlow msgFlow = MessageFlowProject.getInstance().getMessageFlow(inputFile.absolutePath());
-
-			// the actual rule ...
-			Iterator<MessageFlowNode> iMsgFlowNodes = msgFlow.getMqInputNodes().iterator();
-
-			while (iMsgFlowNodes.hasNext()) {
-				MessageFlowNode msgFlowNode = iMsgFlowNodes.next();
-
-				if (!msgFlowNode.getOutputTerminals().contains("OutTerminal.failure")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-					issuable.addIssue(
-							issuable.newIssueBuilder().ruleKey(RuleKey.of("msgflow", "MQInputNodeFailureTerminal"))
-									.message("The failure terminal (output) for '" + msgFlowNode.getName() + "' (type: "
-											+ msgFlowNode.getType() + ") is not connected.")
-									.build());
-				}
+	public void visitMqInputNode(MessageFlowContext context, MessageFlowNode msgFlowNode) {
+		if (!msgFlowNode.isOutputTerminalConnected(TerminalDictionary.OUT_FAILURE)) {
+			context.addIssue("MQInputNodeFailureTerminal", "The failure terminal (output) for '" + msgFlowNode.getName() + "' (type: "
+					+ msgFlowNode.getType() + ") is not connected.", msgFlowNode.getLine());
+		}
 
-				if (!msgFlowNode.getOutputTerminals().contains("OutTerminal.out")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-					issuable.addIssue(
-							issuable.newIssueBuilder().ruleKey(RuleKey.of("msgflow", "MQInputNodeOutTerminal"))
-									.message("The out terminal (output) for '" + msgFlowNode.getName() + "' (type: "
-											+ msgFlowNode.getType() + ") is not connected.")
-									.build());
-				}
+		if (!msgFlowNode.isOutputTerminalConnected(TerminalDictionary.OUT)) {
+			context.addIssue("MQInputNodeOutTerminal", "The out terminal (output) for '" + msgFlowNode.getName() + "' (type: "
+					+ msgFlowNode.getType() + ") is not connected.", msgFlowNode.getLine());
+		}
 
-				if (!msgFlowNode.getOutputTerminals().contains("OutTerminal.catch")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-					issuable.addIssue(
-							issuable.newIssueBuilder().ruleKey(RuleKey.of("msgflow", "MQInputNodeCatchTerminal"))
-									.message("The catch terminal (output) for '" + msgFlowNode.getName() + "' (type: "
-											+ msgFlowNode.getType() + ") is not connected.")
-									.build());
-				}
+		if (!msgFlowNode.isOutputTerminalConnected(TerminalDictionary.OUT_CATCH)) {
+			context.addIssue("MQInputNodeCatchTerminal", "The catch terminal (output) for '" + msgFlowNode.getName() + "' (type: "
+					+ msgFlowNode.getType() + ") is not connected.", msgFlowNode.getLine());
+		}
 
-				if (msgFlowNode.isBuildTreeUsingSchema() == false) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-					issuable.addIssue(issuable.newIssueBuilder().ruleKey(RuleKey.of("msgflow", "MQInputNodeBuildTree"))
-							.message(
-									"Loss of data types: 'Build tree using XML schema data types' under 'Parser Options' is not set for '"
-											+ msgFlowNode.getName() + "' (type: " + msgFlowNode.getType()
-											+ ") (see Properties).")
-							.build());
-				}
+		if (msgFlowNode.isBuildTreeUsingSchema() == false) {
+			context.addIssue("MQInputNodeBuildTree", "Loss of data types: 'Build tree using XML schema data types' under 'Parser Options' is not set for '"
+					+ msgFlowNode.getName() + "' (type: " + msgFlowNode.getType()
+					+ ") (see Properties).", msgFlowNode.getLine());
+		}
 
-				if (msgFlowNode.isMixedContentRetainMode() == false) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-					issuable.addIssue(
-							issuable.newIssueBuilder().ruleKey(RuleKey.of("msgflow", "MQInputNodeRetainMixedContent"))
-									.message(
-											"Possible loss of data: 'Retain mixed content' under 'Parser Options' is not set for '"
-													+ msgFlowNode.getName() + "' (type: " + msgFlowNode.getType()
-													+ ") (see Properties).")
-									.build());
-				}
+		if (msgFlowNode.isMixedContentRetainMode() == false) {
+			context.addIssue("MQInputNodeRetainMixedContent", "Possible loss of data: 'Retain mixed content' under 'Parser Options' is not set for '"
+					+ msgFlowNode.getName() + "' (type: " + msgFlowNode.getType()
+					+ ") (see Properties).", msgFlowNode.getLine());
+		}
 
-				if (msgFlowNode.isCommentsRetainMode() == false) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-					issuable.addIssue(issuable.newIssueBuilder()
-							.ruleKey(RuleKey.of("msgflow", "MQInputNodeRetainComments"))
-							.message("Possible loss of data: 'Retain comments' under 'Parser Options' is not set for '"
-									+ msgFlowNode.getName() + "' (type: " + msgFlowNode.getType()
-									+ ") (see Properties).")
-							.build());
-				}
+		if (msgFlowNode.isCommentsRetainMode() == false) {
+			context.addIssue("MQInputNodeRetainComments", "Possible loss of data: 'Retain comments' under 'Parser Options' is not set for '"
+					+ msgFlowNode.getName() + "' (type: " + msgFlowNode.getType()
+					+ ") (see Properties).", msgFlowNode.getLine());
+		}
 
-				if (msgFlowNode.isValidateMaster() == false) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-					issuable.addIssue(issuable.newIssueBuilder().ruleKey(RuleKey.of("msgflow", "MQInputNodeValidation"))
-							.message("'Validate' under 'Validation' is not set to 'Content and Value' for '"
-									+ msgFlowNode.getName() + "' (type: " + msgFlowNode.getType()
-									+ ") (see Properties).")
-							.build());
-				}
+		if (msgFlowNode.isValidateMaster() == false) {
+			context.addIssue("MQInputNodeValidation", "'Validate' under 'Validation' is not set to 'Content and Value' for '"
+					+ msgFlowNode.getName() + "' (type: " + msgFlowNode.getType()
+					+ ") (see Properties).", msgFlowNode.getLine());
+		}
 
-				if (msgFlowNode.getMessageDomainProperty().equals("")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-					issuable.addIssue(
-							issuable.newIssueBuilder().ruleKey(RuleKey.of("msgflow", "MQInputNodeMessageDomain"))
-									.message("'Message domain' under 'Input Message Parsing' is not set for '"
-											+ msgFlowNode.getName() + "' (type: " + msgFlowNode.getType()
-											+ ") (see Properties).")
-									.build());
-				}
+		if (msgFlowNode.getMessageDomainProperty().equals("")) {
+			context.addIssue("MQInputNodeMessageDomain", "'Message domain' under 'Input Message Parsing' is not set for '"
+					+ msgFlowNode.getName() + "' (type: " + msgFlowNode.getType()
+					+ ") (see Properties).", msgFlowNode.getLine());
+		}
 
-				/*
-				 * The setting of a message set is only checked for the
-				 * following domains: MRM, XMLNSC and DataObject.
-				 */
-				if (msgFlowNode.getMessageSetProperty().equals("")
-						&& (msgFlowNode.getMessageDomainProperty().equals("MRM")
-								|| msgFlowNode.getMessageDomainProperty().equals("XMLNSC")
-								|| msgFlowNode.getMessageDomainProperty().equals("DataObject"))) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-					issuable.addIssue(issuable.newIssueBuilder().ruleKey(RuleKey.of("msgflow", "MQInputNodeMessageSet"))
-							.message("'Message set' under 'Input Message Parsing' is not set for '"
-									+ msgFlowNode.getName() + "' (type: " + msgFlowNode.getType()
-									+ ") (see Properties).")
-							.build());
-				}
+		/*
+		 * The setting of a message set is only checked for the
+		 * following domains: MRM, XMLNSC and DataObject.
+		 */
+		if (msgFlowNode.getMessageSetProperty().equals("")
+				&& (msgFlowNode.getMessageDomainProperty().equals("MRM")
+						|| msgFlowNode.getMessageDomainProperty().equals("XMLNSC")
+						|| msgFlowNode.getMessageDomainProperty().equals("DataObject"))) {
+			context.addIssue("MQInputNodeMessageSet", "'Message set' under 'Input Message Parsing' is not set for '"
+					+ msgFlowNode.getName() + "' (type: " + msgFlowNode.getType()
+					+ ") (see Properties).", msgFlowNode.getLine());
+		}
 
-				if (!msgFlowNode.areMonitoringEventsEnabled()) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-					issuable.addIssue(
-							issuable.newIssueBuilder().ruleKey(RuleKey.of("msgflow", "MQInputNodeMonitoringEvents"))
-									.message("There are no monitoring events defined or the "
-											+ "existing events are disabled for '" + msgFlowNode.getName() + "' (type: "
-											+ msgFlowNode.getType() + ") (see Properties).")
-									.build());
-				}
+		if (!msgFlowNode.areMonitoringEventsEnabled()) {
+			context.addIssue("MQInputNodeMonitoringEvents", "There are no monitoring events defined or the "
+					+ "existing events are disabled for '" + msgFlowNode.getName() + "' (type: "
+					+ msgFlowNode.getType() + ") (see Properties).", msgFlowNode.getLine());
+		}
 
-				if (!((String) msgFlowNode.getProperties().get("queueName")).equals(msgFlowNode.getName())) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-					issuable.addIssue(
-							issuable.newIssueBuilder().ruleKey(RuleKey.of("msgflow", "MQNodeNameMatchesQueueName"))
-									.message("The name of MQ Node '" + msgFlowNode.getName() + "' (type: "
-											+ msgFlowNode.getType() + ") does not match the underlaying queue name.")
-									.build());
-				}
+		if (!((String) msgFlowNode.getProperties().get("queueName")).equals(msgFlowNode.getName())) {
+			context.addIssue("MQNodeNameMatchesQueueName", "The name of MQ Node '" + msgFlowNode.getName() + "' (type: "
+					+ msgFlowNode.getType() + ") does not match the underlaying queue name.", msgFlowNode.getLine());
+		}
 
-				if (!msgFlowNode.getProperties().get("transactionMode").equals("automatic")) {
+		if (!msgFlowNode.getProperties().get("transactionMode").equals("automatic")) {
 
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-					issuable.addIssue(issuable.newIssueBuilder().ruleKey(RuleKey.of("msgflow", "MQNodeTxnMode"))
-							.message("The 'Transaction Mode' property of " + msgFlowNode.getName() + "(type:"
-									+ msgFlowNode.getType() + ") node is not set to Automatic.")
-							.build());
+			context.addIssue("MQNodeTxnMode", "The 'Transaction Mode' property of " + msgFlowNode.getName() + "(type:"
+					+ msgFlowNode.getType() + ") node is not set to Automatic.", msgFlowNode.getLine());
 
-				}
+		}
 
-				if (msgFlowNode.getMessageDomainProperty().equals("XMLNS")) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-					issuable.addIssue(issuable.newIssueBuilder().ruleKey(RuleKey.of("msgflow", "XMLNSCoverXMLNS"))
-							.message("'Message domain' under 'Input Message Parsing' for '" + msgFlowNode.getName()
-									+ "' (type: " + msgFlowNode.getType()
-									+ ") is set as XMLNS. XMLNSC is preferred over XMLNS.")
-							.build());
-				}
+		if (msgFlowNode.getMessageDomainProperty().equals("XMLNS")) {
+			context.addIssue("XMLNSCoverXMLNS", "'Message domain' under 'Input Message Parsing' for '" + msgFlowNode.getName()
+					+ "' (type: " + msgFlowNode.getType()
+					+ ") is set as XMLNS. XMLNSC is preferred over XMLNS.", msgFlowNode.getLine());
+		}
 
-				if ((!((String) msgFlowNode.getProperties().get("componentLevel")).isEmpty())
-						&& (((String) msgFlowNode.getProperties().get("componentLevel")).equals("node"))
-						&& (!((String) msgFlowNode.getProperties().get("additionalInstances")).isEmpty())
-						&& (Integer.parseInt((String)(msgFlowNode.getProperties().get("additionalInstances"))) > 0)) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-					issuable.addIssue(
-							issuable.newIssueBuilder().ruleKey(RuleKey.of("msgflow", "NodeLevelAdditionalInstances"))
-									.message("Additional Intances defined at the node level for '"
-											+ msgFlowNode.getName() + "' (type: " + msgFlowNode.getType()
-											+ ").")
-									.build());
-				}
-				if (!checkMQQueueName((String) msgFlowNode.getProperties().get("queueName"))) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-					issuable.addIssue(
-							issuable.newIssueBuilder().ruleKey(RuleKey.of("msgflow", "queueNamingConvention"))
-									.message("Naming convention for the queue specified on '"
-											+ msgFlowNode.getName() + "' (type: " + msgFlowNode.getType()
-											+ ") is not correct.")
-									.build());
-				}
-				
-			}
+		if ((!((String) msgFlowNode.getProperties().get("componentLevel")).isEmpty())
+				&& (((String) msgFlowNode.getProperties().get("componentLevel")).equals("node"))
+				&& (!((String) msgFlowNode.getProperties().get("additionalInstances")).isEmpty())
+				&& (Integer.parseInt((String)(msgFlowNode.getProperties().get("additionalInstances"))) > 0)) {
+			context.addIssue("NodeLevelAdditionalInstances", "Additional Intances defined at the node level for '"
+					+ msgFlowNode.getName() + "' (type: " + msgFlowNode.getType()
+					+ ").", msgFlowNode.getLine());
+		}
+		if (!checkMQQueueName((String) msgFlowNode.getProperties().get("queueName"))) {
+			context.addIssue("queueNamingConvention", "Naming convention for the queue specified on '"
+					+ msgFlowNode.getName() + "' (type: " + msgFlowNode.getType()
+					+ ") is not correct.", msgFlowNode.getLine());
 		}
 	}
 	
@@ -1,28 +1,15 @@
 package com.exxeta.iss.sonar.msgflow.batch;
 
-import java.util.Iterator;
-
-import org.sonar.api.batch.Sensor;
-import org.sonar.api.batch.SensorContext;
-import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.component.ResourcePerspectives;
-import org.sonar.api.issue.Issuable;
-import org.sonar.api.resources.Project;
-import org.sonar.api.rule.RuleKey;
-
-import com.exxeta.iss.sonar.msgflow.MessageFlowPlugin;
 import com.exxeta.iss.sonar.msgflow.model.MessageFlow;
 import com.exxeta.iss.sonar.msgflow.model.MessageFlowNode;
-import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
 
 /**
- * The class (sensor) contains the method to analyse the connections and
+ * The class (check) contains the method to analyse the connections and
  * configuration of a MQ Reply Node.
  * 
  * @author Arjav Shah
  */
-public class MQReplyNodeSensor implements Sensor {
+public class MQReplyNodeSensor extends MessageFlowVisitor {
 
 	/**
 	 * The logger for the class.
@@ -31,85 +18,47 @@ public class MQReplyNodeSensor implements Sensor {
 	// LoggerFactory.getLogger(MQOutputNodeSensor.class);
 
 	/**
-	 * Variable to hold file system information, e.g. the file names of the
-	 * project files.
-	 */
-	private final FileSystem fs;
-
-	/**
+	 * Constructor
 	 * 
+	 * Defines the rules reported by the check.
 	 */
-	private final ResourcePerspectives perspectives;
-
-	/**
-	 * Use of IoC to get FileSystem and ResourcePerspectives
-	 */
-	public MQReplyNodeSensor(FileSystem fs, ResourcePerspectives perspectives) {
-		this.fs = fs;
-		this.perspectives = perspectives;
+	public MQReplyNodeSensor() {
+		super("MQReplyWithoutMQInput", "MQNodeTxnMode", "DisconnectedNode");
 	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see
-	 * org.sonar.api.batch.CheckProject#shouldExecuteOnProject(org.sonar.api.
-	 * resources.Project)
+	
+	/* (non-Javadoc)
+	 * @see com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitor#visitMessageFlow(com.exxeta.iss.sonar.msgflow.batch.MessageFlowContext, com.exxeta.iss.sonar.msgflow.model.MessageFlow)
+	 */
+	/**
+	 * The method where the analysis of the message flow takes place.
 	 */
 	@Override
-	public boolean shouldExecuteOnProject(Project arg0) {
-		// This sensor is executed only when there are msgflow files
-		return fs.hasFiles(fs.predicates().hasLanguage("msgflow"));
+	public void visitMessageFlow(MessageFlowContext context, MessageFlow msgFlow) {
+		if(msgFlow.getMqReplyNodes().size()!=0 && msgFlow.getMqInputNodes().size()==0){
+			context.addIssue("MQReplyWithoutMQInput", "The Flow contains 'MQ Reply' Node without 'MQ Input' node.", msgFlow.getMqReplyNodes().get(0).getLine());
+		}
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see org.sonar.api.batch.Sensor#analyse(org.sonar.api.resources.Project,
-	 * org.sonar.api.batch.SensorContext)
+	/* (non-Javadoc)
+	 * @see com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitor#visitMqReplyNode(com.exxeta.iss.sonar.msgflow.batch.MessageFlowContext, com.exxeta.iss.sonar.msgflow.model.MessageFlowNode)
 	 */
 	/**
-	 * The method where the analysis of the connections and configuration of the
-	 * message flow node takes place.
+	 * The method where the analysis of the connections and configuration of
+	 * the message flow node takes place.
 	 */
 	@Override
-	public void analyse(Project arg0, SensorContext arg1) {
-		for (InputFile inputFile : fs.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.FLOW_PATH_PATTERNS))) {
-
-			/*
-			 * retrieve the message flow object
-			 */
-			MessageFlow msgFlow = MessageFlowProject.getInstance().getMessageFlow(inputFile.absolutePath());
-			Iterator<MessageFlowNode> iMsgFlowNodes = msgFlow.getMqReplyNodes().iterator();
+	public void visitMqReplyNode(MessageFlowContext context, MessageFlowNode msgFlowNode) {
+		if(!((String)msgFlowNode.getProperties().get("transactionMode")).isEmpty()
+				|| msgFlowNode.getProperties().get("transactionMode").equals("yes")
+				|| msgFlowNode.getProperties().get("transactionMode").equals("no")) {
 
-			while (iMsgFlowNodes.hasNext()) {
-				MessageFlowNode msgFlowNode = iMsgFlowNodes.next();
-				if(!((String)msgFlowNode.getProperties().get("transactionMode")).isEmpty()
-						|| msgFlowNode.getProperties().get("transactionMode").equals("yes")
-						|| msgFlowNode.getProperties().get("transactionMode").equals("no")) {
+			context.addIssue("MQNodeTxnMode", "The 'Transaction Mode' property of " + msgFlowNode.getName() + "(type:"
+					+ msgFlowNode.getType() + ") node is not set to Automatic.", msgFlowNode.getLine());
 
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-					issuable.addIssue(issuable.newIssueBuilder().ruleKey(RuleKey.of("msgflow", "MQNodeTxnMode"))
-							.message("The 'Transaction Mode' property of " + msgFlowNode.getName() + "(type:"
-									+ msgFlowNode.getType() + ") node is not set to Automatic.")
-							.build());
-
-				}
-				
-				if (msgFlowNode.getInputTerminals().size()==0) {
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "DisconnectedNode"))
-				    	        	  .message("There are no input connections to node '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ").")
-				    	        	  .build());
-				}
-			}
-		if(msgFlow.getMqReplyNodes().size()!=0 && msgFlow.getMqInputNodes().size()==0){
-			Issuable issuable = perspectives.as(Issuable.class, inputFile);
-			issuable.addIssue(issuable.newIssueBuilder().ruleKey(RuleKey.of("msgflow", "MQReplyWithoutMQInput"))
-					.message("The Flow contains 'MQ Reply' Node without 'MQ Input' node.")
-					.build());
 		}
+		
+		if (msgFlowNode.getInputTerminals().size()==0) {
+			context.addIssue("DisconnectedNode", "There are no input connections to node '" + msgFlowNode.getName() + "' (type: " + msgFlowNode.getType() + ").", msgFlowNode.getLine());
 		}
 	}
 }
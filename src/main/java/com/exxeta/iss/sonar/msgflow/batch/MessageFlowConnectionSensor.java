@@ -1,26 +1,15 @@
 package com.exxeta.iss.sonar.msgflow.batch;
 
-import org.sonar.api.batch.Sensor;
-import org.sonar.api.batch.SensorContext;
-import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.component.ResourcePerspectives;
-import org.sonar.api.issue.Issuable;
-import org.sonar.api.resources.Project;
-import org.sonar.api.rule.RuleKey;
-
-import com.exxeta.iss.sonar.msgflow.MessageFlowPlugin;
 import com.exxeta.iss.sonar.msgflow.model.MessageFlow;
 import com.exxeta.iss.sonar.msgflow.model.MessageFlowConnection;
-import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
 
 /**
- * The class (sensor) contains the method to analyse the connections  
+ * The class (check) contains the method to analyse the connections  
  * of a message flow nodes
  * 
  * @author Arjav Shah
  */
-public class MessageFlowConnectionSensor implements Sensor {
+public class MessageFlowConnectionSensor extends MessageFlowVisitor {
 
 	/**
 	 * The logger for the class.
@@ -28,62 +17,28 @@ public class MessageFlowConnectionSensor implements Sensor {
 	//private static final Logger LOG = LoggerFactory.getLogger(ComputeNodeSensor.class);
 	
 	/**
-	 * Variable to hold file system information, e.g. the file names of the project files.
-	 */
-	private final FileSystem fs;
-	
-	/**
+	 * Constructor
 	 * 
+	 * Defines the rules reported by the check.
 	 */
-	private final ResourcePerspectives perspectives;
-	
-	/**
-	  * Use of IoC to get FileSystem and ResourcePerspectives
-	  */
-	public MessageFlowConnectionSensor(FileSystem fs, ResourcePerspectives perspectives) {
-		this.fs = fs;
-		this.perspectives = perspectives;
+	public MessageFlowConnectionSensor() {
+		super("SelfConnectingNodes");
 	}
 	
 	/* (non-Javadoc)
-	 * @see org.sonar.api.batch.CheckProject#shouldExecuteOnProject(org.sonar.api.resources.Project)
+	 * @see com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitor#visitMessageFlow(com.exxeta.iss.sonar.msgflow.batch.MessageFlowContext, com.exxeta.iss.sonar.msgflow.model.MessageFlow)
 	 */
 	/**
-	 * The method defines the language of the file to be analysed.
+	 * The method where the analysis of the message flow takes place.
 	 */
 	@Override
-	public boolean shouldExecuteOnProject(Project arg0) {
-		// This sensor is executed only when there are msgflow files
-	    return fs.hasFiles(fs.predicates().hasLanguage("msgflow"));
-	}
-
-	/* (non-Javadoc)
-	 * @see org.sonar.api.batch.Sensor#analyse(org.sonar.api.resources.Project, org.sonar.api.batch.SensorContext)
-	 */
-	/**
-	 * The method where the analysis of the connections and configuration of 
-	 * the message flow node takes place.
-	 */
-	@Override
-	public void analyse(Project arg0, SensorContext arg1) {
-		for (InputFile inputFile : fs.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.FLOW_PATH_PATTERNS))) {
-			
-			/* 
-			 * retrieve the message flow object
-			 */
-			MessageFlow msgFlow = MessageFlowProject.getInstance().getMessageFlow(inputFile.absolutePath());
-			
-			
-			for(MessageFlowConnection con : msgFlow.getConnections()){
-				if(con.getSrcNode().equalsIgnoreCase(con.getTargetNode())){
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-				    issuable.addIssue(issuable.newIssueBuilder()
-				    	        	  .ruleKey(RuleKey.of("msgflow", "SelfConnectingNodes"))
-				    	        	  .message("Self Connecting node '"+con.getSrcNodeName()+"'. Use of self Connecting node is discouraged.")
-				    	        	  .build());
-				}
-				
+	public void visitMessageFlow(MessageFlowContext context, MessageFlow msgFlow) {
+		for(MessageFlowConnection con : msgFlow.getConnections()){
+			if(con.getSrcNode().equalsIgnoreCase(con.getTargetNode())){
+				context.addIssue("SelfConnectingNodes", "Self Connecting node '"+con.getSrcNodeName()+"'. Use of self Connecting node is discouraged.", con.getLine());
 			}
+			
+		}
 //			for(MessageFlowNode filter : msgFlow.getFilterNodes()){
 //				boolean isTrueConnected = false;
 //				boolean isFalseConnected = false;
@@ -107,8 +62,5 @@ public class MessageFlowConnectionSensor implements Sensor {
 //				    	        	  .build());
 //				}
 //			}
-			
-			
-		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.batch;
+
+/**
+ * The interface describes the file that is currently analysed by a 
+ * {@link MessageFlowVisitor} and is used to report the issues found in it. 
+ * It does not depend on the SonarQube API, so the checks can be executed 
+ * outside of a scanner, too.
+ * 
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public interface MessageFlowContext {
+
+	/**
+	 * The method returns the absolute path of the analysed file.
+	 * 
+	 * @return the absolute path of the file
+	 */
+	String getAbsolutePath();
+	
+	/**
+	 * The method returns the path of the analysed file relative to the 
+	 * project base directory.
+	 * 
+	 * @return the relative path of the file
+	 */
+	String getRelativePath();
+	
+	/**
+	 * The method reports an issue on the analysed file.
+	 * 
+	 * @param ruleKey the key of the rule in the 'msgflow' repository
+	 * @param message the message of the issue
+	 */
+	void addIssue(String ruleKey, String message);
+	
+	/**
+	 * The method reports an issue on a line of the analysed file, e.g. the 
+	 * line of a node (see {@link com.exxeta.iss.sonar.msgflow.model.MessageFlowNode#getLine()}).
+	 * 
+	 * @param ruleKey the key of the rule in the 'msgflow' repository
+	 * @param message the message of the issue
+	 * @param line the line of the issue, the issue is reported on the file 
+	 * if the line is not known (0)
+	 */
+	void addIssue(String ruleKey, String message, int line);
+}
@@ -1,32 +1,26 @@
 package com.exxeta.iss.sonar.msgflow.batch;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedHashSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
-import org.sonar.api.batch.Sensor;
-import org.sonar.api.batch.SensorContext;
-import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.component.ResourcePerspectives;
-import org.sonar.api.issue.Issuable;
-import org.sonar.api.resources.Project;
-import org.sonar.api.rule.RuleKey;
-
-import com.exxeta.iss.sonar.msgflow.MessageFlowPlugin;
 import com.exxeta.iss.sonar.msgflow.model.MessageFlow;
 import com.exxeta.iss.sonar.msgflow.model.MessageFlowConnection;
 import com.exxeta.iss.sonar.msgflow.model.MessageFlowNode;
 import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
+import com.exxeta.iss.sonar.msgflow.model.SubflowIndex;
 
 /**
- * The class (sensor) contains the method to analyse the connections  
+ * The class (check) contains the method to analyse the connections  
  * of a message flow nodes
  * 
  * @author Arjav Shah
  */
-public class MessageFlowGenericSensor implements Sensor {
+public class MessageFlowGenericSensor extends MessageFlowVisitor {
 
 	/**
 	 * The logger for the class.
@@ -34,177 +28,147 @@ public class MessageFlowGenericSensor implements Sensor {
 	//private static final Logger LOG = LoggerFactory.getLogger(ComputeNodeSensor.class);
 	
 	/**
-	 * Variable to hold file system information, e.g. the file names of the project files.
+	 * the contexts of the sub flows of the project by absolute path
 	 */
-	private final FileSystem fs;
+	private Map<String, MessageFlowContext> subflows = new LinkedHashMap<String, MessageFlowContext>();
 	
 	/**
+	 * Constructor
 	 * 
+	 * Defines the rules reported by the check.
 	 */
-	private final ResourcePerspectives perspectives;
-	
-	/**
-	  * Use of IoC to get FileSystem and ResourcePerspectives
-	  */
-	public MessageFlowGenericSensor(FileSystem fs, ResourcePerspectives perspectives) {
-		this.fs = fs;
-		this.perspectives = perspectives;
+	public MessageFlowGenericSensor() {
+		super("LabelWithoutRouteTo", "MessageFlowInconsistentReply", "UnusedSubFlow");
 	}
 	
 	/* (non-Javadoc)
-	 * @see org.sonar.api.batch.CheckProject#shouldExecuteOnProject(org.sonar.api.resources.Project)
-	 */
-	/**
-	 * The method defines the language of the file to be analysed.
+	 * @see com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitor#visitProject()
 	 */
 	@Override
-	public boolean shouldExecuteOnProject(Project arg0) {
-		// This sensor is executed only when there are msgflow files
-	    return fs.hasFiles(fs.predicates().hasLanguage("msgflow"));
+	public void visitProject() {
+		subflows = new LinkedHashMap<String, MessageFlowContext>();
 	}
 
 	/* (non-Javadoc)
-	 * @see org.sonar.api.batch.Sensor#analyse(org.sonar.api.resources.Project, org.sonar.api.batch.SensorContext)
+	 * @see com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitor#visitMessageFlow(com.exxeta.iss.sonar.msgflow.batch.MessageFlowContext, com.exxeta.iss.sonar.msgflow.model.MessageFlow)
 	 */
 	/**
 	 * The method where the analysis of the connections and configuration of 
-	 * the message flow node takes place.
+	 * the message flow takes place.
 	 */
 	@Override
-	public void analyse(Project arg0, SensorContext arg1) {
-		ArrayList<String> subflowList = new ArrayList<String>();
-		for (InputFile inputFile : fs.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.FLOW_PATH_PATTERNS))) {
-			
-			/* 
-			 * retrieve the message flow object
-			 */
-			String path = inputFile.relativePath();
-			
-			if("subflow".equals(path.substring(path.lastIndexOf(".")+1))){
-				subflowList.add(path);
-			}
-			MessageFlow msgFlow = MessageFlowProject.getInstance().getMessageFlow(inputFile.absolutePath());
-			
-			
-			if((msgFlow.getLabelNodes().size()>0 && msgFlow.getRouteToLabelNodes().size()==0)
-					||(msgFlow.getLabelNodes().size()==0 && msgFlow.getRouteToLabelNodes().size()>0)){
-				Issuable issuable = perspectives.as(Issuable.class, inputFile);
-			    issuable.addIssue(issuable.newIssueBuilder()
-			    	        	  .ruleKey(RuleKey.of("msgflow", "LabelWithoutRouteTo"))
-			    	        	  .message("The Message flow '" + inputFile.relativePath() + "'  does not have RouteToLabel and label in the same flow.")
-			    	        	  .build());
-			}
-			
-			if (((msgFlow.getMqInputNodes().size() > 0) && (msgFlow.getMqReplyNodes().size() > 0))
-					|| ((msgFlow.getHttpInputNodes().size() > 0) && (msgFlow.getHttpReplyNodes().size() > 0))) {
-				boolean isFlowConsistentMq = true;
-				boolean isFlowConsistentHttp = true;
-				for (MessageFlowNode flowNode : msgFlow.getMqInputNodes()) {
-					String srcIdMq = flowNode.getId();
-					ArrayList<MessageFlowNode> mqReplyNodes = msgFlow.getMqReplyNodes();
-					Set<String> pathMq = new LinkedHashSet<String>();
-					pathMq.add(srcIdMq);
-					for (Set<String> pathRet : getFullPath(pathMq, srcIdMq, msgFlow)) {
-						boolean isPathCompleteMq = false;
-						for(MessageFlowNode target : mqReplyNodes){
-							if (pathRet.contains(target.getId())) {
-								isPathCompleteMq = isPathCompleteMq || true;
-								break;
-							}
-						}
-						isFlowConsistentMq = isFlowConsistentMq && isPathCompleteMq;
-					}
-				}
-					
-				for(MessageFlowNode flowNodeHttp : msgFlow.getHttpInputNodes()){
-					String srcId = flowNodeHttp.getId();
-					ArrayList<MessageFlowNode> httpReplyNodes = msgFlow.getHttpReplyNodes();
-					Set<String> pathHttp = new LinkedHashSet<String>();
-					pathHttp.add(srcId);
-					
-					for (Set<String> pathRet : getFullPath(pathHttp, srcId, msgFlow)) {
-						boolean isPathCompleteHttp = false;
-						for(MessageFlowNode target:httpReplyNodes){
-							if (pathRet.contains(target.getId())) {
-								isPathCompleteHttp = isPathCompleteHttp || true;
-								break;
-							}
-							isFlowConsistentHttp = isFlowConsistentHttp && isPathCompleteHttp;
-						}
-					}
-				}
-					
-				if(!isFlowConsistentMq || !isFlowConsistentHttp){
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-					issuable.addIssue(
-							issuable.newIssueBuilder().ruleKey(RuleKey.of("msgflow", "MessageFlowInconsistentReply"))
-									.message("The Message flow '" + inputFile.relativePath()
-											+ "'  does not reply to the incoming messages consistently.")
-									.build());
-				}
-				
-			}
-		}
-		for (InputFile inputFile : fs.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.FLOW_PATH_PATTERNS))) {
-			MessageFlow msgFlow = MessageFlowProject.getInstance().getMessageFlow(inputFile.absolutePath());
-			Iterator<MessageFlowNode> iMsgFlowNodes = msgFlow.getMiscellaneousNodes().iterator();
-			
-			while (iMsgFlowNodes.hasNext()) {
-				MessageFlowNode msgFlowNode = iMsgFlowNodes.next();
-				if(subflowList.contains(msgFlowNode.getType())) {
-					subflowList.remove(msgFlowNode.getType());
-				}
-			}
+	public void visitMessageFlow(MessageFlowContext context, MessageFlow msgFlow) {
+		String path = context.getRelativePath();
+		
+		if(isActive("UnusedSubFlow") && "subflow".equals(path.substring(path.lastIndexOf(".")+1))){
+			subflows.put(context.getAbsolutePath(), context);
 		}
 		
+		if(isActive("LabelWithoutRouteTo") 
+				&& ((msgFlow.getLabelNodes().size()>0 && msgFlow.getRouteToLabelNodes().size()==0)
+				||(msgFlow.getLabelNodes().size()==0 && msgFlow.getRouteToLabelNodes().size()>0))){
+			context.addIssue("LabelWithoutRouteTo", "The Message flow '" + context.getRelativePath() + "'  does not have RouteToLabel and label in the same flow.");
+		}
 		
-		for (InputFile inputFile : fs.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.FLOW_PATH_PATTERNS))) {
-			for(String subflow:subflowList){
-				if(inputFile.relativePath().equals(subflow)){
-					Issuable issuable = perspectives.as(Issuable.class, inputFile);
-					issuable.addIssue(
-							issuable.newIssueBuilder().ruleKey(RuleKey.of("msgflow", "UnusedSubFlow"))
-									.message("The sub flow '" + subflow
-											+ "'  is not referenced anywhere. Hence, it should be removed")
-									.build());
-				}
+		// the path analysis is only done if the rule is active
+		if (isActive("MessageFlowInconsistentReply")
+				&& (((msgFlow.getMqInputNodes().size() > 0) && (msgFlow.getMqReplyNodes().size() > 0))
+				|| ((msgFlow.getHttpInputNodes().size() > 0) && (msgFlow.getHttpReplyNodes().size() > 0)))) {
+			boolean isFlowConsistentMq = isFlowConsistent(msgFlow.getMqInputNodes(), msgFlow.getMqReplyNodes(), msgFlow);
+			boolean isFlowConsistentHttp = isFlowConsistent(msgFlow.getHttpInputNodes(), msgFlow.getHttpReplyNodes(), msgFlow);
+				
+			if(!isFlowConsistentMq || !isFlowConsistentHttp){
+				context.addIssue("MessageFlowInconsistentReply", "The Message flow '" + context.getRelativePath()
+						+ "'  does not reply to the incoming messages consistently.");
 			}
+			
 		}
 	}
 	
-	public static ArrayList<Set<String>> getFullPath(Set<String> path,String srcId,MessageFlow mf){
-		ArrayList<Set<String>> paths = new ArrayList<Set<String>>();
-		for(String x : getNextNodes(srcId, mf)){
-			Set<String> pathTmp = new LinkedHashSet<String>();
-			pathTmp.addAll(path);
-			pathTmp.add(x);
-			if(GetPathCount(x, mf)!=0){
-				paths = getFullPath(pathTmp, x, mf);
+	/* (non-Javadoc)
+	 * @see com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitor#leaveProject()
+	 */
+	/**
+	 * The method where the sub flows that are not referenced by any message
+	 * flow of the project are reported. The references are looked up in the
+	 * {@link SubflowIndex} of the project.
+	 */
+	@Override
+	public void leaveProject() {
+		SubflowIndex subflowIndex = MessageFlowProject.getInstance().getSubflowIndex();
+		for(Map.Entry<String, MessageFlowContext> subflow : subflows.entrySet()){
+			if(!subflowIndex.isReferenced(subflow.getKey())){
+				subflow.getValue().addIssue("UnusedSubFlow", "The sub flow '" + subflow.getValue().getRelativePath()
+						+ "'  is not referenced anywhere. Hence, it should be removed");
 			}
-			else{
-				paths.add(pathTmp);
-			}			
 		}
-		return paths;
 	}
 	
-	public static int GetPathCount(String srcId,MessageFlow mf){
-		int i = 0;
-		for(MessageFlowConnection con : mf.getConnections()){
-			if(con.getSrcNode().equals(srcId)){
-				i++;
+	/**
+	 * The method checks that every path leaving one of the input nodes
+	 * reaches one of the reply nodes before it ends. Input nodes without
+	 * outgoing connections and flows without reply nodes are consistent.
+	 * 
+	 * @param inputNodes the input nodes, e.g. the MQInput nodes
+	 * @param replyNodes the corresponding reply nodes, e.g. the MQReply nodes
+	 * @param mf the message flow
+	 * @return true if all paths of all input nodes reach a reply node
+	 */
+	public static boolean isFlowConsistent(List<MessageFlowNode> inputNodes, List<MessageFlowNode> replyNodes, MessageFlow mf){
+		if(inputNodes.isEmpty() || replyNodes.isEmpty()){
+			return true;
+		}
+		Set<String> nonReplying = getNonReplyingNodes(replyNodes, mf);
+		for(MessageFlowNode inputNode : inputNodes){
+			for(String next : getNextNodes(inputNode.getId(), mf)){
+				if(nonReplying.contains(next)){
+					return false;
+				}
 			}
 		}
-		return i;
+		return true;
 	}
 	
-	public static ArrayList<String> getNextNodes(String srcId,MessageFlow mf){
-		ArrayList<String> i = new ArrayList<String>();
+	/**
+	 * The method returns the IDs of all nodes from which at least one path 
+	 * ends without passing one of the reply nodes. The set is computed 
+	 * backwards from the end nodes of the flow, so every node and connection
+	 * is visited once and cycles are handled. A cycle that never reaches an 
+	 * end node does not end a path and is therefore not reported.
+	 * 
+	 * @param replyNodes the reply nodes
+	 * @param mf the message flow
+	 * @return the IDs of the nodes that do not always reach a reply node
+	 */
+	public static Set<String> getNonReplyingNodes(List<MessageFlowNode> replyNodes, MessageFlow mf){
+		Set<String> replyIds = new HashSet<String>();
+		for(MessageFlowNode replyNode : replyNodes){
+			replyIds.add(replyNode.getId());
+		}
+		
+		Set<String> nonReplying = new HashSet<String>();
+		Deque<String> queue = new ArrayDeque<String>();
 		for(MessageFlowConnection con : mf.getConnections()){
-			if(con.getSrcNode().equals(srcId)){
-				i.add(con.getTargetNode());
+			String target = con.getTargetNode();
+			if(GetPathCount(target, mf)==0 && !replyIds.contains(target) && nonReplying.add(target)){
+				queue.add(target);
+			}
+		}
+		while(!queue.isEmpty()){
+			for(String previous : mf.getGraph().getPredecessors(queue.poll())){
+				if(!replyIds.contains(previous) && nonReplying.add(previous)){
+					queue.add(previous);
+				}
 			}
 		}
-		return i;
+		return nonReplying;
+	}
+	
+	public static int GetPathCount(String srcId,MessageFlow mf){
+		return mf.getGraph().getOutDegree(srcId);
+	}
+	
+	public static List<String> getNextNodes(String srcId,MessageFlow mf){
+		return mf.getGraph().getSuccessors(srcId);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,262 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.batch;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.fs.FilePredicates;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.sensor.Sensor;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.api.batch.sensor.issue.NewIssue;
+import org.sonar.api.batch.sensor.issue.NewIssueLocation;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.rule.RuleKey;
+
+import com.exxeta.iss.sonar.msgflow.MessageFlowCheckList;
+import com.exxeta.iss.sonar.msgflow.MessageFlowLanguage;
+import com.exxeta.iss.sonar.msgflow.MessageFlowPlugin;
+import com.exxeta.iss.sonar.msgflow.model.DependencyGraph;
+import com.exxeta.iss.sonar.msgflow.model.FileTimeoutException;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowParser;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowStaxParser;
+import com.exxeta.iss.sonar.msgflow.model.SubflowIndex;
+
+/**
+ * The class (sensor) executes the checks on the files of a SonarLint
+ * analysis, usually the single file edited in the IDE. It uses the sensor
+ * API supported by SonarLint and only reads the analysed files, the models
+ * are released after every analysis.
+ *
+ * The checks comparing the files of the project use the dependency graph of
+ * the last scanner analysis as a pre-built index (see
+ * {@link IncrementalAnalysis}), found in the directory
+ * {@link MessageFlowPlugin#CACHE_PATH_KEY}. The sub flow references of the
+ * other files are taken from the graph, so 'UnusedSubFlow' can be decided for
+ * an edited sub flow. Without the graph the rule is not executed, the ESQL
+ * modules are looked up next to the flow (see {@link DSNSensor}) and
+ * 'OneModuleMultipleNodes' only compares the nodes of the analysed files.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class MessageFlowLintSensor implements Sensor {
+
+	/**
+	 * The logger for the class.
+	 */
+	private static final Logger LOG = LoggerFactory.getLogger(MessageFlowLintSensor.class);
+
+	/**
+	 * the rule that needs the references of all files of the project
+	 */
+	private static final String UNUSED_SUBFLOW = "UnusedSubFlow";
+
+	/**
+	 * the stamp (path, modification time and size) of the loaded index
+	 */
+	private static String indexStamp;
+
+	/**
+	 * the sub flow references of the loaded index by file name
+	 */
+	private static Map<String, List<String>> indexReferences;
+
+	@Override
+	public void describe(SensorDescriptor descriptor) {
+		descriptor.name("Message Flow Single File Sensor")
+			.onlyOnLanguage(MessageFlowLanguage.KEY)
+			.createIssuesForRuleRepository(MessageFlowCheckList.REPOSITORY_KEY);
+	}
+
+	/**
+	 * The checks use the current {@link MessageFlowProject}, a session of the
+	 * process. SonarLint may analyse several modules concurrently, so the
+	 * analyses are executed one after the other, each in its own session.
+	 */
+	@Override
+	public void execute(SensorContext context) {
+		synchronized (MessageFlowLintSensor.class) {
+			analyse(context);
+		}
+	}
+
+	private static void analyse(SensorContext context) {
+		long start = System.currentTimeMillis();
+		FileSystem fs = context.fileSystem();
+		FilePredicates predicates = fs.predicates();
+
+		Set<String> activeRuleKeys = new HashSet<String>();
+		for (ActiveRule activeRule : context.activeRules().findByRepository(MessageFlowCheckList.REPOSITORY_KEY)) {
+			activeRuleKeys.add(activeRule.ruleKey().rule());
+		}
+		Map<String, List<String>> references = getReferences(context.config());
+		if (references == null && activeRuleKeys.remove(UNUSED_SUBFLOW)) {
+			LOG.debug("The rule " + UNUSED_SUBFLOW + " is not executed, there is no index of the project");
+		}
+
+		String parser = context.config().get(MessageFlowPlugin.PARSER_KEY).orElse(MessageFlowPlugin.PARSER_DEFAULTVALUE);
+		MessageFlowProject project = MessageFlowProject.open(MessageFlowPlugin.PARSER_XPATH.equalsIgnoreCase(parser.trim())
+				? new MessageFlowParser() : new MessageFlowStaxParser());
+		int files = 0;
+		try {
+			if (references != null) {
+				// the references of the analysed files are replaced when their models are built
+				SubflowIndex subflowIndex = project.getSubflowIndex();
+				for (Map.Entry<String, List<String>> entry : references.entrySet()) {
+					subflowIndex.add(entry.getKey(), entry.getValue());
+				}
+			}
+
+			MessageFlowVisitorPlan plan = new MessageFlowVisitorPlan(MessageFlowCheckList.createVisitors(), activeRuleKeys);
+			for (MessageFlowVisitor visitor : plan.getVisitors()) {
+				visitor.visitProject();
+			}
+			if (plan.visitsMessageFlows()) {
+				for (InputFile inputFile : fs.inputFiles(predicates.matchesPathPatterns(MessageFlowPlugin.FLOW_PATH_PATTERNS))) {
+					visitFile(project, new SensorIssueContext(context, inputFile), plan, false);
+					files++;
+				}
+			}
+			if (plan.visitsMessageMaps()) {
+				for (InputFile inputFile : fs.inputFiles(predicates.matchesPathPatterns(MessageFlowPlugin.MAP_PATH_PATTERNS))) {
+					visitFile(project, new SensorIssueContext(context, inputFile), plan, true);
+					files++;
+				}
+			}
+			for (MessageFlowVisitor visitor : plan.getVisitors()) {
+				visitor.leaveProject();
+			}
+		} finally {
+			MessageFlowProject.close(project);
+		}
+		LOG.debug("Analysed " + files + " message flow files in " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+	private static void visitFile(MessageFlowProject project, MessageFlowContext context, MessageFlowVisitorPlan plan,
+			boolean messageMap) {
+		try {
+			if (messageMap) {
+				plan.visitMessageMap(context, project.getMessageMap(context.getAbsolutePath()));
+			} else {
+				plan.visitMessageFlow(context, project.getMessageFlow(context.getAbsolutePath()));
+			}
+		} catch (FileTimeoutException e) {
+			LOG.warn(e.getMessage() + ", the file is skipped");
+		}
+	}
+
+	/**
+	 * The method returns the sub flow references of the files of the project
+	 * recorded by the last scanner analysis. The index is read once and kept
+	 * until the file changes.
+	 *
+	 * @param configuration the configuration of the analysis
+	 * @return the referenced sub flow types by file name, null if there is no index
+	 */
+	static Map<String, List<String>> getReferences(Configuration configuration) {
+		String path = configuration.get(MessageFlowPlugin.CACHE_PATH_KEY).orElse("").trim();
+		if (path.isEmpty()) {
+			return null;
+		}
+		File file = new File(path, IncrementalAnalysis.GRAPH_FILE);
+		if (!file.isFile()) {
+			return null;
+		}
+
+		String stamp = file.getAbsolutePath() + ":" + file.lastModified() + ":" + file.length();
+		synchronized (MessageFlowLintSensor.class) {
+			if (!stamp.equals(indexStamp)) {
+				DependencyGraph graph = DependencyGraph.load(file, null);
+				Map<String, List<String>> references = new HashMap<String, List<String>>();
+				for (String fileName : graph.getFiles()) {
+					List<String> types = new ArrayList<String>();
+					for (String key : graph.getDependencies(fileName)) {
+						if (key.startsWith(DependencyGraph.SUBFLOW)) {
+							types.add(key.substring(DependencyGraph.SUBFLOW.length()));
+						}
+					}
+					references.put(fileName, types);
+				}
+				// an unreadable graph is empty and must not report every sub flow
+				indexReferences = references.isEmpty() ? null : Collections.unmodifiableMap(references);
+				indexStamp = stamp;
+			}
+			return indexReferences;
+		}
+	}
+
+	/**
+	 * The context reports the issues of a file with the sensor API.
+	 */
+	private static class SensorIssueContext implements MessageFlowContext {
+
+		private final SensorContext context;
+
+		private final InputFile inputFile;
+
+		private final String absolutePath;
+
+		private final String relativePath;
+
+		SensorIssueContext(SensorContext context, InputFile inputFile) {
+			this.context = context;
+			this.inputFile = inputFile;
+			// separated by '/' like the paths of the scanner in the index
+			absolutePath = new File(inputFile.uri()).getAbsolutePath().replace(File.separatorChar, '/');
+			relativePath = context.fileSystem().baseDir().toURI().relativize(inputFile.uri()).getPath();
+		}
+
+		@Override
+		public String getAbsolutePath() {
+			return absolutePath;
+		}
+
+		@Override
+		public String getRelativePath() {
+			return relativePath;
+		}
+
+		@Override
+		public void addIssue(String ruleKey, String message) {
+			addIssue(ruleKey, message, 0);
+		}
+
+		@Override
+		public void addIssue(String ruleKey, String message, int line) {
+			NewIssue issue = context.newIssue().forRule(RuleKey.of(MessageFlowCheckList.REPOSITORY_KEY, ruleKey));
+			NewIssueLocation location = issue.newLocation().on(inputFile).message(message);
+			if (line > 0 && line <= inputFile.lines()) {
+				location.at(inputFile.selectLine(line));
+			}
+			issue.at(location).save();
+		}
+	}
+}
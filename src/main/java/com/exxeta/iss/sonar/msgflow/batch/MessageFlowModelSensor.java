@@ -0,0 +1,200 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.Phase;
+import org.sonar.api.batch.Sensor;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.resources.Project;
+
+import com.exxeta.iss.sonar.msgflow.MessageFlowPlugin;
+import com.exxeta.iss.sonar.msgflow.model.FileTimeoutException;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
+
+/**
+ * The class (sensor) builds the models of all message flow and message map
+ * files and the index of the ESQL modules before the rule sensors are 
+ * executed. The files are parsed in
+ * parallel on a fork/join pool, the size of the pool is set by the property
+ * {@link MessageFlowPlugin#THREADS_KEY}. The models are put to the
+ * {@link MessageFlowProject}, so the rule sensors just look them up. If the
+ * memory of the models is bounded, only the ESQL index is built in advance.
+ * A file exceeding its time budget is recorded as skipped. In an incremental
+ * analysis only the models of the affected files are built.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+@Phase(name = Phase.Name.PRE)
+public class MessageFlowModelSensor implements Sensor {
+
+	/**
+	 * The logger for the class.
+	 */
+	private static final Logger LOG = LoggerFactory.getLogger(MessageFlowModelSensor.class);
+
+	/**
+	 * Variable to hold file system information, e.g. the file names of the project files.
+	 */
+	private final FileSystem fs;
+
+	/**
+	 * Variable to hold the configuration settings.
+	 */
+	private final Configuration configuration;
+
+	/**
+	 * the plan of the incremental analysis or null if all files are analysed
+	 */
+	private final IncrementalAnalysis incremental;
+
+	/**
+	  * Use of IoC to get FileSystem and Configuration
+	  */
+	public MessageFlowModelSensor(FileSystem fs, Configuration configuration) {
+		this(fs, configuration, null);
+	}
+
+	/**
+	  * Use of IoC to get FileSystem, Configuration and the incremental analysis
+	  */
+	public MessageFlowModelSensor(FileSystem fs, Configuration configuration, IncrementalAnalysis incremental) {
+		this.fs = fs;
+		this.configuration = configuration;
+		this.incremental = incremental != null && incremental.isEnabled() ? incremental : null;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.sonar.api.batch.CheckProject#shouldExecuteOnProject(org.sonar.api.resources.Project)
+	 */
+	/**
+	 * The method defines the language of the file to be analysed.
+	 */
+	@Override
+	public boolean shouldExecuteOnProject(Project arg0) {
+		// This sensor is executed only when there are msgflow files
+	    return fs.hasFiles(fs.predicates().hasLanguage("msgflow"));
+	}
+
+	/**
+	 * The method returns the number of worker threads used to parse the files.
+	 *
+	 * @return the value of {@link MessageFlowPlugin#THREADS_KEY} or the number
+	 *         of available processors if the property is not set or not positive
+	 */
+	public int getThreads() {
+		int threads = configuration.getInt(MessageFlowPlugin.THREADS_KEY).orElse(0);
+
+		return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * The method adds the tasks building the message flow and message map models.
+	 */
+	private void addModelTasks(final MessageFlowProject project, List<Callable<Object>> tasks) {
+		for (InputFile inputFile : fs.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.FLOW_PATH_PATTERNS))) {
+			final String fileName = inputFile.absolutePath();
+			if (incremental != null && !incremental.isAffected(fileName)) {
+				continue;
+			}
+			tasks.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					return project.getMessageFlow(fileName);
+				}
+			});
+		}
+		for (InputFile inputFile : fs.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.MAP_PATH_PATTERNS))) {
+			final String fileName = inputFile.absolutePath();
+			if (incremental != null && !incremental.isAffected(fileName)) {
+				continue;
+			}
+			tasks.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					return project.getMessageMap(fileName);
+				}
+			});
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.sonar.api.batch.Sensor#analyse(org.sonar.api.resources.Project, org.sonar.api.batch.SensorContext)
+	 */
+	/**
+	 * The method where the message flow and message map files are parsed.
+	 */
+	@Override
+	public void analyse(Project arg0, SensorContext arg1) {
+		final MessageFlowProject project = MessageFlowProject.getInstance();
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+
+		if (project.isBounded()) {
+			// the rule sensors would just build the evicted models again
+			LOG.debug("The models are bounded, they are built by the rule sensors");
+		} else {
+			addModelTasks(project, tasks);
+		}
+		for (InputFile inputFile : fs.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.ESQL_PATH_PATTERNS))) {
+			final String fileName = inputFile.absolutePath();
+			tasks.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					project.getEsqlModuleIndex().add(fileName);
+					return null;
+				}
+			});
+		}
+
+		int threads = getThreads();
+		LOG.debug("Parsing " + tasks.size() + " message flow, message map and ESQL files using " + threads + " threads");
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			for (Future<Object> future : pool.invokeAll(tasks)) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof FileTimeoutException) {
+						// the file is skipped by the rule sensors
+						LOG.warn(e.getCause().getMessage() + ", the file is skipped");
+					} else {
+						// the file is parsed again (and the error reported) by the rule sensors
+						LOG.warn("Failed to build the model of a message flow file", e.getCause());
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+}
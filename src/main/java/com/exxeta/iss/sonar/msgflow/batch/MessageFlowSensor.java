@@ -0,0 +1,272 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.batch;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.Sensor;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.issue.Issuable;
+import org.sonar.api.resources.Project;
+import org.sonar.api.rule.RuleKey;
+
+import com.exxeta.iss.sonar.msgflow.MessageFlowCheckList;
+import com.exxeta.iss.sonar.msgflow.MessageFlowMetrics;
+import com.exxeta.iss.sonar.msgflow.MessageFlowPlugin;
+import com.exxeta.iss.sonar.msgflow.model.FileDeadline;
+import com.exxeta.iss.sonar.msgflow.model.FileTimeoutException;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
+
+/**
+ * The class (sensor) is the rule engine of the plug-in. It walks every 
+ * message flow and message map of the project once and dispatches the 
+ * files and their nodes to all registered {@link MessageFlowVisitor} checks.
+ * Only checks with at least one rule active in the quality profile are 
+ * executed (see {@link MessageFlowVisitorPlan}).
+ * 
+ * In an incremental analysis (see {@link IncrementalAnalysis}) only the 
+ * files affected by a change are visited, the issues of the other files are 
+ * reported again from the previous analysis.
+ * 
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class MessageFlowSensor implements Sensor {
+
+	/**
+	 * The logger for the class.
+	 */
+	private static final Logger LOG = LoggerFactory.getLogger(MessageFlowSensor.class);
+	
+	/**
+	 * Variable to hold file system information, e.g. the file names of the project files.
+	 */
+	private final FileSystem fs;
+	
+	/**
+	 * 
+	 */
+	private final ResourcePerspectives perspectives;
+	
+	/**
+	 * the rules of the quality profile
+	 */
+	private final ActiveRules activeRules;
+	
+	/**
+	 * the checks executed for every file
+	 */
+	private final MessageFlowVisitor[] visitors;
+	
+	/**
+	 * the plan of the incremental analysis or null if all files are analysed
+	 */
+	private final IncrementalAnalysis incremental;
+	
+	/**
+	  * Use of IoC to get FileSystem, ResourcePerspectives, ActiveRules and the checks
+	  */
+	public MessageFlowSensor(FileSystem fs, ResourcePerspectives perspectives, ActiveRules activeRules, MessageFlowVisitor[] visitors) {
+		this(fs, perspectives, activeRules, visitors, null);
+	}
+	
+	/**
+	  * Use of IoC to get FileSystem, ResourcePerspectives, ActiveRules, the checks and the incremental analysis
+	  */
+	public MessageFlowSensor(FileSystem fs, ResourcePerspectives perspectives, ActiveRules activeRules, MessageFlowVisitor[] visitors,
+			IncrementalAnalysis incremental) {
+		this.fs = fs;
+		this.perspectives = perspectives;
+		this.activeRules = activeRules;
+		this.visitors = visitors;
+		this.incremental = incremental != null && incremental.isEnabled() ? incremental : null;
+	}
+	
+	/**
+	 * The method returns the keys of the rules of the repository that are 
+	 * active in the quality profile.
+	 * 
+	 * @return the keys of the active rules
+	 */
+	public Set<String> getActiveRuleKeys() {
+		Set<String> activeRuleKeys = new HashSet<String>();
+		for (ActiveRule activeRule : activeRules.findByRepository(MessageFlowCheckList.REPOSITORY_KEY)) {
+			activeRuleKeys.add(activeRule.ruleKey().rule());
+		}
+		return activeRuleKeys;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.sonar.api.batch.CheckProject#shouldExecuteOnProject(org.sonar.api.resources.Project)
+	 */
+	/**
+	 * The method defines the language of the file to be analysed.
+	 */
+	@Override
+	public boolean shouldExecuteOnProject(Project arg0) {
+		// This sensor is executed only when there are msgflow files
+	    return fs.hasFiles(fs.predicates().hasLanguage("msgflow"));
+	}
+
+	/* (non-Javadoc)
+	 * @see org.sonar.api.batch.Sensor#analyse(org.sonar.api.resources.Project, org.sonar.api.batch.SensorContext)
+	 */
+	/**
+	 * The method where the message flows and message maps are visited.
+	 */
+	@Override
+	public void analyse(Project arg0, SensorContext arg1) {
+		MessageFlowProject project = MessageFlowProject.getInstance();
+		
+		MessageFlowVisitorPlan plan = new MessageFlowVisitorPlan(visitors, getActiveRuleKeys());
+		LOG.debug("Message flow checks: " + plan);
+		
+		for (MessageFlowVisitor visitor : plan.getVisitors()) {
+			visitor.visitProject();
+		}
+		
+		if (plan.visitsMessageFlows()) {
+			for (InputFile inputFile : fs.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.FLOW_PATH_PATTERNS))) {
+				visitFile(project, inputFile, plan, false);
+			}
+		}
+		
+		if (plan.visitsMessageMaps()) {
+			for (InputFile inputFile : fs.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.MAP_PATH_PATTERNS))) {
+				visitFile(project, inputFile, plan, true);
+			}
+		}
+		
+		for (MessageFlowVisitor visitor : plan.getVisitors()) {
+			visitor.leaveProject();
+		}
+		
+		if (incremental != null) {
+			incremental.save();
+		}
+		
+		List<String> skippedFiles = project.getSkippedFiles();
+		if (!skippedFiles.isEmpty()) {
+			LOG.warn(skippedFiles.size() + " message flow files have been skipped because of the time budget: " + skippedFiles);
+		}
+		arg1.saveMeasure(MessageFlowMetrics.SKIPPED_FILES, (double) skippedFiles.size());
+	}
+	
+	/**
+	 * The method visits a message flow or message map file under the time 
+	 * budget of the file (see {@link FileDeadline}). If the budget is 
+	 * exceeded, the file is skipped and the analysis continues with the next 
+	 * one. Files skipped while building the models are not visited. In an 
+	 * incremental analysis the issues of an unaffected file are reported from
+	 * the previous analysis instead.
+	 * 
+	 * @param project the models of the project
+	 * @param inputFile the file
+	 * @param plan the checks to be executed
+	 * @param messageMap true for a message map file
+	 */
+	private void visitFile(MessageFlowProject project, InputFile inputFile, MessageFlowVisitorPlan plan, boolean messageMap) {
+		String fileName = inputFile.absolutePath();
+		if (project.isSkipped(fileName)) {
+			return;
+		}
+		
+		MessageFlowContext context = new IssuableContext(inputFile, perspectives);
+		if (incremental != null) {
+			if (!incremental.isAffected(fileName)) {
+				incremental.replay(fileName, context);
+				return;
+			}
+			context = incremental.record(context);
+		}
+		
+		boolean started = FileDeadline.start(fileName);
+		try {
+			if (messageMap) {
+				plan.visitMessageMap(context, project.getMessageMap(fileName));
+			} else {
+				plan.visitMessageFlow(context, project.getMessageFlow(fileName));
+			}
+		} catch (FileTimeoutException e) {
+			project.skip(fileName);
+			LOG.warn(e.getMessage() + ", the file is skipped");
+		} finally {
+			if (started) {
+				FileDeadline.stop();
+			}
+		}
+	}
+	
+	/**
+	 * The context reports the issues of a file using the Issuable perspective.
+	 */
+	private static class IssuableContext implements MessageFlowContext {
+		
+		private final InputFile inputFile;
+		
+		private final ResourcePerspectives perspectives;
+		
+		IssuableContext(InputFile inputFile, ResourcePerspectives perspectives) {
+			this.inputFile = inputFile;
+			this.perspectives = perspectives;
+		}
+
+		@Override
+		public String getAbsolutePath() {
+			return inputFile.absolutePath();
+		}
+
+		@Override
+		public String getRelativePath() {
+			return inputFile.relativePath();
+		}
+
+		@Override
+		public void addIssue(String ruleKey, String message) {
+			Issuable issuable = perspectives.as(Issuable.class, inputFile);
+		    issuable.addIssue(issuable.newIssueBuilder()
+		    	        	  .ruleKey(RuleKey.of(MessageFlowCheckList.REPOSITORY_KEY, ruleKey))
+		    	        	  .message(message)
+		    	        	  .build());
+		}
+
+		@Override
+		public void addIssue(String ruleKey, String message, int line) {
+			if (line <= 0) {
+				// the position of the element is not known
+				addIssue(ruleKey, message);
+				return;
+			}
+			Issuable issuable = perspectives.as(Issuable.class, inputFile);
+		    issuable.addIssue(issuable.newIssueBuilder()
+		    	        	  .ruleKey(RuleKey.of(MessageFlowCheckList.REPOSITORY_KEY, ruleKey))
+		    	        	  .message(message)
+		    	        	  .line(line)
+		    	        	  .build());
+		}
+	}
+
+}
@@ -0,0 +1,443 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.batch;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.sonar.api.batch.ScannerSide;
+
+import com.exxeta.iss.sonar.msgflow.model.MessageFlow;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowNode;
+import com.exxeta.iss.sonar.msgflow.model.MessageMap;
+
+/**
+ * The class is the base class of the checks executed by the 
+ * {@link MessageFlowSensor}. The sensor walks every message flow and message 
+ * map of the project once and calls the corresponding visit methods of all 
+ * checks. A check overrides the methods of the node types it is interested 
+ * in, the default implementations do nothing.
+ * 
+ * The methods are called in the following order: {@link #visitProject()}, 
+ * for every message flow {@link #visitMessageFlow(MessageFlowContext, MessageFlow)}, 
+ * the node methods and {@link #leaveMessageFlow(MessageFlowContext, MessageFlow)}, 
+ * {@link #visitMessageMap(MessageFlowContext, MessageMap)} for every message map 
+ * and finally {@link #leaveProject()}.
+ * 
+ * A check instance is used for the whole project, so state collected over 
+ * several files has to be reset in {@link #visitProject()}.
+ * 
+ * Every check declares the keys of the rules it reports. A check whose rules
+ * are all inactive in the quality profile is not executed at all, a check 
+ * may use {@link #isActive(String)} to skip expensive parts of the analysis.
+ * 
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+@ScannerSide
+public abstract class MessageFlowVisitor {
+
+	/**
+	 * the keys of the rules reported by the check
+	 */
+	private final Set<String> ruleKeys;
+	
+	/**
+	 * the keys of the active rules or null if all rules are active
+	 */
+	private Set<String> activeRuleKeys;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param ruleKeys the keys of the rules reported by the check
+	 */
+	protected MessageFlowVisitor(String... ruleKeys) {
+		this.ruleKeys = Collections.unmodifiableSet(new LinkedHashSet<String>(Arrays.asList(ruleKeys)));
+	}
+	
+	/**
+	 * The method returns the keys of the rules reported by the check.
+	 * 
+	 * @return an unmodifiable set of rule keys
+	 */
+	public Set<String> getRuleKeys() {
+		return ruleKeys;
+	}
+	
+	/**
+	 * The method sets the keys of the rules that are active in the quality 
+	 * profile.
+	 * 
+	 * @param activeRuleKeys the keys of the active rules or null if all rules are active
+	 */
+	public void setActiveRuleKeys(Set<String> activeRuleKeys) {
+		this.activeRuleKeys = activeRuleKeys;
+	}
+	
+	/**
+	 * The method checks whether at least one rule of the check is active.
+	 * 
+	 * @return true if the check has to be executed
+	 */
+	public boolean isActive() {
+		if (activeRuleKeys == null) {
+			return true;
+		}
+		for (String ruleKey : ruleKeys) {
+			if (activeRuleKeys.contains(ruleKey)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * The method checks whether the given rule is active.
+	 * 
+	 * @param ruleKey the key of the rule
+	 * @return true if the rule is active
+	 */
+	public boolean isActive(String ruleKey) {
+		return activeRuleKeys == null || activeRuleKeys.contains(ruleKey);
+	}
+	
+	/**
+	 * The method is called before the first file of the project is visited.
+	 */
+	public void visitProject() {
+	}
+	
+	/**
+	 * The method is called after the last file of the project has been visited.
+	 * Checks comparing several files report their issues here.
+	 */
+	public void leaveProject() {
+	}
+	
+	/**
+	 * The method is called before the nodes of a message flow are visited.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param messageFlow the message flow
+	 */
+	public void visitMessageFlow(MessageFlowContext context, MessageFlow messageFlow) {
+	}
+	
+	/**
+	 * The method is called after the nodes of a message flow have been visited.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param messageFlow the message flow
+	 */
+	public void leaveMessageFlow(MessageFlowContext context, MessageFlow messageFlow) {
+	}
+	
+	/**
+	 * The method is called for every message map of the project.
+	 * 
+	 * @param context the context of the message map file
+	 * @param messageMap the message map
+	 */
+	public void visitMessageMap(MessageFlowContext context, MessageMap messageMap) {
+	}
+	
+	/**
+	 * The method calls the visit method of the kind of the node, e.g. 
+	 * {@link #visitComputeNode(MessageFlowContext, MessageFlowNode)} for a 
+	 * Compute node.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public final void visitNode(MessageFlowContext context, MessageFlowNode node) {
+		switch (node.getKind()) {
+		case COLLECTOR:					visitCollectorNode(context, node); break;
+		case COMPUTE:					visitComputeNode(context, node); break;
+		case FILE_INPUT:				visitFileInputNode(context, node); break;
+		case FILE_OUTPUT:				visitFileOutputNode(context, node); break;
+		case HTTP_INPUT:				visitHttpInputNode(context, node); break;
+		case HTTP_REQUEST:				visitHttpRequestNode(context, node); break;
+		case HTTP_REPLY:				visitHttpReplyNode(context, node); break;
+		case MQ_INPUT:					visitMqInputNode(context, node); break;
+		case MQ_OUTPUT:					visitMqOutputNode(context, node); break;
+		case MQ_GET:					visitMqGetNode(context, node); break;
+		case MQ_HEADER:					visitMqHeaderNode(context, node); break;
+		case MQ_REPLY:					visitMqReplyNode(context, node); break;
+		case RESET_CONTENT_DESCRIPTOR:	visitResetContentDescriptorNode(context, node); break;
+		case SOAP_INPUT:				visitSoapInputNode(context, node); break;
+		case SOAP_REQUEST:				visitSoapRequestNode(context, node); break;
+		case TIMEOUT_CONTROL:			visitTimeoutControlNode(context, node); break;
+		case TIMEOUT_NOTIFICATION:		visitTimeoutNotificationNode(context, node); break;
+		case TRY_CATCH:					visitTryCatchNode(context, node); break;
+		case IMS_REQUEST:				visitImsRequestNode(context, node); break;
+		case FILTER:					visitFilterNode(context, node); break;
+		case TRACE:						visitTraceNode(context, node); break;
+		case LABEL:						visitLabelNode(context, node); break;
+		case ROUTE_TO_LABEL:			visitRouteToLabelNode(context, node); break;
+		case AGGREGATE_CONTROL:			visitAggregateControlNode(context, node); break;
+		case DATABASE:					visitDatabaseNode(context, node); break;
+		case ROUTE:						visitRouteNode(context, node); break;
+		default:						visitMiscellaneousNode(context, node); break;
+		}
+	}
+	
+	/**
+	 * The method is called for every Collector node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitCollectorNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every Compute node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitComputeNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every FileInput node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitFileInputNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every FileOutput node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitFileOutputNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every HTTPInput node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitHttpInputNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every HTTPRequest node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitHttpRequestNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every HTTPReply node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitHttpReplyNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every MQInput node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitMqInputNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every MQOutput node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitMqOutputNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every MQGet node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitMqGetNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every MQHeader node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitMqHeaderNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every MQReply node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitMqReplyNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every ResetContentDescriptor node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitResetContentDescriptorNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every SOAPInput node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitSoapInputNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every SOAPRequest node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitSoapRequestNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every TimeoutControl node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitTimeoutControlNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every TimeoutNotification node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitTimeoutNotificationNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every TryCatch node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitTryCatchNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every IMSRequest node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitImsRequestNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every Filter node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitFilterNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every Trace node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitTraceNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every Label node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitLabelNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every RouteToLabel node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitRouteToLabelNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every AggregateControl node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitAggregateControlNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every Database node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitDatabaseNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every Route node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitRouteNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+	
+	/**
+	 * The method is called for every other node of a message flow.
+	 * 
+	 * @param context the context of the message flow file
+	 * @param node the node
+	 */
+	public void visitMiscellaneousNode(MessageFlowContext context, MessageFlowNode node) {
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.batch;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import com.exxeta.iss.sonar.msgflow.model.FileDeadline;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlow;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowNode;
+import com.exxeta.iss.sonar.msgflow.model.MessageMap;
+import com.exxeta.iss.sonar.msgflow.model.NodeKind;
+
+/**
+ * The class is the execution plan of the {@link MessageFlowSensor}. It is
+ * built once per analysis from the registered checks and the rules that are
+ * active in the quality profile. Checks without active rules are dropped and
+ * for every visit method only the checks overriding it are kept, so node
+ * categories no check is interested in are not iterated at all.
+ *
+ * The plan does not depend on the SonarQube API, it is also used to run the
+ * checks outside of a scanner.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class MessageFlowVisitorPlan {
+
+	/**
+	 * an empty list of checks
+	 */
+	private static final MessageFlowVisitor[] NONE = new MessageFlowVisitor[0];
+
+	/**
+	 * the active checks
+	 */
+	private final MessageFlowVisitor[] visitors;
+
+	/**
+	 * the active checks by the name of the file and node methods they override
+	 */
+	private final Map<String, MessageFlowVisitor[]> visitorsByMethod = new HashMap<String, MessageFlowVisitor[]>();
+
+	/**
+	 * the active checks by the kind of the nodes they visit
+	 */
+	private final EnumMap<NodeKind, MessageFlowVisitor[]> visitorsByKind = new EnumMap<NodeKind, MessageFlowVisitor[]>(NodeKind.class);
+
+	/**
+	 * Constructor
+	 *
+	 * @param visitors all registered checks
+	 * @param activeRuleKeys the keys of the active rules or null if all rules are active
+	 */
+	public MessageFlowVisitorPlan(MessageFlowVisitor[] visitors, Set<String> activeRuleKeys) {
+		List<MessageFlowVisitor> active = new ArrayList<MessageFlowVisitor>();
+		for (MessageFlowVisitor visitor : visitors) {
+			visitor.setActiveRuleKeys(activeRuleKeys);
+			if (visitor.isActive()) {
+				active.add(visitor);
+			}
+		}
+		this.visitors = active.toArray(NONE);
+
+		for (Method method : MessageFlowVisitor.class.getDeclaredMethods()) {
+			if (method.getParameterTypes().length == 2) {
+				List<MessageFlowVisitor> overriding = new ArrayList<MessageFlowVisitor>();
+				for (MessageFlowVisitor visitor : this.visitors) {
+					if (overrides(visitor, method)) {
+						overriding.add(visitor);
+					}
+				}
+				visitorsByMethod.put(method.getName(), overriding.toArray(NONE));
+			}
+		}
+
+		for (NodeKind kind : NodeKind.values()) {
+			String methodName = getVisitMethodName(kind);
+			if (!visitorsByMethod.containsKey(methodName)) {
+				throw new IllegalStateException("No visit method " + methodName + " for node kind " + kind);
+			}
+			visitorsByKind.put(kind, visitorsByMethod.get(methodName));
+		}
+	}
+
+	/**
+	 * The method returns the active checks.
+	 *
+	 * @return the checks with at least one active rule
+	 */
+	public MessageFlowVisitor[] getVisitors() {
+		return visitors;
+	}
+
+	/**
+	 * The method returns the active checks overriding the given visit method,
+	 * e.g. 'visitComputeNode' or 'leaveMessageFlow'.
+	 *
+	 * @param methodName the name of the visit method
+	 * @return the checks to be called, possibly empty
+	 */
+	public MessageFlowVisitor[] getVisitors(String methodName) {
+		MessageFlowVisitor[] result = visitorsByMethod.get(methodName);
+		return result == null ? NONE : result;
+	}
+
+	/**
+	 * The method returns the active checks visiting the nodes of a kind.
+	 *
+	 * @param kind the kind of the nodes
+	 * @return the checks to be called, possibly empty
+	 */
+	public MessageFlowVisitor[] getVisitors(NodeKind kind) {
+		return visitorsByKind.get(kind);
+	}
+
+	/**
+	 * The method returns the name of the visit method of a node kind, e.g.
+	 * 'visitMqInputNode' for {@link NodeKind#MQ_INPUT}.
+	 *
+	 * @param kind the kind of the nodes
+	 * @return the name of the visit method
+	 */
+	public static String getVisitMethodName(NodeKind kind) {
+		StringBuilder methodName = new StringBuilder("visit");
+		for (String part : kind.name().split("_")) {
+			methodName.append(part.charAt(0)).append(part.substring(1).toLowerCase(Locale.ENGLISH));
+		}
+		return methodName.append("Node").toString();
+	}
+
+	/**
+	 * The method visits a message flow and all its nodes with the active 
+	 * checks. The time budget of the file is checked before every node (see
+	 * {@link FileDeadline}).
+	 *
+	 * @param context the context of the message flow file
+	 * @param messageFlow the message flow
+	 */
+	public void visitMessageFlow(MessageFlowContext context, MessageFlow messageFlow) {
+		for (MessageFlowVisitor visitor : getVisitors("visitMessageFlow")) {
+			visitor.visitMessageFlow(context, messageFlow);
+		}
+
+		for (NodeKind kind : NodeKind.values()) {
+			for (MessageFlowVisitor visitor : getVisitors(kind)) {
+				for (MessageFlowNode node : messageFlow.getNodes(kind)) {
+					FileDeadline.check();
+					visitor.visitNode(context, node);
+				}
+			}
+		}
+
+		for (MessageFlowVisitor visitor : getVisitors("leaveMessageFlow")) {
+			visitor.leaveMessageFlow(context, messageFlow);
+		}
+	}
+
+	/**
+	 * The method visits a message map with the active checks.
+	 *
+	 * @param context the context of the message map file
+	 * @param messageMap the message map
+	 */
+	public void visitMessageMap(MessageFlowContext context, MessageMap messageMap) {
+		for (MessageFlowVisitor visitor : getVisitors("visitMessageMap")) {
+			visitor.visitMessageMap(context, messageMap);
+		}
+	}
+
+	/**
+	 * The method checks whether message maps have to be visited.
+	 *
+	 * @return true if at least one active check visits message maps
+	 */
+	public boolean visitsMessageMaps() {
+		return getVisitors("visitMessageMap").length > 0;
+	}
+
+	/**
+	 * The method checks whether message flows have to be visited.
+	 *
+	 * @return true if at least one active check visits message flows or their nodes
+	 */
+	public boolean visitsMessageFlows() {
+		for (Map.Entry<String, MessageFlowVisitor[]> entry : visitorsByMethod.entrySet()) {
+			if (!entry.getKey().equals("visitMessageMap") && entry.getValue().length > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean overrides(MessageFlowVisitor visitor, Method method) {
+		try {
+			return visitor.getClass().getMethod(method.getName(), method.getParameterTypes())
+					.getDeclaringClass() != MessageFlowVisitor.class;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * The method returns a short description of the plan for the log.
+	 *
+	 * @return the number of active checks and the visit methods they use
+	 */
+	@Override
+	public String toString() {
+		List<String> methods = new ArrayList<String>();
+		for (Map.Entry<String, MessageFlowVisitor[]> entry : visitorsByMethod.entrySet()) {
+			if (entry.getValue().length > 0) {
+				methods.add(entry.getKey() + "=" + entry.getValue().length);
+			}
+		}
+		Collections.sort(methods);
+		return visitors.length + " active checks " + methods;
+	}
+}
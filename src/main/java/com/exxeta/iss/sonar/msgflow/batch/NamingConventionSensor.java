@@ -2,26 +2,17 @@ package com.exxeta.iss.sonar.msgflow.batch;
 
 import java.io.File;
 
-import org.sonar.api.batch.Sensor;
-import org.sonar.api.batch.SensorContext;
-import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.component.ResourcePerspectives;
-import org.sonar.api.issue.Issuable;
-import org.sonar.api.resources.Project;
-import org.sonar.api.rule.RuleKey;
-
-import com.exxeta.iss.sonar.msgflow.MessageFlowPlugin;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlow;
 import com.exxeta.iss.sonar.msgflow.model.PomObject;
 import com.exxeta.iss.sonar.msgflow.model.PomParser;
 
 /**
- * The class (sensor) contains the method to analyse the connections and 
+ * The class (check) contains the method to analyse the connections and 
  * configuration of a MQ Get Node.
  * 
  * @author Arjav Shah
  */
-public class NamingConventionSensor implements Sensor {
+public class NamingConventionSensor extends MessageFlowVisitor {
 
 	/**
 	 * The logger for the class.
@@ -29,115 +20,78 @@ public class NamingConventionSensor implements Sensor {
 	//private static final Logger LOG = LoggerFactory.getLogger(MQOutputNodeSensor.class);
 	
 	/**
-	 * Variable to hold file system information, e.g. the file names of the project files.
-	 */
-	private final FileSystem fs;
-	
-	/**
+	 * Constructor
 	 * 
+	 * Defines the rules reported by the check.
 	 */
-	private final ResourcePerspectives perspectives;
-	
-	/**
-	  * Use of IoC to get FileSystem and ResourcePerspectives
-	  */
-	public NamingConventionSensor(FileSystem fs, ResourcePerspectives perspectives) {
-		this.fs = fs;
-		this.perspectives = perspectives;
+	public NamingConventionSensor() {
+		super("MavenProjectNamingConventions");
 	}
 	
 	/* (non-Javadoc)
-	 * @see org.sonar.api.batch.CheckProject#shouldExecuteOnProject(org.sonar.api.resources.Project)
-	 */
-	@Override
-	public boolean shouldExecuteOnProject(Project arg0) {
-		// This sensor is executed only when there are msgflow files
-	    return fs.hasFiles(fs.predicates().hasLanguage("msgflow"));
-	}
-
-	/* (non-Javadoc)
-	 * @see org.sonar.api.batch.Sensor#analyse(org.sonar.api.resources.Project, org.sonar.api.batch.SensorContext)
+	 * @see com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitor#visitMessageFlow(com.exxeta.iss.sonar.msgflow.batch.MessageFlowContext, com.exxeta.iss.sonar.msgflow.model.MessageFlow)
 	 */
 	/**
-	 * The method where the analysis of the connections and configuration of 
-	 * the message flow node takes place.
+	 * The method where the analysis of the message flow takes place.
 	 */
 	@Override
-	public void analyse(Project arg0, SensorContext arg1) {
-		
-		
-		for (InputFile inputFile : fs.inputFiles(fs.predicates().matchesPathPatterns(MessageFlowPlugin.FLOW_PATH_PATTERNS))) {
-			String fullPath = inputFile.absolutePath();
+	public void visitMessageFlow(MessageFlowContext context, MessageFlow msgFlow) {
+		String fullPath = context.getAbsolutePath();
 
-			if (fullPath.endsWith("_MF.msgflow")) {
-				boolean violationDetected = false;
-				File file = new File(fullPath);
-				String ProjectDirectory = getProjectDirectory(file).getAbsolutePath();
-				if (new File(ProjectDirectory + File.separator + "pom.xml").exists()) {
-					PomObject pomObj = new PomObject(ProjectDirectory + File.separator + "pom.xml", new PomParser());
-					String artifactName = pomObj.getArtifact().toString();
-					if (!inputFile.absolutePath().endsWith(artifactName + "_MF.msgflow")) {
+		if (fullPath.endsWith("_MF.msgflow")) {
+			boolean violationDetected = false;
+			File projectDirectory = PomObject.getProjectDirectory(new File(fullPath));
+			// e.g. a flow inside a BAR file is not part of a project
+			if (projectDirectory == null) {
+				return;
+			}
+			String ProjectDirectory = projectDirectory.getAbsolutePath();
+			if (new File(ProjectDirectory + File.separator + "pom.xml").exists()) {
+				PomObject pomObj = new PomObject(ProjectDirectory + File.separator + "pom.xml", new PomParser());
+				String artifactName = pomObj.getArtifact().toString();
+				if (!context.getAbsolutePath().endsWith(artifactName + "_MF.msgflow")) {
+					violationDetected = true;
+				}
+				for (String module : pomObj.getModules()) {
+					if ((module.indexOf(artifactName + "_App") == -1)
+							&& (module.indexOf(artifactName + "_Lib") == -1)
+							&& (module.indexOf(artifactName + "_Properties") == -1)) {
 						violationDetected = true;
 					}
-					for (String module : pomObj.getModules()) {
-						if ((module.indexOf(artifactName + "_App") == -1)
-								&& (module.indexOf(artifactName + "_Lib") == -1)
-								&& (module.indexOf(artifactName + "_Properties") == -1)) {
-							violationDetected = true;
-						}
-					}
-					if (violationDetected) {
-						Issuable issuable = perspectives.as(Issuable.class, inputFile);
-						issuable.addIssue(issuable.newIssueBuilder()
-								.ruleKey(RuleKey.of("msgflow", "MavenProjectNamingConventions"))
-								.message(
-										"The Naming conventions for the message flow and the artifacts is not followed")
-								.build());
-					}
+				}
+				if (violationDetected) {
+					context.addIssue("MavenProjectNamingConventions", "The Naming conventions for the message flow and the artifacts is not followed");
+				}
 
+			}
+		}else if((!fullPath.contains(".subflow")) && (fullPath.substring(fullPath.lastIndexOf(File.separator)+1, fullPath.indexOf(".msgflow")).matches("^[a-zA-Z]*(_App_v)[0-9]"))){
+			
+			boolean violationDetected = false;
+			File projectDirectory = PomObject.getProjectDirectory(new File(fullPath));
+			if (projectDirectory == null) {
+				return;
+			}
+			String ProjectDirectory = projectDirectory.getAbsolutePath();
+			if (new File(ProjectDirectory + File.separator + "pom.xml").exists()) {
+				PomObject pomObj = new PomObject(ProjectDirectory + File.separator + "pom.xml",
+						new PomParser());
+				String artifactName = pomObj.getArtifact().toString();
+				if (!context.getAbsolutePath().contains(artifactName)) {
+					violationDetected = true;
 				}
-			}else if((!fullPath.contains(".subflow")) && (fullPath.substring(fullPath.lastIndexOf(File.separator)+1, fullPath.indexOf(".msgflow")).matches("^[a-zA-Z]*(_App_v)[0-9]"))){
-				
-				boolean violationDetected = false;
-				File file = new File(fullPath);
-				String ProjectDirectory = getProjectDirectory(file).getAbsolutePath();
-				if (new File(ProjectDirectory + File.separator + "pom.xml").exists()) {
-					PomObject pomObj = new PomObject(ProjectDirectory + File.separator + "pom.xml",
-							new PomParser());
-					String artifactName = pomObj.getArtifact().toString();
-					if (!inputFile.absolutePath().contains(artifactName)) {
+				for (String module : pomObj.getModules()) {
+					if (module.contains(artifactName) && ((module.indexOf(artifactName + "_App") == -1)
+							&& (module.indexOf(artifactName + "_Lib") == -1)
+							&& (module.indexOf(artifactName + "_DAR") == -1))) {
 						violationDetected = true;
 					}
-					for (String module : pomObj.getModules()) {
-						if (module.contains(artifactName) && ((module.indexOf(artifactName + "_App") == -1)
-								&& (module.indexOf(artifactName + "_Lib") == -1)
-								&& (module.indexOf(artifactName + "_DAR") == -1))) {
-							violationDetected = true;
-						}
-					}
-					if (violationDetected) {
-						Issuable issuable = perspectives.as(Issuable.class, inputFile);
-						issuable.addIssue(issuable.newIssueBuilder()
-								.ruleKey(RuleKey.of("msgflow", "MavenProjectNamingConventions"))
-								.message(
-										"The Naming conventions for the message flow and the artifacts is not followed")
-								.build());
-					}
+				}
+				if (violationDetected) {
+					context.addIssue("MavenProjectNamingConventions", "The Naming conventions for the message flow and the artifacts is not followed");
 				}
 			}
 		}
 	}
 	
-	private File getProjectDirectory(File msgFlowFile) {
-		File projectDirectory = new File(msgFlowFile.getAbsolutePath());
-		while (projectDirectory != null) {
-			projectDirectory = projectDirectory.getParentFile();
-			if (new File(projectDirectory, ".project").exists()) {
-				return projectDirectory.getParentFile();
-			}
-		}
-		return null;
-	}
-	
 
 }
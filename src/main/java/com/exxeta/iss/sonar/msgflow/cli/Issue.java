@@ -0,0 +1,94 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.cli;
+
+/**
+ * The class is an issue reported by the command line analyzer.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class Issue {
+
+	/**
+	 * the path of the file relative to the analysed directory, separated by '/'
+	 */
+	private final String path;
+
+	/**
+	 * the key of the rule in the 'msgflow' repository
+	 */
+	private final String ruleKey;
+
+	/**
+	 * the message of the issue
+	 */
+	private final String message;
+
+	/**
+	 * the line of the issue, 0 if the issue is reported on the file
+	 */
+	private final int line;
+
+	/**
+	 * Constructor
+	 *
+	 * @param path the path of the file relative to the analysed directory
+	 * @param ruleKey the key of the rule
+	 * @param message the message of the issue
+	 * @param line the line of the issue, 0 if the issue is reported on the file
+	 */
+	public Issue(String path, String ruleKey, String message, int line) {
+		this.path = path;
+		this.ruleKey = ruleKey;
+		this.message = message;
+		this.line = Math.max(0, line);
+	}
+
+	/**
+	 * @return the path of the file relative to the analysed directory, separated by '/'
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return the key of the rule
+	 */
+	public String getRuleKey() {
+		return ruleKey;
+	}
+
+	/**
+	 * @return the message of the issue
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * @return the line of the issue, 0 if the issue is reported on the file
+	 */
+	public int getLine() {
+		return line;
+	}
+
+	@Override
+	public String toString() {
+		return path + (line > 0 ? ":" + line : "") + ": " + message + " [" + ruleKey + "]";
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.cli;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * The interface describes an output format of the command line analyzer.
+ * The issues are written as soon as they are reported, the writer does not
+ * collect them.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public interface IssueWriter {
+
+	/**
+	 * The method is called before the first issue is written.
+	 *
+	 * @param ruleKeys the keys of the rules of the active checks
+	 * @throws IOException if the output cannot be written
+	 */
+	void begin(Set<String> ruleKeys) throws IOException;
+
+	/**
+	 * The method writes an issue.
+	 *
+	 * @param issue the issue
+	 * @throws IOException if the output cannot be written
+	 */
+	void write(Issue issue) throws IOException;
+
+	/**
+	 * The method is called after the last issue has been written. The
+	 * underlying output is flushed, but not closed.
+	 *
+	 * @throws IOException if the output cannot be written
+	 */
+	void end() throws IOException;
+}
@@ -0,0 +1,112 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.cli;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+
+/**
+ * The class writes the issues as newline-delimited JSON, one object per
+ * line, e.g.
+ * <pre>
+ * {"file":"flows/Main.msgflow","rule":"ComputeNodeInTerminal","message":"...","line":9}
+ * </pre>
+ * The line is omitted if the issue is reported on the file.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class JsonIssueWriter implements IssueWriter {
+
+	/**
+	 * the output
+	 */
+	private final Writer out;
+
+	/**
+	 * Constructor
+	 *
+	 * @param out the output
+	 */
+	public JsonIssueWriter(Writer out) {
+		this.out = out;
+	}
+
+	@Override
+	public void begin(Set<String> ruleKeys) {
+		// the format has no header
+	}
+
+	@Override
+	public void write(Issue issue) throws IOException {
+		out.write(toJson(issue));
+		out.write('\n');
+	}
+
+	@Override
+	public void end() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * The method returns the JSON object of an issue.
+	 *
+	 * @param issue the issue
+	 * @return the object in a single line
+	 */
+	public static String toJson(Issue issue) {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"file\":").append(quote(issue.getPath()));
+		json.append(",\"rule\":").append(quote(issue.getRuleKey()));
+		json.append(",\"message\":").append(quote(issue.getMessage()));
+		if (issue.getLine() > 0) {
+			json.append(",\"line\":").append(issue.getLine());
+		}
+		return json.append('}').toString();
+	}
+
+	/**
+	 * The method returns a JSON string literal.
+	 *
+	 * @param value the value, null for the literal null
+	 * @return the quoted and escaped value
+	 */
+	public static String quote(String value) {
+		if (value == null) {
+			return "null";
+		}
+		StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':	quoted.append("\\\""); break;
+			case '\\':	quoted.append("\\\\"); break;
+			case '\n':	quoted.append("\\n"); break;
+			case '\r':	quoted.append("\\r"); break;
+			case '\t':	quoted.append("\\t"); break;
+			default:
+				if (c < 0x20) {
+					quoted.append(String.format("\\u%04x", (int) c));
+				} else {
+					quoted.append(c);
+				}
+			}
+		}
+		return quoted.append('"').toString();
+	}
+}
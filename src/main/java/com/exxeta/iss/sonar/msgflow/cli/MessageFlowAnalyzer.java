@@ -0,0 +1,387 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.exxeta.iss.sonar.msgflow.MessageFlowCheckList;
+import com.exxeta.iss.sonar.msgflow.batch.MessageFlowContext;
+import com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitor;
+import com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitorPlan;
+import com.exxeta.iss.sonar.msgflow.model.ArchiveInput;
+import com.exxeta.iss.sonar.msgflow.model.FileDeadline;
+import com.exxeta.iss.sonar.msgflow.model.FileTimeoutException;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
+
+/**
+ * The class runs the checks of the plug-in on a directory tree without a
+ * SonarQube scanner. The message flow, sub flow, message map and ESQL files
+ * are found with a NIO file walk, their models are built in parallel on a
+ * fork/join pool (like the {@link com.exxeta.iss.sonar.msgflow.batch.MessageFlowModelSensor})
+ * and put to the current {@link MessageFlowProject}. The checks are then
+ * executed file by file in the order of the paths, as several checks compare
+ * the files of the project, and the issues are passed to an
+ * {@link IssueWriter} as soon as they are reported.
+ *
+ * A BAR or ZIP archive is analysed without extracting it: its entries are
+ * walked and read through {@link ArchiveInput}, the issues are reported on
+ * the archive-qualified paths, e.g. 'app.bar!/com/exxeta/Main.msgflow'.
+ *
+ * The class does not use the SonarQube API, it only needs the plug-in classes,
+ * Guava, Commons IO and SLF4J at runtime.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class MessageFlowAnalyzer {
+
+	/**
+	 * The logger for the class.
+	 */
+	private static final Logger LOG = LoggerFactory.getLogger(MessageFlowAnalyzer.class);
+
+	/**
+	 * the keys of the active rules or null if all rules are active
+	 */
+	private final Set<String> activeRuleKeys;
+
+	/**
+	 * the number of threads building the models
+	 */
+	private final int threads;
+
+	/**
+	 * Constructor
+	 *
+	 * @param activeRuleKeys the keys of the active rules or null if all rules are active
+	 * @param threads the number of threads building the models, the number of
+	 *        available processors if not positive
+	 */
+	public MessageFlowAnalyzer(Set<String> activeRuleKeys, int threads) {
+		this.activeRuleKeys = activeRuleKeys;
+		this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * The method analyses the files of a directory tree or an archive.
+	 *
+	 * @param root the directory or the BAR or ZIP archive
+	 * @param writer the output of the issues
+	 * @return the number of issues
+	 * @throws IOException if the directory cannot be read or the issues cannot be written
+	 */
+	public int analyse(Path root, IssueWriter writer) throws IOException {
+		if (ArchiveInput.isArchive(root) && Files.isRegularFile(root)) {
+			ArchiveInput archive = ArchiveInput.open(root);
+			try {
+				return analyse(root, archive.getRoot(), writer);
+			} finally {
+				archive.close();
+			}
+		}
+		return analyse(root, root, writer);
+	}
+
+	private int analyse(Path root, Path directory, IssueWriter writer) throws IOException {
+		long start = System.currentTimeMillis();
+		List<Path> files = findFiles(directory);
+		buildModels(MessageFlowProject.getInstance(), files);
+		int issues = check(root, files, writer);
+
+		LOG.info("Analysed " + files.size() + " files in " + (System.currentTimeMillis() - start) + " ms, "
+				+ issues + " issues");
+		return issues;
+	}
+
+	/**
+	 * The method executes the checks on the message flow and message map
+	 * files of a list. The models are taken from the current
+	 * {@link MessageFlowProject}, the ESQL modules have to be indexed already.
+	 * Checks comparing several files, e.g. 'UnusedSubFlow', only see the
+	 * files of the list.
+	 *
+	 * @param root the analysed directory or archive, the paths of the issues are relative to it
+	 * @param files the absolute paths of the files in ascending order
+	 * @param writer the output of the issues
+	 * @return the number of issues
+	 * @throws IOException if the issues cannot be written
+	 */
+	public int check(Path root, List<Path> files, IssueWriter writer) throws IOException {
+		MessageFlowProject project = MessageFlowProject.getInstance();
+		MessageFlowVisitorPlan plan = new MessageFlowVisitorPlan(MessageFlowCheckList.createVisitors(), activeRuleKeys);
+		Set<String> ruleKeys = new TreeSet<String>();
+		for (MessageFlowVisitor visitor : plan.getVisitors()) {
+			for (String ruleKey : visitor.getRuleKeys()) {
+				if (visitor.isActive(ruleKey)) {
+					ruleKeys.add(ruleKey);
+				}
+			}
+		}
+
+		writer.begin(ruleKeys);
+		List<WriterContext> contexts = new ArrayList<WriterContext>();
+		for (MessageFlowVisitor visitor : plan.getVisitors()) {
+			visitor.visitProject();
+		}
+		for (Path file : files) {
+			if (isMessageFlow(file) || isMessageMap(file)) {
+				WriterContext context = new WriterContext(ArchiveInput.getFileName(file), getRelativePath(root, file), writer);
+				contexts.add(context);
+				visitFile(project, context, plan, isMessageMap(file));
+			}
+		}
+		for (MessageFlowVisitor visitor : plan.getVisitors()) {
+			visitor.leaveProject();
+		}
+
+		int issues = 0;
+		for (WriterContext context : contexts) {
+			if (context.error != null) {
+				throw context.error;
+			}
+			issues += context.issues;
+		}
+		writer.end();
+		return issues;
+	}
+
+	/**
+	 * The method visits a file under its time budget, see
+	 * {@link com.exxeta.iss.sonar.msgflow.batch.MessageFlowSensor}. A file
+	 * whose budget runs out or whose analysis fails is skipped.
+	 */
+	private static void visitFile(MessageFlowProject project, MessageFlowContext context, MessageFlowVisitorPlan plan,
+			boolean messageMap) {
+		String fileName = context.getAbsolutePath();
+		if (project.isSkipped(fileName)) {
+			return;
+		}
+
+		boolean started = FileDeadline.start(fileName);
+		try {
+			if (messageMap) {
+				if (plan.visitsMessageMaps()) {
+					plan.visitMessageMap(context, project.getMessageMap(fileName));
+				}
+			} else if (plan.visitsMessageFlows()) {
+				plan.visitMessageFlow(context, project.getMessageFlow(fileName));
+			}
+		} catch (FileTimeoutException e) {
+			project.skip(fileName);
+			LOG.warn(e.getMessage() + ", the file is skipped");
+		} catch (RuntimeException e) {
+			// a failing check must not end the analysis of the other files
+			project.skip(fileName);
+			LOG.warn("The analysis of " + fileName + " failed, the file is skipped", e);
+		} finally {
+			if (started) {
+				FileDeadline.stop();
+			}
+		}
+	}
+
+	/**
+	 * The method builds the models of the message flow and message map files
+	 * and the index of the ESQL modules in parallel.
+	 *
+	 * @param project the project receiving the models
+	 * @param files the files
+	 */
+	public void buildModels(final MessageFlowProject project, List<Path> files) {
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (Path file : files) {
+			final String fileName = ArchiveInput.getFileName(file);
+			if (isMessageFlow(file)) {
+				tasks.add(new Callable<Object>() {
+					@Override
+					public Object call() {
+						return project.getMessageFlow(fileName);
+					}
+				});
+			} else if (isMessageMap(file)) {
+				tasks.add(new Callable<Object>() {
+					@Override
+					public Object call() {
+						return project.getMessageMap(fileName);
+					}
+				});
+			} else {
+				tasks.add(new Callable<Object>() {
+					@Override
+					public Object call() {
+						project.getEsqlModuleIndex().add(fileName);
+						return null;
+					}
+				});
+			}
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			for (Future<Object> future : pool.invokeAll(tasks)) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					if (!(e.getCause() instanceof FileTimeoutException)) {
+						// the file is parsed again (and the error reported) by the checks
+						LOG.warn("Failed to build the model of a message flow file", e.getCause());
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * The method returns the message flow, sub flow, message map and ESQL
+	 * files of a directory tree. Hidden directories, e.g. '.git', are skipped.
+	 *
+	 * @param root the directory, e.g. the root directory of an open {@link ArchiveInput}
+	 * @return the absolute paths of the files in ascending order
+	 * @throws IOException if the directory cannot be read
+	 */
+	public static List<Path> findFiles(Path root) throws IOException {
+		final Path start = root.toAbsolutePath().normalize();
+		final List<Path> files = new ArrayList<Path>();
+		Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+				if (!dir.equals(start) && dir.getFileName().toString().startsWith(".")) {
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (attrs.isRegularFile() && (isMessageFlow(file) || isMessageMap(file) || isEsql(file))) {
+					files.add(file);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) {
+				LOG.warn("Cannot read " + file + ": " + e.getMessage());
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		Collections.sort(files);
+		return files;
+	}
+
+	/**
+	 * The method returns the path of a file relative to the analysed directory.
+	 * The path of an entry of the analysed archive starts with the name of the
+	 * archive.
+	 *
+	 * @param root the analysed directory or archive
+	 * @param file the file or archive entry
+	 * @return the relative path separated by '/'
+	 */
+	public static String getRelativePath(Path root, Path file) {
+		if (file.getFileSystem() != root.getFileSystem()) {
+			return root.getFileName() + ArchiveInput.SEPARATOR + file.toAbsolutePath();
+		}
+		return root.toAbsolutePath().normalize().relativize(file).toString().replace(File.separatorChar, '/');
+	}
+
+	static boolean isMessageFlow(Path file) {
+		String name = file.getFileName().toString();
+		return name.endsWith(".msgflow") || name.endsWith(".subflow");
+	}
+
+	static boolean isMessageMap(Path file) {
+		return file.getFileName().toString().endsWith(".map");
+	}
+
+	static boolean isEsql(Path file) {
+		return file.getFileName().toString().endsWith(".esql");
+	}
+
+	/**
+	 * The context passes the issues of a file to the writer. An error of the
+	 * writer is kept and thrown at the end of the analysis.
+	 */
+	private static class WriterContext implements MessageFlowContext {
+
+		private final String absolutePath;
+
+		private final String relativePath;
+
+		private final IssueWriter writer;
+
+		private int issues;
+
+		private IOException error;
+
+		WriterContext(String absolutePath, String relativePath, IssueWriter writer) {
+			this.absolutePath = absolutePath;
+			this.relativePath = relativePath;
+			this.writer = writer;
+		}
+
+		@Override
+		public String getAbsolutePath() {
+			return absolutePath;
+		}
+
+		@Override
+		public String getRelativePath() {
+			return relativePath;
+		}
+
+		@Override
+		public void addIssue(String ruleKey, String message) {
+			addIssue(ruleKey, message, 0);
+		}
+
+		@Override
+		public void addIssue(String ruleKey, String message, int line) {
+			if (error != null) {
+				return;
+			}
+			try {
+				writer.write(new Issue(relativePath, ruleKey, message, line));
+				issues++;
+			} catch (IOException e) {
+				error = e;
+			}
+		}
+	}
+}
@@ -0,0 +1,271 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.cli;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.exxeta.iss.sonar.msgflow.MessageFlowPlugin;
+import com.exxeta.iss.sonar.msgflow.model.ArchiveInput;
+import com.exxeta.iss.sonar.msgflow.model.FileDeadline;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowModelCache;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowParser;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowStaxParser;
+import com.exxeta.iss.sonar.msgflow.model.XmlInput;
+
+/**
+ * The class is the command line interface of the {@link MessageFlowAnalyzer}.
+ * <pre>
+ * java -jar sonar-msgflow-plugin-cli.jar [options] [directory|archive]
+ *
+ *   --format json|sarif   the output format, newline-delimited JSON by default
+ *   --output FILE         the output file, the standard output by default
+ *   --threads N           the number of threads building the models
+ *   --rules KEY,KEY       the keys of the active rules, all rules by default
+ *   --cache DIR           the directory of the persistent model cache
+ *   --parser stax|xpath   the parser of the message flow files
+ *   --timeout MS          the time budget of a file, no budget by default
+ *   --daemon PORT         keeps running and answers requests on a local port
+ *                         (see {@link MessageFlowDaemon}), 0 for any free port
+ * </pre>
+ * With a model cache, a second run only parses the files changed since the
+ * first run. A BAR or ZIP archive is analysed without extracting it.
+ *
+ * The exit code is 0 if no issue has been found, 1 if issues have been found
+ * and 2 if the analysis failed.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public final class MessageFlowCli {
+
+	/**
+	 * the exit code if no issue has been found
+	 */
+	public static final int EXIT_OK = 0;
+
+	/**
+	 * the exit code if issues have been found
+	 */
+	public static final int EXIT_ISSUES = 1;
+
+	/**
+	 * the exit code if the analysis failed
+	 */
+	public static final int EXIT_ERROR = 2;
+
+	private static final String USAGE = "Usage: java -jar sonar-msgflow-plugin-cli.jar [options] [directory|archive]\n"
+			+ "  --format json|sarif   the output format (default: json)\n"
+			+ "  --output FILE         the output file (default: standard output)\n"
+			+ "  --threads N           the number of threads building the models (default: processors)\n"
+			+ "  --rules KEY,KEY       the keys of the active rules (default: all rules)\n"
+			+ "  --cache DIR           the directory of the persistent model cache\n"
+			+ "  --parser stax|xpath   the parser of the message flow files (default: stax)\n"
+			+ "  --timeout MS          the time budget of a file in milliseconds (default: none)\n"
+			+ "  --daemon PORT         keep running and answer requests on a local port (0: any free port)\n";
+
+	private MessageFlowCli() {
+		// only static methods
+	}
+
+	/**
+	 * The method runs the analysis and exits with its exit code. An error
+	 * of the JVM, e.g. an {@link OutOfMemoryError}, exits with
+	 * {@link #EXIT_ERROR} as well.
+	 *
+	 * @param args the command line arguments
+	 */
+	public static void main(String[] args) {
+		int exitCode;
+		try {
+			exitCode = run(args, System.out, System.err);
+		} catch (Error e) {
+			e.printStackTrace();
+			exitCode = EXIT_ERROR;
+		}
+		System.exit(exitCode);
+	}
+
+	/**
+	 * The method runs the analysis.
+	 *
+	 * @param args the command line arguments
+	 * @param out the default output of the issues
+	 * @param err the output of the summary and the errors
+	 * @return the exit code
+	 */
+	public static int run(String[] args, OutputStream out, PrintStream err) {
+		String format = "json";
+		String output = null;
+		int threads = 0;
+		Set<String> rules = null;
+		String cache = null;
+		String parser = MessageFlowPlugin.PARSER_DEFAULTVALUE;
+		long timeout = 0;
+		String directory = ".";
+		int daemonPort = -1;
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				if ("--help".equals(arg) || "-h".equals(arg)) {
+					err.print(USAGE);
+					return EXIT_OK;
+				} else if ("--format".equals(arg)) {
+					format = value(args, ++i, arg);
+				} else if ("--output".equals(arg)) {
+					output = value(args, ++i, arg);
+				} else if ("--threads".equals(arg)) {
+					threads = Integer.parseInt(value(args, ++i, arg));
+				} else if ("--rules".equals(arg)) {
+					rules = new LinkedHashSet<String>();
+					for (String rule : value(args, ++i, arg).split(",")) {
+						if (!rule.trim().isEmpty()) {
+							rules.add(rule.trim());
+						}
+					}
+				} else if ("--cache".equals(arg)) {
+					cache = value(args, ++i, arg);
+				} else if ("--parser".equals(arg)) {
+					parser = value(args, ++i, arg);
+				} else if ("--timeout".equals(arg)) {
+					timeout = Long.parseLong(value(args, ++i, arg));
+				} else if ("--daemon".equals(arg)) {
+					daemonPort = Integer.parseInt(value(args, ++i, arg));
+				} else if (arg.startsWith("-")) {
+					throw new IllegalArgumentException("Unknown option " + arg);
+				} else {
+					directory = arg;
+				}
+			}
+			if (!"json".equals(format) && !"sarif".equals(format)) {
+				throw new IllegalArgumentException("Unknown format " + format);
+			}
+			if (!MessageFlowPlugin.PARSER_STAX.equals(parser) && !MessageFlowPlugin.PARSER_XPATH.equals(parser)) {
+				throw new IllegalArgumentException("Unknown parser " + parser);
+			}
+		} catch (IllegalArgumentException e) {
+			err.println(e.getMessage());
+			err.print(USAGE);
+			return EXIT_ERROR;
+		}
+
+		Path root = Paths.get(directory);
+		boolean archive = ArchiveInput.isArchive(root) && Files.isRegularFile(root);
+		if (!archive && !Files.isDirectory(root)) {
+			err.println("The directory " + directory + " does not exist");
+			return EXIT_ERROR;
+		}
+		if (archive && daemonPort >= 0) {
+			err.println("The daemon requires a directory");
+			return EXIT_ERROR;
+		}
+
+		long start = System.currentTimeMillis();
+		FileDeadline.setTimeout(timeout);
+		try {
+			MessageFlowModelCache modelCache = null;
+			if (cache != null) {
+				modelCache = new MessageFlowModelCache(new File(cache), getFingerprint(parser));
+			}
+			MessageFlowProject.open(MessageFlowPlugin.PARSER_XPATH.equals(parser) ? new MessageFlowParser()
+					: new MessageFlowStaxParser(), modelCache);
+
+			if (daemonPort >= 0) {
+				return runDaemon(root, rules, threads, daemonPort, err);
+			}
+
+			OutputStream stream = output == null ? out : new FileOutputStream(output);
+			try {
+				Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+				IssueWriter issueWriter = "sarif".equals(format) ? new SarifIssueWriter(writer) : new JsonIssueWriter(writer);
+				int issues = new MessageFlowAnalyzer(rules, threads).analyse(root, issueWriter);
+
+				err.println(issues + " issues in " + (System.currentTimeMillis() - start) + " ms");
+				return issues > 0 ? EXIT_ISSUES : EXIT_OK;
+			} finally {
+				if (output != null) {
+					stream.close();
+				}
+			}
+		} catch (IOException e) {
+			err.println("The analysis failed: " + e.getMessage());
+			return EXIT_ERROR;
+		} catch (RuntimeException e) {
+			// an internal error must not be taken for issues (exit code 1)
+			err.println("The analysis failed: " + e);
+			e.printStackTrace(err);
+			return EXIT_ERROR;
+		} finally {
+			MessageFlowProject.close();
+			FileDeadline.setTimeout(0);
+		}
+	}
+
+	/**
+	 * The method runs a daemon until it receives the request 'STOP'.
+	 */
+	private static int runDaemon(Path root, Set<String> rules, int threads, int port, PrintStream err)
+			throws IOException {
+		MessageFlowDaemon daemon = new MessageFlowDaemon(root, rules, threads);
+		try {
+			daemon.start(port);
+			err.println("Listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + daemon.getPort());
+			daemon.awaitClose();
+			return EXIT_OK;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return EXIT_OK;
+		} finally {
+			daemon.close();
+		}
+	}
+
+	/**
+	 * The method returns the value of an option.
+	 */
+	private static String value(String[] args, int index, String option) {
+		if (index >= args.length) {
+			throw new IllegalArgumentException("The option " + option + " requires a value");
+		}
+		return args[index];
+	}
+
+	/**
+	 * The method returns the fingerprint of the cached models, see
+	 * {@link com.exxeta.iss.sonar.msgflow.MessageFlowProjectSession#getFingerprint(String)}.
+	 * The models of the command line analyzer do not depend on the rules.
+	 */
+	private static String getFingerprint(String parser) {
+		return "cli " + MessageFlowCli.class.getPackage().getImplementationVersion() + ", parser " + parser
+				+ ", xml " + XmlInput.getMaxFileSize() + ' ' + XmlInput.getMaxDepth() + ' '
+				+ XmlInput.getMaxAttributeLength();
+	}
+}
@@ -0,0 +1,541 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.cli;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.exxeta.iss.sonar.msgflow.model.DependencyGraph;
+import com.exxeta.iss.sonar.msgflow.model.EsqlModule;
+import com.exxeta.iss.sonar.msgflow.model.FileTimeoutException;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
+
+/**
+ * The class is a long-running analysis of a directory tree. After the
+ * initial analysis the models stay in the current {@link MessageFlowProject},
+ * the directory tree is watched with a {@link WatchService} and a change only
+ * re-analyses the changed files and the files affected by them, determined
+ * with an in-memory {@link DependencyGraph} (as in the incremental analysis
+ * of the sensor). The issues of all files are kept in the graph.
+ *
+ * The issues are requested over a local TCP socket bound to the loopback
+ * address with a line based protocol:
+ * <pre>
+ * ISSUES path   the issues of a file (relative to the directory or absolute)
+ *               as newline-delimited JSON (see {@link JsonIssueWriter}),
+ *               followed by an empty line
+ * STOP          stops the daemon
+ * </pre>
+ * Before a request is answered, the files that have changed since their last
+ * analysis are analysed again, so the answer does not depend on the latency
+ * of the file system events. A new file is only seen by a request for it or
+ * by its event.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class MessageFlowDaemon implements Closeable {
+
+	/**
+	 * The logger for the class.
+	 */
+	private static final Logger LOG = LoggerFactory.getLogger(MessageFlowDaemon.class);
+
+	/**
+	 * the time to wait for further file system events before a change is analysed
+	 */
+	private static final long DEBOUNCE_MILLIS = 50;
+
+	/**
+	 * the analysed directory, absolute and normalized
+	 */
+	private final Path root;
+
+	/**
+	 * the analyzer executing the checks
+	 */
+	private final MessageFlowAnalyzer analyzer;
+
+	/**
+	 * the dependencies and issues of the analysed files, the hash of an
+	 * entry is the stamp of the file (see {@link #getStamp(Path)})
+	 */
+	private final DependencyGraph graph = new DependencyGraph("daemon");
+
+	/**
+	 * the watched directories by watch key
+	 */
+	private final Map<WatchKey, Path> directories = new ConcurrentHashMap<WatchKey, Path>();
+
+	/**
+	 * the number of analyses, the initial one included
+	 */
+	private long analyses;
+
+	private WatchService watchService;
+
+	private ServerSocket serverSocket;
+
+	private final CountDownLatch closed = new CountDownLatch(1);
+
+	/**
+	 * Constructor
+	 *
+	 * @param root the analysed directory
+	 * @param activeRuleKeys the keys of the active rules or null if all rules are active
+	 * @param threads the number of threads building the models of the initial analysis
+	 */
+	public MessageFlowDaemon(Path root, Set<String> activeRuleKeys, int threads) {
+		this.root = root.toAbsolutePath().normalize();
+		this.analyzer = new MessageFlowAnalyzer(activeRuleKeys, threads);
+	}
+
+	/**
+	 * The method analyses the directory tree, starts watching it and accepts
+	 * requests on the given port. The models are put to the current
+	 * {@link MessageFlowProject}.
+	 *
+	 * @param port the port on the loopback address, 0 for any free port
+	 * @throws IOException if the directory cannot be read or the port cannot be bound
+	 */
+	public synchronized void start(int port) throws IOException {
+		long start = System.currentTimeMillis();
+		watchService = root.getFileSystem().newWatchService();
+		register(root);
+
+		List<Path> files = MessageFlowAnalyzer.findFiles(root);
+		Map<String, String> stamps = getStamps(files);
+		analyzer.buildModels(MessageFlowProject.getInstance(), files);
+		check(files, stamps);
+		LOG.info("Analysed " + files.size() + " files in " + (System.currentTimeMillis() - start) + " ms");
+
+		serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		startThread("msgflow-daemon-watch", new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		});
+		startThread("msgflow-daemon-server", new Runnable() {
+			@Override
+			public void run() {
+				serve();
+			}
+		});
+	}
+
+	/**
+	 * @return the port the daemon accepts requests on
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * @return the number of analyses, the initial one included
+	 */
+	public synchronized long getAnalyses() {
+		return analyses;
+	}
+
+	/**
+	 * The method returns the issues of a file. The analysed files that have
+	 * changed since their last analysis and the requested file are analysed
+	 * again first.
+	 *
+	 * @param path the path of the file, relative to the analysed directory or absolute
+	 * @return the issues, an empty list if the file has no issues or is not analysed
+	 */
+	public synchronized List<Issue> getIssues(String path) {
+		Path file = root.resolve(path).normalize();
+		String fileName = file.toString();
+		Set<Path> changed = new TreeSet<Path>();
+		for (String analysed : graph.getFiles()) {
+			if (!getStamp(Paths.get(analysed)).equals(graph.getHash(analysed))) {
+				changed.add(Paths.get(analysed));
+			}
+		}
+		if ((MessageFlowAnalyzer.isMessageFlow(file) || MessageFlowAnalyzer.isMessageMap(file))
+				&& !graph.contains(fileName) && Files.isRegularFile(file)) {
+			changed.add(file);
+		}
+		if (!changed.isEmpty()) {
+			update(changed);
+		}
+
+		String relativePath = MessageFlowAnalyzer.getRelativePath(root, file);
+		List<Issue> issues = new ArrayList<Issue>();
+		for (DependencyGraph.Issue issue : graph.getIssues(fileName)) {
+			issues.add(new Issue(relativePath, issue.getRuleKey(), issue.getMessage(), issue.getLine()));
+		}
+		return issues;
+	}
+
+	/**
+	 * The method analyses changed files again. The models of the changed
+	 * files are built again, the models of the other files are reused.
+	 *
+	 * @param paths the absolute paths of the changed, added or deleted files
+	 */
+	public synchronized void update(Collection<Path> paths) {
+		long start = System.currentTimeMillis();
+		MessageFlowProject project = MessageFlowProject.getInstance();
+		Set<String> changedFiles = new TreeSet<String>();
+		Set<String> changedKeys = new HashSet<String>();
+		Map<String, Set<String>> currentDependencies = new HashMap<String, Set<String>>();
+		Map<String, String> stamps = new HashMap<String, String>();
+
+		for (Path path : paths) {
+			String fileName = path.toString();
+			// the stamp is taken before the file is read, a later change is analysed again
+			stamps.put(fileName, getStamp(path));
+			boolean exists = Files.isRegularFile(path);
+			if (MessageFlowAnalyzer.isEsql(path)) {
+				for (EsqlModule module : project.getEsqlModuleIndex().remove(fileName)) {
+					changedKeys.add(DependencyGraph.getRoutineKey(module.getSchema(), module.getName()));
+				}
+				if (exists) {
+					project.getEsqlModuleIndex().add(fileName);
+					for (EsqlModule module : project.getEsqlModuleIndex().getFileModules(fileName)) {
+						changedKeys.add(DependencyGraph.getRoutineKey(module.getSchema(), module.getName()));
+					}
+				}
+				changedKeys.add(DependencyGraph.FILE + fileName);
+			} else if (MessageFlowAnalyzer.isMessageFlow(path) || MessageFlowAnalyzer.isMessageMap(path)) {
+				project.invalidate(fileName);
+				changedFiles.add(fileName);
+				if (exists && MessageFlowAnalyzer.isMessageFlow(path)) {
+					try {
+						currentDependencies.put(fileName, DependencyGraph.getDependencies(project, fileName));
+					} catch (FileTimeoutException e) {
+						currentDependencies.put(fileName, Collections.<String>emptySet());
+					}
+				}
+			} else {
+				// e.g. the pom.xml of a project
+				changedKeys.add(DependencyGraph.FILE + fileName);
+			}
+		}
+
+		List<Path> files = new ArrayList<Path>();
+		for (String fileName : graph.getAffectedFiles(changedFiles, currentDependencies, changedKeys)) {
+			Path file = Paths.get(fileName);
+			if (Files.isRegularFile(file)) {
+				files.add(file);
+			} else {
+				graph.remove(fileName);
+			}
+		}
+		check(files, stamps);
+		LOG.info("Analysed " + files.size() + " files affected by " + paths.size() + " changed files in "
+				+ (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/**
+	 * The method analyses all files again, e.g. if file system events have
+	 * been lost.
+	 */
+	public synchronized void reload() {
+		for (String fileName : new ArrayList<String>(graph.getFiles())) {
+			MessageFlowProject.getInstance().invalidate(fileName);
+			graph.remove(fileName);
+		}
+		try {
+			List<Path> files = MessageFlowAnalyzer.findFiles(root);
+			for (Path file : files) {
+				MessageFlowProject.getInstance().invalidate(file.toString());
+			}
+			Map<String, String> stamps = getStamps(files);
+			analyzer.buildModels(MessageFlowProject.getInstance(), files);
+			check(files, stamps);
+		} catch (IOException e) {
+			LOG.warn("The directory " + root + " cannot be analysed: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * The method waits until the daemon is stopped.
+	 *
+	 * @throws InterruptedException if the thread is interrupted
+	 */
+	public void awaitClose() throws InterruptedException {
+		closed.await();
+	}
+
+	@Override
+	public void close() {
+		closed.countDown();
+		try {
+			if (serverSocket != null) {
+				serverSocket.close();
+			}
+			if (watchService != null) {
+				watchService.close();
+			}
+		} catch (IOException e) {
+			LOG.debug("Cannot stop the daemon", e);
+		}
+	}
+
+	/**
+	 * The method executes the checks on a list of files and records their
+	 * dependencies and issues in the graph.
+	 *
+	 * @param files the files
+	 * @param stamps the stamps of the files taken before they have been read,
+	 *        the stamps of the other files are taken now
+	 */
+	private void check(List<Path> files, Map<String, String> stamps) {
+		for (Path file : files) {
+			if (!stamps.containsKey(file.toString())) {
+				stamps.put(file.toString(), getStamp(file));
+			}
+		}
+		final Map<String, List<DependencyGraph.Issue>> issues = new LinkedHashMap<String, List<DependencyGraph.Issue>>();
+		for (Path file : files) {
+			issues.put(MessageFlowAnalyzer.getRelativePath(root, file), new ArrayList<DependencyGraph.Issue>());
+		}
+		try {
+			analyzer.check(root, files, new IssueWriter() {
+				@Override
+				public void begin(Set<String> ruleKeys) {
+					// the issues are collected
+				}
+
+				@Override
+				public void write(Issue issue) {
+					issues.get(issue.getPath()).add(new DependencyGraph.Issue(issue.getRuleKey(), issue.getMessage(),
+							issue.getLine()));
+				}
+
+				@Override
+				public void end() {
+					// the issues are collected
+				}
+			});
+		} catch (IOException e) {
+			// the collecting writer does not throw
+			throw new IllegalStateException(e);
+		}
+
+		MessageFlowProject project = MessageFlowProject.getInstance();
+		for (Path file : files) {
+			String fileName = file.toString();
+			Set<String> dependencies = Collections.emptySet();
+			if (MessageFlowAnalyzer.isMessageFlow(file) && !project.isSkipped(fileName)) {
+				dependencies = DependencyGraph.getDependencies(project, fileName);
+			}
+			if (MessageFlowAnalyzer.isMessageFlow(file) || MessageFlowAnalyzer.isMessageMap(file)) {
+				graph.put(fileName, stamps.get(fileName), dependencies, issues.get(MessageFlowAnalyzer.getRelativePath(root, file)));
+			}
+		}
+		analyses++;
+	}
+
+	/**
+	 * The method processes the file system events until the daemon is stopped.
+	 * Events arriving within {@link #DEBOUNCE_MILLIS} are analysed together.
+	 */
+	private void watch() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				Set<Path> changed = new TreeSet<Path>();
+				boolean overflow = false;
+				while (key != null) {
+					Path directory = directories.get(key);
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == OVERFLOW || directory == null) {
+							overflow = true;
+							continue;
+						}
+						Path path = directory.resolve((Path) event.context());
+						if (event.kind() == ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+							register(path);
+							changed.addAll(MessageFlowAnalyzer.findFiles(path));
+						} else {
+							changed.add(path);
+						}
+					}
+					if (!key.reset()) {
+						directories.remove(key);
+					}
+					key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+				}
+
+				if (overflow) {
+					reload();
+				} else if (!changed.isEmpty()) {
+					update(changed);
+				}
+			}
+		} catch (ClosedWatchServiceException e) {
+			// the daemon has been stopped
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			LOG.warn("The directory " + root + " cannot be watched any more: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * The method accepts requests until the daemon is stopped.
+	 */
+	private void serve() {
+		while (!serverSocket.isClosed()) {
+			final Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (IOException e) {
+				// the daemon has been stopped
+				return;
+			}
+			startThread("msgflow-daemon-client", new Runnable() {
+				@Override
+				public void run() {
+					handle(socket);
+				}
+			});
+		}
+	}
+
+	/**
+	 * The method answers the requests of a client.
+	 */
+	private void handle(Socket socket) {
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+			String line;
+			while ((line = in.readLine()) != null) {
+				String request = line.trim();
+				if (request.startsWith("ISSUES ")) {
+					for (Issue issue : getIssues(request.substring("ISSUES ".length()).trim())) {
+						out.write(JsonIssueWriter.toJson(issue));
+						out.write('\n');
+					}
+				} else if ("STOP".equals(request)) {
+					out.write("\n");
+					out.flush();
+					close();
+					break;
+				} else {
+					out.write("{\"error\":" + JsonIssueWriter.quote("Unknown request " + request) + "}\n");
+				}
+				out.write('\n');
+				out.flush();
+			}
+		} catch (IOException e) {
+			LOG.debug("The request cannot be answered", e);
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				LOG.debug("Cannot close the socket", e);
+			}
+		}
+	}
+
+	/**
+	 * The method registers a directory tree with the watch service. Hidden
+	 * directories are skipped, like in {@link MessageFlowAnalyzer#findFiles(Path)}.
+	 */
+	private void register(final Path start) throws IOException {
+		Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				if (!dir.equals(root) && dir.getFileName().toString().startsWith(".")) {
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				directories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) {
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private static Map<String, String> getStamps(List<Path> files) {
+		Map<String, String> stamps = new HashMap<String, String>();
+		for (Path file : files) {
+			stamps.put(file.toString(), getStamp(file));
+		}
+		return stamps;
+	}
+
+	/**
+	 * The method returns the stamp of a file, its modification time and size.
+	 *
+	 * @return the stamp, empty if the file does not exist
+	 */
+	private static String getStamp(Path file) {
+		try {
+			return Files.getLastModifiedTime(file).toMillis() + ":" + Files.size(file);
+		} catch (IOException e) {
+			return "";
+		}
+	}
+
+	private static void startThread(String name, Runnable runnable) {
+		Thread thread = new Thread(runnable, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+}
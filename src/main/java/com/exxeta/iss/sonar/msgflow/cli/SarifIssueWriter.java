@@ -0,0 +1,110 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.cli;
+
+import static com.exxeta.iss.sonar.msgflow.cli.JsonIssueWriter.quote;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Set;
+
+/**
+ * The class writes the issues as a SARIF 2.1.0 log with a single run. The
+ * rules of the active checks are written before the results, the results
+ * are streamed. The locations of the results are relative to the analysed
+ * directory ('%SRCROOT%').
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class SarifIssueWriter implements IssueWriter {
+
+	/**
+	 * the name of the tool in the log
+	 */
+	public static final String TOOL_NAME = "sonar-msgflow-plugin";
+
+	/**
+	 * the output
+	 */
+	private final Writer out;
+
+	/**
+	 * true until the first result has been written
+	 */
+	private boolean first = true;
+
+	/**
+	 * Constructor
+	 *
+	 * @param out the output
+	 */
+	public SarifIssueWriter(Writer out) {
+		this.out = out;
+	}
+
+	@Override
+	public void begin(Set<String> ruleKeys) throws IOException {
+		out.write("{\"$schema\":\"https://json.schemastore.org/sarif-2.1.0.json\",\"version\":\"2.1.0\",\"runs\":[{");
+		out.write("\"tool\":{\"driver\":{\"name\":" + quote(TOOL_NAME)
+				+ ",\"informationUri\":\"https://github.com/EXXETA/sonar-msgflow-plugin\",\"rules\":[");
+		boolean firstRule = true;
+		for (String ruleKey : ruleKeys) {
+			out.write(firstRule ? "\n" : ",\n");
+			out.write("{\"id\":" + quote(ruleKey) + "}");
+			firstRule = false;
+		}
+		out.write("]}},\"columnKind\":\"utf16CodeUnits\",\"results\":[");
+	}
+
+	@Override
+	public void write(Issue issue) throws IOException {
+		out.write(first ? "\n" : ",\n");
+		first = false;
+
+		StringBuilder result = new StringBuilder();
+		result.append("{\"ruleId\":").append(quote(issue.getRuleKey()));
+		result.append(",\"level\":\"warning\",\"message\":{\"text\":").append(quote(issue.getMessage())).append('}');
+		result.append(",\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{\"uri\":")
+				.append(quote(toUri(issue.getPath()))).append(",\"uriBaseId\":\"%SRCROOT%\"}");
+		if (issue.getLine() > 0) {
+			result.append(",\"region\":{\"startLine\":").append(issue.getLine()).append('}');
+		}
+		result.append("}}]}");
+		out.write(result.toString());
+	}
+
+	@Override
+	public void end() throws IOException {
+		out.write("\n]}]}\n");
+		out.flush();
+	}
+
+	/**
+	 * The method returns the relative URI reference of a path, e.g.
+	 * 'my%20flows/Main.msgflow'.
+	 */
+	private static String toUri(String path) {
+		try {
+			return new URI(null, null, path, null).toASCIIString();
+		} catch (URISyntaxException e) {
+			return path;
+		}
+	}
+}
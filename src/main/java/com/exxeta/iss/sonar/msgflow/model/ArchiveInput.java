@@ -0,0 +1,323 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The class gives the parsers of the plug-in access to the entries of BAR
+ * and ZIP archives without extracting them. An entry is named by the path of
+ * the archive and the path of the entry, separated by '!', e.g.
+ * '/release/app.bar!/com/exxeta/Main.msgflow'. The name is used like the name
+ * of a file: it is the key of the models, the sub flow types are derived from
+ * it and the issues are reported on it.
+ *
+ * An opened archive is mounted as a NIO zip file system until it is closed,
+ * its entries can be listed with the NIO file walk and read concurrently. An
+ * entry of an archive that is not open is read with a {@link ZipFile}.
+ * Names without an archive are plain files.
+ *
+ * The streams are limited to the maximum file size of {@link XmlInput}. The
+ * size declared by an archive is not trusted, a stream exceeding the limit
+ * while it is inflated fails with a {@link XmlLimitException}.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public final class ArchiveInput implements Closeable {
+
+	/**
+	 * the separator of the archive and the entry in the name of an entry
+	 */
+	public static final String SEPARATOR = "!";
+
+	/**
+	 * the open archives by their absolute path
+	 */
+	private static final ConcurrentMap<String, ArchiveInput> ARCHIVES = new ConcurrentHashMap<String, ArchiveInput>();
+
+	/**
+	 * the absolute path of the archive
+	 */
+	private final String archiveName;
+
+	/**
+	 * the zip file system of the archive
+	 */
+	private final FileSystem fileSystem;
+
+	private ArchiveInput(String archiveName, FileSystem fileSystem) {
+		this.archiveName = archiveName;
+		this.fileSystem = fileSystem;
+	}
+
+	/**
+	 * The method opens an archive. Its entries can be read until it is closed.
+	 *
+	 * @param archive the archive, e.g. a BAR file
+	 * @return the open archive
+	 * @throws IOException if the archive cannot be read
+	 * @throws IllegalStateException if the archive is already open
+	 */
+	public static ArchiveInput open(Path archive) throws IOException {
+		String archiveName = archive.toAbsolutePath().normalize().toString();
+		ArchiveInput input = new ArchiveInput(archiveName, FileSystems.newFileSystem(archive, (ClassLoader) null));
+		if (ARCHIVES.putIfAbsent(archiveName, input) != null) {
+			input.fileSystem.close();
+			throw new IllegalStateException("The archive " + archiveName + " is already open");
+		}
+		return input;
+	}
+
+	/**
+	 * The method returns the root directory of the archive for the NIO file walk.
+	 *
+	 * @return the root directory
+	 */
+	public Path getRoot() {
+		return fileSystem.getPath("/");
+	}
+
+	/**
+	 * The method closes the archive, its entries cannot be read any longer.
+	 */
+	@Override
+	public void close() throws IOException {
+		ARCHIVES.remove(archiveName, this);
+		fileSystem.close();
+	}
+
+	/**
+	 * The method checks whether a file is an archive by its extension.
+	 *
+	 * @param file the file
+	 * @return true for BAR and ZIP files
+	 */
+	public static boolean isArchive(Path file) {
+		Path name = file.getFileName();
+		if (name == null) {
+			return false;
+		}
+		String lowerCase = name.toString().toLowerCase(Locale.ENGLISH);
+		return lowerCase.endsWith(".bar") || lowerCase.endsWith(".zip");
+	}
+
+	/**
+	 * The method returns the name of a file, the name of an entry of an open
+	 * archive includes the path of the archive.
+	 *
+	 * @param file a file or an entry of an open archive
+	 * @return the name of the file or entry
+	 */
+	public static String getFileName(Path file) {
+		for (ArchiveInput input : ARCHIVES.values()) {
+			if (input.fileSystem == file.getFileSystem()) {
+				return input.archiveName + SEPARATOR + file.toAbsolutePath();
+			}
+		}
+		return file.toString();
+	}
+
+	/**
+	 * The method opens a file or an archive entry for reading.
+	 *
+	 * @param fileName the name of the file or entry
+	 * @return the content, the caller closes the stream
+	 * @throws IOException if the file or entry cannot be read, the stream
+	 *         throws a {@link XmlLimitException} when the maximum file size is exceeded
+	 */
+	public static InputStream newInputStream(String fileName) throws IOException {
+		return new LimitedInputStream(fileName, openStream(fileName), XmlInput.getMaxFileSize());
+	}
+
+	private static InputStream openStream(String fileName) throws IOException {
+		int index = getSeparatorIndex(fileName);
+		if (index < 0) {
+			return new FileInputStream(fileName);
+		}
+
+		ArchiveInput input = ARCHIVES.get(fileName.substring(0, index));
+		if (input != null) {
+			return Files.newInputStream(input.fileSystem.getPath(fileName.substring(index + SEPARATOR.length())));
+		}
+		final ZipFile zipFile = new ZipFile(fileName.substring(0, index));
+		try {
+			ZipEntry entry = getEntry(zipFile, fileName, index);
+			return new FilterInputStream(zipFile.getInputStream(entry)) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						zipFile.close();
+					}
+				}
+			};
+		} catch (IOException | RuntimeException e) {
+			zipFile.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * The method returns the size of a file or the declared size of an
+	 * archive entry. The declared size may differ from the content, reading
+	 * the entry is limited anyway.
+	 *
+	 * @param fileName the name of the file or entry
+	 * @return the size in bytes, 0 if the file does not exist
+	 */
+	public static long size(String fileName) {
+		int index = getSeparatorIndex(fileName);
+		if (index < 0) {
+			return new File(fileName).length();
+		}
+
+		try {
+			ArchiveInput input = ARCHIVES.get(fileName.substring(0, index));
+			if (input != null) {
+				return Files.size(input.fileSystem.getPath(fileName.substring(index + SEPARATOR.length())));
+			}
+			ZipFile zipFile = new ZipFile(fileName.substring(0, index));
+			try {
+				return Math.max(getEntry(zipFile, fileName, index).getSize(), 0);
+			} finally {
+				zipFile.close();
+			}
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * The method reads a file or an archive entry.
+	 *
+	 * @param fileName the name of the file or entry
+	 * @return the content
+	 * @throws XmlLimitException if the content exceeds the maximum file size
+	 * @throws IOException if the file or entry cannot be read
+	 */
+	public static byte[] readAllBytes(String fileName) throws IOException {
+		InputStream in = newInputStream(fileName);
+		try {
+			return IOUtils.toByteArray(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * The method returns the position of the separator of an archive entry.
+	 * A name with a separator is only an entry if the part before it is an
+	 * open archive or an existing file.
+	 *
+	 * @return the position, -1 for a plain file
+	 */
+	private static int getSeparatorIndex(String fileName) {
+		int index = fileName.indexOf(SEPARATOR + "/");
+		while (index >= 0) {
+			String archiveName = fileName.substring(0, index);
+			if (ARCHIVES.containsKey(archiveName) || new File(archiveName).isFile()) {
+				return index;
+			}
+			index = fileName.indexOf(SEPARATOR + "/", index + 1);
+		}
+		return -1;
+	}
+
+	private static ZipEntry getEntry(ZipFile zipFile, String fileName, int index) throws FileNotFoundException {
+		// the entries of a zip file are named without the leading slash
+		ZipEntry entry = zipFile.getEntry(fileName.substring(index + SEPARATOR.length() + 1));
+		if (entry == null || entry.isDirectory()) {
+			throw new FileNotFoundException(fileName);
+		}
+		return entry;
+	}
+
+	/**
+	 * The stream counts the bytes read and fails as soon as the limit is
+	 * exceeded, before the content is held in memory.
+	 */
+	private static class LimitedInputStream extends FilterInputStream {
+
+		private final String fileName;
+
+		private final long limit;
+
+		private long count;
+
+		LimitedInputStream(String fileName, InputStream in, long limit) {
+			super(in);
+			this.fileName = fileName;
+			this.limit = limit;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				count(1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				count(n);
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count(skipped);
+			return skipped;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		private void count(long n) throws XmlLimitException {
+			count += n;
+			if (count > limit) {
+				throw new XmlLimitException("The file " + fileName + " exceeds the maximum size of " + limit + " bytes");
+			}
+		}
+	}
+}
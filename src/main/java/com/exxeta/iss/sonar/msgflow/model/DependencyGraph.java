@@ -0,0 +1,569 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * The class is the persistent dependency graph of the incremental analysis.
+ * It records for every analysed message flow, sub flow and message map file
+ * the hash of its content, the keys it depends on and the issues reported on
+ * it. The keys are
+ * <ul>
+ * <li>{@link #SUBFLOW}: the type of a referenced sub flow, e.g.
+ * 'subflow:com_exxeta_SF_Test.subflow',</li>
+ * <li>{@link #MODULE}: the ESQL module of a Compute node, the rule
+ * 'OneModuleMultipleNodes' compares the modules of all files,</li>
+ * <li>{@link #ROUTINE}: an ESQL module referenced by a routine expression,
+ * e.g. 'esql:com.exxeta#MYFLOW_COMPUTE',</li>
+ * <li>{@link #FILE}: a file read by the checks, e.g. an ESQL file or the
+ * pom.xml of the project.</li>
+ * </ul>
+ * A file provides the key of its path and, if it is a sub flow, the keys of
+ * its types. The graph also records the hashes of the files of the
+ * {@link #FILE} keys, so their changes are detected.
+ *
+ * The graph is bound to a fingerprint, a graph written with another
+ * fingerprint is not loaded. The class is not thread-safe.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class DependencyGraph {
+
+	/**
+	 * The logger for the class.
+	 */
+	private static final Logger LOG = LoggerFactory.getLogger(DependencyGraph.class);
+
+	/**
+	 * the version of the format of the graph file
+	 */
+	public static final int FORMAT_VERSION = 1;
+
+	/**
+	 * the prefix of the key of a referenced sub flow type
+	 */
+	public static final String SUBFLOW = "subflow:";
+
+	/**
+	 * the prefix of the key of the ESQL module of a Compute node
+	 */
+	public static final String MODULE = "module:";
+
+	/**
+	 * the prefix of the key of an ESQL module referenced by a routine expression
+	 */
+	public static final String ROUTINE = "esql:";
+
+	/**
+	 * the prefix of the key of a file read by the checks
+	 */
+	public static final String FILE = "file:";
+
+	/**
+	 * An issue reported on a file.
+	 */
+	public static class Issue {
+
+		private final String ruleKey;
+
+		private final String message;
+
+		private final int line;
+
+		/**
+		 * Constructor
+		 *
+		 * @param ruleKey the key of the rule
+		 * @param message the message of the issue
+		 * @param line the line of the issue, 0 if the issue is reported on the file
+		 */
+		public Issue(String ruleKey, String message, int line) {
+			this.ruleKey = ruleKey;
+			this.message = message;
+			this.line = line;
+		}
+
+		/**
+		 * @return the key of the rule
+		 */
+		public String getRuleKey() {
+			return ruleKey;
+		}
+
+		/**
+		 * @return the message of the issue
+		 */
+		public String getMessage() {
+			return message;
+		}
+
+		/**
+		 * @return the line of the issue, 0 if the issue is reported on the file
+		 */
+		public int getLine() {
+			return line;
+		}
+	}
+
+	/**
+	 * The hash, the dependencies and the issues of an analysed file.
+	 */
+	private static class Entry {
+		private final String hash;
+		private final Set<String> dependencies;
+		private final List<Issue> issues;
+
+		Entry(String hash, Set<String> dependencies, List<Issue> issues) {
+			this.hash = hash;
+			this.dependencies = dependencies;
+			this.issues = issues;
+		}
+	}
+
+	/**
+	 * the fingerprint of the graph
+	 */
+	private final String fingerprint;
+
+	/**
+	 * the entries by file name
+	 */
+	private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+
+	/**
+	 * the hashes of the files of the {@link #FILE} keys
+	 */
+	private final Map<String, String> fileHashes = new TreeMap<String, String>();
+
+	/**
+	 * Constructor
+	 *
+	 * Creates an empty graph.
+	 *
+	 * @param fingerprint the fingerprint of the plug-in and its configuration
+	 */
+	public DependencyGraph(String fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * The method loads a graph. If the file does not exist, cannot be read or
+	 * has been written with another fingerprint, an empty graph is returned.
+	 *
+	 * @param file the graph file
+	 * @param fingerprint the fingerprint of the plug-in and its configuration,
+	 *        null to accept any fingerprint, e.g. if only the dependencies are
+	 *        used (the recorded issues depend on the fingerprint)
+	 * @return the graph
+	 */
+	public static DependencyGraph load(File file, String fingerprint) {
+		DependencyGraph graph = new DependencyGraph(fingerprint == null ? "" : fingerprint);
+		if (!file.isFile()) {
+			return graph;
+		}
+
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (in.readInt() != FORMAT_VERSION) {
+				LOG.info("The dependency graph " + file + " is not used, the format has changed");
+				return graph;
+			}
+			String graphFingerprint = in.readUTF();
+			if (fingerprint == null) {
+				graph = new DependencyGraph(graphFingerprint);
+			} else if (!fingerprint.equals(graphFingerprint)) {
+				LOG.info("The dependency graph " + file + " is not used, the fingerprint has changed");
+				return graph;
+			}
+			for (int i = in.readInt(); i > 0; i--) {
+				String fileName = in.readUTF();
+				String hash = in.readUTF();
+				Set<String> dependencies = new LinkedHashSet<String>();
+				for (int j = in.readInt(); j > 0; j--) {
+					dependencies.add(in.readUTF());
+				}
+				List<Issue> issues = new ArrayList<Issue>();
+				for (int j = in.readInt(); j > 0; j--) {
+					issues.add(new Issue(in.readUTF(), in.readUTF(), in.readInt()));
+				}
+				graph.put(fileName, hash, dependencies, issues);
+			}
+			for (int i = in.readInt(); i > 0; i--) {
+				graph.fileHashes.put(in.readUTF(), in.readUTF());
+			}
+			return graph;
+		} catch (IOException e) {
+			LOG.warn("The dependency graph " + file + " cannot be read: " + e.getMessage());
+			return new DependencyGraph(fingerprint == null ? "" : fingerprint);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	/**
+	 * The method writes the graph. The graph is written to a temporary file
+	 * first, so a reader never sees a partial graph.
+	 *
+	 * @param file the graph file
+	 * @throws IOException if the graph cannot be written
+	 */
+	public void save(File file) throws IOException {
+		FileUtils.forceMkdir(file.getAbsoluteFile().getParentFile());
+		File tmp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(fingerprint);
+			out.writeInt(entries.size());
+			for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeUTF(entry.getValue().hash);
+				out.writeInt(entry.getValue().dependencies.size());
+				for (String dependency : entry.getValue().dependencies) {
+					out.writeUTF(dependency);
+				}
+				out.writeInt(entry.getValue().issues.size());
+				for (Issue issue : entry.getValue().issues) {
+					out.writeUTF(issue.getRuleKey());
+					out.writeUTF(issue.getMessage());
+					out.writeInt(issue.getLine());
+				}
+			}
+			out.writeInt(fileHashes.size());
+			for (Map.Entry<String, String> fileHash : fileHashes.entrySet()) {
+				out.writeUTF(fileHash.getKey());
+				out.writeUTF(fileHash.getValue());
+			}
+			out.close();
+			out = null;
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			IOUtils.closeQuietly(out);
+			FileUtils.deleteQuietly(tmp);
+		}
+	}
+
+	/**
+	 * The method adds or replaces the entry of an analysed file. The hashes
+	 * of the files of its {@link #FILE} keys have to be added with
+	 * {@link #putFileHash(String, String)}.
+	 *
+	 * @param fileName the name of the file
+	 * @param hash the hash of the file content
+	 * @param dependencies the keys the file depends on
+	 * @param issues the issues reported on the file
+	 */
+	public void put(String fileName, String hash, Set<String> dependencies, List<Issue> issues) {
+		entries.put(fileName, new Entry(hash, Collections.unmodifiableSet(new LinkedHashSet<String>(dependencies)),
+				Collections.unmodifiableList(new ArrayList<Issue>(issues))));
+	}
+
+	/**
+	 * The method removes the entry of a file, e.g. of a deleted file.
+	 *
+	 * @param fileName the name of the file
+	 */
+	public void remove(String fileName) {
+		entries.remove(fileName);
+	}
+
+	/**
+	 * The method records the hash of a file of a {@link #FILE} key.
+	 *
+	 * @param fileName the name of the file
+	 * @param hash the hash of the file content, empty if the file does not exist
+	 */
+	public void putFileHash(String fileName, String hash) {
+		fileHashes.put(fileName, hash);
+	}
+
+	/**
+	 * @return the names of the analysed files in ascending order
+	 */
+	public Set<String> getFiles() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	/**
+	 * @param fileName the name of the file
+	 * @return true if the graph contains an entry of the analysed file
+	 */
+	public boolean contains(String fileName) {
+		return entries.containsKey(fileName);
+	}
+
+	/**
+	 * @param fileName the name of the analysed file
+	 * @return the hash of the file content, null if the file is not in the graph
+	 */
+	public String getHash(String fileName) {
+		Entry entry = entries.get(fileName);
+		return entry == null ? null : entry.hash;
+	}
+
+	/**
+	 * @param fileName the name of the analysed file
+	 * @return the keys the file depends on, an empty set if the file is not in the graph
+	 */
+	public Set<String> getDependencies(String fileName) {
+		Entry entry = entries.get(fileName);
+		return entry == null ? Collections.<String>emptySet() : entry.dependencies;
+	}
+
+	/**
+	 * @param fileName the name of the analysed file
+	 * @return the issues reported on the file, an empty list if the file is not in the graph
+	 */
+	public List<Issue> getIssues(String fileName) {
+		Entry entry = entries.get(fileName);
+		return entry == null ? Collections.<Issue>emptyList() : entry.issues;
+	}
+
+	/**
+	 * @return the hashes of the files of the {@link #FILE} keys by file name
+	 */
+	public Map<String, String> getFileHashes() {
+		return Collections.unmodifiableMap(fileHashes);
+	}
+
+	/**
+	 * The method returns the files that have to be analysed again. These are
+	 * <ul>
+	 * <li>the changed (or removed) files,</li>
+	 * <li>the sub flows referenced by a changed file before or after the
+	 * change, as the references decide whether a sub flow is used,</li>
+	 * <li>the files depending on a changed key, e.g. the flows referencing a
+	 * changed sub flow or ESQL file, transitively,</li>
+	 * <li>all files sharing a {@link #MODULE} key with one of these files.</li>
+	 * </ul>
+	 * The dependencies of a changed file are the ones recorded in the graph
+	 * and the current ones.
+	 *
+	 * @param changedFiles the names of the changed, added and removed files
+	 * @param currentDependencies the current dependencies of the changed files by file name
+	 * @param changedKeys the keys provided by changed files that are not analysed
+	 *        themselves, e.g. ESQL files
+	 * @return the names of the affected files, including the changed files
+	 */
+	public Set<String> getAffectedFiles(Set<String> changedFiles, Map<String, Set<String>> currentDependencies,
+			Set<String> changedKeys) {
+		Map<String, Set<String>> dependencies = new HashMap<String, Set<String>>();
+		for (String fileName : entries.keySet()) {
+			dependencies.put(fileName, new LinkedHashSet<String>(getDependencies(fileName)));
+		}
+		for (Map.Entry<String, Set<String>> entry : currentDependencies.entrySet()) {
+			Set<String> keys = dependencies.get(entry.getKey());
+			if (keys == null) {
+				keys = new LinkedHashSet<String>();
+				dependencies.put(entry.getKey(), keys);
+			}
+			keys.addAll(entry.getValue());
+		}
+
+		Map<String, Set<String>> dependents = new HashMap<String, Set<String>>();
+		Map<String, Set<String>> providers = new HashMap<String, Set<String>>();
+		for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+			for (String key : entry.getValue()) {
+				addTo(dependents, key, entry.getKey());
+			}
+			for (String key : getProvidedKeys(entry.getKey())) {
+				addTo(providers, key, entry.getKey());
+			}
+		}
+
+		Set<String> affected = new TreeSet<String>(changedFiles);
+		Deque<String> keys = new ArrayDeque<String>(changedKeys);
+		for (String fileName : changedFiles) {
+			keys.addAll(getProvidedKeys(fileName));
+			for (String key : get(dependencies, fileName)) {
+				if (key.startsWith(SUBFLOW)) {
+					affected.addAll(get(providers, key));
+				}
+			}
+		}
+
+		// the dependents of the changed keys, transitively
+		Set<String> visitedKeys = new LinkedHashSet<String>();
+		while (!keys.isEmpty()) {
+			String key = keys.poll();
+			if (!visitedKeys.add(key)) {
+				continue;
+			}
+			for (String fileName : get(dependents, key)) {
+				if (affected.add(fileName)) {
+					keys.addAll(getProvidedKeys(fileName));
+				}
+			}
+		}
+
+		// the files sharing a Compute module with an affected file
+		Deque<String> files = new ArrayDeque<String>(affected);
+		while (!files.isEmpty()) {
+			for (String key : get(dependencies, files.poll())) {
+				if (key.startsWith(MODULE)) {
+					for (String fileName : get(dependents, key)) {
+						if (affected.add(fileName)) {
+							files.add(fileName);
+						}
+					}
+				}
+			}
+		}
+		return affected;
+	}
+
+	/**
+	 * The method returns the keys provided by a file: the {@link #FILE} key
+	 * of its path and the {@link #SUBFLOW} keys of the types of a sub flow.
+	 *
+	 * @param fileName the name of the file
+	 * @return the keys provided by the file
+	 */
+	public static Set<String> getProvidedKeys(String fileName) {
+		Set<String> keys = new LinkedHashSet<String>();
+		keys.add(FILE + fileName);
+		if (fileName.endsWith(".subflow")) {
+			for (String type : SubflowIndex.getTypes(fileName)) {
+				keys.add(SUBFLOW + type);
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * The method returns the keys a message flow depends on: the referenced
+	 * sub flow types, the ESQL modules of the Compute, Filter and Database
+	 * nodes and their ESQL files as well as the pom.xml of the project.
+	 *
+	 * @param project the models of the project
+	 * @param fileName the absolute path of the message flow
+	 * @return the keys of the dependencies
+	 */
+	public static Set<String> getDependencies(MessageFlowProject project, String fileName) {
+		MessageFlow messageFlow = project.getMessageFlow(fileName);
+		Set<String> dependencies = new LinkedHashSet<String>();
+
+		for (String type : project.getSubflowIndex().getReferencedTypes(fileName)) {
+			dependencies.add(SUBFLOW + type);
+		}
+		for (MessageFlowNode node : messageFlow.getComputeNodes()) {
+			String module = (String) node.getProperties().get("computeExpression");
+			if (module != null) {
+				dependencies.add(MODULE + module);
+			}
+			addRoutine(project.getEsqlModuleIndex(), (String) node.getProperties().get("computeExpressionFull"), dependencies);
+		}
+		for (MessageFlowNode node : messageFlow.getFilterNodes()) {
+			addRoutine(project.getEsqlModuleIndex(), (String) node.getProperties().get("filterExpressionFull"), dependencies);
+		}
+		for (MessageFlowNode node : messageFlow.getDatabaseNodes()) {
+			addRoutine(project.getEsqlModuleIndex(), (String) node.getProperties().get("statementFull"), dependencies);
+		}
+
+		File projectDirectory = PomObject.getProjectDirectory(new File(fileName));
+		if (projectDirectory != null) {
+			dependencies.add(FILE + new File(projectDirectory, "pom.xml").getAbsolutePath());
+		}
+		return dependencies;
+	}
+
+	/**
+	 * The method returns the {@link #ROUTINE} key of an ESQL module.
+	 *
+	 * @param schema the broker schema, empty for the default schema
+	 * @param name the name of the module
+	 * @return the key, e.g. 'esql:com.exxeta#MYFLOW_COMPUTE'
+	 */
+	public static String getRoutineKey(String schema, String name) {
+		return ROUTINE + schema + "#" + name.toUpperCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * The method returns the hash of the content of a file.
+	 *
+	 * @param fileName the name of the file
+	 * @return the hash, empty if the file does not exist or cannot be read
+	 */
+	public static String hash(String fileName) {
+		File file = new File(fileName);
+		if (!file.isFile()) {
+			return "";
+		}
+		try {
+			return Hashing.sha256().hashBytes(Files.readAllBytes(file.toPath())).toString();
+		} catch (IOException e) {
+			LOG.debug("Cannot hash " + fileName, e);
+			return "";
+		}
+	}
+
+	private static void addRoutine(EsqlModuleIndex index, String routine, Set<String> dependencies) {
+		if (routine == null || routine.isEmpty()) {
+			return;
+		}
+		dependencies.add(getRoutineKey(EsqlModuleIndex.getSchema(routine), EsqlModuleIndex.getModuleName(routine)));
+		for (EsqlModule module : index.resolve(routine)) {
+			dependencies.add(FILE + new File(module.getFileName()).getAbsolutePath());
+		}
+	}
+
+	private static void addTo(Map<String, Set<String>> map, String key, String value) {
+		Set<String> values = map.get(key);
+		if (values == null) {
+			values = new LinkedHashSet<String>();
+			map.put(key, values);
+		}
+		values.add(value);
+	}
+
+	private static Set<String> get(Map<String, Set<String>> map, String key) {
+		Set<String> values = map.get(key);
+		return values == null ? Collections.<String>emptySet() : values;
+	}
+}
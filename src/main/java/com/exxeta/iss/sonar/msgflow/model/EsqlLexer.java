@@ -0,0 +1,263 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+/**
+ * The class is a streaming lexer for ESQL. It walks over the source once and
+ * skips white space, line comments ('--') and comment blocks ('/* ... *&#47;'),
+ * also if they start in the middle of a line. The current token is only
+ * described by its type and position, the text of a token is just copied if
+ * it is requested by {@link #getText()}, keywords are compared in place.
+ *
+ * Lines and columns start with 1.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class EsqlLexer {
+
+	/**
+	 * The token types of the lexer.
+	 */
+	public enum TokenType {
+		/** a keyword or an identifier, e.g. 'SELECT' or 'OutputRoot' */
+		IDENTIFIER,
+		/** an identifier in double quotes */
+		QUOTED_IDENTIFIER,
+		/** a string literal in single quotes */
+		STRING,
+		/** a number literal */
+		NUMBER,
+		/** an operator or a separator, e.g. ';', '=' or '&lt;&gt;' */
+		PUNCTUATOR,
+		/** the end of the source */
+		EOF
+	}
+
+	/**
+	 * the ESQL source
+	 */
+	private final String source;
+
+	/**
+	 * the current position in the source
+	 */
+	private int position;
+
+	/**
+	 * the current line
+	 */
+	private int line = 1;
+
+	/**
+	 * the position of the first character of the current line
+	 */
+	private int lineStart;
+
+	/**
+	 * the type of the current token
+	 */
+	private TokenType type;
+
+	/**
+	 * the start position of the current token
+	 */
+	private int tokenStart;
+
+	/**
+	 * the end position (exclusive) of the current token
+	 */
+	private int tokenEnd;
+
+	/**
+	 * the line of the current token
+	 */
+	private int tokenLine;
+
+	/**
+	 * the column of the current token
+	 */
+	private int tokenColumn;
+
+	/**
+	 * Constructor
+	 *
+	 * @param source the ESQL source
+	 */
+	public EsqlLexer(String source) {
+		this.source = source;
+	}
+
+	/**
+	 * The method moves to the next token.
+	 *
+	 * @return the type of the token, {@link TokenType#EOF} at the end of the source
+	 */
+	public TokenType next() {
+		skipWhitespaceAndComments();
+		tokenStart = position;
+		tokenLine = line;
+		tokenColumn = position - lineStart + 1;
+
+		if (position >= source.length()) {
+			type = TokenType.EOF;
+		} else {
+			char c = source.charAt(position);
+			if (Character.isLetter(c) || c == '_') {
+				position++;
+				while (position < source.length() && isIdentifierPart(source.charAt(position))) {
+					position++;
+				}
+				type = TokenType.IDENTIFIER;
+			} else if (Character.isDigit(c)) {
+				position++;
+				while (position < source.length()
+						&& (isIdentifierPart(source.charAt(position)) || source.charAt(position) == '.')) {
+					position++;
+				}
+				type = TokenType.NUMBER;
+			} else if (c == '\'') {
+				skipQuoted('\'');
+				type = TokenType.STRING;
+			} else if (c == '"') {
+				skipQuoted('"');
+				type = TokenType.QUOTED_IDENTIFIER;
+			} else {
+				position++;
+				if (position < source.length() && isDoubleCharOperator(c, source.charAt(position))) {
+					position++;
+				}
+				type = TokenType.PUNCTUATOR;
+			}
+		}
+		tokenEnd = position;
+		return type;
+	}
+
+	/**
+	 * @return the type of the current token
+	 */
+	public TokenType getType() {
+		return type;
+	}
+
+	/**
+	 * @return the line of the current token
+	 */
+	public int getLine() {
+		return tokenLine;
+	}
+
+	/**
+	 * @return the column of the current token
+	 */
+	public int getColumn() {
+		return tokenColumn;
+	}
+
+	/**
+	 * The method returns the text of the current token. The quotes of
+	 * string literals and quoted identifiers are kept.
+	 *
+	 * @return the text of the current token
+	 */
+	public String getText() {
+		return source.substring(tokenStart, tokenEnd);
+	}
+
+	/**
+	 * The method checks whether the current token is the given keyword or
+	 * identifier. The case is ignored.
+	 *
+	 * @param word the keyword, e.g. 'SELECT'
+	 * @return true if the current token is an identifier equal to the word
+	 */
+	public boolean is(String word) {
+		return type == TokenType.IDENTIFIER && tokenEnd - tokenStart == word.length()
+				&& source.regionMatches(true, tokenStart, word, 0, word.length());
+	}
+
+	/**
+	 * The method checks whether the current token is the given punctuator.
+	 *
+	 * @param punctuator the punctuator, e.g. ';'
+	 * @return true if the current token is the punctuator
+	 */
+	public boolean is(char punctuator) {
+		return type == TokenType.PUNCTUATOR && tokenEnd - tokenStart == 1 && source.charAt(tokenStart) == punctuator;
+	}
+
+	private void skipWhitespaceAndComments() {
+		while (position < source.length()) {
+			char c = source.charAt(position);
+			if (c == '-' && position + 1 < source.length() && source.charAt(position + 1) == '-') {
+				while (position < source.length() && source.charAt(position) != '\n' && source.charAt(position) != '\r') {
+					position++;
+				}
+			} else if (c == '/' && position + 1 < source.length() && source.charAt(position + 1) == '*') {
+				position += 2;
+				while (position < source.length()
+						&& !(source.charAt(position) == '*' && position + 1 < source.length() && source.charAt(position + 1) == '/')) {
+					advance();
+				}
+				position = Math.min(position + 2, source.length());
+			} else if (Character.isWhitespace(c)) {
+				advance();
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void skipQuoted(char quote) {
+		position++;
+		while (position < source.length()) {
+			if (source.charAt(position) == quote) {
+				position++;
+				// a doubled quote is an escaped quote
+				if (position >= source.length() || source.charAt(position) != quote) {
+					return;
+				}
+				position++;
+			} else {
+				advance();
+			}
+		}
+	}
+
+	/**
+	 * The method moves one character forward and counts the lines ('\n',
+	 * '\r\n' and '\r').
+	 */
+	private void advance() {
+		char c = source.charAt(position++);
+		if (c == '\n' || (c == '\r' && (position >= source.length() || source.charAt(position) != '\n'))) {
+			line++;
+			lineStart = position;
+		}
+	}
+
+	private static boolean isIdentifierPart(char c) {
+		return Character.isLetterOrDigit(c) || c == '_';
+	}
+
+	private static boolean isDoubleCharOperator(char first, char second) {
+		return (first == '<' && (second == '>' || second == '='))
+				|| (first == '>' && second == '=')
+				|| (first == '|' && second == '|');
+	}
+}
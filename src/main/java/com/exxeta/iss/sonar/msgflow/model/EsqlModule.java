@@ -0,0 +1,167 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The class represents a single ESQL module (CREATE COMPUTE/FILTER/DATABASE
+ * MODULE ... END MODULE;) of an ESQL file together with the database
+ * interactions and procedure calls found by the {@link EsqlModuleParser}.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class EsqlModule {
+
+	/**
+	 * the broker schema of the module, empty for the default schema
+	 */
+	private final String schema;
+
+	/**
+	 * the name of the module
+	 */
+	private final String name;
+
+	/**
+	 * the type of the module, i.e. 'COMPUTE', 'FILTER' or 'DATABASE'
+	 */
+	private final String type;
+
+	/**
+	 * the name of the ESQL file
+	 */
+	private final String fileName;
+
+	/**
+	 * the line of the CREATE statement
+	 */
+	private final int startLine;
+
+	/**
+	 * the line of the END MODULE statement
+	 */
+	private final int endLine;
+
+	/**
+	 * the line of the first database interaction, 0 if there is none
+	 */
+	private final int databaseCallLine;
+
+	/**
+	 * the procedures called by the module
+	 */
+	private final List<String> calledProcedures;
+
+	/**
+	 * Constructor
+	 *
+	 * @param schema the broker schema of the module
+	 * @param name the name of the module
+	 * @param type the type of the module
+	 * @param fileName the name of the ESQL file
+	 * @param startLine the line of the CREATE statement
+	 * @param endLine the line of the END MODULE statement
+	 * @param databaseCallLine the line of the first database interaction, 0 if there is none
+	 * @param calledProcedures the procedures called by the module (in upper case)
+	 */
+	public EsqlModule(String schema, String name, String type, String fileName, int startLine, int endLine,
+			int databaseCallLine, List<String> calledProcedures) {
+		this.schema = schema;
+		this.name = name;
+		this.type = type;
+		this.fileName = fileName;
+		this.startLine = startLine;
+		this.endLine = endLine;
+		this.databaseCallLine = databaseCallLine;
+		this.calledProcedures = Collections.unmodifiableList(new ArrayList<String>(calledProcedures));
+	}
+
+	/**
+	 * @return the broker schema of the module, empty for the default schema
+	 */
+	public String getSchema() {
+		return schema;
+	}
+
+	/**
+	 * @return the name of the module
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the type of the module, i.e. 'COMPUTE', 'FILTER' or 'DATABASE'
+	 */
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * @return the name of the ESQL file
+	 */
+	public String getFileName() {
+		return fileName;
+	}
+
+	/**
+	 * @return the line of the CREATE statement
+	 */
+	public int getStartLine() {
+		return startLine;
+	}
+
+	/**
+	 * @return the line of the END MODULE statement
+	 */
+	public int getEndLine() {
+		return endLine;
+	}
+
+	/**
+	 * The method checks whether the module contains a SELECT, UPDATE, DELETE,
+	 * INSERT or PASSTHRU statement.
+	 *
+	 * @return true if the module interacts with a database
+	 */
+	public boolean hasDatabaseCall() {
+		return databaseCallLine > 0;
+	}
+
+	/**
+	 * @return the line of the first database interaction, 0 if there is none
+	 */
+	public int getDatabaseCallLine() {
+		return databaseCallLine;
+	}
+
+	/**
+	 * @return the names of the procedures called by the module (in upper case)
+	 */
+	public List<String> getCalledProcedures() {
+		return calledProcedures;
+	}
+
+	@Override
+	public String toString() {
+		return type + " MODULE " + (schema.isEmpty() ? "" : schema + ".") + name + " (" + fileName + ":" + startLine + "-" + endLine + ")";
+	}
+}
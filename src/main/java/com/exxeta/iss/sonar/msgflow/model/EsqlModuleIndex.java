@@ -0,0 +1,218 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The class is the project wide index of the ESQL modules. The modules are
+ * looked up by broker schema and module name, the way they are referenced
+ * by the routine expressions of the Compute, Filter and Database nodes,
+ * e.g. 'esql://routine/com.exxeta#MyFlow_Compute.Main'.
+ *
+ * Every ESQL file is read at most once. Files can be added concurrently.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class EsqlModuleIndex {
+
+	/**
+	 * the prefix of a routine expression
+	 */
+	private static final String ROUTINE_PREFIX = "esql://routine/";
+
+	/**
+	 * the parser for the ESQL files
+	 */
+	private final EsqlModuleParser parser;
+
+	/**
+	 * the modules by schema and upper case module name
+	 */
+	private final ConcurrentMap<String, List<EsqlModule>> modules = new ConcurrentHashMap<String, List<EsqlModule>>();
+
+	/**
+	 * the absolute paths of the indexed files and directories
+	 */
+	private final Set<String> indexed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/**
+	 * Constructor
+	 *
+	 * @param parser the parser for the ESQL files
+	 */
+	public EsqlModuleIndex(EsqlModuleParser parser) {
+		this.parser = parser;
+	}
+
+	/**
+	 * The method adds the modules of an ESQL file to the index. A file that
+	 * is already indexed is skipped.
+	 *
+	 * @param fileName the name of the ESQL file
+	 */
+	public void add(String fileName) {
+		if (!indexed.add(new File(fileName).getAbsolutePath())) {
+			return;
+		}
+		for (EsqlModule module : parser.parse(fileName)) {
+			List<EsqlModule> list = modules.get(key(module.getSchema(), module.getName()));
+			if (list == null) {
+				List<EsqlModule> newList = new CopyOnWriteArrayList<EsqlModule>();
+				list = modules.putIfAbsent(key(module.getSchema(), module.getName()), newList);
+				if (list == null) {
+					list = newList;
+				}
+			}
+			list.add(module);
+		}
+	}
+
+	/**
+	 * The method removes the modules of an ESQL file from the index, e.g.
+	 * because the file has changed. The file is read again when it is added
+	 * the next time.
+	 *
+	 * @param fileName the name of the ESQL file
+	 * @return the removed modules
+	 */
+	public List<EsqlModule> remove(String fileName) {
+		String path = new File(fileName).getAbsolutePath();
+		indexed.remove(path);
+		List<EsqlModule> removed = getFileModules(fileName);
+		for (List<EsqlModule> list : modules.values()) {
+			list.removeAll(removed);
+		}
+		return removed;
+	}
+
+	/**
+	 * The method returns the indexed modules of an ESQL file.
+	 *
+	 * @param fileName the name of the ESQL file
+	 * @return the modules in the order of the index
+	 */
+	public List<EsqlModule> getFileModules(String fileName) {
+		String path = new File(fileName).getAbsolutePath();
+		List<EsqlModule> fileModules = new ArrayList<EsqlModule>();
+		for (List<EsqlModule> list : modules.values()) {
+			for (EsqlModule module : list) {
+				if (path.equals(new File(module.getFileName()).getAbsolutePath())) {
+					fileModules.add(module);
+				}
+			}
+		}
+		return fileModules;
+	}
+
+	/**
+	 * The method adds all ESQL files of a directory (not recursively) to the
+	 * index. It is used for ESQL files that are not part of the analysed
+	 * sources, a directory is just listed once.
+	 *
+	 * @param directory the directory
+	 */
+	public void addDirectory(File directory) {
+		if (!indexed.add(directory.getAbsolutePath() + File.separator)) {
+			return;
+		}
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			if (file.getName().endsWith(".esql")) {
+				add(file.getPath());
+			}
+		}
+	}
+
+	/**
+	 * The method returns the modules with the given schema and name. Module
+	 * names are compared ignoring case.
+	 *
+	 * @param schema the broker schema, empty for the default schema
+	 * @param name the name of the module
+	 * @return the modules, an empty list if there is no such module
+	 */
+	public List<EsqlModule> getModules(String schema, String name) {
+		List<EsqlModule> list = modules.get(key(schema, name));
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * The method returns the modules referenced by a routine expression,
+	 * e.g. the 'computeExpressionFull' property of a Compute node.
+	 *
+	 * @param routine the routine expression, e.g. 'esql://routine/com.exxeta#MyFlow_Compute.Main'
+	 * @return the modules, an empty list if there is no such module
+	 */
+	public List<EsqlModule> resolve(String routine) {
+		return getModules(getSchema(routine), getModuleName(routine));
+	}
+
+	/**
+	 * @return the number of indexed modules
+	 */
+	public int size() {
+		int size = 0;
+		for (List<EsqlModule> list : modules.values()) {
+			size += list.size();
+		}
+		return size;
+	}
+
+	/**
+	 * The method returns the broker schema of a routine expression.
+	 *
+	 * @param routine the routine expression
+	 * @return the schema, empty for the default schema
+	 */
+	public static String getSchema(String routine) {
+		int start = routine.startsWith(ROUTINE_PREFIX) ? ROUTINE_PREFIX.length() : 0;
+		int end = routine.indexOf('#');
+		return end < start ? "" : routine.substring(start, end);
+	}
+
+	/**
+	 * The method returns the module name of a routine expression.
+	 *
+	 * @param routine the routine expression
+	 * @return the module name
+	 */
+	public static String getModuleName(String routine) {
+		int start = routine.indexOf('#') + 1;
+		int end = routine.indexOf(".Main", start);
+		return routine.substring(start, end < 0 ? routine.length() : end);
+	}
+
+	private static String key(String schema, String name) {
+		return schema + "#" + name.toUpperCase(Locale.ENGLISH);
+	}
+}
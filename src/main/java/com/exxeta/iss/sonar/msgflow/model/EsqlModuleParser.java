@@ -0,0 +1,173 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.exxeta.iss.sonar.msgflow.model.EsqlLexer.TokenType;
+
+/**
+ * The class reads an ESQL file once and returns its modules. The file is
+ * scanned token by token with the {@link EsqlLexer}, so comments and string
+ * literals are never mistaken for code.
+ *
+ * A database interaction is a SELECT, UPDATE, DELETE or INSERT at the start
+ * of a statement or on the right hand side of an assignment, or a PASSTHRU.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class EsqlModuleParser {
+
+	/**
+	 * The logger for the class.
+	 */
+	private static final Logger LOG = LoggerFactory.getLogger(EsqlModuleParser.class);
+
+	/**
+	 * The method parses an ESQL file.
+	 *
+	 * @param fileName the name of the ESQL file
+	 * @return the modules of the file, an empty list if the file cannot be read
+	 */
+	public List<EsqlModule> parse(String fileName) {
+		String source;
+		try {
+			source = new String(ArchiveInput.readAllBytes(fileName), "UTF-8");
+		} catch (IOException e) {
+			LOG.error(e.getMessage());
+			return new ArrayList<EsqlModule>();
+		}
+		return parse(fileName, source);
+	}
+
+	/**
+	 * The method parses the source of an ESQL file.
+	 *
+	 * @param fileName the name of the ESQL file
+	 * @param source the content of the ESQL file
+	 * @return the modules of the file
+	 */
+	public List<EsqlModule> parse(String fileName, String source) {
+		List<EsqlModule> modules = new ArrayList<EsqlModule>();
+		EsqlLexer lexer = new EsqlLexer(source);
+
+		String schema = "";
+		while (lexer.next() != TokenType.EOF) {
+			if (lexer.is("BROKER")) {
+				if (lexer.next() == TokenType.IDENTIFIER && lexer.is("SCHEMA")) {
+					schema = readSchemaName(lexer);
+				}
+			} else if (lexer.is("CREATE")) {
+				int startLine = lexer.getLine();
+				lexer.next();
+				if (lexer.is("COMPUTE") || lexer.is("FILTER") || lexer.is("DATABASE")) {
+					String moduleType = lexer.getText().toUpperCase(Locale.ENGLISH);
+					if (lexer.next() == TokenType.IDENTIFIER && lexer.is("MODULE")
+							&& lexer.next() != TokenType.EOF) {
+						modules.add(readModule(lexer, schema, lexer.getText(), moduleType, fileName, startLine));
+					}
+				}
+			}
+		}
+
+		return modules;
+	}
+
+	/**
+	 * The method reads the dot separated name following BROKER SCHEMA.
+	 */
+	private static String readSchemaName(EsqlLexer lexer) {
+		StringBuilder name = new StringBuilder();
+		while (lexer.next() == TokenType.IDENTIFIER) {
+			name.append(lexer.getText());
+			if (lexer.next() != TokenType.PUNCTUATOR || !lexer.is('.')) {
+				break;
+			}
+			name.append('.');
+		}
+		return name.toString();
+	}
+
+	/**
+	 * The method reads the statements of a module up to END MODULE or the
+	 * end of the file.
+	 */
+	private static EsqlModule readModule(EsqlLexer lexer, String schema, String moduleName, String moduleType,
+			String fileName, int startLine) {
+		int databaseCallLine = 0;
+		List<String> calledProcedures = new ArrayList<String>();
+		int endLine = startLine;
+		// the module name ends the CREATE statement
+		boolean statementStart = true;
+		boolean afterEnd = false;
+
+		while (lexer.next() != TokenType.EOF) {
+			endLine = lexer.getLine();
+			if (afterEnd && lexer.is("MODULE")) {
+				break;
+			}
+			afterEnd = lexer.is("END");
+
+			if (databaseCallLine == 0 && isDatabaseCall(lexer, statementStart)) {
+				databaseCallLine = lexer.getLine();
+			} else if (lexer.is("CALL")) {
+				String procedure = readProcedureName(lexer);
+				if (procedure != null) {
+					calledProcedures.add(procedure);
+				}
+			}
+			statementStart = lexer.is(';') || lexer.is('=') || lexer.is("BEGIN") || lexer.is("ATOMIC")
+					|| lexer.is("THEN") || lexer.is("ELSE") || lexer.is("DO") || lexer.is("LOOP")
+					|| lexer.is("REPEAT");
+		}
+		return new EsqlModule(schema, moduleName, moduleType, fileName, startLine, endLine, databaseCallLine,
+				calledProcedures);
+	}
+
+	private static boolean isDatabaseCall(EsqlLexer lexer, boolean statementStart) {
+		return lexer.is("PASSTHRU") || (statementStart
+				&& (lexer.is("SELECT") || lexer.is("UPDATE") || lexer.is("DELETE") || lexer.is("INSERT")));
+	}
+
+	/**
+	 * The method reads the (qualified) name of a called procedure, the
+	 * current token is CALL.
+	 *
+	 * @return the upper case name or null if CALL is not followed by a name and '('
+	 */
+	private static String readProcedureName(EsqlLexer lexer) {
+		StringBuilder name = new StringBuilder();
+		while (lexer.next() == TokenType.IDENTIFIER) {
+			name.append(lexer.getText().toUpperCase(Locale.ENGLISH));
+			lexer.next();
+			if (lexer.is('(')) {
+				return name.toString();
+			} else if (!lexer.is('.')) {
+				return null;
+			}
+			name.append('.');
+		}
+		return null;
+	}
+}
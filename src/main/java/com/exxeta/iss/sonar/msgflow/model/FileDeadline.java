@@ -0,0 +1,111 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The class is the watchdog of the analysis of a single file. The analysis
+ * (parse and checks) of a file runs under a time budget that is started for
+ * the current thread with {@link #start(String)}. The parsers and the rule
+ * engine call {@link #check()} regularly, e.g. for every XML event or node,
+ * and a {@link FileTimeoutException} cancels the analysis of the file once
+ * the budget is spent. The cancellation is cooperative, no thread is
+ * interrupted.
+ *
+ * Without a timeout ({@link #setTimeout(long)}) the budget is unlimited.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public final class FileDeadline {
+
+	/**
+	 * the time budget of a file in milliseconds, 0 for no limit
+	 */
+	private static volatile long timeoutMillis;
+
+	/**
+	 * the file and the deadline (System.nanoTime) of the current thread
+	 */
+	private static final ThreadLocal<FileDeadline> CURRENT = new ThreadLocal<FileDeadline>();
+
+	private final String fileName;
+
+	private final long budgetMillis;
+
+	private final long deadline;
+
+	private FileDeadline(String fileName, long budgetMillis) {
+		this.fileName = fileName;
+		this.budgetMillis = budgetMillis;
+		this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+	}
+
+	/**
+	 * The method sets the time budget of a file.
+	 *
+	 * @param millis the budget in milliseconds, 0 or less for no limit
+	 */
+	public static void setTimeout(long millis) {
+		timeoutMillis = Math.max(0, millis);
+	}
+
+	/**
+	 * @return the time budget of a file in milliseconds, 0 for no limit
+	 */
+	public static long getTimeout() {
+		return timeoutMillis;
+	}
+
+	/**
+	 * The method starts the budget of a file for the current thread. If a
+	 * budget is already running, e.g. the checks of a file build its model,
+	 * the running budget is kept.
+	 *
+	 * @param fileName the name of the file
+	 * @return true if the budget has been started and must be stopped by the
+	 *         caller, false if a budget is already running or there is no limit
+	 */
+	public static boolean start(String fileName) {
+		long millis = timeoutMillis;
+		if (millis <= 0 || CURRENT.get() != null) {
+			return false;
+		}
+		CURRENT.set(new FileDeadline(fileName, millis));
+		return true;
+	}
+
+	/**
+	 * The method stops the budget of the current thread.
+	 */
+	public static void stop() {
+		CURRENT.remove();
+	}
+
+	/**
+	 * The method checks the budget of the current thread.
+	 *
+	 * @throws FileTimeoutException if the budget is spent
+	 */
+	public static void check() {
+		FileDeadline current = CURRENT.get();
+		if (current != null && System.nanoTime() - current.deadline > 0) {
+			throw new FileTimeoutException(current.fileName, current.budgetMillis);
+		}
+	}
+}
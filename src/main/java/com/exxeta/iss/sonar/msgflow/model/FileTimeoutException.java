@@ -0,0 +1,53 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+/**
+ * The exception is thrown by {@link FileDeadline#check()} if the analysis of
+ * a file exceeds its time budget. It is unchecked, so it passes the parsers
+ * and the checks and cancels the analysis of the file.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class FileTimeoutException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * the name of the file
+	 */
+	private final String fileName;
+
+	/**
+	 * Constructor
+	 *
+	 * @param fileName the name of the file
+	 * @param timeoutMillis the time budget of the file in milliseconds
+	 */
+	public FileTimeoutException(String fileName, long timeoutMillis) {
+		super("The analysis of the file " + fileName + " exceeded the time budget of " + timeoutMillis + " ms");
+		this.fileName = fileName;
+	}
+
+	/**
+	 * @return the name of the file
+	 */
+	public String getFileName() {
+		return fileName;
+	}
+}
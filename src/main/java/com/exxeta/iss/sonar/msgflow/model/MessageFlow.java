@@ -18,6 +18,10 @@
 package com.exxeta.iss.sonar.msgflow.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
 
 /**
  * The class is a model of a message flow model containing a list of 
@@ -33,138 +37,14 @@ public class MessageFlow {
 	//private static final Logger LOG = LoggerFactory.getLogger(MessageFlow.class);
 	
 	/**
-	 * a list of Collector Nodes of a message flow
+	 * the nodes of a message flow by kind, there is a list for every kind
 	 */
-	private ArrayList<MessageFlowNode> collectorNodes;
+	private EnumMap<NodeKind, ArrayList<MessageFlowNode>> nodesByKind;
 	
 	/**
-	 * a list of Compute Nodes of a message flow
+	 * all nodes of a message flow, ordered by kind
 	 */
-	private ArrayList<MessageFlowNode> computeNodes;
-
-	/**
-	 * a list of File Input Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> fileInputNodes;
-	
-	/**
-	 * a list of File Output Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> fileOutputNodes;
-	
-	/**
-	 * a list of Http Input Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> httpInputNodes;
-	
-	/**
-	 * a list of Http Request Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> httpRequestNodes;
-	
-	/**
-	 * a list of Http Reply Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> httpReplyNodes;
-	
-	/**
-	 * a list of MQ Input Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> mqInputNodes;
-	
-	/**
-	 * a list of MQ Output Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> mqOutputNodes;
-
-	/**
-	 * a list of MQ Get Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> mqGetNodes;
-
-	/**
-	 * a list of MQ Header Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> mqHeaderNodes;
-	
-	/**
-	 * a list of MQ Reply Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> mqReplyNodes;
-	
-	/**
-	 * a list of Reset Content Descriptor Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> resetContentDescriptorNodes;
-	
-	/**
-	 * a list of Soap Input Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> soapInputNodes;
-	
-	/**
-	 * a list of Soap Request Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> soapRequestNodes;
-	
-	/**
-	 * a list of Timeout Control Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> timeoutControlNodes;
-	
-	/**
-	 * a list of Timeout Notification Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> timeoutNotificationNodes;
-	
-	/**
-	 * a list of Try Catch Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> tryCatchNodes;
-	
-	/**
-	 * a list of IMS Request Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> imsRequestNodes;
-	
-	/**
-	 * a list of Filter Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> filterNodes;
-	
-	/**
-	 * a list of trace Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> traceNodes;
-	
-	/**
-	 * a list of label Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> labelNodes;
-	
-	/**
-	 * a list of routeToLabel Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> routeToLabelNodes;
-	
-	/**
-	 * a list of aggregateControl Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> aggregateControlNodes;
-	
-	/**
-	 * a list of Database Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> databaseNodes;
-	
-	/**
-	 * a list of Route Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> routeNodes;
-	/**
-	 * a list of miscellaneous Nodes of a message flow
-	 */
-	private ArrayList<MessageFlowNode> miscellaneousNodes;
+	private MessageFlowNode[] nodes;
 	
 	/**
 	 * a list of Connections of a message flow
@@ -183,6 +63,10 @@ public class MessageFlow {
 	 * a long description of a message flow
 	 */
 	private StringBuilder longDescription;
+	/**
+	 * the graph of the nodes and connections of a message flow
+	 */
+	private MessageFlowGraph graph;
 	
 
 	/**
@@ -192,70 +76,46 @@ public class MessageFlow {
 	 */
 	public MessageFlow(String file,
 					   MessageFlowParser messageFlowParser) {
-		collectorNodes				= new ArrayList<MessageFlowNode>();
-		computeNodes				= new ArrayList<MessageFlowNode>();
-		fileInputNodes				= new ArrayList<MessageFlowNode>();
-		fileOutputNodes				= new ArrayList<MessageFlowNode>();
-		httpInputNodes				= new ArrayList<MessageFlowNode>();
-		httpRequestNodes			= new ArrayList<MessageFlowNode>();
-		httpReplyNodes				= new ArrayList<MessageFlowNode>();
-		mqInputNodes				= new ArrayList<MessageFlowNode>();
-		mqOutputNodes				= new ArrayList<MessageFlowNode>();
-		mqGetNodes					= new ArrayList<MessageFlowNode>();
-		mqHeaderNodes				= new ArrayList<MessageFlowNode>();
-		mqReplyNodes				= new ArrayList<MessageFlowNode>();
-		resetContentDescriptorNodes	= new ArrayList<MessageFlowNode>();
-		soapInputNodes				= new ArrayList<MessageFlowNode>();
-		soapRequestNodes			= new ArrayList<MessageFlowNode>();
-		timeoutControlNodes			= new ArrayList<MessageFlowNode>();
-		timeoutNotificationNodes	= new ArrayList<MessageFlowNode>();
-		tryCatchNodes				= new ArrayList<MessageFlowNode>();
-		imsRequestNodes				= new ArrayList<MessageFlowNode>();
-		filterNodes					= new ArrayList<MessageFlowNode>();
-		traceNodes					= new ArrayList<MessageFlowNode>();
-		labelNodes					= new ArrayList<MessageFlowNode>();
-		routeToLabelNodes			= new ArrayList<MessageFlowNode>();
-		aggregateControlNodes		= new ArrayList<MessageFlowNode>();
-		databaseNodes				= new ArrayList<MessageFlowNode>();
-		routeNodes					= new ArrayList<MessageFlowNode>();
-		miscellaneousNodes			= new ArrayList<MessageFlowNode>();
+		nodesByKind					= new EnumMap<NodeKind, ArrayList<MessageFlowNode>>(NodeKind.class);
+		for (NodeKind kind : NodeKind.values()) {
+			nodesByKind.put(kind, new ArrayList<MessageFlowNode>());
+		}
 		connections					= new ArrayList<MessageFlowConnection>();
 		comments					= new ArrayList<MessageFlowCommentNote>();
 		shortDescription			= new StringBuilder("");
 		longDescription				= new StringBuilder("");
 		messageFlowParser.parse(file,
-								collectorNodes,
-								computeNodes,
-								fileInputNodes,
-								fileOutputNodes,
-								httpInputNodes,
-								httpRequestNodes,
-								httpReplyNodes,
-								mqInputNodes,
-								mqOutputNodes,
-								mqGetNodes,
-								mqHeaderNodes,
-								mqReplyNodes,
-								resetContentDescriptorNodes,
-								soapInputNodes,
-								soapRequestNodes,
-								timeoutControlNodes,
-								timeoutNotificationNodes,
-								tryCatchNodes,
-								imsRequestNodes,
-								filterNodes,
-								traceNodes,
-								labelNodes,
-								routeToLabelNodes,
-								aggregateControlNodes,
-								databaseNodes,
-								routeNodes,
-								miscellaneousNodes,
+								nodesByKind,
 								connections,
 								comments,
 								shortDescription,
 								longDescription);
-
+		
+		List<MessageFlowNode> allNodes = new ArrayList<MessageFlowNode>();
+		for (ArrayList<MessageFlowNode> kindNodes : nodesByKind.values()) {
+			allNodes.addAll(kindNodes);
+		}
+		nodes = allNodes.toArray(new MessageFlowNode[allNodes.size()]);
+		graph = new MessageFlowGraph(getNodes(), connections);
+	}
+	
+	/**
+	 * The method returns all nodes of a Message Flow, ordered by kind.
+	 * 
+	 * @return a read-only list of all nodes of the message flow
+	 */
+	public List<MessageFlowNode> getNodes() {
+		return Collections.unmodifiableList(Arrays.asList(nodes));
+	}
+	
+	/**
+	 * The method returns the nodes of a kind of Message Flow.
+	 * 
+	 * @param kind the kind of the nodes
+	 * @return a list of the nodes of the given kind
+	 */
+	public ArrayList<MessageFlowNode> getNodes(NodeKind kind) {
+		return nodesByKind.get(kind);
 	}
 	
 	/**
@@ -264,7 +124,7 @@ public class MessageFlow {
 	 * @return a list of the Collector Nodes of Message Flow
 	 */
 	public ArrayList<MessageFlowNode> getCollectorNodes() {
-		return collectorNodes;
+		return nodesByKind.get(NodeKind.COLLECTOR);
 	}
 
 	/**
@@ -273,7 +133,7 @@ public class MessageFlow {
 	 * @return a list of the Compute Nodes of Message Flow
 	 */
 	public ArrayList<MessageFlowNode> getComputeNodes() {
-		return computeNodes;
+		return nodesByKind.get(NodeKind.COMPUTE);
 	}
 
 	/**
@@ -282,7 +142,7 @@ public class MessageFlow {
 	 * @return a list of the File Input Nodes of Message Flow
 	 */
 	public ArrayList<MessageFlowNode> getFileInputNodes() {
-		return fileInputNodes;
+		return nodesByKind.get(NodeKind.FILE_INPUT);
 	}
 
 	/**
@@ -291,7 +151,7 @@ public class MessageFlow {
 	 * @return a list of the File Output Nodes of Message Flow
 	 */
 	public ArrayList<MessageFlowNode> getFileOutputNodes() {
-		return fileOutputNodes;
+		return nodesByKind.get(NodeKind.FILE_OUTPUT);
 	}
 
 	/**
@@ -300,7 +160,7 @@ public class MessageFlow {
 	 * @return a list of the Http Input Nodes of Message Flow
 	 */
 	public ArrayList<MessageFlowNode> getHttpInputNodes() {
-		return httpInputNodes;
+		return nodesByKind.get(NodeKind.HTTP_INPUT);
 	}
 
 	/**
@@ -309,7 +169,7 @@ public class MessageFlow {
 	 * @return a list of the Http Request Nodes of Message Flow
 	 */
 	public ArrayList<MessageFlowNode> getHttpRequestNodes() {
-		return httpRequestNodes;
+		return nodesByKind.get(NodeKind.HTTP_REQUEST);
 	}
 
 	/**
@@ -318,7 +178,7 @@ public class MessageFlow {
 	 * @return the httpReplyNodes
 	 */
 	public ArrayList<MessageFlowNode> getHttpReplyNodes() {
-		return httpReplyNodes;
+		return nodesByKind.get(NodeKind.HTTP_REPLY);
 	}
 
 	/**
@@ -327,7 +187,7 @@ public class MessageFlow {
 	 * @return a list of the MQ Input Nodes of Message Flow
 	 */
 	public ArrayList<MessageFlowNode> getMqInputNodes() {
-		return mqInputNodes;
+		return nodesByKind.get(NodeKind.MQ_INPUT);
 	}
 
 	/**
@@ -336,7 +196,7 @@ public class MessageFlow {
 	 * @return a list of the MQ Output Nodes of Message Flow
 	 */
 	public ArrayList<MessageFlowNode> getMqOutputNodes() {
-		return mqOutputNodes;
+		return nodesByKind.get(NodeKind.MQ_OUTPUT);
 	}
 
 	/**
@@ -345,7 +205,7 @@ public class MessageFlow {
 	 * @return a list of the MQGet Nodes of Message Flow
 	 */
 	public ArrayList<MessageFlowNode> getMqGetNodes() {
-		return mqGetNodes;
+		return nodesByKind.get(NodeKind.MQ_GET);
 	}
 
 	/**
@@ -354,7 +214,7 @@ public class MessageFlow {
 	 * @return a list of the MQHeader Nodes of Message Flow
 	 */
 	public ArrayList<MessageFlowNode> getMqHeaderNodes() {
-		return mqHeaderNodes;
+		return nodesByKind.get(NodeKind.MQ_HEADER);
 	}
 
 	/**
@@ -363,7 +223,7 @@ public class MessageFlow {
 	 * @return the mqReplyNodes
 	 */
 	public ArrayList<MessageFlowNode> getMqReplyNodes() {
-		return mqReplyNodes;
+		return nodesByKind.get(NodeKind.MQ_REPLY);
 	}
 
 	/**
@@ -372,7 +232,7 @@ public class MessageFlow {
 	 * @return a list of the Reset Content Descriptor Nodes of Message Flow
 	 */
 	public ArrayList<MessageFlowNode> getResetContentDescriptorNodes() {
-		return resetContentDescriptorNodes;
+		return nodesByKind.get(NodeKind.RESET_CONTENT_DESCRIPTOR);
 	}
 	
 	/**
@@ -381,7 +241,7 @@ public class MessageFlow {
 	 * @return a list of the Soap Input Nodes of Message Flow
 	 */
 	public ArrayList<MessageFlowNode> getSoapInputNodes() {
-		return soapInputNodes;
+		return nodesByKind.get(NodeKind.SOAP_INPUT);
 	}
 
 	/**
@@ -390,7 +250,7 @@ public class MessageFlow {
 	 * @return a list of the Soap Request Nodes of Message Flow
 	 */
 	public ArrayList<MessageFlowNode> getSoapRequestNodes() {
-		return soapRequestNodes;
+		return nodesByKind.get(NodeKind.SOAP_REQUEST);
 	}
 
 	/**
@@ -399,7 +259,7 @@ public class MessageFlow {
 	 * @return a list of the Timeout Control Nodes of Message Flow
 	 */
 	public ArrayList<MessageFlowNode> getTimeoutControlNodes() {
-		return timeoutControlNodes;
+		return nodesByKind.get(NodeKind.TIMEOUT_CONTROL);
 	}
 
 	/**
@@ -408,7 +268,7 @@ public class MessageFlow {
 	 * @return a list of the Timeout Notification Nodes of Message Flow
 	 */
 	public ArrayList<MessageFlowNode> getTimeoutNotificationNodes() {
-		return timeoutNotificationNodes;
+		return nodesByKind.get(NodeKind.TIMEOUT_NOTIFICATION);
 	}
 	
 	/**
@@ -417,7 +277,7 @@ public class MessageFlow {
 	 * @return a list of the Try Catch Nodes of Message Flow
 	 */
 	public ArrayList<MessageFlowNode> getTryCatchNodes() {
-		return tryCatchNodes;
+		return nodesByKind.get(NodeKind.TRY_CATCH);
 	}
 	
 	/**
@@ -426,7 +286,7 @@ public class MessageFlow {
 	 * @return a list of the IMS Request Nodes of Message Flow
 	 */
 	public ArrayList<MessageFlowNode> getImsRequestNodes() {
-		return imsRequestNodes;
+		return nodesByKind.get(NodeKind.IMS_REQUEST);
 	}
 
 	/**
@@ -435,7 +295,7 @@ public class MessageFlow {
 	 * @return a list of the filter Nodes of Message Flow
 	 */
 	public ArrayList<MessageFlowNode> getFilterNodes() {
-		return filterNodes;
+		return nodesByKind.get(NodeKind.FILTER);
 	}
 
 	/**
@@ -444,7 +304,7 @@ public class MessageFlow {
 	 * @return a list of trace Nodes of Message Flow
 	 */
 	public ArrayList<MessageFlowNode> getTraceNodes() {
-		return traceNodes;
+		return nodesByKind.get(NodeKind.TRACE);
 	}
 
 	/**
@@ -453,7 +313,7 @@ public class MessageFlow {
 	 * @return the labelNodes
 	 */
 	public ArrayList<MessageFlowNode> getLabelNodes() {
-		return labelNodes;
+		return nodesByKind.get(NodeKind.LABEL);
 	}
 
 	/**
@@ -462,7 +322,7 @@ public class MessageFlow {
 	 * @return the routeToLabelNodes
 	 */
 	public ArrayList<MessageFlowNode> getRouteToLabelNodes() {
-		return routeToLabelNodes;
+		return nodesByKind.get(NodeKind.ROUTE_TO_LABEL);
 	}
 
 	/**
@@ -471,7 +331,7 @@ public class MessageFlow {
 	 * @return a list of aggregateControl nodes of MessageFlow
 	 */
 	public ArrayList<MessageFlowNode> getAggregateControlNodes() {
-		return aggregateControlNodes;
+		return nodesByKind.get(NodeKind.AGGREGATE_CONTROL);
 	}
 
 	/**
@@ -480,7 +340,7 @@ public class MessageFlow {
 	 * @return the databaseNodes
 	 */
 	public ArrayList<MessageFlowNode> getDatabaseNodes() {
-		return databaseNodes;
+		return nodesByKind.get(NodeKind.DATABASE);
 	}
 
 	/**
@@ -489,7 +349,7 @@ public class MessageFlow {
 	 * @return the routeNodes
 	 */
 	public ArrayList<MessageFlowNode> getRouteNodes() {
-		return routeNodes;
+		return nodesByKind.get(NodeKind.ROUTE);
 	}
 
 	/**
@@ -498,7 +358,7 @@ public class MessageFlow {
 	 * @return a list of miscellaneous/uncategorized nodes of MessageFlow
 	 */
 	public ArrayList<MessageFlowNode> getMiscellaneousNodes() {
-		return miscellaneousNodes;
+		return nodesByKind.get(NodeKind.MISCELLANEOUS);
 	}
 
 	/**
@@ -536,4 +396,13 @@ public class MessageFlow {
 	public StringBuilder getLongDescription() {
 		return longDescription;
 	}
+
+	/**
+	 * The method returns the graph of the nodes and connections of a Message Flow
+	 * 
+	 * @return the read-only graph of the message flow
+	 */
+	public MessageFlowGraph getGraph() {
+		return graph;
+	}
 }
@@ -0,0 +1,481 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Charsets;
+
+/**
+ * The class encodes message flow and message map models in a compact,
+ * versioned binary format and decodes them without parsing the XML files
+ * again.
+ *
+ * An encoded model starts with the magic bytes 'MFB', the format version
+ * and the kind of the model. It is followed by a table of all distinct
+ * strings of the model (node types, terminal names, message domains, ...)
+ * and the model itself. Strings are written as indexes into the table,
+ * all numbers are written as variable length integers (7 bits per byte).
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class MessageFlowCodec {
+
+	/**
+	 * the version of the format
+	 */
+	public static final int VERSION = 4;
+
+	/**
+	 * the magic bytes of an encoded model
+	 */
+	private static final byte[] MAGIC = { 'M', 'F', 'B' };
+
+	/**
+	 * the kind of an encoded message flow
+	 */
+	private static final int KIND_MESSAGE_FLOW = 1;
+
+	/**
+	 * the kind of an encoded message map
+	 */
+	private static final int KIND_MESSAGE_MAP = 2;
+
+	/**
+	 * the value tag of a null property
+	 */
+	private static final int VALUE_NULL = 0;
+
+	/**
+	 * the value tag of a string property
+	 */
+	private static final int VALUE_STRING = 1;
+
+	/**
+	 * the value tag of a string list property, e.g. 'routeTerminals'
+	 */
+	private static final int VALUE_LIST = 2;
+
+	/**
+	 * the form of the properties of a node written as a map of values
+	 */
+	private static final int PROPERTIES_MAP = 0;
+
+	/**
+	 * the form of the properties of a node written as raw values, they are
+	 * decoded on first access (see {@link NodeProperties})
+	 */
+	private static final int PROPERTIES_RAW = 1;
+
+	/**
+	 * The method encodes a message flow.
+	 *
+	 * @param messageFlow the message flow
+	 * @return the encoded message flow
+	 */
+	public byte[] encode(MessageFlow messageFlow) {
+		Writer writer = new Writer();
+		for (NodeKind kind : NodeKind.values()) {
+			List<MessageFlowNode> nodes = messageFlow.getNodes(kind);
+			writer.writeInt(nodes.size());
+			for (MessageFlowNode node : nodes) {
+				writeNode(writer, node);
+			}
+		}
+		writer.writeInt(messageFlow.getConnections().size());
+		for (MessageFlowConnection connection : messageFlow.getConnections()) {
+			writer.writeString(connection.getSrcNode());
+			writer.writeString(connection.getSrcNodeName());
+			writer.writeString(connection.getTargetNode());
+			writer.writeString(connection.getTargetNodeName());
+			writer.writeString(connection.getSrcTerminal());
+			writer.writeString(connection.getTargetTerminal());
+			writer.writeInt(connection.getLine());
+			writer.writeInt(connection.getColumn());
+		}
+		writer.writeInt(messageFlow.getComments().size());
+		for (MessageFlowCommentNote comment : messageFlow.getComments()) {
+			writer.writeStrings(comment.getAssociation());
+			writer.writeString(comment.getComment());
+			writer.writeSignedInt(comment.getLocationX());
+			writer.writeSignedInt(comment.getLocationY());
+			writer.writeInt(comment.getLine());
+			writer.writeInt(comment.getColumn());
+		}
+		writer.writeString(messageFlow.getShortDescription().toString());
+		writer.writeString(messageFlow.getLongDescription().toString());
+
+		return writer.toByteArray(KIND_MESSAGE_FLOW);
+	}
+
+	/**
+	 * The method encodes a message map. The mapping sources are not part of
+	 * the encoding, they are never set by the {@link MessageMapParser}.
+	 *
+	 * @param messageMap the message map
+	 * @return the encoded message map
+	 */
+	public byte[] encode(MessageMap messageMap) {
+		Writer writer = new Writer();
+		writer.writeInt(messageMap.getMappings().size());
+		for (Mapping mapping : messageMap.getMappings()) {
+			writer.writeString(mapping.getInputPath());
+			writer.writeString(mapping.getOutputPath());
+		}
+		writer.writeString(messageMap.getInputVar().toString());
+		writer.writeString(messageMap.getOutputVar().toString());
+		writer.writeInt(messageMap.getTodoCount().get());
+
+		return writer.toByteArray(KIND_MESSAGE_MAP);
+	}
+
+	/**
+	 * The method decodes a message flow.
+	 *
+	 * @param fileName the name of the message flow file
+	 * @param bytes the encoded message flow
+	 * @return the message flow
+	 * @throws IOException if the bytes are not an encoded message flow of this version
+	 */
+	public MessageFlow decodeMessageFlow(String fileName, byte[] bytes) throws IOException {
+		final Reader reader = new Reader(bytes, KIND_MESSAGE_FLOW);
+		try {
+			return new MessageFlow(fileName, new MessageFlowParser() {
+				@Override
+				public void parse(String fileName,
+								  EnumMap<NodeKind, ArrayList<MessageFlowNode>> nodes,
+								  ArrayList<MessageFlowConnection> connections,
+								  ArrayList<MessageFlowCommentNote> comments,
+								  StringBuilder shortDescription,
+								  StringBuilder longDescription) {
+					for (NodeKind kind : NodeKind.values()) {
+						for (int i = reader.readInt(); i > 0; i--) {
+							nodes.get(kind).add(readNode(reader));
+						}
+					}
+					for (int i = reader.readInt(); i > 0; i--) {
+						MessageFlowConnection connection = new MessageFlowConnection(reader.readString(), reader.readString(),
+								reader.readString(), reader.readString(), reader.readString(), reader.readString());
+						connection.setPosition(reader.readInt(), reader.readInt());
+						connections.add(connection);
+					}
+					for (int i = reader.readInt(); i > 0; i--) {
+						MessageFlowCommentNote comment = new MessageFlowCommentNote(reader.readStrings(), reader.readString(),
+								reader.readSignedInt(), reader.readSignedInt());
+						comment.setPosition(reader.readInt(), reader.readInt());
+						comments.add(comment);
+					}
+					shortDescription.append(reader.readString());
+					longDescription.append(reader.readString());
+				}
+			});
+		} catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+			throw new IOException("Corrupt encoded message flow " + fileName, e);
+		}
+	}
+
+	/**
+	 * The method decodes a message map.
+	 *
+	 * @param fileName the name of the message map file
+	 * @param bytes the encoded message map
+	 * @return the message map
+	 * @throws IOException if the bytes are not an encoded message map of this version
+	 */
+	public MessageMap decodeMessageMap(String fileName, byte[] bytes) throws IOException {
+		final Reader reader = new Reader(bytes, KIND_MESSAGE_MAP);
+		try {
+			return new MessageMap(fileName, new MessageMapParser() {
+				@Override
+				public void parse(String fileName, Mapping mappingSources, ArrayList<Mapping> mappings,
+						StringBuilder inputVar, StringBuilder outputVar, AtomicInteger todoCount) {
+					for (int i = reader.readInt(); i > 0; i--) {
+						mappings.add(new Mapping(reader.readString(), reader.readString()));
+					}
+					inputVar.append(reader.readString());
+					outputVar.append(reader.readString());
+					todoCount.set(reader.readInt());
+				}
+			});
+		} catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+			throw new IOException("Corrupt encoded message map " + fileName, e);
+		}
+	}
+
+	private static void writeNode(Writer writer, MessageFlowNode node) {
+		writer.writeString(node.getId());
+		writer.writeString(node.getName());
+		writer.writeString(node.getType());
+		writer.writeInt((node.isBuildTreeUsingSchema() ? 1 : 0)
+				| (node.isMixedContentRetainMode() ? 1 << 1 : 0)
+				| (node.isCommentsRetainMode() ? 1 << 2 : 0)
+				| (node.isValidateMaster() ? 1 << 3 : 0)
+				| (node.isResetMessageDomain() ? 1 << 4 : 0)
+				| (node.isResetMessageSet() ? 1 << 5 : 0)
+				| (node.isResetMessageType() ? 1 << 6 : 0)
+				| (node.isResetMessageFormat() ? 1 << 7 : 0)
+				| (node.areMonitoringEventsEnabled() ? 1 << 8 : 0));
+		writer.writeString(node.getMessageDomainProperty());
+		writer.writeString(node.getMessageSetProperty());
+		writer.writeString(node.getRequestMsgLocationInTree());
+		writer.writeString(node.getMessageDomain());
+		writer.writeString(node.getMessageSet());
+		writer.writeString(node.getRecordDefinition());
+		writer.writeStrings(node.getInputTerminals());
+		writer.writeStrings(node.getOutputTerminals());
+		writer.writeInt(node.getLine());
+		writer.writeInt(node.getColumn());
+
+		NodeAttributes attributes = node.getAttributes();
+		writer.writeInt(attributes.size());
+		for (int i = 0; i < attributes.size(); i++) {
+			writer.writeString(attributes.getKey(i));
+			writer.writeString(attributes.getValue(i));
+		}
+
+		if (node.getProperties() instanceof NodeProperties) {
+			writer.writeInt(PROPERTIES_RAW);
+			writer.writeStrings(((NodeProperties) node.getProperties()).getRouteTerminals());
+			return;
+		}
+		writer.writeInt(PROPERTIES_MAP);
+		writer.writeInt(node.getProperties().size());
+		for (Map.Entry<String, Object> property : node.getProperties().entrySet()) {
+			writer.writeString(property.getKey());
+			Object value = property.getValue();
+			if (value == null) {
+				writer.writeInt(VALUE_NULL);
+			} else if (value instanceof List) {
+				writer.writeInt(VALUE_LIST);
+				List<String> list = new ArrayList<String>();
+				for (Object element : (List<?>) value) {
+					list.add((String) element);
+				}
+				writer.writeStrings(list);
+			} else {
+				writer.writeInt(VALUE_STRING);
+				writer.writeString(value.toString());
+			}
+		}
+	}
+
+	private static MessageFlowNode readNode(Reader reader) {
+		String id = reader.readString();
+		String name = reader.readString();
+		String type = reader.readString();
+		int flags = reader.readInt();
+		String messageDomainProperty = reader.readString();
+		String messageSetProperty = reader.readString();
+		String requestMsgLocationInTree = reader.readString();
+		String messageDomain = reader.readString();
+		String messageSet = reader.readString();
+		String recordDefinition = reader.readString();
+		ArrayList<String> inputTerminals = reader.readStrings();
+		ArrayList<String> outputTerminals = reader.readStrings();
+		int line = reader.readInt();
+		int column = reader.readInt();
+
+		int size = reader.readInt();
+		Map<String, String> attributeMap = new HashMap<String, String>();
+		for (int i = 0; i < size; i++) {
+			String key = reader.readString();
+			if (key == null) {
+				throw new IllegalArgumentException("Missing attribute key");
+			}
+			attributeMap.put(key, reader.readString());
+		}
+		NodeAttributes attributes = new NodeAttributes(attributeMap);
+
+		Map<String, Object> properties;
+		if (reader.readInt() == PROPERTIES_RAW) {
+			properties = new NodeProperties(NodeKind.forType(type), attributes, reader.readStrings());
+		} else {
+			size = reader.readInt();
+			properties = new HashMap<String, Object>();
+			for (int i = 0; i < size; i++) {
+				String key = reader.readString();
+				int tag = reader.readInt();
+				properties.put(key, tag == VALUE_LIST ? reader.readStrings() : tag == VALUE_STRING ? reader.readString() : null);
+			}
+		}
+
+		MessageFlowNode node = new MessageFlowNode(id, name, type,
+				(flags & 1) != 0,
+				(flags & 1 << 1) != 0,
+				(flags & 1 << 2) != 0,
+				(flags & 1 << 3) != 0,
+				messageDomainProperty,
+				messageSetProperty,
+				requestMsgLocationInTree,
+				messageDomain,
+				messageSet,
+				recordDefinition,
+				(flags & 1 << 4) != 0,
+				(flags & 1 << 5) != 0,
+				(flags & 1 << 6) != 0,
+				(flags & 1 << 7) != 0,
+				(flags & 1 << 8) != 0,
+				inputTerminals,
+				outputTerminals,
+				properties,
+				attributes);
+		node.setPosition(line, column);
+		return node;
+	}
+
+	/**
+	 * The class writes the body of an encoded model and collects the
+	 * string table.
+	 */
+	private static class Writer {
+		private final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+		private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+		void writeInt(int value) {
+			writeInt(body, value);
+		}
+
+		void writeSignedInt(int value) {
+			writeInt((value << 1) ^ (value >> 31));
+		}
+
+		/**
+		 * The method writes a string as index into the string table, 0 is
+		 * null.
+		 */
+		void writeString(String value) {
+			if (value == null) {
+				writeInt(0);
+				return;
+			}
+			Integer index = strings.get(value);
+			if (index == null) {
+				index = strings.size() + 1;
+				strings.put(value, index);
+			}
+			writeInt(index);
+		}
+
+		void writeStrings(List<String> values) {
+			if (values == null) {
+				writeInt(0);
+				return;
+			}
+			writeInt(values.size() + 1);
+			for (String value : values) {
+				writeString(value);
+			}
+		}
+
+		byte[] toByteArray(int kind) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(body.size() + 16 * strings.size() + 8);
+			out.write(MAGIC, 0, MAGIC.length);
+			out.write(VERSION);
+			out.write(kind);
+			writeInt(out, strings.size());
+			for (String value : strings.keySet()) {
+				byte[] bytes = value.getBytes(Charsets.UTF_8);
+				writeInt(out, bytes.length);
+				out.write(bytes, 0, bytes.length);
+			}
+			byte[] bodyBytes = body.toByteArray();
+			out.write(bodyBytes, 0, bodyBytes.length);
+			return out.toByteArray();
+		}
+
+		private static void writeInt(ByteArrayOutputStream out, int value) {
+			while ((value & ~0x7F) != 0) {
+				out.write((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			out.write(value);
+		}
+	}
+
+	/**
+	 * The class reads an encoded model, the string table is read by the
+	 * constructor.
+	 */
+	private static class Reader {
+		private final byte[] bytes;
+		private final String[] strings;
+		private int position;
+
+		Reader(byte[] bytes, int kind) throws IOException {
+			this.bytes = bytes;
+			if (bytes.length < MAGIC.length + 2 || bytes[0] != MAGIC[0] || bytes[1] != MAGIC[1] || bytes[2] != MAGIC[2]) {
+				throw new IOException("Not an encoded model");
+			}
+			if (bytes[3] != VERSION || bytes[4] != kind) {
+				throw new IOException("Unsupported version " + bytes[3] + " or kind " + bytes[4] + " of an encoded model");
+			}
+			position = MAGIC.length + 2;
+			try {
+				strings = new String[readInt()];
+				for (int i = 0; i < strings.length; i++) {
+					int length = readInt();
+					strings[i] = new String(bytes, position, length, Charsets.UTF_8);
+					position += length;
+				}
+			} catch (IndexOutOfBoundsException | NegativeArraySizeException e) {
+				throw new IOException("Corrupt string table of an encoded model", e);
+			}
+		}
+
+		int readInt() {
+			int value = 0;
+			for (int shift = 0; ; shift += 7) {
+				byte b = bytes[position++];
+				value |= (b & 0x7F) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+		}
+
+		int readSignedInt() {
+			int value = readInt();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		String readString() {
+			int index = readInt();
+			return index == 0 ? null : strings[index - 1];
+		}
+
+		ArrayList<String> readStrings() {
+			int size = readInt() - 1;
+			if (size < 0) {
+				return null;
+			}
+			ArrayList<String> values = new ArrayList<String>(size);
+			for (int i = 0; i < size; i++) {
+				values.add(readString());
+			}
+			return values;
+		}
+	}
+}
@@ -26,6 +26,14 @@ public class MessageFlowCommentNote {
 	 * The y axis location of the comment note
 	 */
 	private int locationY;
+	/**
+	 * the line of the 'stickyNote' element, 0 if unknown
+	 */
+	private int line;
+	/**
+	 * the column of the 'stickyNote' element, 0 if unknown
+	 */
+	private int column;
 		
 	
 	/**
@@ -73,5 +81,32 @@ public class MessageFlowCommentNote {
 	public int getLocationY() {
 		return locationY;
 	}
+	/**
+	 * This method returns the line of the comment note in the message flow file
+	 * 
+	 * @return the line (starting with 1), 0 if the position is not known
+	 */
+	public int getLine() {
+		return line;
+	}
+	/**
+	 * This method returns the column of the comment note in the message flow file
+	 * 
+	 * @return the column (starting with 1), 0 if the position is not known
+	 */
+	public int getColumn() {
+		return column;
+	}
+	/**
+	 * This method sets the position of the comment note, it is called by the 
+	 * parser that created the comment note.
+	 * 
+	 * @param line the line of the 'stickyNote' element
+	 * @param column the column of the 'stickyNote' element
+	 */
+	void setPosition(int line, int column) {
+		this.line = line;
+		this.column = column;
+	}
 
 }
@@ -30,6 +30,14 @@ public class MessageFlowConnection {
 	 * a target terminal of the connection
 	 */
 	private String targetTerminal;
+	/**
+	 * the line of the 'connections' element, 0 if unknown
+	 */
+	private int line;
+	/**
+	 * the column of the 'connections' element, 0 if unknown
+	 */
+	private int column;
 	
 	public MessageFlowConnection(){
 		
@@ -94,5 +102,32 @@ public class MessageFlowConnection {
 	public String getTargetTerminal() {
 		return targetTerminal;
 	}
+	/**
+	 * The method returns the line of the connection in the message flow file.
+	 * 
+	 * @return the line (starting with 1), 0 if the position is not known
+	 */
+	public int getLine() {
+		return line;
+	}
+	/**
+	 * The method returns the column of the connection in the message flow file.
+	 * 
+	 * @return the column (starting with 1), 0 if the position is not known
+	 */
+	public int getColumn() {
+		return column;
+	}
+	/**
+	 * The method sets the position of the connection, it is called by the 
+	 * parser that created the connection.
+	 * 
+	 * @param line the line of the 'connections' element
+	 * @param column the column of the 'connections' element
+	 */
+	void setPosition(int line, int column) {
+		this.line = line;
+		this.column = column;
+	}
 	
 }
@@ -0,0 +1,271 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The class is a read-only graph view of a message flow. It is built once
+ * from the nodes and connections of the message flow and provides constant
+ * time lookups of nodes by ID and of the incoming and outgoing connections
+ * of a node, optionally restricted to a terminal.
+ *
+ * The connections of a node are kept in the order of
+ * {@link MessageFlow#getConnections()}.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class MessageFlowGraph {
+
+	/**
+	 * the adjacency of a single node
+	 */
+	private static class Adjacency {
+		private final List<MessageFlowConnection> outgoing = new ArrayList<MessageFlowConnection>();
+		private final List<MessageFlowConnection> incoming = new ArrayList<MessageFlowConnection>();
+		private final Map<String, List<MessageFlowConnection>> outgoingByTerminal = new LinkedHashMap<String, List<MessageFlowConnection>>();
+		private final Map<String, List<MessageFlowConnection>> incomingByTerminal = new LinkedHashMap<String, List<MessageFlowConnection>>();
+		private final List<String> successors = new ArrayList<String>();
+		private final List<String> predecessors = new ArrayList<String>();
+	}
+
+	/**
+	 * an empty adjacency for unknown node IDs
+	 */
+	private static final Adjacency EMPTY = new Adjacency();
+
+	/**
+	 * the nodes of the message flow by ID
+	 */
+	private final Map<String, MessageFlowNode> nodes;
+
+	/**
+	 * the adjacency of the nodes by ID
+	 */
+	private final Map<String, Adjacency> adjacencies;
+
+	/**
+	 * Constructor
+	 *
+	 * Creates the graph from the nodes and connections of a message flow.
+	 *
+	 * @param nodes the nodes of the message flow
+	 * @param connections the connections of the message flow
+	 */
+	public MessageFlowGraph(Collection<MessageFlowNode> nodes, List<MessageFlowConnection> connections) {
+		this(byId(nodes), connections);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * Creates the graph from nodes with explicit IDs, e.g. the qualified IDs
+	 * of the nodes of a flattened message flow (see {@link SubflowIndex}).
+	 *
+	 * @param nodes the nodes by ID, the map is not copied
+	 * @param connections the connections between the IDs
+	 */
+	MessageFlowGraph(Map<String, MessageFlowNode> nodes, List<MessageFlowConnection> connections) {
+		this.nodes = Collections.unmodifiableMap(nodes);
+
+		Map<String, Adjacency> adjacencyMap = new LinkedHashMap<String, Adjacency>();
+		for (MessageFlowConnection connection : connections) {
+			Adjacency source = adjacency(adjacencyMap, connection.getSrcNode());
+			source.outgoing.add(connection);
+			add(source.outgoingByTerminal, connection.getSrcTerminal(), connection);
+			source.successors.add(connection.getTargetNode());
+
+			Adjacency target = adjacency(adjacencyMap, connection.getTargetNode());
+			target.incoming.add(connection);
+			add(target.incomingByTerminal, connection.getTargetTerminal(), connection);
+			target.predecessors.add(connection.getSrcNode());
+		}
+		this.adjacencies = adjacencyMap;
+	}
+
+	/**
+	 * The method returns the node with the given ID.
+	 *
+	 * @param id the ID of the node
+	 * @return the node or null if there is no node with the given ID
+	 */
+	public MessageFlowNode getNode(String id) {
+		return nodes.get(id);
+	}
+
+	/**
+	 * The method returns all nodes of the message flow.
+	 *
+	 * @return an unmodifiable collection of the nodes of the message flow
+	 */
+	public Collection<MessageFlowNode> getNodes() {
+		return nodes.values();
+	}
+
+	/**
+	 * The method returns the connections leaving the given node.
+	 *
+	 * @param id the ID of the node
+	 * @return an unmodifiable list of the outgoing connections
+	 */
+	public List<MessageFlowConnection> getOutgoingConnections(String id) {
+		return Collections.unmodifiableList(get(id).outgoing);
+	}
+
+	/**
+	 * The method returns the connections leaving the given output terminal
+	 * of the given node.
+	 *
+	 * @param id the ID of the node
+	 * @param terminal the output terminal, e.g. 'OutTerminal.out'
+	 * @return an unmodifiable list of the outgoing connections
+	 */
+	public List<MessageFlowConnection> getOutgoingConnections(String id, String terminal) {
+		return byTerminal(get(id).outgoingByTerminal, terminal);
+	}
+
+	/**
+	 * The method returns the connections entering the given node.
+	 *
+	 * @param id the ID of the node
+	 * @return an unmodifiable list of the incoming connections
+	 */
+	public List<MessageFlowConnection> getIncomingConnections(String id) {
+		return Collections.unmodifiableList(get(id).incoming);
+	}
+
+	/**
+	 * The method returns the connections entering the given input terminal
+	 * of the given node.
+	 *
+	 * @param id the ID of the node
+	 * @param terminal the input terminal, e.g. 'InTerminal.in'
+	 * @return an unmodifiable list of the incoming connections
+	 */
+	public List<MessageFlowConnection> getIncomingConnections(String id, String terminal) {
+		return byTerminal(get(id).incomingByTerminal, terminal);
+	}
+
+	/**
+	 * The method returns the connected output terminals of the given node.
+	 *
+	 * @param id the ID of the node
+	 * @return an unmodifiable collection of the connected output terminals
+	 */
+	public Collection<String> getOutputTerminals(String id) {
+		return Collections.unmodifiableSet(get(id).outgoingByTerminal.keySet());
+	}
+
+	/**
+	 * The method returns the connected input terminals of the given node.
+	 *
+	 * @param id the ID of the node
+	 * @return an unmodifiable collection of the connected input terminals
+	 */
+	public Collection<String> getInputTerminals(String id) {
+		return Collections.unmodifiableSet(get(id).incomingByTerminal.keySet());
+	}
+
+	/**
+	 * The method returns the IDs of the target nodes of the outgoing
+	 * connections of the given node (one entry per connection).
+	 *
+	 * @param id the ID of the node
+	 * @return an unmodifiable list of the IDs of the successors
+	 */
+	public List<String> getSuccessors(String id) {
+		return Collections.unmodifiableList(get(id).successors);
+	}
+
+	/**
+	 * The method returns the IDs of the source nodes of the incoming
+	 * connections of the given node (one entry per connection).
+	 *
+	 * @param id the ID of the node
+	 * @return an unmodifiable list of the IDs of the predecessors
+	 */
+	public List<String> getPredecessors(String id) {
+		return Collections.unmodifiableList(get(id).predecessors);
+	}
+
+	/**
+	 * The method returns the number of connections leaving the given node.
+	 *
+	 * @param id the ID of the node
+	 * @return the number of outgoing connections
+	 */
+	public int getOutDegree(String id) {
+		return get(id).outgoing.size();
+	}
+
+	/**
+	 * The method returns the number of connections entering the given node.
+	 *
+	 * @param id the ID of the node
+	 * @return the number of incoming connections
+	 */
+	public int getInDegree(String id) {
+		return get(id).incoming.size();
+	}
+
+	private static Map<String, MessageFlowNode> byId(Collection<MessageFlowNode> nodes) {
+		Map<String, MessageFlowNode> nodeMap = new LinkedHashMap<String, MessageFlowNode>();
+		for (MessageFlowNode node : nodes) {
+			if (!nodeMap.containsKey(node.getId())) {
+				nodeMap.put(node.getId(), node);
+			}
+		}
+		return nodeMap;
+	}
+
+	private Adjacency get(String id) {
+		Adjacency adjacency = adjacencies.get(id);
+		return adjacency == null ? EMPTY : adjacency;
+	}
+
+	private static Adjacency adjacency(Map<String, Adjacency> adjacencyMap, String id) {
+		Adjacency adjacency = adjacencyMap.get(id);
+		if (adjacency == null) {
+			adjacency = new Adjacency();
+			adjacencyMap.put(id, adjacency);
+		}
+		return adjacency;
+	}
+
+	private static void add(Map<String, List<MessageFlowConnection>> byTerminal, String terminal, MessageFlowConnection connection) {
+		List<MessageFlowConnection> list = byTerminal.get(terminal);
+		if (list == null) {
+			list = new ArrayList<MessageFlowConnection>();
+			byTerminal.put(terminal, list);
+		}
+		list.add(connection);
+	}
+
+	private static List<MessageFlowConnection> byTerminal(Map<String, List<MessageFlowConnection>> byTerminal, String terminal) {
+		List<MessageFlowConnection> list = byTerminal.get(terminal);
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(list);
+	}
+}
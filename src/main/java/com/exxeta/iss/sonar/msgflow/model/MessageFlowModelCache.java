@@ -0,0 +1,242 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+/**
+ * The class is a persistent cache of the message flow and message map
+ * models. The models are stored in a directory, keyed by the hash of the
+ * file content, so an unchanged file is not parsed again in the next
+ * analysis. The entries are written with the {@link MessageFlowCodec}.
+ *
+ * The cache is bound to a fingerprint, e.g. the plug-in version and the
+ * parser. If the fingerprint of the directory differs, all entries are
+ * deleted. Entries that cannot be read or decoded, e.g. corrupt entries,
+ * are deleted and treated as a miss.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class MessageFlowModelCache {
+
+	/**
+	 * The logger for the class.
+	 */
+	private static final Logger LOG = LoggerFactory.getLogger(MessageFlowModelCache.class);
+
+	/**
+	 * the version of the format of the entries, part of the fingerprint
+	 */
+	public static final int FORMAT_VERSION = 2;
+
+	/**
+	 * the name of the file holding the fingerprint of the directory
+	 */
+	private static final String FINGERPRINT_FILE = "fingerprint";
+
+	/**
+	 * the directory of the cache
+	 */
+	private final File directory;
+
+	/**
+	 * the codec of the entries
+	 */
+	private final MessageFlowCodec codec = new MessageFlowCodec();
+
+	/**
+	 * the number of models read from the cache
+	 */
+	private final AtomicLong hits = new AtomicLong();
+
+	/**
+	 * the number of models that had to be parsed
+	 */
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * the number of entries that could not be read or written
+	 */
+	private final AtomicLong errors = new AtomicLong();
+
+	/**
+	 * Constructor
+	 *
+	 * Opens the cache in the directory. The entries are deleted if they have
+	 * been written with another fingerprint.
+	 *
+	 * @param directory the directory of the cache
+	 * @param fingerprint the fingerprint of the plug-in and its configuration
+	 * @throws IOException if the directory cannot be created
+	 */
+	public MessageFlowModelCache(File directory, String fingerprint) throws IOException {
+		this.directory = directory;
+		String value = "format " + FORMAT_VERSION + ", codec " + MessageFlowCodec.VERSION + ", " + fingerprint;
+		File fingerprintFile = new File(directory, FINGERPRINT_FILE);
+
+		if (!fingerprintFile.isFile() || !value.equals(FileUtils.readFileToString(fingerprintFile, Charsets.UTF_8))) {
+			if (directory.exists()) {
+				LOG.info("Clearing the message flow model cache " + directory + ", the fingerprint has changed");
+				FileUtils.cleanDirectory(directory);
+			}
+			FileUtils.forceMkdir(directory);
+			FileUtils.writeStringToFile(fingerprintFile, value, Charsets.UTF_8);
+		}
+	}
+
+	/**
+	 * The method returns the message flow model of a file, from the cache if
+	 * the file has not changed.
+	 *
+	 * @param fileName the name of the message flow file
+	 * @param parser the parser used for a miss
+	 * @return the message flow object
+	 */
+	public MessageFlow getMessageFlow(String fileName, MessageFlowParser parser) {
+		File entry = getEntry(fileName, "msgflow");
+		if (entry != null && entry.isFile()) {
+			try {
+				MessageFlow messageFlow = codec.decodeMessageFlow(fileName, Files.readAllBytes(entry.toPath()));
+				hits.incrementAndGet();
+				return messageFlow;
+			} catch (IOException | RuntimeException e) {
+				// a corrupt entry may also fail while the model is built from it
+				invalidate(entry, fileName, e);
+			}
+		}
+
+		misses.incrementAndGet();
+		MessageFlow messageFlow = new MessageFlow(fileName, parser);
+		if (entry != null) {
+			write(entry, codec.encode(messageFlow));
+		}
+		return messageFlow;
+	}
+
+	/**
+	 * The method returns the message map model of a file, from the cache if
+	 * the file has not changed.
+	 *
+	 * @param fileName the name of the message map file
+	 * @param parser the parser used for a miss
+	 * @return the message map object
+	 */
+	public MessageMap getMessageMap(String fileName, MessageMapParser parser) {
+		File entry = getEntry(fileName, "map");
+		if (entry != null && entry.isFile()) {
+			try {
+				MessageMap messageMap = codec.decodeMessageMap(fileName, Files.readAllBytes(entry.toPath()));
+				hits.incrementAndGet();
+				return messageMap;
+			} catch (IOException | RuntimeException e) {
+				// a corrupt entry may also fail while the model is built from it
+				invalidate(entry, fileName, e);
+			}
+		}
+
+		misses.incrementAndGet();
+		MessageMap messageMap = new MessageMap(fileName, parser);
+		if (entry != null) {
+			write(entry, codec.encode(messageMap));
+		}
+		return messageMap;
+	}
+
+	/**
+	 * @return the number of models read from the cache
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of models that had to be parsed
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of entries that could not be read or written
+	 */
+	public long getErrors() {
+		return errors.get();
+	}
+
+	/**
+	 * The method returns the entry of a file, the name of the entry is the 
+	 * hash of the file content.
+	 *
+	 * @return the entry or null if the file cannot be read
+	 */
+	private File getEntry(String fileName, String kind) {
+		try {
+			byte[] content = ArchiveInput.readAllBytes(fileName);
+			return new File(directory, Hashing.sha256().hashBytes(content).toString() + "." + kind);
+		} catch (IOException e) {
+			// the parser reports the file
+			LOG.debug("Cannot hash " + fileName, e);
+			return null;
+		}
+	}
+
+	private void invalidate(File entry, String fileName, Exception e) {
+		LOG.debug("Cannot read the cache entry " + entry + " of " + fileName, e);
+		errors.incrementAndGet();
+		FileUtils.deleteQuietly(entry);
+	}
+
+	/**
+	 * The method writes an entry. The entry is written to a temporary file
+	 * first, so concurrent readers never see a partial entry.
+	 */
+	private void write(File entry, byte[] bytes) {
+		File tmp = null;
+		try {
+			tmp = File.createTempFile(entry.getName(), ".tmp", directory);
+			Files.write(tmp.toPath(), bytes);
+			Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			LOG.debug("Cannot write the cache entry " + entry, e);
+			errors.incrementAndGet();
+			FileUtils.deleteQuietly(tmp);
+		}
+	}
+
+	/**
+	 * The method returns the statistics of the cache for the log.
+	 *
+	 * @return the number of hits, misses and errors
+	 */
+	@Override
+	public String toString() {
+		return "message flow model cache " + directory + ": " + hits + " hits, " + misses + " misses, "
+				+ errors + " errors";
+	}
+}
@@ -18,6 +18,7 @@
 package com.exxeta.iss.sonar.msgflow.model;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Map;
 
 /**
@@ -49,6 +50,11 @@ public class MessageFlowNode {
 	 */
 	private String type;
 	
+	/**
+	 * the kind of a message flow node, resolved from its type
+	 */
+	private NodeKind kind;
+	
 	/**
 	 * the flag for 'build Tree Using Schema' of a message flow node
 	 */
@@ -138,11 +144,38 @@ public class MessageFlowNode {
 	 */
 	private ArrayList<String> outputTerminals;
 	
+	/**
+	 * the connected input terminals of a message flow node, indexes of the 
+	 * terminal dictionary of its kind
+	 */
+	private BitSet inputTerminalBits;
+	
+	/**
+	 * the connected output terminals of a message flow node, indexes of the 
+	 * terminal dictionary of its kind
+	 */
+	private BitSet outputTerminalBits;
+	
 	/**
 	 * the list of custom properties of a message flow node
 	 */
 	private Map<String, Object> properties;
 	
+	/**
+	 * the table of all attributes of a message flow node
+	 */
+	private NodeAttributes attributes;
+	
+	/**
+	 * the line of the 'nodes' element in the message flow file, 0 if unknown
+	 */
+	private int line;
+	
+	/**
+	 * the column of the 'nodes' element in the message flow file, 0 if unknown
+	 */
+	private int column;
+	
 	/**
 	 * Constructor
 	 * 
@@ -172,6 +205,7 @@ public class MessageFlowNode {
 		this.id							= id;
 		this.name						= name;
 		this.type						= type;
+		this.kind						= NodeKind.forType(type);
 		this.buildTreeUsingSchema		= buildTreeUsingSchema;
 		this.mixedContentRetainMode		= mixedContentRetainMode;
 		this.commentsRetainMode			= commentsRetainMode;
@@ -189,7 +223,45 @@ public class MessageFlowNode {
 		this.areMonitoringEventsEnabled	= areMonitoringEventsEnabled;
 		this.inputTerminals				= inputTerminals;
 		this.outputTerminals			= outputTerminals;
+		this.inputTerminalBits			= TerminalDictionary.forKind(kind).toBits(inputTerminals);
+		this.outputTerminalBits			= TerminalDictionary.forKind(kind).toBits(outputTerminals);
 		this.properties					=properties;
+		this.attributes					= NodeAttributes.EMPTY;
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * Creates a new message flow node (model) and initializes its properties 
+	 * and the table of all its attributes.
+	 */
+	public MessageFlowNode(String id,
+					   	   String name,
+					   	   String type,
+					   	   boolean buildTreeUsingSchema,
+					   	   boolean mixedContentRetainMode,
+					   	   boolean commentsRetainMode,
+					   	   boolean validateMaster,
+					   	   String messageDomainProperty,
+					   	   String messageSetProperty,
+					   	   String requestMsgLocationInTree,
+					   	   String messageDomain,
+					   	   String messageSet,
+					   	   String recordDefinition,
+					   	   boolean resetMessageDomain,
+					   	   boolean resetMessageSet,
+					   	   boolean resetMessageType,
+					   	   boolean resetMessageFormat,
+					   	   boolean areMonitoringEventsEnabled,
+					   	   ArrayList<String> inputTerminals,
+					   	   ArrayList<String> outputTerminals,
+					   	   Map<String, Object> properties,
+					   	   NodeAttributes attributes) {
+		this(id, name, type, buildTreeUsingSchema, mixedContentRetainMode, commentsRetainMode, validateMaster,
+			 messageDomainProperty, messageSetProperty, requestMsgLocationInTree, messageDomain, messageSet,
+			 recordDefinition, resetMessageDomain, resetMessageSet, resetMessageType, resetMessageFormat,
+			 areMonitoringEventsEnabled, inputTerminals, outputTerminals, properties);
+		this.attributes					= attributes;
 	}
 	
 	/**
@@ -219,6 +291,15 @@ public class MessageFlowNode {
 		return type;
 	}
 
+	/**
+	 * The method returns the kind of a message flow node.
+	 * 
+	 * @return the kind of a message flow node, e.g. {@link NodeKind#COMPUTE}
+	 */
+	public NodeKind getKind() {
+		return kind;
+	}
+
 	/**
 	 * The method returns a the flag for 'build Tree Using Schema' of a message flow node.
 	 * 
@@ -362,6 +443,54 @@ public class MessageFlowNode {
 	public ArrayList<String> getOutputTerminals() {
 		return outputTerminals;
 	}
+	
+	/**
+	 * The method checks whether an input terminal of a message flow node is 
+	 * connected.
+	 * 
+	 * @param terminal the index of the terminal, e.g. {@link TerminalDictionary#IN}
+	 * @return true if the terminal is connected
+	 */
+	public boolean isInputTerminalConnected(int terminal) {
+		return inputTerminalBits.get(terminal);
+	}
+	
+	/**
+	 * The method checks whether an input terminal of a message flow node is 
+	 * connected.
+	 * 
+	 * @param terminal the name of the terminal, e.g. 'InTerminal.in'
+	 * @return true if the terminal is connected
+	 */
+	public boolean isInputTerminalConnected(String terminal) {
+		int index = TerminalDictionary.forKind(kind).indexOf(terminal);
+		// a terminal found when the dictionary was full is only in the list
+		return index >= 0 ? inputTerminalBits.get(index) : inputTerminals.contains(terminal);
+	}
+	
+	/**
+	 * The method checks whether an output terminal of a message flow node is 
+	 * connected.
+	 * 
+	 * @param terminal the index of the terminal, e.g. {@link TerminalDictionary#OUT_FAILURE}
+	 * @return true if the terminal is connected
+	 */
+	public boolean isOutputTerminalConnected(int terminal) {
+		return outputTerminalBits.get(terminal);
+	}
+	
+	/**
+	 * The method checks whether an output terminal of a message flow node is 
+	 * connected.
+	 * 
+	 * @param terminal the name of the terminal, e.g. 'OutTerminal.failure'
+	 * @return true if the terminal is connected
+	 */
+	public boolean isOutputTerminalConnected(String terminal) {
+		int index = TerminalDictionary.forKind(kind).indexOf(terminal);
+		// a terminal found when the dictionary was full is only in the list
+		return index >= 0 ? outputTerminalBits.get(index) : outputTerminals.contains(terminal);
+	}
 
 	/**
 	 * This method returns the list of Custom Properties for the node
@@ -372,6 +501,48 @@ public class MessageFlowNode {
 		return properties;
 	}
 
+	/**
+	 * The method returns the table of all attributes of a message flow node, 
+	 * e.g. 'queueName' or 'translation.string'.
+	 * 
+	 * @return the attributes of a message flow node
+	 */
+	public NodeAttributes getAttributes() {
+		return attributes;
+	}
+
+	/**
+	 * The method returns the line of a message flow node in the message flow 
+	 * file, i.e. the line of the start of its 'nodes' element.
+	 * 
+	 * @return the line (starting with 1), 0 if the position is not known
+	 */
+	public int getLine() {
+		return line;
+	}
+
+	/**
+	 * The method returns the column of a message flow node in the message 
+	 * flow file.
+	 * 
+	 * @return the column (starting with 1), 0 if the position is not known
+	 */
+	public int getColumn() {
+		return column;
+	}
+
+	/**
+	 * The method sets the position of a message flow node, it is called by 
+	 * the parser that created the node.
+	 * 
+	 * @param line the line of the 'nodes' element
+	 * @param column the column of the 'nodes' element
+	 */
+	void setPosition(int line, int column) {
+		this.line = line;
+		this.column = column;
+	}
+
 	/**
 	 * The method returns the record definition of a message flow node.
 	 * 
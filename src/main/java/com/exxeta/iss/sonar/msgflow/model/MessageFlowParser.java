@@ -19,11 +19,11 @@ package com.exxeta.iss.sonar.msgflow.model;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
@@ -32,6 +32,9 @@ import javax.xml.xpath.XPathFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
 /**
@@ -51,65 +54,14 @@ public class MessageFlowParser {
 	 * Parses the message flow file (.msgflow) and creates the message flow node model.
 	 * 
 	 * @param fileName the file name of the message flow file to be parsed
-	 * @param collectorNodes the list of Collector Nodes to which the new message flow node should be added
-	 * @param computeNodes the list of Compute Nodes to which the new message flow node should be added
-	 * @param fileInputNodes the list of File Input Nodes to which the new message flow node should be added
-	 * @param fileOutputNodes the list of File Output Nodes to which the new message flow node should be added
-	 * @param httpInputNodes the list of Http Input Nodes to which the new message flow node should be added
-	 * @param httpRequestNodes the list of Http Request Nodes to which the new message flow node should be added
-	 * @param httpReplyNodes the list of Http Reply Nodes to which the new message flow node should be added
-	 * @param mqInputNodes the list of MQ Input Nodes to which the new message flow node should be added
-	 * @param mqOutputNodes the list of MQ Output Nodes to which the new message flow node should be added
-	 * @param mqGetNodes the list of MQ Get Nodes to which the new message flow node should be added
-	 * @param mqHeaderNodes the list of MQ Header Nodes to which the new message flow node should be added
-	 * @param mqReplyNodes the list of MQ Reply Nodes to which the new message flow node should be added
-	 * @param resetContentDescriptorNodes the list of Reset Content Descriptor Nodes to which the new message flow node should be added
-	 * @param soapInputNodes the list of Soap Input Nodes to which the new message flow node should be added
-	 * @param soapRequestNodes the list of Soap Request Nodes to which the new message flow node should be added
-	 * @param timeoutControlNodes the list of Timeout Control Nodes to which the new message flow node should be added
-	 * @param timeoutNotificationNodes the list of Timeout Notification Nodes to which the new message flow node should be added
-	 * @param tryCatchNodes the list of Try Catch Nodes to which the new message flow node should be added
-	 * @param imsRequestNodes the list of IMS Request Nodes to which the new message flow node should be added
-	 * @param filterNodes the list of Filter Nodes to which the new message flow node should be added
-	 * @param traceNodes the list of Trace Nodes to which the new message flow node should be added
-	 * @param labelNodes the list of Label Nodes to which the new message flow node should be added
-	 * @param routeToLabelNodes the list of Route To Label Nodes to which the new message flow node should be added
-	 * @param aggregateControlNodes the list of aggregate Control Nodes to which the new message flow node should be added
-	 * @param databaseNodes the list of database Nodes to which the new message flow node should be added
-	 * @param miscellaneousNodes the list of miscellaneous/Uncategorized Nodes to which the new message flow node should be added
+	 * @param nodes the lists of nodes by kind to which the new message flow nodes should be added
 	 * @param connections the list of all the connections for the message flow
 	 * @param comments the list of all the comment notes for the message flow
 	 * @param shortDescription the short description of the message flow (Using StringBuilder as String is immutable)
 	 * @param longDescription the long description of the message flow (Using StringBuilder as String is immutable)
 	 */
 	public void parse(String fileName,
-					  ArrayList<MessageFlowNode> collectorNodes,
-					  ArrayList<MessageFlowNode> computeNodes,
-					  ArrayList<MessageFlowNode> fileInputNodes,
-					  ArrayList<MessageFlowNode> fileOutputNodes,
-					  ArrayList<MessageFlowNode> httpInputNodes,
-					  ArrayList<MessageFlowNode> httpRequestNodes,
-					  ArrayList<MessageFlowNode> httpReplyNodes,
-					  ArrayList<MessageFlowNode> mqInputNodes,
-					  ArrayList<MessageFlowNode> mqOutputNodes,
-					  ArrayList<MessageFlowNode> mqGetNodes,
-					  ArrayList<MessageFlowNode> mqHeaderNodes,
-					  ArrayList<MessageFlowNode> mqReplyNodes,
-					  ArrayList<MessageFlowNode> resetContentDescriptorNodes,
-					  ArrayList<MessageFlowNode> soapInputNodes,
-					  ArrayList<MessageFlowNode> soapRequestNodes,
-					  ArrayList<MessageFlowNode> timeoutControlNodes,
-					  ArrayList<MessageFlowNode> timeoutNotificationNodes,
-					  ArrayList<MessageFlowNode> tryCatchNodes,
-					  ArrayList<MessageFlowNode> imsRequestNodes,
-					  ArrayList<MessageFlowNode> filterNodes,
-					  ArrayList<MessageFlowNode> traceNodes,
-					  ArrayList<MessageFlowNode> labelNodes,
-					  ArrayList<MessageFlowNode> routeToLabelNodes,
-					  ArrayList<MessageFlowNode> aggregateControlNodes,
-					  ArrayList<MessageFlowNode> databaseNodes,
-					  ArrayList<MessageFlowNode> routeNodes,
-					  ArrayList<MessageFlowNode> miscellaneousNodes,
+					  EnumMap<NodeKind, ArrayList<MessageFlowNode>> nodes,
 					  ArrayList<MessageFlowConnection> connections,
 					  ArrayList<MessageFlowCommentNote> comments,
 					  StringBuilder shortDescription,
@@ -117,41 +69,21 @@ public class MessageFlowParser {
 		LOG.debug("START");
 
 		try {
-			Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(fileName);
+			Document document = XmlInput.parseDocument(fileName);
 		
 			XPathExpression numberOfNodes = XPathFactory.newInstance().newXPath().compile("count(//nodes)");
 			int non = Integer.parseInt((String)numberOfNodes.evaluate(document, XPathConstants.STRING));
 			
 			for (; non > 0; non--) {
-				LOG.debug("Prepare expressions - START");
-				
-				XPathExpression idExpr								= XPathFactory.newInstance().newXPath().compile("//nodes[" + non +  "]/@id");
-				XPathExpression nameExpr							= XPathFactory.newInstance().newXPath().compile("//nodes[" + non + "]/translation/@string");
-				XPathExpression typeExpr							= XPathFactory.newInstance().newXPath().compile("//nodes[" + non + "]/@type");
-				XPathExpression buildTreeUsingSchemaExpr			= XPathFactory.newInstance().newXPath().compile("//nodes[" + non + "]/@parserXmlnscBuildTreeUsingXMLSchema");
-				XPathExpression mixedContentRetainModeExpr			= XPathFactory.newInstance().newXPath().compile("//nodes[" + non + "]/@parserXmlnscMixedContentRetainMode");
-				XPathExpression commentsRetainModeExpr				= XPathFactory.newInstance().newXPath().compile("//nodes[" + non + "]/@parserXmlnscCommentsRetainMode");
-				XPathExpression validateMasterExpr					= XPathFactory.newInstance().newXPath().compile("//nodes[" + non + "]/@validateMaster");
-				XPathExpression messageDomainPropertyExpr			= XPathFactory.newInstance().newXPath().compile("//nodes[" + non + "]/@messageDomainProperty");
-				XPathExpression messageSetPropertyExpr				= XPathFactory.newInstance().newXPath().compile("//nodes[" + non + "]/@messageSetProperty");
-				XPathExpression requestMsgLocationInTreeExpr		= XPathFactory.newInstance().newXPath().compile("//nodes[" + non + "]/@requestMsgLocationInTree");
-
-				XPathExpression messageDomainExpr					= XPathFactory.newInstance().newXPath().compile("//nodes[" + non +  "]/@messageDomain");
-				XPathExpression messageSetExpr						= XPathFactory.newInstance().newXPath().compile("//nodes[" + non +  "]/@messageSet");
-				XPathExpression recordDefinitionExpr				= XPathFactory.newInstance().newXPath().compile("//nodes[" + non +  "]/@recordDefinition");
-				XPathExpression resetMessageDomainExpr				= XPathFactory.newInstance().newXPath().compile("//nodes[" + non +  "]/@resetMessageDomain");
-				XPathExpression resetMessageSetExpr					= XPathFactory.newInstance().newXPath().compile("//nodes[" + non +  "]/@resetMessageSet");
-				XPathExpression resetMessageTypeExpr				= XPathFactory.newInstance().newXPath().compile("//nodes[" + non +  "]/@resetMessageType");
-				XPathExpression resetMessageFormatExpr				= XPathFactory.newInstance().newXPath().compile("//nodes[" + non +  "]/@resetMessageFormat");
-				XPathExpression monitoringEventsExpr				= XPathFactory.newInstance().newXPath().compile("count(//nodes[" + non +  "]/monitorEvents)");
-				XPathExpression monitoringEventsEventEnabledExpr	= XPathFactory.newInstance().newXPath().compile("//nodes[" + non +  "]/monitorEvents/@eventEnabled");
-
-				LOG.debug("Prepare expressions - END");
+				FileDeadline.check();
+				/* the element of the node is looked up once, its attributes are read from the DOM */
+				XPathExpression nodeExpr = XPathFactory.newInstance().newXPath().compile("//nodes[" + non + "]");
+				Element element = (Element) nodeExpr.evaluate(document, XPathConstants.NODE);
 				LOG.debug("Evaluate expressions - START");
 
-				String id						= (String)idExpr.evaluate(document, XPathConstants.STRING);
-				String name						= (String)nameExpr.evaluate(document, XPathConstants.STRING);
-				String type						= (String)typeExpr.evaluate(document, XPathConstants.STRING);
+				String id						= attribute(element, "id");
+				String name						= childAttribute(element, "translation", "string");
+				String type						= attribute(element, "type");
 				
 				LOG.debug("id: " + id);
 				LOG.debug("name: " + name);
@@ -163,29 +95,29 @@ public class MessageFlowParser {
 //					continue;
 //				}
 
-				String messageDomainProperty	= (String)messageDomainPropertyExpr.evaluate(document, XPathConstants.STRING);
-				String messageSetProperty		= (String)messageSetPropertyExpr.evaluate(document, XPathConstants.STRING);
-				String requestMsgLocationInTree	= (String)requestMsgLocationInTreeExpr.evaluate(document, XPathConstants.STRING);
-				String messageDomain			= (String)messageDomainExpr.evaluate(document, XPathConstants.STRING);
-				String messageSet				= (String)messageSetExpr.evaluate(document, XPathConstants.STRING);
-				String recordDefinition			= (String)recordDefinitionExpr.evaluate(document, XPathConstants.STRING);
+				String messageDomainProperty	= attribute(element, "messageDomainProperty");
+				String messageSetProperty		= attribute(element, "messageSetProperty");
+				String requestMsgLocationInTree	= attribute(element, "requestMsgLocationInTree");
+				String messageDomain			= attribute(element, "messageDomain");
+				String messageSet				= attribute(element, "messageSet");
+				String recordDefinition			= attribute(element, "recordDefinition");
 				//added condition to store subflow types with the extention
 				if (type.contains("ComIbm")) {
 					type 						= type.substring(0, type.indexOf(".")).replace("ComIbm", "");
 				}else{
 					type 						= type.substring(0, type.indexOf(":"));
 				}
-				boolean buildTreeUsingSchema 	= Boolean.parseBoolean((String)buildTreeUsingSchemaExpr.evaluate(document, XPathConstants.STRING));
-				boolean mixedContentRetainMode	= ((String)mixedContentRetainModeExpr.evaluate(document, XPathConstants.STRING)).equals("all");
-				boolean commentsRetainMode		= ((String)commentsRetainModeExpr.evaluate(document, XPathConstants.STRING)).equals("all");
-				boolean validateMaster			= ((String)validateMasterExpr.evaluate(document, XPathConstants.STRING)).equals("contentAndValue");
-				boolean resetMessageDomain	 	= Boolean.parseBoolean((String)resetMessageDomainExpr.evaluate(document, XPathConstants.STRING));
-				boolean resetMessageSet 		= Boolean.parseBoolean((String)resetMessageSetExpr.evaluate(document, XPathConstants.STRING));
-				boolean resetMessageType 		= Boolean.parseBoolean((String)resetMessageTypeExpr.evaluate(document, XPathConstants.STRING));
-				boolean resetMessageFormat 		= Boolean.parseBoolean((String)resetMessageFormatExpr.evaluate(document, XPathConstants.STRING));
+				boolean buildTreeUsingSchema 	= Boolean.parseBoolean(attribute(element, "parserXmlnscBuildTreeUsingXMLSchema"));
+				boolean mixedContentRetainMode	= attribute(element, "parserXmlnscMixedContentRetainMode").equals("all");
+				boolean commentsRetainMode		= attribute(element, "parserXmlnscCommentsRetainMode").equals("all");
+				boolean validateMaster			= attribute(element, "validateMaster").equals("contentAndValue");
+				boolean resetMessageDomain	 	= Boolean.parseBoolean(attribute(element, "resetMessageDomain"));
+				boolean resetMessageSet 		= Boolean.parseBoolean(attribute(element, "resetMessageSet"));
+				boolean resetMessageType 		= Boolean.parseBoolean(attribute(element, "resetMessageType"));
+				boolean resetMessageFormat 		= Boolean.parseBoolean(attribute(element, "resetMessageFormat"));
 				
-				int monitoringEvents				= Integer.parseInt((String)monitoringEventsExpr.evaluate(document, XPathConstants.STRING));
-				String monitoringEventsEventEnabled	= (String)monitoringEventsEventEnabledExpr.evaluate(document, XPathConstants.STRING);
+				int monitoringEvents				= children(element, "monitorEvents").size();
+				String monitoringEventsEventEnabled	= childAttribute(element, "monitorEvents", "eventEnabled");
 				boolean areMonitoringEventsEnabled	= true;
 				
 				/* 
@@ -223,248 +155,71 @@ public class MessageFlowParser {
 				Map<String, Object> properties = new HashMap<String, Object>();
 				if(type.equals("MQInput")||type.equals("MQOutput")||type.equals("MQGet")||type.equals("MQReply")){
 					if(type.equals("MQInput")||type.equals("MQOutput")||type.equals("MQGet")){
-						XPathExpression queueNameExp = XPathFactory.newInstance().newXPath().compile("//nodes[@id='"+id+"']/@queueName");
-						String queueName = (String) queueNameExp.evaluate(document,XPathConstants.STRING);
-					
-						properties.put("queueName",queueName);
+						properties.put("queueName", attribute(element, "queueName"));
 					}
 					
-					XPathExpression txnModeExp = XPathFactory.newInstance().newXPath().compile("//nodes[@id='"+id+"']/@transactionMode");
-					String txnMode = (String) txnModeExp.evaluate(document,XPathConstants.STRING);
-				
-					properties.put("transactionMode",txnMode);
+					properties.put("transactionMode", attribute(element, "transactionMode"));
 				}
 				else if (type.equals("IMSRequest")) {
-					XPathExpression shortDescriptionIMSExp		= XPathFactory.newInstance().newXPath().compile("//nodes[@id='"+id+"']/shortDescription/@string");
-					String shortDescriptionIMS = (String) shortDescriptionIMSExp.evaluate(document,XPathConstants.STRING);
-					properties.put("shortDescription", shortDescriptionIMS);
-					
-					XPathExpression longDescriptionIMSExp		= XPathFactory.newInstance().newXPath().compile("//nodes[@id='"+id+"']/longDescription/@string");
-					String longDescriptionIMS = (String) longDescriptionIMSExp.evaluate(document,XPathConstants.STRING);
-					properties.put("longDescription", longDescriptionIMS);
-					
-					XPathExpression useNodePropertiesExp = XPathFactory.newInstance().newXPath().compile("//nodes[@id='"+id+"']/@useNodeProperties");
-					String useNodeProperties = (String) useNodePropertiesExp.evaluate(document,XPathConstants.STRING);
-					properties.put("useNodeProperties", useNodeProperties);
-					
-					XPathExpression configurableServiceExp = XPathFactory.newInstance().newXPath().compile("//nodes[@id='"+id+"']/@configurableService");
-					String configurableService = (String) configurableServiceExp.evaluate(document,XPathConstants.STRING);
-					properties.put("configurableService", configurableService);
-					
-					XPathExpression commitModeExp = XPathFactory.newInstance().newXPath().compile("//nodes[@id='"+id+"']/@commitMode");
-					String commitMode = (String) commitModeExp.evaluate(document,XPathConstants.STRING);
-					properties.put("commitMode", commitMode);
-					
+					properties.put("shortDescription", childAttribute(element, "shortDescription", "string"));
+					properties.put("longDescription", childAttribute(element, "longDescription", "string"));
+					properties.put("useNodeProperties", attribute(element, "useNodeProperties"));
+					properties.put("configurableService", attribute(element, "configurableService"));
+					properties.put("commitMode", attribute(element, "commitMode"));
 				}
 				else if(type.equals("WSReply")) {
-					XPathExpression ignoreTransportFailuresExp = XPathFactory.newInstance().newXPath().compile("//nodes[@id='"+id+"']/@ignoreTransportFailures");
-					String ignoreTransportFailures = (String) ignoreTransportFailuresExp.evaluate(document,XPathConstants.STRING);
-					properties.put("ignoreTransportFailures", ignoreTransportFailures);
-					XPathExpression generateDefaultHttpHeadersExp = XPathFactory.newInstance().newXPath().compile("//nodes[@id='"+id+"']/@generateDefaultHttpHeaders");
-					String generateDefaultHttpHeaders = (String) generateDefaultHttpHeadersExp.evaluate(document,XPathConstants.STRING);
-					properties.put("generateDefaultHttpHeaders", generateDefaultHttpHeaders);
+					properties.put("ignoreTransportFailures", attribute(element, "ignoreTransportFailures"));
+					properties.put("generateDefaultHttpHeaders", attribute(element, "generateDefaultHttpHeaders"));
 				}
 				else if(type.equals("SOAPRequest")){					
-					XPathExpression requestTimeoutExp = XPathFactory.newInstance().newXPath().compile("//nodes[@id='"+id+"']/@requestTimeout");
-					String requestTimeout = (String) requestTimeoutExp.evaluate(document,XPathConstants.STRING);
-					properties.put("requestTimeout", requestTimeout);
+					properties.put("requestTimeout", attribute(element, "requestTimeout"));
 				}
 				else if(type.equals("AggregateControl")){
-					XPathExpression timeoutIntervalExp = XPathFactory.newInstance().newXPath().compile("//nodes[@id='"+id+"']/@timeoutInterval");
-					String timeoutInterval = (String) timeoutIntervalExp.evaluate(document,XPathConstants.STRING);
-					properties.put("timeoutInterval", timeoutInterval);
+					properties.put("timeoutInterval", attribute(element, "timeoutInterval"));
 				}
 				else if(type.equals("Compute")){
-					XPathExpression computeExpressionExp = XPathFactory.newInstance().newXPath().compile("//nodes[@id='"+id+"']/@computeExpression");
-					String computeExpression = (String) computeExpressionExp.evaluate(document,XPathConstants.STRING);
-					computeExpression = computeExpression.substring(computeExpression.indexOf("#")+1, computeExpression.indexOf(".Main"));
+					String computeExpressionFull = attribute(element, "computeExpression");
+					String computeExpression = computeExpressionFull.substring(computeExpressionFull.indexOf("#")+1, computeExpressionFull.indexOf(".Main"));
 					properties.put("computeExpression", computeExpression);
-					
-					String computeExpressionFull = (String) computeExpressionExp.evaluate(document,XPathConstants.STRING);
 					properties.put("computeExpressionFull", computeExpressionFull);
-					
-					XPathExpression dataSourceExp = XPathFactory.newInstance().newXPath().compile("//nodes[@id='"+id+"']/@dataSource");
-					String dataSource = (String) dataSourceExp.evaluate(document,XPathConstants.STRING);
-					properties.put("dataSource", dataSource);
-					
+					properties.put("dataSource", attribute(element, "dataSource"));
 				}
 				else if(type.equals("Filter")){
-					XPathExpression filterExpressionExp = XPathFactory.newInstance().newXPath().compile("//nodes[@id='"+id+"']/@filterExpression");
-					String filterExpression = (String) filterExpressionExp.evaluate(document,XPathConstants.STRING);
+					String filterExpression = attribute(element, "filterExpression");
+					properties.put("filterExpressionFull", filterExpression);
 					filterExpression = filterExpression.substring(filterExpression.indexOf("#")+1, filterExpression.indexOf(".Main"));
 					properties.put("filterExpression", filterExpression);
 				}
 				else if(type.equals("Database")){
-					XPathExpression statementExp = XPathFactory.newInstance().newXPath().compile("//nodes[@id='"+id+"']/@statement");
-					String statement = (String) statementExp.evaluate(document,XPathConstants.STRING);
+					String statement = attribute(element, "statement");
+					properties.put("statementFull", statement);
 					statement = statement.substring(statement.indexOf("#")+1, statement.indexOf(".Main"));
 					properties.put("statement", statement);
 				}
 				else if(type.equals("Route")){
-					XPathExpression filterTableCountExp = XPathFactory.newInstance().newXPath().compile("count(//nodes[@id='"+id+"']/filterTable)");
-					int nof = Integer.parseInt((String) filterTableCountExp.evaluate(document,XPathConstants.STRING));
+					List<Element> filterTables = children(element, "filterTable");
 					ArrayList<String> routeTable = new ArrayList<String>();
-//					System.out.println(noFil);
-					for(; nof > 0 ; nof-- ){
-						XPathExpression outTerminalExp = XPathFactory.newInstance().newXPath().compile("//nodes[@id='"+id+"']/filterTable["+ nof +"]/@routingOutputTerminal");
-						String outTerminal = (String)outTerminalExp.evaluate(document,XPathConstants.STRING);
-						routeTable.add(outTerminal);
+					/* in reverse order like the other lists of the parser */
+					for (int nof = filterTables.size(); nof > 0; nof--) {
+						routeTable.add(attribute(filterTables.get(nof - 1), "routingOutputTerminal"));
 					}
 					properties.put("routeTerminals", routeTable);
 				}
 				
 				if (type.equals("MQInput") || type.equals("FileInput") || type.equals("WSInput")
 						|| type.equals("SOAPInput")) {
-					XPathExpression componentLevelExp = XPathFactory.newInstance().newXPath().compile("//nodes[@id='" + id + "']/@componentLevel");
-					String componentLevel = (String) componentLevelExp.evaluate(document, XPathConstants.STRING);
-					properties.put("componentLevel", componentLevel);
-
-					XPathExpression additionalInstancesExp = XPathFactory.newInstance().newXPath().compile("//nodes[@id='" + id + "']/@additionalInstances");
-					String additionalInstances = (String) additionalInstancesExp.evaluate(document, XPathConstants.STRING);
-					properties.put("additionalInstances", additionalInstances);
+					properties.put("componentLevel", attribute(element, "componentLevel"));
+					properties.put("additionalInstances", attribute(element, "additionalInstances"));
 				}
+				NodeAttributes attributes = attributes(element);
 				LOG.debug("Evaluate expressions - END");
 				LOG.debug("Fill nodes - START");
 
 				/* create new MessageFlowNode using values extracted from msgflow file */
-				MessageFlowNode mfn = new MessageFlowNode(id, name, type, buildTreeUsingSchema, mixedContentRetainMode, commentsRetainMode, validateMaster, messageDomainProperty, messageSetProperty, requestMsgLocationInTree, messageDomain, messageSet, recordDefinition, resetMessageDomain, resetMessageSet, resetMessageType, resetMessageFormat, areMonitoringEventsEnabled, inputTerminals, outputTerminals,properties);
+				MessageFlowNode mfn = new MessageFlowNode(id, name, type, buildTreeUsingSchema, mixedContentRetainMode, commentsRetainMode, validateMaster, messageDomainProperty, messageSetProperty, requestMsgLocationInTree, messageDomain, messageSet, recordDefinition, resetMessageDomain, resetMessageSet, resetMessageType, resetMessageFormat, areMonitoringEventsEnabled, inputTerminals, outputTerminals,properties, attributes);
 				
-				if (type.equals("Collector")) {
-					/* Collector */
-					LOG.debug("Collector");
-
-					collectorNodes.add(mfn);
-				} else if (type.equals("Compute")) {
-					/* Compute */
-					LOG.debug("Compute");
-					
-					computeNodes.add(mfn);
-				} else if (type.equals("FileInput")) {
-					LOG.debug("FileInput");
-					
-					/* FileInput */
-					fileInputNodes.add(mfn);
-				} else if (type.equals("FileOutput")) {
-					LOG.debug("FileOutput");
-					
-					/* FileOutput */
-					fileOutputNodes.add(mfn);
-				} else if (type.equals("WSInput")) {
-					LOG.debug("WSInput");
-					
-					/* HTTPInput */
-					httpInputNodes.add(mfn);
-				} else if (type.equals("WSRequest")) {
-					LOG.debug("WSRequest");
-					
-					/* HTTPRequest */
-					httpRequestNodes.add(mfn);
-				}else if (type.equals("WSReply")) {
-					LOG.debug("WSReply");
-					
-					/* HTTPReply */
-					httpReplyNodes.add(mfn);
-				} else if (type.equals("MQInput")) {
-					LOG.debug("MQInput");
-					
-					/* MQInput */
-					mqInputNodes.add(mfn);
-				} else if (type.equals("MQOutput")) {
-					LOG.debug("MQOutput");
-					
-					/* MQOutput */
-					mqOutputNodes.add(mfn);
-				} else if (type.equals("MQGet")) {
-					LOG.debug("MQGet");
-					
-					/* MQGet */
-					mqGetNodes.add(mfn);
-				} else if (type.equals("MQHeader")) {
-					LOG.debug("MQHeader");
-					
-					/* MQHeader */
-					mqHeaderNodes.add(mfn);
-				} else if (type.equals("MQReply")) {
-					LOG.debug("MQReply");
-					
-					/* MQReply */
-					mqReplyNodes.add(mfn);
-				} else if (type.equals("ResetContentDescriptor")) {
-					LOG.debug("ResetContentDescriptor");
-					
-					/* ResetContentDescriptor */
-					resetContentDescriptorNodes.add(mfn);
-				} else if (type.equals("SOAPInput")) {
-					LOG.debug("SOAPInput");
-					
-					/* SOAPInput */
-					soapInputNodes.add(mfn);
-				} else if (type.equals("SOAPRequest")) {
-					LOG.debug("SOAPRequest");
-					
-					/* SOAPRequest */
-					soapRequestNodes.add(mfn);
-				} else if (type.equals("TimeoutControl")) {
-					LOG.debug("TimeoutControl");
-					
-					/* TimeoutControl */
-					timeoutControlNodes.add(mfn);
-				} else if (type.equals("TimeoutNotification")) {
-					LOG.debug("TimeoutNotification");
-					
-					/* TimeoutNotification */
-					timeoutNotificationNodes.add(mfn);
-				} else if (type.equals("TryCatch")) {
-					LOG.debug("TryCatch");
-					
-					/* TryCatch */
-					tryCatchNodes.add(mfn);
-				} else if (type.equals("IMSRequest")) {
-					LOG.debug("IMSRequest");
-					
-					/* IMS Request */
-					imsRequestNodes.add(mfn);
-				} else if (type.equals("Filter")) {
-					LOG.debug("Filter");
-					
-					/* Filter */
-					filterNodes.add(mfn);
-				} else if (type.equals("Trace")) {
-					LOG.debug("Trace");
-					
-					/* Trace */
-					traceNodes.add(mfn);
-				} else if (type.equals("Label")) {
-					LOG.debug("Label");
-					
-					/* Label */
-					labelNodes.add(mfn);
-				} else if (type.equals("RouteToLabel")) {
-					LOG.debug("RouteToLabel");
-					
-					/* RouteToLabel */
-					routeToLabelNodes.add(mfn);
-				} else if (type.equals("AggregateControl")) {
-					LOG.debug("AggregateControl");
-
-					/* AggregateControl */
-					aggregateControlNodes.add(mfn);
-				} else if (type.equals("Database")) {
-					LOG.debug("Database");
-					
-					/* Database */
-					databaseNodes.add(mfn);
-				} else if(type.equals("Route")){
-					LOG.debug("Route");
-					
-					/*routeNodes*/
-					routeNodes.add(mfn);
-				} else {
-					LOG.debug("Miscellaneous");
-					
-					/* Miscellaneous */
-					miscellaneousNodes.add(mfn);
-				}
+				/* the kind of the node selects its list */
+				nodes.get(mfn.getKind()).add(mfn);
 				
 				LOG.debug("Fill nodes - END");
 			}
@@ -485,6 +240,7 @@ public class MessageFlowParser {
 			int noc = Integer.parseInt((String)numberOfConnections.evaluate(document, XPathConstants.STRING));
 			
 			for (; noc > 0; noc--) {
+				FileDeadline.check();
 				
 				XPathExpression srcNodeExp			= XPathFactory.newInstance().newXPath().compile("//connections[" + noc +  "]/@sourceNode");
 				XPathExpression targetNodeExp		= XPathFactory.newInstance().newXPath().compile("//connections[" + noc +  "]/@targetNode");
@@ -513,6 +269,7 @@ public class MessageFlowParser {
 			int nos = Integer.parseInt((String)numberOfStickyNotes.evaluate(document, XPathConstants.STRING));
 			
 			for (; nos > 0; nos--) {
+				FileDeadline.check();
 				XPathExpression associationExp =  XPathFactory.newInstance().newXPath().compile("//stickyNote[" + nos +  "]/@association");
 				XPathExpression commentExp =  XPathFactory.newInstance().newXPath().compile("//stickyNote[" + nos +  "]/body/@string");
 				XPathExpression locationExp =  XPathFactory.newInstance().newXPath().compile("//stickyNote[" + nos +  "]/@location");
@@ -534,16 +291,114 @@ public class MessageFlowParser {
 			
 		} catch (XPathExpressionException e) {
 			LOG.error(e.getMessage());
+		} catch (XmlLimitException e) {
+			LOG.warn(e.getMessage());
 		} catch (SAXException e) {
-			LOG.error(e.getMessage());
-		} catch (ParserConfigurationException e) {
-			LOG.error(e.getMessage());
+			LOG.warn("The file " + fileName + " could not be parsed: " + e.getMessage());
 		} catch (IOException e) {
 			LOG.error(e.getMessage());
+		} catch (FileTimeoutException e) {
+			// the analysis of the file is cancelled
+			throw e;
 		} catch (Exception e) {
 			LOG.error(e.getMessage());
 		}
 		
 		LOG.debug("END");
 	}
+	
+	/**
+	 * The method collects the attributes of a 'nodes' element and the 
+	 * attributes of its direct child elements, e.g. 'translation.string', 
+	 * in a single pass. XMI attributes of the child elements are omitted.
+	 * 
+	 * @param element the 'nodes' element
+	 * @return the attribute table of the node
+	 */
+	private static NodeAttributes attributes(Element element) {
+		Map<String, String> attributes = new HashMap<String, String>();
+		NamedNodeMap elementAttributes = element.getAttributes();
+		for (int i = 0; i < elementAttributes.getLength(); i++) {
+			Node attribute = elementAttributes.item(i);
+			attributes.put(localName(attribute.getNodeName()), attribute.getNodeValue());
+		}
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() != Node.ELEMENT_NODE) {
+				continue;
+			}
+			NamedNodeMap childAttributes = child.getAttributes();
+			for (int i = 0; i < childAttributes.getLength(); i++) {
+				Node attribute = childAttributes.item(i);
+				String key = localName(child.getNodeName()) + "." + localName(attribute.getNodeName());
+				if (!attribute.getNodeName().startsWith("xmi:") && !attributes.containsKey(key)) {
+					attributes.put(key, attribute.getNodeValue());
+				}
+			}
+		}
+		return new NodeAttributes(attributes);
+	}
+	
+	/**
+	 * The method returns an attribute of an element by its name without a
+	 * prefix, like the XPath expression '@name' of the parser did.
+	 * 
+	 * @param element the element
+	 * @param name the name of the attribute, e.g. 'type' for 'xmi:type'
+	 * @return the value or an empty string if the attribute is missing
+	 */
+	private static String attribute(Element element, String name) {
+		NamedNodeMap attributes = element.getAttributes();
+		for (int i = 0; i < attributes.getLength(); i++) {
+			Node attribute = attributes.item(i);
+			if (localName(attribute.getNodeName()).equals(name)) {
+				return attribute.getNodeValue();
+			}
+		}
+		return "";
+	}
+	
+	/**
+	 * The method returns the first attribute of the direct child elements 
+	 * with a name, like the XPath expression 'child/@name'.
+	 * 
+	 * @param element the parent element
+	 * @param child the name of the child elements
+	 * @param name the name of the attribute
+	 * @return the value or an empty string if no child has the attribute
+	 */
+	private static String childAttribute(Element element, String child, String name) {
+		for (Element childElement : children(element, child)) {
+			if (hasAttribute(childElement, name)) {
+				return attribute(childElement, name);
+			}
+		}
+		return "";
+	}
+	
+	private static boolean hasAttribute(Element element, String name) {
+		NamedNodeMap attributes = element.getAttributes();
+		for (int i = 0; i < attributes.getLength(); i++) {
+			if (localName(attributes.item(i).getNodeName()).equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @return the direct child elements with a name in document order
+	 */
+	private static List<Element> children(Element element, String name) {
+		List<Element> children = new ArrayList<Element>();
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE && localName(child.getNodeName()).equals(name)) {
+				children.add((Element) child);
+			}
+		}
+		return children;
+	}
+	
+	private static String localName(String name) {
+		return name.substring(name.indexOf(':') + 1);
+	}
 }
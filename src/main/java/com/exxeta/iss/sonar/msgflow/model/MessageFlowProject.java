@@ -17,12 +17,43 @@
  */
 package com.exxeta.iss.sonar.msgflow.model;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 /**
  * The class holds the list of message flows (internal message flow model) of a 
  * single message flow project.
  * 
+ * It also holds the index of the ESQL modules of the project (see 
+ * {@link EsqlModuleIndex}) and the index of the sub flow references (see
+ * {@link SubflowIndex}).
+ * 
+ * The models are kept for one scanner session only. A session is opened 
+ * with {@link #open(MessageFlowParser)} and released with {@link #close()}. 
+ * The models can be retrieved concurrently, every file is parsed at most 
+ * once per session. If the session is opened with a 
+ * {@link MessageFlowModelCache}, unchanged files are not parsed at all.
+ * 
+ * The memory held by the models can be bounded by a number of models or an
+ * estimated number of bytes (per model kind). The least recently used 
+ * models are evicted and built again if they are needed later. Without a 
+ * bound every model is kept until the end of the session. Optionally the 
+ * models are softly referenced, i.e. they are also evicted if the heap runs 
+ * out of memory.
+ * 
  * @author Hendrik Scholz (EXXETA AG)
  */
 public class MessageFlowProject {
@@ -33,82 +64,461 @@ public class MessageFlowProject {
 	//private static final Logger LOG = LoggerFactory.getLogger(MessageFlowProject.class);
 	
 	/**
-	 * a HashMap holding the file name and the message flow object
+	 * a cache holding the file name and the message flow object
+	 */
+	private final LoadingCache<String, MessageFlow> msgflowMap;
+	
+	/**
+	 * a cache holding the file name and the message map object
+	 */
+	private final LoadingCache<String, MessageMap> msgmapMap;
+	
+	/**
+	 * the names of the message flow files that have been loaded
 	 */
-	private static HashMap<String, MessageFlow> msgflowMap;
+	private final Set<String> loadedFlows = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 	
 	/**
-	 * a HashMap holding the file name and the message map object
+	 * the names of the message map files that have been loaded
 	 */
-	private static HashMap<String, MessageMap> msgmapMap;
+	private final Set<String> loadedMaps = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	
+	/**
+	 * the names of the files skipped because their analysis exceeded the time budget
+	 */
+	private final Set<String> skippedFiles = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	
+	/**
+	 * the number of models that have been built again after their eviction,
+	 * only with a bound or soft values
+	 */
+	private final AtomicLong rebuilds = new AtomicLong();
+	
+	/**
+	 * whether the number of models or their size is bounded
+	 */
+	private final boolean bounded;
+	
+	/**
+	 * the index of the ESQL modules of the project
+	 */
+	private final EsqlModuleIndex esqlModuleIndex = new EsqlModuleIndex(new EsqlModuleParser());
 
 	/**
-	 * the one and only instance of the MessageFlowProject
+	 * the index of the sub flow references of the project, a file is added 
+	 * when its model is built
 	 */
-	private static MessageFlowProject instance;
+	private final SubflowIndex subflowIndex = new SubflowIndex(new Function<String, MessageFlow>() {
+		@Override
+		public MessageFlow apply(String fileName) {
+			return getMessageFlow(fileName);
+		}
+	});
+
+	/**
+	 * the instance of the MessageFlowProject of the current session
+	 */
+	private static volatile MessageFlowProject instance;
 	
 	/**
 	 * Constructor
 	 * 
 	 * Direct instantiation is not possible.
+	 * 
+	 * @param messageFlowParser the parser used to create the message flow objects
+	 * @param modelCache the persistent model cache or null
+	 * @param maxEntries the maximum number of models per kind, 0 for no limit
+	 * @param maxBytes the maximum estimated size of the models per kind, 0 for no limit
+	 * @param softValues whether the models may be collected if the heap runs short
 	 */
-	private MessageFlowProject() {
+	private MessageFlowProject(final MessageFlowParser messageFlowParser, final MessageFlowModelCache modelCache,
+			long maxEntries, long maxBytes, boolean softValues) {
+		bounded = maxEntries > 0 || maxBytes > 0;
+		msgflowMap = build(maxEntries, maxBytes, softValues, new Weigher<String, MessageFlow>() {
+			@Override
+			public int weigh(String fileName, MessageFlow messageFlow) {
+				return (int) Math.min(Integer.MAX_VALUE, estimateSize(messageFlow));
+			}
+		}, new CacheLoader<String, MessageFlow>() {
+			@Override
+			public MessageFlow load(String fileName) {
+				if (!loadedFlows.add(fileName)) {
+					rebuilds.incrementAndGet();
+				}
+				boolean started = FileDeadline.start(fileName);
+				try {
+					MessageFlow messageFlow = modelCache != null ? modelCache.getMessageFlow(fileName, messageFlowParser)
+							: new MessageFlow(fileName, messageFlowParser);
+					subflowIndex.add(fileName, messageFlow);
+					return messageFlow;
+				} catch (FileTimeoutException e) {
+					if (started) {
+						skip(fileName);
+					}
+					// otherwise the budget belongs to the file loading this one, e.g. its parent flow
+					throw e;
+				} finally {
+					if (started) {
+						FileDeadline.stop();
+					}
+				}
+			}
+		});
+		msgmapMap = build(maxEntries, maxBytes, softValues, new Weigher<String, MessageMap>() {
+			@Override
+			public int weigh(String fileName, MessageMap messageMap) {
+				return (int) Math.min(Integer.MAX_VALUE, estimateSize(messageMap));
+			}
+		}, new CacheLoader<String, MessageMap>() {
+			@Override
+			public MessageMap load(String fileName) {
+				if (!loadedMaps.add(fileName)) {
+					rebuilds.incrementAndGet();
+				}
+				boolean started = FileDeadline.start(fileName);
+				try {
+					if (modelCache != null) {
+						return modelCache.getMessageMap(fileName, new MessageMapParser());
+					}
+					return new MessageMap(fileName, new MessageMapParser());
+				} catch (FileTimeoutException e) {
+					if (started) {
+						skip(fileName);
+					}
+					// otherwise the budget belongs to the file loading this one, e.g. its parent flow
+					throw e;
+				} finally {
+					if (started) {
+						FileDeadline.stop();
+					}
+				}
+			}
+		});
 	}
 	
 	/**
-	 * Creates an instance of a MessageFlowProject and initialises the HashMap
+	 * Returns the instance of the MessageFlowProject of the current session. 
+	 * If no session has been opened, a session using the StAX parser is 
+	 * opened.
 	 * 
 	 * @return an instance of a MessageFlowProject
 	 */
 	public static MessageFlowProject getInstance() {
-		if (instance == null) {
-			instance = new MessageFlowProject();
-			msgflowMap = new HashMap<String, MessageFlow>();
-			msgmapMap = new HashMap<String, MessageMap>();
+		MessageFlowProject project = instance;
+		if (project == null) {
+			synchronized (MessageFlowProject.class) {
+				project = instance;
+				if (project == null) {
+					project = new MessageFlowProject(new MessageFlowStaxParser(), null, 0, 0, false);
+					instance = project;
+				}
+			}
 		}
 		
+		return project;
+	}
+	
+	/**
+	 * Opens a new session. The models of a previous session are released.
+	 * 
+	 * @param messageFlowParser the parser used to create the message flow objects
+	 * @return the instance of the MessageFlowProject of the new session
+	 */
+	public static synchronized MessageFlowProject open(MessageFlowParser messageFlowParser) {
+		return open(messageFlowParser, null);
+	}
+	
+	/**
+	 * Opens a new session using a persistent model cache. The models of a 
+	 * previous session are released.
+	 * 
+	 * @param messageFlowParser the parser used to create the message flow objects
+	 * @param modelCache the persistent model cache or null
+	 * @return the instance of the MessageFlowProject of the new session
+	 */
+	public static synchronized MessageFlowProject open(MessageFlowParser messageFlowParser, MessageFlowModelCache modelCache) {
+		return open(messageFlowParser, modelCache, 0, 0);
+	}
+	
+	/**
+	 * Opens a new session with bounded memory. The least recently used 
+	 * models are evicted if one of the limits is exceeded. The models of a 
+	 * previous session are released.
+	 * 
+	 * @param messageFlowParser the parser used to create the message flow objects
+	 * @param modelCache the persistent model cache or null
+	 * @param maxEntries the maximum number of models per kind, 0 for no limit (ignored if maxBytes is set)
+	 * @param maxBytes the maximum estimated size of the models per kind in bytes, 0 for no limit
+	 * @return the instance of the MessageFlowProject of the new session
+	 */
+	public static synchronized MessageFlowProject open(MessageFlowParser messageFlowParser, MessageFlowModelCache modelCache,
+			long maxEntries, long maxBytes) {
+		return open(messageFlowParser, modelCache, maxEntries, maxBytes, false);
+	}
+	
+	/**
+	 * Opens a new session with bounded memory. Without a limit and without 
+	 * soft values every model is built at most once per session. With soft 
+	 * values the models may also be collected if the heap runs short, they 
+	 * are built again when they are retrieved. The models of a previous 
+	 * session are released.
+	 * 
+	 * @param messageFlowParser the parser used to create the message flow objects
+	 * @param modelCache the persistent model cache or null
+	 * @param maxEntries the maximum number of models per kind, 0 for no limit (ignored if maxBytes is set)
+	 * @param maxBytes the maximum estimated size of the models per kind in bytes, 0 for no limit
+	 * @param softValues whether the models may be collected if the heap runs short
+	 * @return the instance of the MessageFlowProject of the new session
+	 */
+	public static synchronized MessageFlowProject open(MessageFlowParser messageFlowParser, MessageFlowModelCache modelCache,
+			long maxEntries, long maxBytes, boolean softValues) {
+		close();
+		instance = new MessageFlowProject(messageFlowParser, modelCache, maxEntries, maxBytes, softValues);
+		
 		return instance;
 	}
 	
+	/**
+	 * Closes the current session and releases all models.
+	 */
+	public static synchronized void close() {
+		if (instance != null) {
+			instance.msgflowMap.invalidateAll();
+			instance.msgmapMap.invalidateAll();
+			instance = null;
+		}
+	}
+	
+	/**
+	 * Closes a session if it is still the current one. A session opened 
+	 * since then, e.g. by another analysis, is kept.
+	 * 
+	 * @param project the session to close
+	 */
+	public static synchronized void close(MessageFlowProject project) {
+		if (instance == project) {
+			close();
+		}
+	}
+	
 	/**
 	 * The method retrieves the message flow object using the file name.
 	 * 
 	 * If the file name is not in the map, the file is parsed and the 
 	 * corresponding message flow object is put to the map. If the file name 
 	 * is in the map, the existing message flow object is returned. Every file 
-	 * is just parsed once.
+	 * is just parsed once, concurrent callers wait for the result.
 	 * 
 	 * @param the file name for which the message flow object should be retrieved
 	 * 
 	 * @return the message flow object
 	 */
 	public MessageFlow getMessageFlow(String fileName) {
-		/*
-		 * retrieves the message flow object using the file name
-		 * 
-		 * If the message flow is not in the map, parse the file and put the
-		 * message flow object to the map.
-		 */
-		if (msgflowMap.containsKey(fileName) == false) {
-			msgflowMap.put(fileName,
-					   	   new MessageFlow(fileName, new MessageFlowParser()));
-		}
-
-		return msgflowMap.get(fileName);
+		return get(msgflowMap, fileName);
 	}
 	
+	/**
+	 * The method retrieves the message map object using the file name.
+	 * 
+	 * @param the file name for which the message map object should be retrieved
+	 * 
+	 * @return the message map object
+	 */
 	public MessageMap getMessageMap(String fileName) {
-		/*
-		 * retrieves the message map object using the file name
-		 * 
-		 * If the message map is not in the map, parse the file and put the
-		 * message map object to the map.
-		 */
-		if (msgmapMap.containsKey(fileName) == false) {
-			msgmapMap.put(fileName,
-					   	   new MessageMap(fileName, new MessageMapParser()));
+		return get(msgmapMap, fileName);
+	}
+	
+	/**
+	 * The method returns the index of the ESQL modules of the project.
+	 * 
+	 * @return the ESQL module index of the current session
+	 */
+	public EsqlModuleIndex getEsqlModuleIndex() {
+		return esqlModuleIndex;
+	}
+	
+	/**
+	 * The method returns the index of the sub flow references. It contains 
+	 * the message flows whose models have been built in the session.
+	 * 
+	 * @return the sub flow index of the current session
+	 */
+	public SubflowIndex getSubflowIndex() {
+		return subflowIndex;
+	}
+	
+	/**
+	 * The method releases the model of a changed or deleted file, so it is
+	 * built again the next time it is retrieved. The file is also removed
+	 * from the indexes of the project.
+	 * 
+	 * @param fileName the name of the message flow, message map or ESQL file
+	 */
+	public void invalidate(String fileName) {
+		msgflowMap.invalidate(fileName);
+		msgmapMap.invalidate(fileName);
+		loadedFlows.remove(fileName);
+		loadedMaps.remove(fileName);
+		skippedFiles.remove(fileName);
+		subflowIndex.remove(fileName);
+		esqlModuleIndex.remove(fileName);
+	}
+	
+	/**
+	 * The method records a file as skipped because its analysis exceeded the
+	 * time budget (see {@link FileDeadline}).
+	 * 
+	 * @param fileName the name of the file
+	 */
+	public void skip(String fileName) {
+		skippedFiles.add(fileName);
+	}
+	
+	/**
+	 * The method checks whether a file has been skipped.
+	 * 
+	 * @param fileName the name of the file
+	 * @return true if the analysis of the file exceeded the time budget
+	 */
+	public boolean isSkipped(String fileName) {
+		return skippedFiles.contains(fileName);
+	}
+	
+	/**
+	 * @return the names of the skipped files in ascending order
+	 */
+	public List<String> getSkippedFiles() {
+		List<String> files = new ArrayList<String>(skippedFiles);
+		Collections.sort(files);
+		return files;
+	}
+	
+	/**
+	 * The method checks whether the models may be evicted before the end of 
+	 * the session because of a limit.
+	 * 
+	 * @return true if the number or the size of the models is bounded
+	 */
+	public boolean isBounded() {
+		return bounded;
+	}
+	
+	/**
+	 * @return the number of models retrieved without building them
+	 */
+	public long getHits() {
+		return msgflowMap.stats().hitCount() + msgmapMap.stats().hitCount();
+	}
+	
+	/**
+	 * @return the number of models that had to be built
+	 */
+	public long getMisses() {
+		return msgflowMap.stats().missCount() + msgmapMap.stats().missCount();
+	}
+	
+	/**
+	 * @return the number of models evicted because of a limit or a lack of memory
+	 */
+	public long getEvictions() {
+		return msgflowMap.stats().evictionCount() + msgmapMap.stats().evictionCount();
+	}
+	
+	/**
+	 * @return the number of models that have been built again after their eviction
+	 */
+	public long getRebuilds() {
+		return rebuilds.get();
+	}
+	
+	/**
+	 * The method estimates the heap size of a message flow model.
+	 * 
+	 * @param messageFlow the message flow
+	 * @return the estimated size in bytes
+	 */
+	public static long estimateSize(MessageFlow messageFlow) {
+		// the message flow, its lists and the graph
+		long size = 1024;
+		for (MessageFlowNode node : messageFlow.getNodes()) {
+			// the node and the bit sets of its connected terminals
+			size += 500 + sizeOf(node.getId()) + sizeOf(node.getName()) + sizeOf(node.getType())
+					+ sizeOf(node.getMessageDomainProperty()) + sizeOf(node.getMessageSetProperty())
+					+ sizeOf(node.getRequestMsgLocationInTree()) + sizeOf(node.getMessageDomain())
+					+ sizeOf(node.getMessageSet()) + sizeOf(node.getRecordDefinition());
+			// the keys and values of the attribute tables are shared
+			size += 32 + 8 * node.getAttributes().size();
+			for (String terminal : node.getInputTerminals()) {
+				size += 8 + sizeOf(terminal);
+			}
+			for (String terminal : node.getOutputTerminals()) {
+				size += 8 + sizeOf(terminal);
+			}
+			if (node.getProperties() instanceof NodeProperties) {
+				// the raw values are the attributes, decoded properties are not counted
+				size += 48 + 8 * ((NodeProperties) node.getProperties()).getRouteTerminals().size();
+				continue;
+			}
+			for (Map.Entry<String, Object> property : node.getProperties().entrySet()) {
+				size += 48 + sizeOf(property.getKey());
+				if (property.getValue() instanceof String) {
+					size += sizeOf((String) property.getValue());
+				} else if (property.getValue() instanceof Iterable) {
+					for (Object element : (Iterable<?>) property.getValue()) {
+						size += 8 + sizeOf(String.valueOf(element));
+					}
+				}
+			}
+		}
+		for (MessageFlowConnection connection : messageFlow.getConnections()) {
+			size += 200 + sizeOf(connection.getSrcNode()) + sizeOf(connection.getSrcNodeName())
+					+ sizeOf(connection.getTargetNode()) + sizeOf(connection.getTargetNodeName())
+					+ sizeOf(connection.getSrcTerminal()) + sizeOf(connection.getTargetTerminal());
+		}
+		for (MessageFlowCommentNote comment : messageFlow.getComments()) {
+			size += 64 + sizeOf(comment.getComment()) + 48 * comment.getAssociation().size();
+		}
+		return size + 2L * (messageFlow.getShortDescription().length() + messageFlow.getLongDescription().length());
+	}
+	
+	/**
+	 * The method estimates the heap size of a message map model.
+	 * 
+	 * @param messageMap the message map
+	 * @return the estimated size in bytes
+	 */
+	public static long estimateSize(MessageMap messageMap) {
+		long size = 256;
+		for (Mapping mapping : messageMap.getMappings()) {
+			size += 32 + sizeOf(mapping.getInputPath()) + sizeOf(mapping.getOutputPath());
+		}
+		return size + 2L * (messageMap.getInputVar().length() + messageMap.getOutputVar().length());
+	}
+	
+	private static long sizeOf(String value) {
+		return value == null ? 0 : 40 + 2L * value.length();
+	}
+	
+	private static <V> LoadingCache<String, V> build(long maxEntries, long maxBytes, boolean softValues,
+			Weigher<String, V> weigher, CacheLoader<String, V> loader) {
+		CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+		if (softValues) {
+			builder.softValues();
+		}
+		if (maxBytes > 0) {
+			return builder.maximumWeight(maxBytes).weigher(weigher).build(loader);
+		}
+		if (maxEntries > 0) {
+			builder.maximumSize(maxEntries);
+		}
+		return builder.build(loader);
+	}
+	
+	private static <T> T get(LoadingCache<String, T> cache, String fileName) {
+		try {
+			return cache.getUnchecked(fileName);
+		} catch (UncheckedExecutionException e) {
+			throw Throwables.propagate(e.getCause());
 		}
-
-		return msgmapMap.get(fileName);
 	}
 }
@@ -0,0 +1,460 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The class parses the message flow files (.msgflow, .subflow) in a single
+ * forward pass using StAX. It creates the same internal message flow model
+ * as the XPath based {@link MessageFlowParser}, but without building a DOM
+ * and without evaluating XPath expressions per node.
+ *
+ * The order of the nodes, connections, comment notes and terminals is the
+ * same as the one produced by the XPath based parser (reverse document order).
+ * In the same pass, the parser records the line and column of the 'nodes',
+ * 'connections' and 'stickyNote' elements, so issues can be reported on the
+ * line of a node.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class MessageFlowStaxParser extends MessageFlowParser {
+
+	/**
+	 * The logger for the class.
+	 */
+	private static final Logger LOG = LoggerFactory.getLogger(MessageFlowStaxParser.class);
+
+	/**
+	 * Whether the readers of {@link XmlInput} report the start of an element as
+	 * the location of its START_ELEMENT event (e.g. Woodstox). Otherwise the
+	 * location is the end of the start tag (e.g. the reader of the JDK) and
+	 * the start is the location before the event.
+	 */
+	private static final boolean LOCATION_AT_START = isLocationAtStart();
+
+	/**
+	 * The data of a single 'nodes' element collected during the parse.
+	 */
+	private static class NodeRecord {
+		/* the attributes of the element and ('child.attribute') of its direct children */
+		private Map<String, String> attributes = new HashMap<String, String>();
+		private String name;
+		private int monitorEvents;
+		private String monitorEventsEventEnabled;
+		private ArrayList<String> routeTerminals = new ArrayList<String>();
+		private int line;
+		private int column;
+	}
+
+	/**
+	 * The data of a single 'connections' element collected during the parse.
+	 */
+	private static class ConnectionRecord {
+		private String sourceNode;
+		private String targetNode;
+		private String sourceTerminalName;
+		private String targetTerminalName;
+		private int line;
+		private int column;
+	}
+
+	/**
+	 * The data of a single 'stickyNote' element collected during the parse.
+	 */
+	private static class CommentRecord {
+		private String association = "";
+		private String location = "";
+		private String body;
+		private int line;
+		private int column;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.exxeta.iss.sonar.msgflow.model.MessageFlowParser#parse(java.lang.String, ...)
+	 */
+	/**
+	 * Parses the message flow file (.msgflow) in a single pass and creates the
+	 * message flow node model. See {@link MessageFlowParser} for the parameters.
+	 */
+	@Override
+	public void parse(String fileName,
+					  EnumMap<NodeKind, ArrayList<MessageFlowNode>> nodes,
+					  ArrayList<MessageFlowConnection> connections,
+					  ArrayList<MessageFlowCommentNote> comments,
+					  StringBuilder shortDescription,
+					  StringBuilder longDescription) {
+		LOG.debug("START");
+
+		List<NodeRecord> nodeRecords = new ArrayList<NodeRecord>();
+		List<ConnectionRecord> connectionRecords = new ArrayList<ConnectionRecord>();
+		List<CommentRecord> commentRecords = new ArrayList<CommentRecord>();
+		String flowShortDescription = null;
+		String flowLongDescription = null;
+
+		XMLStreamReader reader = null;
+		try {
+			reader = XmlInput.createStreamReader(fileName);
+
+			/* the element names of the currently open elements */
+			ArrayList<String> path = new ArrayList<String>();
+			NodeRecord node = null;
+			int nodeDepth = -1;
+			CommentRecord comment = null;
+			int commentDepth = -1;
+			int event = XMLStreamConstants.START_DOCUMENT;
+
+			int line = 0;
+			int column = 0;
+
+			while (reader.hasNext()) {
+				if (!LOCATION_AT_START) {
+					Location location = reader.getLocation();
+					line = location.getLineNumber();
+					column = location.getColumnNumber() - (isText(event) ? 1 : 0);
+				}
+				event = reader.next();
+
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					if (LOCATION_AT_START) {
+						Location location = reader.getLocation();
+						line = location.getLineNumber();
+						column = location.getColumnNumber();
+					}
+					String element = localName(reader.getLocalName());
+					String parent = path.isEmpty() ? "" : path.get(path.size() - 1);
+					int depth = path.size();
+					path.add(element);
+
+					if (element.equals("nodes") && node == null) {
+						node = new NodeRecord();
+						node.line = line;
+						node.column = column;
+						nodeDepth = depth;
+						for (int i = 0; i < reader.getAttributeCount(); i++) {
+							node.attributes.put(localName(reader.getAttributeLocalName(i)), reader.getAttributeValue(i));
+						}
+						nodeRecords.add(node);
+					} else if (node != null && depth == nodeDepth + 1) {
+						/* direct child of the current 'nodes' element */
+						for (int i = 0; i < reader.getAttributeCount(); i++) {
+							String key = element + "." + localName(reader.getAttributeLocalName(i));
+							if (!isXmiAttribute(reader, i) && !node.attributes.containsKey(key)) {
+								node.attributes.put(key, reader.getAttributeValue(i));
+							}
+						}
+						if (element.equals("translation") && node.name == null) {
+							node.name = attribute(reader, "string");
+						} else if (element.equals("monitorEvents")) {
+							if (node.monitorEventsEventEnabled == null) {
+								node.monitorEventsEventEnabled = attribute(reader, "eventEnabled");
+							}
+							node.monitorEvents++;
+						} else if (element.equals("filterTable")) {
+							node.routeTerminals.add(nullToEmpty(attribute(reader, "routingOutputTerminal")));
+						}
+					} else if (element.equals("connections")) {
+						ConnectionRecord connection = new ConnectionRecord();
+						connection.sourceNode = nullToEmpty(attribute(reader, "sourceNode"));
+						connection.targetNode = nullToEmpty(attribute(reader, "targetNode"));
+						connection.sourceTerminalName = nullToEmpty(attribute(reader, "sourceTerminalName"));
+						connection.targetTerminalName = nullToEmpty(attribute(reader, "targetTerminalName"));
+						connection.line = line;
+						connection.column = column;
+						connectionRecords.add(connection);
+					} else if (element.equals("stickyNote") && comment == null) {
+						comment = new CommentRecord();
+						comment.line = line;
+						comment.column = column;
+						commentDepth = depth;
+						comment.association = nullToEmpty(attribute(reader, "association"));
+						comment.location = nullToEmpty(attribute(reader, "location"));
+						commentRecords.add(comment);
+					} else if (comment != null && depth == commentDepth + 1 && element.equals("body") && comment.body == null) {
+						comment.body = attribute(reader, "string");
+					} else if (parent.equals("eClassifiers")) {
+						if (element.equals("shortDescription") && flowShortDescription == null) {
+							flowShortDescription = attribute(reader, "string");
+						} else if (element.equals("longDescription") && flowLongDescription == null) {
+							flowLongDescription = attribute(reader, "string");
+						}
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					path.remove(path.size() - 1);
+					if (node != null && path.size() == nodeDepth) {
+						node = null;
+						nodeDepth = -1;
+					} else if (comment != null && path.size() == commentDepth) {
+						comment = null;
+						commentDepth = -1;
+					}
+				}
+			}
+
+			build(nodeRecords, connectionRecords, commentRecords, nodes, connections, comments);
+
+			shortDescription.delete(0, shortDescription.length());
+			shortDescription.append(nullToEmpty(flowShortDescription));
+			longDescription.delete(0, longDescription.length());
+			longDescription.append(nullToEmpty(flowLongDescription));
+		} catch (XMLStreamException e) {
+			XmlLimitException limit = XmlInput.getLimitException(e);
+			if (limit != null) {
+				LOG.warn(limit.getMessage());
+			} else {
+				LOG.error(e.getMessage());
+			}
+		} catch (XmlLimitException e) {
+			LOG.warn(e.getMessage());
+		} catch (IOException e) {
+			LOG.error(e.getMessage());
+		} catch (FileTimeoutException e) {
+			// the analysis of the file is cancelled
+			throw e;
+		} catch (Exception e) {
+			LOG.error(e.getMessage());
+		} finally {
+			close(reader);
+		}
+
+		LOG.debug("END");
+	}
+
+	/**
+	 * The method creates the message flow objects from the data collected
+	 * during the parse.
+	 */
+	private void build(List<NodeRecord> nodeRecords,
+					   List<ConnectionRecord> connectionRecords,
+					   List<CommentRecord> commentRecords,
+					   EnumMap<NodeKind, ArrayList<MessageFlowNode>> nodes,
+					   ArrayList<MessageFlowConnection> connections,
+					   ArrayList<MessageFlowCommentNote> comments) {
+		/* node names and connected terminals by node id */
+		Map<String, String> names = new HashMap<String, String>();
+		for (NodeRecord record : nodeRecords) {
+			String id = nullToEmpty(record.attributes.get("id"));
+			if (!names.containsKey(id)) {
+				names.put(id, nullToEmpty(record.name));
+			}
+		}
+
+		Map<String, ArrayList<String>> inputTerminals = new HashMap<String, ArrayList<String>>();
+		Map<String, ArrayList<String>> outputTerminals = new HashMap<String, ArrayList<String>>();
+		for (int i = connectionRecords.size() - 1; i >= 0; i--) {
+			ConnectionRecord record = connectionRecords.get(i);
+			terminals(inputTerminals, record.targetNode).add(record.targetTerminalName);
+			terminals(outputTerminals, record.sourceNode).add(record.sourceTerminalName);
+
+			String srcNodeName = names.containsKey(record.sourceNode) ? names.get(record.sourceNode) : "";
+			String targetNodeName = names.containsKey(record.targetNode) ? names.get(record.targetNode) : "";
+			MessageFlowConnection connection = new MessageFlowConnection(record.sourceNode,
+																		 srcNodeName,
+																		 record.targetNode,
+																		 targetNodeName,
+																		 record.sourceTerminalName,
+																		 record.targetTerminalName);
+			connection.setPosition(record.line, record.column);
+			connections.add(connection);
+		}
+
+		for (int i = nodeRecords.size() - 1; i >= 0; i--) {
+			NodeRecord record = nodeRecords.get(i);
+			Map<String, String> attributes = record.attributes;
+
+			String id = nullToEmpty(attributes.get("id"));
+			String name = nullToEmpty(record.name);
+			String type = type(nullToEmpty(attributes.get("type")));
+
+			LOG.debug("id: " + id);
+			LOG.debug("name: " + name);
+			LOG.debug("type: " + type);
+
+			boolean areMonitoringEventsEnabled = true;
+
+			/*
+			 * monitoring events are enabled unless defined otherwise
+			 *
+			 * - monitoring events are missing
+			 * - existing monitoring events are disabled
+			 */
+			if (record.monitorEvents == 0 ||
+				"false".equals(record.monitorEventsEventEnabled)) {
+				areMonitoringEventsEnabled = false;
+			}
+
+			NodeAttributes nodeAttributes = new NodeAttributes(attributes);
+			ArrayList<String> nodeInputTerminals = inputTerminals.containsKey(id) ? inputTerminals.get(id) : new ArrayList<String>();
+			ArrayList<String> nodeOutputTerminals = outputTerminals.containsKey(id) ? outputTerminals.get(id) : new ArrayList<String>();
+
+			MessageFlowNode mfn = new MessageFlowNode(id,
+													  name,
+													  type,
+													  Boolean.parseBoolean(attributes.get("parserXmlnscBuildTreeUsingXMLSchema")),
+													  "all".equals(attributes.get("parserXmlnscMixedContentRetainMode")),
+													  "all".equals(attributes.get("parserXmlnscCommentsRetainMode")),
+													  "contentAndValue".equals(attributes.get("validateMaster")),
+													  nullToEmpty(attributes.get("messageDomainProperty")),
+													  nullToEmpty(attributes.get("messageSetProperty")),
+													  nullToEmpty(attributes.get("requestMsgLocationInTree")),
+													  nullToEmpty(attributes.get("messageDomain")),
+													  nullToEmpty(attributes.get("messageSet")),
+													  nullToEmpty(attributes.get("recordDefinition")),
+													  Boolean.parseBoolean(attributes.get("resetMessageDomain")),
+													  Boolean.parseBoolean(attributes.get("resetMessageSet")),
+													  Boolean.parseBoolean(attributes.get("resetMessageType")),
+													  Boolean.parseBoolean(attributes.get("resetMessageFormat")),
+													  areMonitoringEventsEnabled,
+													  nodeInputTerminals,
+													  nodeOutputTerminals,
+													  new NodeProperties(NodeKind.forType(type), nodeAttributes, record.routeTerminals),
+													  nodeAttributes);
+			mfn.setPosition(record.line, record.column);
+
+			nodes.get(mfn.getKind()).add(mfn);
+		}
+
+		for (int i = commentRecords.size() - 1; i >= 0; i--) {
+			CommentRecord record = commentRecords.get(i);
+			ArrayList<String> association = new ArrayList<String>();
+			for (String nodeId : record.association.split(" ")) {
+				association.add(nodeId);
+			}
+			String[] location = record.location.split(",");
+			int locationX = location.length > 0 ? parseInt(location[0]) : 0;
+			int locationY = location.length > 1 ? parseInt(location[1]) : 0;
+			MessageFlowCommentNote note = new MessageFlowCommentNote(association, nullToEmpty(record.body), locationX, locationY);
+			note.setPosition(record.line, record.column);
+			comments.add(note);
+		}
+	}
+
+	/**
+	 * The method returns the short type of a node, e.g. 'Compute' for
+	 * 'ComIbmCompute.msgnode:FCMComposite_1' or 'SF_Test.subflow' for
+	 * 'SF_Test.subflow:FCMComposite_1'.
+	 */
+	private static String type(String type) {
+		if (type.contains("ComIbm")) {
+			int end = type.indexOf(".");
+			return (end < 0 ? type : type.substring(0, end)).replace("ComIbm", "");
+		}
+		int end = type.indexOf(":");
+		return end < 0 ? type : type.substring(0, end);
+	}
+
+	private static ArrayList<String> terminals(Map<String, ArrayList<String>> terminals, String id) {
+		ArrayList<String> list = terminals.get(id);
+		if (list == null) {
+			list = new ArrayList<String>();
+			terminals.put(id, list);
+		}
+		return list;
+	}
+
+	private static String attribute(XMLStreamReader reader, String name) {
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			if (localName(reader.getAttributeLocalName(i)).equals(name)) {
+				return reader.getAttributeValue(i);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The method checks whether an attribute belongs to the XMI namespace,
+	 * e.g. 'xmi:type'. These attributes of the child elements of a node are
+	 * not added to its attribute table.
+	 */
+	private static boolean isXmiAttribute(XMLStreamReader reader, int index) {
+		return "xmi".equals(reader.getAttributePrefix(index)) || reader.getAttributeLocalName(index).startsWith("xmi:");
+	}
+
+	/**
+	 * The method strips the prefix of a qualified name, e.g. 'xmi:id' becomes 'id'.
+	 */
+	private static String localName(String name) {
+		return name.substring(name.indexOf(':') + 1);
+	}
+
+	private static String nullToEmpty(String value) {
+		return value == null ? "" : value;
+	}
+
+	private static int parseInt(String value) {
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private static void close(XMLStreamReader reader) {
+		try {
+			if (reader != null) {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			LOG.debug(e.getMessage());
+		}
+	}
+
+	/**
+	 * The method checks whether an event is a text event. The reader of the
+	 * JDK has already consumed the '<' of the next element at the end of a
+	 * text event.
+	 */
+	private static boolean isText(int event) {
+		return event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE;
+	}
+
+	/**
+	 * The method checks the location semantics of the readers of {@link XmlInput}
+	 * with a small document, the element 'b' starts at line 2, column 3.
+	 */
+	private static boolean isLocationAtStart() {
+		XMLStreamReader reader = null;
+		try {
+			reader = XmlInput.createStreamReader("probe", new StringReader("<a>\n  <b/></a>"));
+			while (reader.hasNext()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("b")) {
+					return reader.getLocation().getLineNumber() == 2 && reader.getLocation().getColumnNumber() == 3;
+				}
+			}
+		} catch (XMLStreamException e) {
+			LOG.debug(e.getMessage());
+		} finally {
+			close(reader);
+		}
+		return false;
+	}
+}
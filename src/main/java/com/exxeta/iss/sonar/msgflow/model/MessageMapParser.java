@@ -4,9 +4,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.FactoryConfigurationError;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
@@ -50,7 +48,7 @@ public class MessageMapParser {
 		LOG.debug("START");
 
 		try {
-			Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(fileName);
+			Document document = XmlInput.parseDocument(fileName);
 
 			XPathExpression inputCountExp = XPathFactory.newInstance().newXPath().compile("count(//input)");
 			if (Integer.parseInt((String) inputCountExp.evaluate(document, XPathConstants.STRING)) > 0) {
@@ -76,6 +74,7 @@ public class MessageMapParser {
 				XPathExpression inPathExpr = XPathFactory.newInstance().newXPath().compile("//input");
 				NodeList inpath = (NodeList) inPathExpr.evaluate(document, XPathConstants.NODESET);
 				for (int noi = 0; noi < inpath.getLength(); noi++) {
+					FileDeadline.check();
 					Node inpathNode = inpath.item(noi);
 					if (!inpathNode.getParentNode().getNodeName().equals("MappingDeclaration")) {
 						String inputPath = inpathNode.getAttributes().getNamedItem("path").getNodeValue();
@@ -96,12 +95,12 @@ public class MessageMapParser {
 			}
 		} catch (XPathExpressionException e) {
 			LOG.error(e.getMessage());
+		} catch (XmlLimitException e) {
+			LOG.warn(e.getMessage());
 		} catch (SAXException e) {
-			LOG.error(e.getMessage());
+			LOG.warn("The file " + fileName + " could not be parsed: " + e.getMessage());
 		} catch (IOException e) {
 			LOG.error(e.getMessage());
-		} catch (ParserConfigurationException e) {
-			LOG.error(e.getMessage());
 		} catch (FactoryConfigurationError e) {
 			LOG.error(e.getMessage());
 		}
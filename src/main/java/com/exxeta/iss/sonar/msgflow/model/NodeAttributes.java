@@ -0,0 +1,189 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * The class is the table of all attributes of a message flow node, i.e. the
+ * attributes of the 'nodes' element, e.g. 'queueName', and the attributes of
+ * its direct child elements, e.g. 'translation.string'. A rule can read any
+ * attribute of a node without a change of the parsers.
+ *
+ * The table is immutable. The keys and values are interned, so the strings
+ * are shared by all nodes of the project, and stored in two arrays sorted by
+ * key.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class NodeAttributes {
+
+	/**
+	 * the table without attributes
+	 */
+	public static final NodeAttributes EMPTY = new NodeAttributes(Collections.<String, String>emptyMap());
+
+	/**
+	 * the interned keys and values of all tables
+	 */
+	private static final Interner<String> STRINGS = Interners.newWeakInterner();
+
+	/**
+	 * the keys in ascending order
+	 */
+	private final String[] keys;
+
+	/**
+	 * the values in the order of the keys
+	 */
+	private final String[] values;
+
+	/**
+	 * Constructor
+	 *
+	 * @param attributes the attributes by key, null values are stored as empty strings
+	 */
+	public NodeAttributes(Map<String, String> attributes) {
+		keys = new String[attributes.size()];
+		int i = 0;
+		for (String key : attributes.keySet()) {
+			keys[i++] = STRINGS.intern(key);
+		}
+		Arrays.sort(keys);
+		values = new String[keys.length];
+		for (i = 0; i < keys.length; i++) {
+			String value = attributes.get(keys[i]);
+			values[i] = STRINGS.intern(value == null ? "" : value);
+		}
+	}
+
+	/**
+	 * @return the number of attributes
+	 */
+	public int size() {
+		return keys.length;
+	}
+
+	/**
+	 * The method checks whether the node has an attribute.
+	 *
+	 * @param key the key of the attribute, e.g. 'queueName' or 'translation.string'
+	 * @return true if the attribute is set
+	 */
+	public boolean contains(String key) {
+		return Arrays.binarySearch(keys, key) >= 0;
+	}
+
+	/**
+	 * The method returns the value of an attribute.
+	 *
+	 * @param key the key of the attribute
+	 * @return the value, null if the attribute is not set
+	 */
+	public String getString(String key) {
+		int index = Arrays.binarySearch(keys, key);
+		return index < 0 ? null : values[index];
+	}
+
+	/**
+	 * The method returns the value of an attribute.
+	 *
+	 * @param key the key of the attribute
+	 * @param defaultValue the value if the attribute is not set
+	 * @return the value of the attribute or the default value
+	 */
+	public String getString(String key, String defaultValue) {
+		String value = getString(key);
+		return value == null ? defaultValue : value;
+	}
+
+	/**
+	 * The method returns the value of a boolean attribute, e.g.
+	 * 'resetMessageDomain'.
+	 *
+	 * @param key the key of the attribute
+	 * @param defaultValue the value if the attribute is not set
+	 * @return true if the value of the attribute is 'true' (ignoring case)
+	 */
+	public boolean getBoolean(String key, boolean defaultValue) {
+		String value = getString(key);
+		return value == null ? defaultValue : Boolean.parseBoolean(value);
+	}
+
+	/**
+	 * The method returns the value of an integer attribute, e.g.
+	 * 'additionalInstances'.
+	 *
+	 * @param key the key of the attribute
+	 * @param defaultValue the value if the attribute is not set or not a number
+	 * @return the value of the attribute or the default value
+	 */
+	public int getInt(String key, int defaultValue) {
+		String value = getString(key);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * The method returns the key of the attribute at a position.
+	 *
+	 * @param index the position, between 0 and {@link #size()} - 1
+	 * @return the key of the attribute
+	 */
+	public String getKey(int index) {
+		return keys[index];
+	}
+
+	/**
+	 * The method returns the value of the attribute at a position.
+	 *
+	 * @param index the position, between 0 and {@link #size()} - 1
+	 * @return the value of the attribute
+	 */
+	public String getValue(int index) {
+		return values[index];
+	}
+
+	/**
+	 * @return a read-only map of the attributes, ordered by key
+	 */
+	public Map<String, String> asMap() {
+		Map<String, String> map = new LinkedHashMap<String, String>();
+		for (int i = 0; i < keys.length; i++) {
+			map.put(keys[i], values[i]);
+		}
+		return Collections.unmodifiableMap(map);
+	}
+
+	@Override
+	public String toString() {
+		return asMap().toString();
+	}
+}
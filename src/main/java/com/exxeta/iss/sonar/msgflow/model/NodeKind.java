@@ -0,0 +1,103 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The enumeration lists the categories of message flow nodes. The kind of a
+ * node is resolved once from its (short) type, e.g. 'Compute' or 'WSInput'.
+ * Subflows and all node types without a category of their own are
+ * {@link #MISCELLANEOUS}.
+ *
+ * The order of the constants is the order in which the node categories are
+ * stored and visited.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public enum NodeKind {
+
+	COLLECTOR("Collector"),
+	COMPUTE("Compute"),
+	FILE_INPUT("FileInput"),
+	FILE_OUTPUT("FileOutput"),
+	HTTP_INPUT("WSInput"),
+	HTTP_REQUEST("WSRequest"),
+	HTTP_REPLY("WSReply"),
+	MQ_INPUT("MQInput"),
+	MQ_OUTPUT("MQOutput"),
+	MQ_GET("MQGet"),
+	MQ_HEADER("MQHeader"),
+	MQ_REPLY("MQReply"),
+	RESET_CONTENT_DESCRIPTOR("ResetContentDescriptor"),
+	SOAP_INPUT("SOAPInput"),
+	SOAP_REQUEST("SOAPRequest"),
+	TIMEOUT_CONTROL("TimeoutControl"),
+	TIMEOUT_NOTIFICATION("TimeoutNotification"),
+	TRY_CATCH("TryCatch"),
+	IMS_REQUEST("IMSRequest"),
+	FILTER("Filter"),
+	TRACE("Trace"),
+	LABEL("Label"),
+	ROUTE_TO_LABEL("RouteToLabel"),
+	AGGREGATE_CONTROL("AggregateControl"),
+	DATABASE("Database"),
+	ROUTE("Route"),
+	MISCELLANEOUS(null);
+
+	/**
+	 * the kinds by node type
+	 */
+	private static final Map<String, NodeKind> BY_TYPE = new HashMap<String, NodeKind>();
+
+	static {
+		for (NodeKind kind : values()) {
+			if (kind.type != null) {
+				BY_TYPE.put(kind.type, kind);
+			}
+		}
+	}
+
+	/**
+	 * the (short) node type, null for miscellaneous nodes
+	 */
+	private final String type;
+
+	private NodeKind(String type) {
+		this.type = type;
+	}
+
+	/**
+	 * @return the (short) node type, e.g. 'WSInput', null for miscellaneous nodes
+	 */
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * The method returns the kind of a node type.
+	 *
+	 * @param type the (short) node type, e.g. 'Compute' or 'SF_Test.subflow'
+	 * @return the kind of the node, {@link #MISCELLANEOUS} for unknown types
+	 */
+	public static NodeKind forType(String type) {
+		NodeKind kind = type == null ? null : BY_TYPE.get(type);
+		return kind == null ? MISCELLANEOUS : kind;
+	}
+}
@@ -0,0 +1,265 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The class is the read-only map of the node specific properties of a
+ * message flow node, e.g. 'queueName' of an MQInput node or 'routeTerminals'
+ * of a Route node. The keys of a node are fixed by its kind.
+ *
+ * The parser only keeps the raw values, i.e. the attribute table of the node
+ * and the routing output terminals of its filter table. A property is
+ * decoded from the raw values on its first access, e.g. the routine name of
+ * an ESQL expression, and then memoized. Properties that are never read
+ * cost nothing but the map itself.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class NodeProperties extends AbstractMap<String, Object> {
+
+	/**
+	 * the property keys by node kind
+	 */
+	private static final EnumMap<NodeKind, String[]> KEYS = new EnumMap<NodeKind, String[]>(NodeKind.class);
+
+	static {
+		for (NodeKind kind : NodeKind.values()) {
+			List<String> keys = new ArrayList<String>();
+			switch (kind) {
+			case MQ_INPUT:
+			case MQ_OUTPUT:
+			case MQ_GET:
+				Collections.addAll(keys, "queueName", "transactionMode");
+				break;
+			case MQ_REPLY:
+				keys.add("transactionMode");
+				break;
+			case IMS_REQUEST:
+				Collections.addAll(keys, "shortDescription", "longDescription", "useNodeProperties",
+						"configurableService", "commitMode");
+				break;
+			case HTTP_REPLY:
+				Collections.addAll(keys, "ignoreTransportFailures", "generateDefaultHttpHeaders");
+				break;
+			case SOAP_REQUEST:
+				keys.add("requestTimeout");
+				break;
+			case AGGREGATE_CONTROL:
+				keys.add("timeoutInterval");
+				break;
+			case COMPUTE:
+				Collections.addAll(keys, "computeExpression", "computeExpressionFull", "dataSource");
+				break;
+			case FILTER:
+				Collections.addAll(keys, "filterExpression", "filterExpressionFull");
+				break;
+			case DATABASE:
+				Collections.addAll(keys, "statement", "statementFull");
+				break;
+			case ROUTE:
+				keys.add("routeTerminals");
+				break;
+			default:
+				break;
+			}
+
+			switch (kind) {
+			case MQ_INPUT:
+			case FILE_INPUT:
+			case HTTP_INPUT:
+			case SOAP_INPUT:
+				Collections.addAll(keys, "componentLevel", "additionalInstances");
+				break;
+			default:
+				break;
+			}
+
+			KEYS.put(kind, keys.toArray(new String[keys.size()]));
+		}
+	}
+
+	/**
+	 * the keys of the properties
+	 */
+	private final String[] keys;
+
+	/**
+	 * the attribute table of the node
+	 */
+	private final NodeAttributes attributes;
+
+	/**
+	 * the routing output terminals of the filter table in document order
+	 */
+	private final List<String> routeTerminals;
+
+	/**
+	 * the decoded values by key index, null until the first property is read
+	 */
+	private Object[] values;
+
+	/**
+	 * Constructor
+	 *
+	 * @param kind the kind of the node
+	 * @param attributes the attribute table of the node
+	 * @param routeTerminals the routing output terminals of the filter table
+	 * in document order, only used for Route nodes
+	 */
+	public NodeProperties(NodeKind kind, NodeAttributes attributes, List<String> routeTerminals) {
+		this.keys = KEYS.get(kind);
+		this.attributes = attributes;
+		this.routeTerminals = routeTerminals;
+	}
+
+	/**
+	 * @return the routing output terminals of the filter table in document order
+	 */
+	public List<String> getRouteTerminals() {
+		return Collections.unmodifiableList(routeTerminals);
+	}
+
+	/**
+	 * @return the number of properties that have been decoded
+	 */
+	synchronized int getDecodedCount() {
+		int count = 0;
+		if (values != null) {
+			for (Object value : values) {
+				if (value != null) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public int size() {
+		return keys.length;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@Override
+	public Object get(Object key) {
+		int index = indexOf(key);
+		return index < 0 ? null : get(index);
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		return new AbstractSet<Map.Entry<String, Object>>() {
+			@Override
+			public Iterator<Map.Entry<String, Object>> iterator() {
+				return new Iterator<Map.Entry<String, Object>>() {
+					private int index;
+
+					@Override
+					public boolean hasNext() {
+						return index < keys.length;
+					}
+
+					@Override
+					public Map.Entry<String, Object> next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						String key = keys[index];
+						return new AbstractMap.SimpleImmutableEntry<String, Object>(key, get(index++));
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return keys.length;
+			}
+		};
+	}
+
+	private int indexOf(Object key) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i].equals(key)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * The method returns the value of a property, the value is decoded on the
+	 * first call.
+	 */
+	private synchronized Object get(int index) {
+		if (values == null) {
+			values = new Object[keys.length];
+		}
+		if (values[index] == null) {
+			values[index] = decode(keys[index]);
+		}
+		return values[index];
+	}
+
+	/**
+	 * The method decodes a property from the raw values. Missing attributes
+	 * are empty strings.
+	 */
+	private Object decode(String key) {
+		if (key.equals("routeTerminals")) {
+			ArrayList<String> routeTable = new ArrayList<String>(routeTerminals);
+			Collections.reverse(routeTable);
+			return routeTable;
+		} else if (key.equals("computeExpression") || key.equals("filterExpression") || key.equals("statement")) {
+			return routineName(attributes.getString(key, ""));
+		} else if (key.endsWith("Full")) {
+			return attributes.getString(key.substring(0, key.length() - "Full".length()), "");
+		} else if (key.equals("shortDescription") || key.equals("longDescription")) {
+			return attributes.getString(key + ".string", "");
+		}
+		return attributes.getString(key, "");
+	}
+
+	/**
+	 * The method returns the routine name of an ESQL expression, e.g.
+	 * 'Compute_Compute' for 'esql://routine/#Compute_Compute.Main'.
+	 */
+	private static String routineName(String expression) {
+		int end = expression.indexOf(".Main");
+		return expression.substring(expression.indexOf("#") + 1, end < 0 ? expression.length() : end);
+	}
+}
@@ -3,6 +3,7 @@
  */
 package com.exxeta.iss.sonar.msgflow.model;
 
+import java.io.File;
 import java.util.ArrayList;
 
 /**
@@ -42,4 +43,21 @@ public class PomObject {
 		return modules;
 	}
 	
+	/**
+	 * The method returns the directory of the pom.xml of a message flow, the
+	 * parent of the directory of the Eclipse project containing the flow.
+	 * 
+	 * @param msgFlowFile the message flow file
+	 * @return the directory or null if the flow is not part of an Eclipse project
+	 */
+	public static File getProjectDirectory(File msgFlowFile) {
+		File projectDirectory = new File(msgFlowFile.getAbsolutePath()).getParentFile();
+		for (; projectDirectory != null; projectDirectory = projectDirectory.getParentFile()) {
+			if (new File(projectDirectory, ".project").exists()) {
+				return projectDirectory.getParentFile();
+			}
+		}
+		return null;
+	}
+	
 }
@@ -4,9 +4,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.FactoryConfigurationError;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
@@ -35,7 +33,7 @@ public class PomParser {
 		LOG.debug("START");
 
 		try {
-			Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(fileName);
+			Document document = XmlInput.parseDocument(fileName);
 
 			XPathExpression artifactExp = XPathFactory.newInstance().newXPath().compile("//project/artifactId");
 			String inputSrcPath = (String) artifactExp.evaluate(document, XPathConstants.STRING);
@@ -52,12 +50,12 @@ public class PomParser {
 
 		} catch (XPathExpressionException e) {
 			LOG.error(e.getMessage());
+		} catch (XmlLimitException e) {
+			LOG.warn(e.getMessage());
 		} catch (SAXException e) {
-			LOG.error(e.getMessage());
+			LOG.warn("The file " + fileName + " could not be parsed: " + e.getMessage());
 		} catch (IOException e) {
 			LOG.error(e.getMessage());
-		} catch (ParserConfigurationException e) {
-			LOG.error(e.getMessage());
 		} catch (FactoryConfigurationError e) {
 			LOG.error(e.getMessage());
 		}
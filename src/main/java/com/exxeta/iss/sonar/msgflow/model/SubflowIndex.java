@@ -0,0 +1,428 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Function;
+
+/**
+ * The class is the project wide index of the sub flow references. A sub flow
+ * is referenced by the type of a node, e.g. 'com_exxeta_SF_Test.subflow'
+ * for the file 'com/exxeta/SF_Test.subflow' of a project. The index maps
+ * the types to the declaring files and every file to the sub flows it
+ * references, directly or transitively.
+ *
+ * The index also provides the flattened graph of a message flow: the nodes
+ * of the referenced sub flows are spliced into the graph of the flow, so a
+ * path can be followed through the sub flows. The nodes of a sub flow get
+ * qualified IDs, i.e. the IDs of the sub flow nodes on the way, separated by
+ * '/', e.g. 'FCMComposite_1_3/FCMComposite_1_1'.
+ *
+ * Files can be added concurrently, the derived views are memoized until the
+ * next file is added.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class SubflowIndex {
+
+	/**
+	 * the suffix of the sub flow files and of the node types referencing them
+	 */
+	private static final String SUBFLOW_SUFFIX = ".subflow";
+
+	/**
+	 * the separator of the qualified node IDs of a flattened graph
+	 */
+	public static final String ID_SEPARATOR = "/";
+
+	/**
+	 * An end of a spliced connection: a node, its name and its terminal.
+	 */
+	private static class Endpoint {
+		private final String id;
+		private final String name;
+		private final String terminal;
+
+		Endpoint(String id, String name, String terminal) {
+			this.id = id;
+			this.name = name;
+			this.terminal = terminal;
+		}
+	}
+
+	/**
+	 * The terminals of a spliced sub flow: the nodes connected to its input
+	 * terminals and from its output terminals, by terminal node ID.
+	 */
+	private static class Splice {
+		private final Map<String, List<Endpoint>> entries = new HashMap<String, List<Endpoint>>();
+		private final Map<String, List<Endpoint>> exits = new HashMap<String, List<Endpoint>>();
+	}
+
+	/**
+	 * the function returning the model of a file
+	 */
+	private final Function<String, MessageFlow> models;
+
+	/**
+	 * the sub flow files by type
+	 */
+	private final ConcurrentMap<String, String> subflowFiles = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * the referenced sub flow types by file
+	 */
+	private final ConcurrentMap<String, List<String>> references = new ConcurrentHashMap<String, List<String>>();
+
+	/**
+	 * the sub flow files referenced by other files, null until it is computed
+	 */
+	private volatile Set<String> referencedFiles;
+
+	/**
+	 * the transitively referenced sub flow files by file
+	 */
+	private final ConcurrentMap<String, Set<String>> closures = new ConcurrentHashMap<String, Set<String>>();
+
+	/**
+	 * the flattened graphs by file
+	 */
+	private final ConcurrentMap<String, MessageFlowGraph> flattenedGraphs = new ConcurrentHashMap<String, MessageFlowGraph>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param models the function returning the model of a (sub) flow file,
+	 * used to build the flattened graphs
+	 */
+	public SubflowIndex(Function<String, MessageFlow> models) {
+		this.models = models;
+	}
+
+	/**
+	 * The method adds a message flow or sub flow file to the index. A file
+	 * that is added again replaces its previous references.
+	 *
+	 * @param fileName the name of the file
+	 * @param messageFlow the model of the file
+	 */
+	public void add(String fileName, MessageFlow messageFlow) {
+		Set<String> types = new LinkedHashSet<String>();
+		for (MessageFlowNode node : messageFlow.getNodes(NodeKind.MISCELLANEOUS)) {
+			if (node.getType().endsWith(SUBFLOW_SUFFIX)) {
+				types.add(node.getType());
+			}
+		}
+		add(fileName, types);
+	}
+
+	/**
+	 * The method adds a message flow or sub flow file with known references
+	 * to the index, e.g. the references recorded by a previous analysis of
+	 * an unchanged file. A file that is added again replaces its previous
+	 * references.
+	 *
+	 * @param fileName the name of the file
+	 * @param types the referenced sub flow types, e.g. 'com_exxeta_SF_Test.subflow'
+	 */
+	public void add(String fileName, Collection<String> types) {
+		if (fileName.endsWith(SUBFLOW_SUFFIX)) {
+			for (String type : getTypes(fileName)) {
+				String current = subflowFiles.putIfAbsent(type, fileName);
+				// ambiguous types resolve to the first file name in order
+				while (current != null && fileName.compareTo(current) < 0
+						&& !subflowFiles.replace(type, current, fileName)) {
+					current = subflowFiles.get(type);
+				}
+			}
+		}
+
+		references.put(fileName, Collections.unmodifiableList(new ArrayList<String>(new LinkedHashSet<String>(types))));
+
+		referencedFiles = null;
+		closures.clear();
+		flattenedGraphs.clear();
+	}
+
+	/**
+	 * The method removes a file from the index, e.g. because it has been
+	 * deleted. A type declared by the file resolves to another known sub
+	 * flow file of the same type, if there is one.
+	 *
+	 * @param fileName the name of the file
+	 */
+	public void remove(String fileName) {
+		references.remove(fileName);
+		if (fileName.endsWith(SUBFLOW_SUFFIX)) {
+			for (String type : getTypes(fileName)) {
+				if (subflowFiles.remove(type, fileName)) {
+					for (String other : references.keySet()) {
+						if (other.endsWith(SUBFLOW_SUFFIX) && getTypes(other).contains(type)) {
+							add(other, references.get(other));
+						}
+					}
+				}
+			}
+		}
+
+		referencedFiles = null;
+		closures.clear();
+		flattenedGraphs.clear();
+	}
+
+	/**
+	 * The method returns the file declaring a sub flow type.
+	 *
+	 * @param type the type of a node, e.g. 'com_exxeta_SF_Test.subflow'
+	 * @return the name of the sub flow file, null if the type is not a known sub flow
+	 */
+	public String getSubflowFile(String type) {
+		return subflowFiles.get(type);
+	}
+
+	/**
+	 * The method returns the sub flow types referenced by a file, including
+	 * the types of sub flows that are not part of the project.
+	 *
+	 * @param fileName the name of the message flow or sub flow file
+	 * @return the types in the order of their first reference
+	 */
+	public List<String> getReferencedTypes(String fileName) {
+		List<String> types = references.get(fileName);
+		return types == null ? Collections.<String>emptyList() : types;
+	}
+
+	/**
+	 * The method returns the sub flow files directly referenced by a file.
+	 *
+	 * @param fileName the name of the message flow or sub flow file
+	 * @return the names of the known sub flow files in the order of their first reference
+	 */
+	public List<String> getReferencedSubflows(String fileName) {
+		List<String> types = references.get(fileName);
+		if (types == null) {
+			return Collections.emptyList();
+		}
+		List<String> files = new ArrayList<String>(types.size());
+		for (String type : types) {
+			String file = subflowFiles.get(type);
+			if (file != null && !files.contains(file)) {
+				files.add(file);
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * The method returns the sub flow files referenced by a file, directly or
+	 * through other sub flows. Cyclic references are followed once.
+	 *
+	 * @param fileName the name of the message flow or sub flow file
+	 * @return the names of the sub flow files, without the file itself
+	 */
+	public Set<String> getTransitiveSubflows(String fileName) {
+		Set<String> closure = closures.get(fileName);
+		if (closure == null) {
+			Set<String> files = new LinkedHashSet<String>();
+			Deque<String> queue = new ArrayDeque<String>();
+			queue.add(fileName);
+			while (!queue.isEmpty()) {
+				for (String file : getReferencedSubflows(queue.poll())) {
+					if (!file.equals(fileName) && files.add(file)) {
+						queue.add(file);
+					}
+				}
+			}
+			closure = Collections.unmodifiableSet(files);
+			closures.put(fileName, closure);
+		}
+		return closure;
+	}
+
+	/**
+	 * The method checks whether a sub flow is referenced by another file of
+	 * the project.
+	 *
+	 * @param fileName the name of the sub flow file
+	 * @return true if another message flow or sub flow references the sub flow
+	 */
+	public boolean isReferenced(String fileName) {
+		Set<String> files = referencedFiles;
+		if (files == null) {
+			files = new HashSet<String>();
+			for (Map.Entry<String, List<String>> entry : references.entrySet()) {
+				for (String type : entry.getValue()) {
+					String file = subflowFiles.get(type);
+					if (file != null && !file.equals(entry.getKey())) {
+						files.add(file);
+					}
+				}
+			}
+			referencedFiles = files;
+		}
+		return files.contains(fileName);
+	}
+
+	/**
+	 * The method returns the flattened graph of a message flow. The sub flow
+	 * nodes are replaced by the nodes of the referenced sub flows, the
+	 * connections to and from their terminals are connected to the nodes
+	 * inside. Unknown and recursive sub flows are kept as nodes.
+	 *
+	 * @param fileName the name of the message flow file
+	 * @return the flattened graph, the IDs of the top level nodes are not qualified
+	 */
+	public MessageFlowGraph getFlattenedGraph(String fileName) {
+		MessageFlowGraph graph = flattenedGraphs.get(fileName);
+		if (graph == null) {
+			Map<String, MessageFlowNode> nodes = new LinkedHashMap<String, MessageFlowNode>();
+			List<MessageFlowConnection> connections = new ArrayList<MessageFlowConnection>();
+			Set<String> stack = new HashSet<String>();
+			stack.add(fileName);
+			splice(models.apply(fileName), "", stack, nodes, connections);
+			graph = new MessageFlowGraph(nodes, connections);
+			flattenedGraphs.put(fileName, graph);
+		}
+		return graph;
+	}
+
+	/**
+	 * The method adds the nodes and connections of a (sub) flow to the
+	 * flattened graph.
+	 *
+	 * @param messageFlow the (sub) flow
+	 * @param prefix the prefix of the qualified node IDs, empty for the top level
+	 * @param stack the files of the sub flows on the way
+	 * @return the nodes connected to the terminals of the sub flow
+	 */
+	private Splice splice(MessageFlow messageFlow, String prefix, Set<String> stack,
+			Map<String, MessageFlowNode> nodes, List<MessageFlowConnection> connections) {
+		boolean nested = !prefix.isEmpty();
+		Map<String, Splice> children = new HashMap<String, Splice>();
+		for (MessageFlowNode node : messageFlow.getNodes()) {
+			if (nested && isTerminalNode(node.getId())) {
+				continue;
+			}
+			String file = node.getKind() == NodeKind.MISCELLANEOUS ? subflowFiles.get(node.getType()) : null;
+			if (file != null && stack.add(file)) {
+				children.put(node.getId(), splice(models.apply(file), prefix + node.getId() + ID_SEPARATOR, stack,
+						nodes, connections));
+				stack.remove(file);
+			} else {
+				nodes.put(prefix + node.getId(), node);
+			}
+		}
+
+		Splice splice = new Splice();
+		for (MessageFlowConnection connection : messageFlow.getConnections()) {
+			boolean fromTerminal = nested && isTerminalNode(connection.getSrcNode());
+			boolean toTerminal = nested && isTerminalNode(connection.getTargetNode());
+			List<Endpoint> sources = fromTerminal ? null : getSources(connection, prefix, children);
+			List<Endpoint> targets = toTerminal ? null : getTargets(connection, prefix, children);
+			if (fromTerminal && toTerminal) {
+				// a sub flow passing a terminal through is not spliced
+				continue;
+			} else if (fromTerminal) {
+				get(splice.entries, connection.getSrcNode()).addAll(targets);
+			} else if (toTerminal) {
+				get(splice.exits, connection.getTargetNode()).addAll(sources);
+			} else {
+				for (Endpoint source : sources) {
+					for (Endpoint target : targets) {
+						MessageFlowConnection spliced = new MessageFlowConnection(source.id, source.name, target.id,
+								target.name, source.terminal, target.terminal);
+						spliced.setPosition(connection.getLine(), connection.getColumn());
+						connections.add(spliced);
+					}
+				}
+			}
+		}
+		return splice;
+	}
+
+	private static List<Endpoint> getSources(MessageFlowConnection connection, String prefix, Map<String, Splice> children) {
+		Splice child = children.get(connection.getSrcNode());
+		if (child != null) {
+			List<Endpoint> exits = child.exits.get(connection.getSrcTerminal());
+			return exits == null ? Collections.<Endpoint>emptyList() : exits;
+		}
+		return Collections.singletonList(new Endpoint(prefix + connection.getSrcNode(), connection.getSrcNodeName(),
+				connection.getSrcTerminal()));
+	}
+
+	private static List<Endpoint> getTargets(MessageFlowConnection connection, String prefix, Map<String, Splice> children) {
+		Splice child = children.get(connection.getTargetNode());
+		if (child != null) {
+			List<Endpoint> entries = child.entries.get(connection.getTargetTerminal());
+			return entries == null ? Collections.<Endpoint>emptyList() : entries;
+		}
+		return Collections.singletonList(new Endpoint(prefix + connection.getTargetNode(),
+				connection.getTargetNodeName(), connection.getTargetTerminal()));
+	}
+
+	private static List<Endpoint> get(Map<String, List<Endpoint>> endpoints, String terminal) {
+		List<Endpoint> list = endpoints.get(terminal);
+		if (list == null) {
+			list = new ArrayList<Endpoint>();
+			endpoints.put(terminal, list);
+		}
+		return list;
+	}
+
+	/**
+	 * The method checks whether a node of a sub flow is one of its terminals,
+	 * e.g. 'InTerminal.Input' or 'OutTerminal.Output'.
+	 */
+	private static boolean isTerminalNode(String id) {
+		return id.startsWith("InTerminal.") || id.startsWith("OutTerminal.");
+	}
+
+	/**
+	 * The method returns the types that may reference a sub flow file, i.e.
+	 * the trailing parts of its path joined by '_', since the root of the
+	 * project is not known, e.g. 'SF_Test.subflow' and 'exxeta_SF_Test.subflow'
+	 * for '.../exxeta/SF_Test.subflow'.
+	 */
+	static List<String> getTypes(String fileName) {
+		String path = fileName.replace('\\', '/');
+		List<String> types = new ArrayList<String>();
+		int start = path.length();
+		while (start > 0) {
+			start = path.lastIndexOf('/', start - 1);
+			types.add(path.substring(start + 1).replace('/', '_'));
+			if (start < 0) {
+				break;
+			}
+		}
+		return types;
+	}
+}
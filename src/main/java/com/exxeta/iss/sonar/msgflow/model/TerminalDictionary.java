@@ -0,0 +1,228 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The class is the dictionary of the terminal names of a node kind. Every
+ * terminal name, e.g. 'OutTerminal.failure', is mapped to a small index, so
+ * the connected terminals of a node can be stored as a bit set and checked
+ * with a single bit test (see
+ * {@link MessageFlowNode#isOutputTerminalConnected(int)}).
+ *
+ * The dictionaries of all kinds start with the same well-known terminals,
+ * their indexes are the constants of the class. Other terminals, e.g. the
+ * labels of a Route node or the terminals of a subflow, are added when they
+ * are found. Terminals can be added concurrently.
+ *
+ * The dictionaries are shared by all analyses of the process, e.g. of the
+ * daemon or SonarLint. They hold at most {@link #MAX_SIZE} terminals, the
+ * terminals found when a dictionary is full are not added and the nodes look
+ * them up in their terminal lists.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class TerminalDictionary {
+
+	/** the index of 'InTerminal.in' */
+	public static final int IN = 0;
+
+	/** the index of 'InTerminal.control' */
+	public static final int IN_CONTROL = 1;
+
+	/** the index of 'InTerminal.EOD' */
+	public static final int IN_EOD = 2;
+
+	/** the index of 'OutTerminal.out' */
+	public static final int OUT = 3;
+
+	/** the index of 'OutTerminal.failure' */
+	public static final int OUT_FAILURE = 4;
+
+	/** the index of 'OutTerminal.catch' */
+	public static final int OUT_CATCH = 5;
+
+	/** the index of 'OutTerminal.timeout' */
+	public static final int OUT_TIMEOUT = 6;
+
+	/** the index of 'OutTerminal.expire' */
+	public static final int OUT_EXPIRE = 7;
+
+	/** the index of 'OutTerminal.error' */
+	public static final int OUT_ERROR = 8;
+
+	/** the index of 'OutTerminal.fault' */
+	public static final int OUT_FAULT = 9;
+
+	/** the index of 'OutTerminal.try' */
+	public static final int OUT_TRY = 10;
+
+	/** the index of 'OutTerminal.EOD' */
+	public static final int OUT_EOD = 11;
+
+	/** the index of 'OutTerminal.true' */
+	public static final int OUT_TRUE = 12;
+
+	/** the index of 'OutTerminal.false' */
+	public static final int OUT_FALSE = 13;
+
+	/** the index of 'OutTerminal.unknown' */
+	public static final int OUT_UNKNOWN = 14;
+
+	/**
+	 * the maximum number of terminals of a dictionary
+	 */
+	public static final int MAX_SIZE = 1024;
+
+	/**
+	 * the well-known terminals in the order of their indexes
+	 */
+	private static final String[] WELL_KNOWN_TERMINALS = {
+		"InTerminal.in",
+		"InTerminal.control",
+		"InTerminal.EOD",
+		"OutTerminal.out",
+		"OutTerminal.failure",
+		"OutTerminal.catch",
+		"OutTerminal.timeout",
+		"OutTerminal.expire",
+		"OutTerminal.error",
+		"OutTerminal.fault",
+		"OutTerminal.try",
+		"OutTerminal.EOD",
+		"OutTerminal.true",
+		"OutTerminal.false",
+		"OutTerminal.unknown"
+	};
+
+	/**
+	 * the dictionaries by node kind
+	 */
+	private static final EnumMap<NodeKind, TerminalDictionary> DICTIONARIES = new EnumMap<NodeKind, TerminalDictionary>(NodeKind.class);
+
+	static {
+		for (NodeKind kind : NodeKind.values()) {
+			DICTIONARIES.put(kind, new TerminalDictionary());
+		}
+	}
+
+	/**
+	 * the terminal names by index
+	 */
+	private final List<String> terminals = new CopyOnWriteArrayList<String>();
+
+	/**
+	 * the indexes by terminal name
+	 */
+	private final ConcurrentMap<String, Integer> indexes = new ConcurrentHashMap<String, Integer>();
+
+	private TerminalDictionary() {
+		for (String terminal : WELL_KNOWN_TERMINALS) {
+			index(terminal);
+		}
+	}
+
+	/**
+	 * The method returns the dictionary of a node kind.
+	 *
+	 * @param kind the kind of the nodes
+	 * @return the terminal dictionary of the kind
+	 */
+	public static TerminalDictionary forKind(NodeKind kind) {
+		return DICTIONARIES.get(kind);
+	}
+
+	/**
+	 * The method returns the index of a terminal, the terminal is added if
+	 * it is not yet known and the dictionary is not full.
+	 *
+	 * @param terminal the name of the terminal, e.g. 'OutTerminal.out'
+	 * @return the index of the terminal, -1 if the dictionary is full
+	 */
+	public int index(String terminal) {
+		String name = terminal == null ? "" : terminal;
+		Integer index = indexes.get(name);
+		if (index == null) {
+			synchronized (this) {
+				index = indexes.get(name);
+				if (index == null) {
+					if (terminals.size() >= MAX_SIZE) {
+						return -1;
+					}
+					index = terminals.size();
+					terminals.add(name);
+					indexes.put(name, index);
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * The method returns the index of a terminal without adding it.
+	 *
+	 * @param terminal the name of the terminal
+	 * @return the index of the terminal, -1 if the terminal is not known
+	 */
+	public int indexOf(String terminal) {
+		Integer index = indexes.get(terminal == null ? "" : terminal);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * The method returns the name of a terminal.
+	 *
+	 * @param index the index of the terminal
+	 * @return the name of the terminal
+	 */
+	public String getTerminal(int index) {
+		return terminals.get(index);
+	}
+
+	/**
+	 * @return the number of known terminals
+	 */
+	public int size() {
+		return terminals.size();
+	}
+
+	/**
+	 * The method returns the bit set of a list of terminals.
+	 *
+	 * @param terminals the names of the terminals
+	 * @return a bit set with the indexes of the terminals, without the
+	 *         terminals not added to a full dictionary
+	 */
+	public BitSet toBits(Collection<String> terminals) {
+		BitSet bits = new BitSet();
+		for (String terminal : terminals) {
+			int index = index(terminal);
+			if (index >= 0) {
+				bits.set(index);
+			}
+		}
+		return bits;
+	}
+}
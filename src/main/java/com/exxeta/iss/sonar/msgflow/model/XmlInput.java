@@ -0,0 +1,396 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * The class is the shared input layer of all XML parsers of the plug-in
+ * (message flows, message maps and POMs). It reads the files with hardened
+ * parsers: DTDs, external entities and XInclude are disabled, so a hostile
+ * file cannot expand entities or load other resources.
+ *
+ * The size of a file, the depth of its elements and the length of its
+ * attribute values are limited. A file exceeding a limit is rejected with a
+ * {@link XmlLimitException} instead of stalling the analysis. The size is
+ * checked before the file is read, the depth and the attributes while the
+ * file is streamed or right after the document has been built. Documents with
+ * a document type declaration are rejected. The readers also check the time
+ * budget of the file, see {@link FileDeadline}.
+ *
+ * The files are opened with {@link ArchiveInput}, so the entries of BAR and
+ * ZIP archives are read like plain files. The DOM parsers are reused per
+ * thread.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public final class XmlInput {
+
+	/**
+	 * The logger for the class.
+	 */
+	private static final Logger LOG = LoggerFactory.getLogger(XmlInput.class);
+
+	/**
+	 * the default maximum size of a file in bytes
+	 */
+	public static final long DEFAULT_MAX_FILE_SIZE = 32L * 1024 * 1024;
+
+	/**
+	 * the default maximum depth of the elements
+	 */
+	public static final int DEFAULT_MAX_DEPTH = 256;
+
+	/**
+	 * the default maximum length of an attribute value
+	 */
+	public static final int DEFAULT_MAX_ATTRIBUTE_LENGTH = 1024 * 1024;
+
+	private static volatile long maxFileSize = DEFAULT_MAX_FILE_SIZE;
+
+	private static volatile int maxDepth = DEFAULT_MAX_DEPTH;
+
+	private static volatile int maxAttributeLength = DEFAULT_MAX_ATTRIBUTE_LENGTH;
+
+	/**
+	 * the factory of the DOM parsers
+	 */
+	private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = createDocumentBuilderFactory();
+
+	/**
+	 * the factory of the StAX readers, namespace processing is disabled
+	 */
+	private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+	/**
+	 * the DOM parser of each thread
+	 */
+	private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDERS = new ThreadLocal<DocumentBuilder>() {
+		@Override
+		protected DocumentBuilder initialValue() {
+			try {
+				return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+			} catch (ParserConfigurationException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	};
+
+	/**
+	 * The error handler of the DOM parsers. Errors are only reported by the
+	 * exception of the parse, the default handler also prints them.
+	 */
+	private static final ErrorHandler ERROR_HANDLER = new ErrorHandler() {
+		@Override
+		public void warning(SAXParseException e) {
+			LOG.debug(e.getMessage());
+		}
+
+		@Override
+		public void error(SAXParseException e) throws SAXException {
+			throw e;
+		}
+
+		@Override
+		public void fatalError(SAXParseException e) throws SAXException {
+			throw e;
+		}
+	};
+
+	private XmlInput() {
+	}
+
+	/**
+	 * The method sets the limits of the XML files. A value that is not
+	 * positive selects the default.
+	 *
+	 * @param fileSize the maximum size of a file in bytes
+	 * @param depth the maximum depth of the elements
+	 * @param attributeLength the maximum length of an attribute value
+	 */
+	public static void setLimits(long fileSize, int depth, int attributeLength) {
+		maxFileSize = fileSize > 0 ? fileSize : DEFAULT_MAX_FILE_SIZE;
+		maxDepth = depth > 0 ? depth : DEFAULT_MAX_DEPTH;
+		maxAttributeLength = attributeLength > 0 ? attributeLength : DEFAULT_MAX_ATTRIBUTE_LENGTH;
+	}
+
+	/**
+	 * @return the maximum size of a file in bytes
+	 */
+	public static long getMaxFileSize() {
+		return maxFileSize;
+	}
+
+	/**
+	 * @return the maximum depth of the elements
+	 */
+	public static int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * @return the maximum length of an attribute value
+	 */
+	public static int getMaxAttributeLength() {
+		return maxAttributeLength;
+	}
+
+	/**
+	 * The method parses a file into a DOM document with the parser of the
+	 * current thread.
+	 *
+	 * @param fileName the name of the file
+	 * @return the document
+	 * @throws XmlLimitException if the file exceeds a limit
+	 * @throws IOException if the file cannot be read
+	 * @throws SAXException if the file is not well-formed or contains a DTD
+	 */
+	public static Document parseDocument(String fileName) throws IOException, SAXException {
+		checkSize(fileName);
+		DocumentBuilder builder = DOCUMENT_BUILDERS.get();
+		builder.setErrorHandler(ERROR_HANDLER);
+		InputStream in = ArchiveInput.newInputStream(fileName);
+		try {
+			Document document = builder.parse(in, getSystemId(fileName));
+			checkDocument(fileName, document);
+			return document;
+		} finally {
+			in.close();
+			builder.reset();
+		}
+	}
+
+	/**
+	 * The method creates a StAX reader of a file. The depth and the attribute
+	 * values are checked for every element, closing the reader closes the
+	 * file.
+	 *
+	 * @param fileName the name of the file
+	 * @return the reader
+	 * @throws XmlLimitException if the file exceeds the maximum size
+	 * @throws IOException if the file cannot be read
+	 * @throws XMLStreamException if the reader cannot be created
+	 */
+	public static XMLStreamReader createStreamReader(String fileName) throws IOException, XMLStreamException {
+		checkSize(fileName);
+		InputStream in = ArchiveInput.newInputStream(fileName);
+		try {
+			return new LimitedStreamReader(fileName, INPUT_FACTORY.createXMLStreamReader(in), in);
+		} catch (XMLStreamException | RuntimeException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * The method creates a StAX reader of a character stream, e.g. of a
+	 * string. The depth and the attribute values are checked for every
+	 * element.
+	 *
+	 * @param name the name of the input used in the messages
+	 * @param reader the character stream
+	 * @return the reader
+	 * @throws XMLStreamException if the reader cannot be created
+	 */
+	public static XMLStreamReader createStreamReader(String name, Reader reader) throws XMLStreamException {
+		return new LimitedStreamReader(name, INPUT_FACTORY.createXMLStreamReader(reader), null);
+	}
+
+	/**
+	 * The method returns the limit violation reported by a StAX reader of the
+	 * class.
+	 *
+	 * @param e the exception of the reader
+	 * @return the violation, null if the exception has another cause
+	 */
+	public static XmlLimitException getLimitException(XMLStreamException e) {
+		return e.getNestedException() instanceof XmlLimitException ? (XmlLimitException) e.getNestedException()
+				: null;
+	}
+
+	private static void checkSize(String fileName) throws XmlLimitException {
+		long size = ArchiveInput.size(fileName);
+		if (size > maxFileSize) {
+			throw new XmlLimitException("The file " + fileName + " (" + size + " bytes) exceeds the maximum size of "
+					+ maxFileSize + " bytes");
+		}
+	}
+
+	/**
+	 * The method returns the system identifier of a file for the messages
+	 * of the parser, the URI of a plain file or the name of an archive entry.
+	 */
+	private static String getSystemId(String fileName) {
+		return fileName.contains(ArchiveInput.SEPARATOR + "/") ? fileName : new File(fileName).toURI().toString();
+	}
+
+	/**
+	 * The method checks the depth and the attribute values of a document
+	 * without recursion.
+	 */
+	private static void checkDocument(String fileName, Document document) throws XmlLimitException {
+		Node node = document.getDocumentElement();
+		int depth = 1;
+		while (node != null) {
+			if (node.getNodeType() == Node.ELEMENT_NODE) {
+				FileDeadline.check();
+				checkDepth(fileName, node.getNodeName(), depth);
+				NamedNodeMap attributes = node.getAttributes();
+				for (int i = 0; i < attributes.getLength(); i++) {
+					checkAttribute(fileName, attributes.item(i).getNodeName(), attributes.item(i).getNodeValue());
+				}
+			}
+			if (node.getFirstChild() != null) {
+				node = node.getFirstChild();
+				depth++;
+				continue;
+			}
+			while (node != null && node.getNextSibling() == null) {
+				node = node.getParentNode();
+				depth--;
+				if (depth == 0) {
+					return;
+				}
+			}
+			if (node != null) {
+				node = node.getNextSibling();
+			}
+		}
+	}
+
+	private static void checkDepth(String fileName, String element, int depth) throws XmlLimitException {
+		if (depth > maxDepth) {
+			throw new XmlLimitException("The element '" + element + "' of the file " + fileName
+					+ " exceeds the maximum depth of " + maxDepth);
+		}
+	}
+
+	private static void checkAttribute(String fileName, String attribute, String value) throws XmlLimitException {
+		if (value != null && value.length() > maxAttributeLength) {
+			throw new XmlLimitException("The attribute '" + attribute + "' of the file " + fileName + " ("
+					+ value.length() + " characters) exceeds the maximum length of " + maxAttributeLength);
+		}
+	}
+
+	/**
+	 * The reader checks the depth and the attribute values of every element
+	 * and closes the underlying stream. A violation is reported as an
+	 * {@link XMLStreamException} with the {@link XmlLimitException} as nested
+	 * exception, see {@link #getLimitException(XMLStreamException)}.
+	 */
+	private static class LimitedStreamReader extends StreamReaderDelegate {
+		private final String fileName;
+		private final InputStream in;
+		private int depth;
+
+		LimitedStreamReader(String fileName, XMLStreamReader reader, InputStream in) {
+			super(reader);
+			this.fileName = fileName;
+			this.in = in;
+		}
+
+		@Override
+		public int next() throws XMLStreamException {
+			FileDeadline.check();
+			int event = super.next();
+			if (event == XMLStreamConstants.DTD) {
+				throw new XMLStreamException(new XmlLimitException("The file " + fileName
+						+ " contains a document type declaration, which is not allowed"));
+			} else if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+				try {
+					checkDepth(fileName, getLocalName(), depth);
+					for (int i = 0; i < getAttributeCount(); i++) {
+						checkAttribute(fileName, getAttributeLocalName(i), getAttributeValue(i));
+					}
+				} catch (XmlLimitException e) {
+					throw new XMLStreamException(e);
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+			return event;
+		}
+
+		@Override
+		public void close() throws XMLStreamException {
+			try {
+				super.close();
+			} finally {
+				if (in != null) {
+					try {
+						in.close();
+					} catch (IOException e) {
+						LOG.debug(e.getMessage());
+					}
+				}
+			}
+		}
+	}
+
+	private static DocumentBuilderFactory createDocumentBuilderFactory() {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		setFeature(factory, XMLConstants.FEATURE_SECURE_PROCESSING, true);
+		setFeature(factory, "http://apache.org/xml/features/disallow-doctype-decl", true);
+		setFeature(factory, "http://xml.org/sax/features/external-general-entities", false);
+		setFeature(factory, "http://xml.org/sax/features/external-parameter-entities", false);
+		setFeature(factory, "http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+		factory.setXIncludeAware(false);
+		factory.setExpandEntityReferences(false);
+		return factory;
+	}
+
+	private static void setFeature(DocumentBuilderFactory factory, String feature, boolean value) {
+		try {
+			factory.setFeature(feature, value);
+		} catch (ParserConfigurationException e) {
+			// the feature is not supported by the parser of the runtime
+			LOG.debug("XML feature " + feature + " is not supported: " + e.getMessage());
+		}
+	}
+
+	private static XMLInputFactory createInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		return factory;
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import java.io.IOException;
+
+/**
+ * The exception is thrown by {@link XmlInput} if an XML file exceeds one of
+ * the limits, e.g. the maximum file size or element depth. The message names
+ * the file and the limit.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class XmlLimitException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor
+	 *
+	 * @param message the message naming the file and the exceeded limit
+	 */
+	public XmlLimitException(String message) {
+		super(message);
+	}
+}
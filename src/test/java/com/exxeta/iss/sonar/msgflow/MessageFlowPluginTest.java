@@ -17,10 +17,16 @@
  */
 package com.exxeta.iss.sonar.msgflow;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Collections;
+
 import org.junit.Test;
+import org.sonar.api.Plugin;
+import org.sonar.api.internal.SonarRuntimeImpl;
+import org.sonar.api.utils.Version;
 
 import com.exxeta.iss.sonar.msgflow.batch.CollectorNodeSensor;
 import com.exxeta.iss.sonar.msgflow.batch.ComputeNodeSensor;
@@ -30,6 +36,8 @@ import com.exxeta.iss.sonar.msgflow.batch.HttpInputNodeSensor;
 import com.exxeta.iss.sonar.msgflow.batch.HttpRequestNodeSensor;
 import com.exxeta.iss.sonar.msgflow.batch.MQInputNodeSensor;
 import com.exxeta.iss.sonar.msgflow.batch.MQOutputNodeSensor;
+import com.exxeta.iss.sonar.msgflow.batch.MessageFlowLintSensor;
+import com.exxeta.iss.sonar.msgflow.batch.MessageFlowSensor;
 import com.exxeta.iss.sonar.msgflow.batch.ResetContentDescriptorNodeSensor;
 import com.exxeta.iss.sonar.msgflow.batch.SoapInputNodeSensor;
 import com.exxeta.iss.sonar.msgflow.batch.SoapRequestNodeSensor;
@@ -69,4 +77,26 @@ public class MessageFlowPluginTest {
 		assertTrue("TryCatchNodeSensor has not been imported.", mfp.getExtensions().contains(TryCatchNodeSensor.class));
 	}
 
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.MessageFlowPlugin#define(Plugin.Context)} in SonarLint.
+	 */
+	@Test
+	public final void testDefineSonarLint() {
+		Plugin.Context context = new Plugin.Context(SonarRuntimeImpl.forSonarLint(Version.create(6, 7)));
+		new MessageFlowPlugin().define(context);
+		
+		assertTrue("MessageFlowLintSensor has not been imported.", context.getExtensions().contains(MessageFlowLintSensor.class));
+		assertTrue("MessageFlowLanguage has not been imported.", context.getExtensions().contains(MessageFlowLanguage.class));
+		assertFalse("MessageFlowSensor has been imported.", context.getExtensions().contains(MessageFlowSensor.class));
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.MessageFlowMetrics#getMetrics()}.
+	 */
+	@Test
+	public final void testGetMetrics() {
+		// the project metric is not published
+		assertEquals(Collections.singletonList(MessageFlowMetrics.SKIPPED_FILES), new MessageFlowMetrics().getMetrics());
+	}
+
 }
@@ -0,0 +1,174 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
+import org.sonar.api.config.internal.MapSettings;
+
+import com.exxeta.iss.sonar.msgflow.MessageFlowPlugin;
+import com.exxeta.iss.sonar.msgflow.MessageFlowProjectSession;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
+import com.google.common.base.Charsets;
+
+/**
+ * The class tests the incremental analysis of the sub flow example.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class IncrementalAnalysisTest {
+
+	private static final List<String> FILES = Arrays.asList("Main.msgflow", "com/exxeta/Wrapper.subflow",
+			"com/exxeta/Validate.subflow", "com/exxeta/Unused.subflow");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File baseDir;
+
+	private MapSettings settings;
+
+	/**
+	 * a context that records the rule keys of the reported issues
+	 */
+	private static class RecordingContext implements MessageFlowContext {
+		private final String path;
+		private final List<String> ruleKeys = new ArrayList<String>();
+
+		RecordingContext(String path) {
+			this.path = path;
+		}
+
+		@Override
+		public String getAbsolutePath() {
+			return path;
+		}
+
+		@Override
+		public String getRelativePath() {
+			return path;
+		}
+
+		@Override
+		public void addIssue(String ruleKey, String message) {
+			ruleKeys.add(ruleKey);
+		}
+
+		@Override
+		public void addIssue(String ruleKey, String message, int line) {
+			ruleKeys.add(ruleKey);
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		baseDir = folder.newFolder("project");
+		FileUtils.copyDirectory(new File("src/test/resources/subflows"), baseDir);
+		settings = new MapSettings();
+		settings.setProperty(MessageFlowPlugin.INCREMENTAL_KEY, "true");
+		settings.setProperty(MessageFlowPlugin.CACHE_PATH_KEY, folder.newFolder("cache").getAbsolutePath());
+	}
+
+	/**
+	 * The method analyses the project like the {@link MessageFlowSensor}.
+	 *
+	 * @param status the status of the files
+	 * @param affected the names of the files that are expected to be analysed
+	 * @return the rule keys of the issues by file name
+	 */
+	private Map<String, List<String>> analyse(InputFile.Status status, String... affected) {
+		DefaultFileSystem fs = new DefaultFileSystem(baseDir);
+		for (String name : FILES) {
+			fs.add(TestInputFileBuilder.create("project", baseDir, new File(baseDir, name)).setLanguage("msgflow")
+					.setStatus(status).build());
+		}
+		MessageFlowProjectSession session = new MessageFlowProjectSession(settings.asConfig(), fs, new ActiveRulesBuilder().build());
+		IncrementalAnalysis incremental = new IncrementalAnalysis(settings.asConfig(), fs, session);
+		MessageFlowVisitor generic = new MessageFlowGenericSensor();
+		MessageFlowVisitorPlan plan = new MessageFlowVisitorPlan(new MessageFlowVisitor[] { generic },
+				Collections.singleton("UnusedSubFlow"));
+		Map<String, List<String>> issues = new LinkedHashMap<String, List<String>>();
+
+		session.start();
+		try {
+			assertTrue(incremental.isEnabled());
+			generic.visitProject();
+			List<String> analysed = new ArrayList<String>();
+			for (String name : FILES) {
+				String path = new File(baseDir, name).getAbsolutePath();
+				RecordingContext context = new RecordingContext(path);
+				issues.put(name, context.ruleKeys);
+				if (incremental.isAffected(path)) {
+					analysed.add(name);
+					plan.visitMessageFlow(incremental.record(context),
+							MessageFlowProject.getInstance().getMessageFlow(path));
+				} else {
+					incremental.replay(path, context);
+				}
+			}
+			generic.leaveProject();
+			incremental.save();
+			assertEquals(new HashSet<String>(Arrays.asList(affected)), new HashSet<String>(analysed));
+		} finally {
+			session.stop();
+		}
+		return issues;
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.batch.IncrementalAnalysis#getAffectedFiles()}.
+	 */
+	@Test
+	public final void testIncrementalAnalysis() throws Exception {
+		List<String> unused = Collections.singletonList("UnusedSubFlow");
+		List<String> none = Collections.emptyList();
+
+		Map<String, List<String>> issues = analyse(InputFile.Status.ADDED, FILES.toArray(new String[0]));
+		assertEquals(Arrays.asList(none, none, none, unused), new ArrayList<List<String>>(issues.values()));
+
+		// nothing has changed, the issues are taken from the graph
+		issues = analyse(InputFile.Status.SAME);
+		assertEquals(Arrays.asList(none, none, none, unused), new ArrayList<List<String>>(issues.values()));
+
+		// the main flow references the unused sub flow instead of the wrapper
+		File main = new File(baseDir, "Main.msgflow");
+		FileUtils.writeStringToFile(main, FileUtils.readFileToString(main, Charsets.UTF_8).replace("Wrapper", "Unused"),
+				Charsets.UTF_8);
+		issues = analyse(InputFile.Status.SAME, "Main.msgflow", "com/exxeta/Wrapper.subflow", "com/exxeta/Unused.subflow");
+		assertEquals(Arrays.asList(none, unused, none, none), new ArrayList<List<String>>(issues.values()));
+	}
+}
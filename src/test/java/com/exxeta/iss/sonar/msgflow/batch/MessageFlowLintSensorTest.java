@@ -0,0 +1,171 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.batch;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.issue.Issue;
+import org.sonar.api.rule.RuleKey;
+
+import com.exxeta.iss.sonar.msgflow.MessageFlowCheckList;
+import com.exxeta.iss.sonar.msgflow.MessageFlowPlugin;
+import com.exxeta.iss.sonar.msgflow.model.DependencyGraph;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowStaxParser;
+import com.google.common.base.Charsets;
+
+/**
+ * The class tests the single file analysis of the sub flow example.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class MessageFlowLintSensorTest {
+
+	private static final List<String> FILES = Arrays.asList("Main.msgflow", "com/exxeta/Wrapper.subflow",
+			"com/exxeta/Validate.subflow", "com/exxeta/Unused.subflow");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File baseDir;
+
+	private File cacheDir;
+
+	@Before
+	public void setUp() throws Exception {
+		baseDir = folder.newFolder("project");
+		cacheDir = folder.newFolder("cache");
+		FileUtils.copyDirectory(new File("src/test/resources/subflows"), baseDir);
+	}
+
+	@After
+	public void tearDown() {
+		MessageFlowProject.close();
+	}
+
+	/**
+	 * The method saves the dependency graph of a scanner analysis of the project.
+	 */
+	private void saveIndex() throws Exception {
+		DependencyGraph graph = new DependencyGraph("scanner");
+		MessageFlowProject project = MessageFlowProject.open(new MessageFlowStaxParser());
+		try {
+			for (String name : FILES) {
+				String fileName = new File(baseDir, name).getAbsolutePath();
+				project.getMessageFlow(fileName);
+				graph.put(fileName, DependencyGraph.hash(fileName), DependencyGraph.getDependencies(project, fileName),
+						Collections.<DependencyGraph.Issue>emptyList());
+			}
+		} finally {
+			MessageFlowProject.close();
+		}
+		graph.save(new File(cacheDir, IncrementalAnalysis.GRAPH_FILE));
+	}
+
+	/**
+	 * The method analyses a single file like SonarLint.
+	 *
+	 * @return the rule keys of the issues
+	 */
+	private List<String> analyse(String name) throws Exception {
+		SensorContextTester context = SensorContextTester.create(baseDir);
+		context.settings().setProperty(MessageFlowPlugin.CACHE_PATH_KEY, cacheDir.getAbsolutePath());
+		context.setActiveRules(new ActiveRulesBuilder()
+				.create(RuleKey.of(MessageFlowCheckList.REPOSITORY_KEY, "UnusedSubFlow")).activate()
+				.build());
+		File file = new File(baseDir, name);
+		context.fileSystem().add(TestInputFileBuilder.create("project", baseDir, file).setLanguage("msgflow")
+				.setContents(FileUtils.readFileToString(file, Charsets.UTF_8)).build());
+
+		new MessageFlowLintSensor().execute(context);
+
+		List<String> ruleKeys = new ArrayList<String>();
+		for (Issue issue : context.allIssues()) {
+			ruleKeys.add(issue.ruleKey().rule());
+		}
+		return ruleKeys;
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.batch.MessageFlowLintSensor#execute(org.sonar.api.batch.sensor.SensorContext)}.
+	 */
+	@Test
+	public final void testWithoutIndex() throws Exception {
+		// without the references of the other files every sub flow would be unused
+		assertEquals(Collections.<String>emptyList(), analyse("com/exxeta/Unused.subflow"));
+		assertEquals(Collections.<String>emptyList(), analyse("com/exxeta/Wrapper.subflow"));
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.batch.MessageFlowLintSensor#execute(org.sonar.api.batch.sensor.SensorContext)}.
+	 */
+	@Test
+	public final void testWithIndex() throws Exception {
+		saveIndex();
+		assertEquals(Collections.singletonList("UnusedSubFlow"), analyse("com/exxeta/Unused.subflow"));
+		assertEquals(Collections.<String>emptyList(), analyse("com/exxeta/Wrapper.subflow"));
+		assertEquals(Collections.<String>emptyList(), analyse("Main.msgflow"));
+	}
+
+	/**
+	 * The test checks that concurrent analyses, e.g. of several modules, do
+	 * not close the session of each other.
+	 */
+	@Test
+	public final void testConcurrentAnalyses() throws Exception {
+		saveIndex();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+			for (int i = 0; i < 40; i++) {
+				final String name = i % 2 == 0 ? "com/exxeta/Unused.subflow" : "com/exxeta/Wrapper.subflow";
+				results.add(executor.submit(new Callable<List<String>>() {
+					@Override
+					public List<String> call() throws Exception {
+						return analyse(name);
+					}
+				}));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				assertEquals(i % 2 == 0 ? Collections.singletonList("UnusedSubFlow") : Collections.<String>emptyList(),
+						results.get(i).get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
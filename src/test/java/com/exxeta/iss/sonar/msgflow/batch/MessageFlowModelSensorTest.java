@@ -0,0 +1,108 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.config.internal.MapSettings;
+
+import com.exxeta.iss.sonar.msgflow.MessageFlowPlugin;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlow;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowStaxParser;
+
+/**
+ * The class tests the building of the models before the rule sensors.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class MessageFlowModelSensorTest {
+
+	private static final File BASE_DIR = new File("src/test/resources");
+
+	private static final List<String> FILES = Arrays.asList("subflows/Main.msgflow", "subflows/com/exxeta/Wrapper.subflow",
+			"subflows/com/exxeta/Validate.subflow", "subflows/com/exxeta/Unused.subflow", "Mapping.map", "Compute.esql");
+
+	private DefaultFileSystem fs;
+
+	private MapSettings settings;
+
+	@Before
+	public void setUp() {
+		fs = new DefaultFileSystem(BASE_DIR);
+		for (String name : FILES) {
+			fs.add(TestInputFileBuilder.create("project", BASE_DIR, new File(BASE_DIR, name)).setLanguage("msgflow").build());
+		}
+		settings = new MapSettings();
+		settings.setProperty(MessageFlowPlugin.THREADS_KEY, "2");
+	}
+
+	@After
+	public void tearDown() {
+		MessageFlowProject.close();
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.batch.MessageFlowModelSensor#analyse(org.sonar.api.resources.Project, org.sonar.api.batch.SensorContext)}.
+	 */
+	@Test
+	public final void testAnalyse() {
+		MessageFlowProject project = MessageFlowProject.open(new MessageFlowStaxParser());
+		MessageFlowModelSensor sensor = new MessageFlowModelSensor(fs, settings.asConfig());
+		assertTrue(sensor.shouldExecuteOnProject(null));
+		assertEquals(2, sensor.getThreads());
+
+		sensor.analyse(null, null);
+
+		// the four flows and the map have been built, the ESQL modules are indexed
+		assertEquals(5, project.getMisses());
+		assertFalse(project.getEsqlModuleIndex().getFileModules(new File(BASE_DIR, "Compute.esql").getAbsolutePath()).isEmpty());
+
+		// the rule sensors look the models up without parsing the files again
+		String main = new File(BASE_DIR, "subflows/Main.msgflow").getAbsolutePath();
+		MessageFlow messageFlow = MessageFlowProject.getInstance().getMessageFlow(main);
+		assertSame(messageFlow, project.getMessageFlow(main));
+		project.getMessageMap(new File(BASE_DIR, "Mapping.map").getAbsolutePath());
+		assertEquals(5, project.getMisses());
+		assertEquals(3, project.getHits());
+	}
+
+	/**
+	 * The test checks that bounded models are left to the rule sensors.
+	 */
+	@Test
+	public final void testAnalyseBounded() {
+		MessageFlowProject project = MessageFlowProject.open(new MessageFlowStaxParser(), null, 2, 0);
+		new MessageFlowModelSensor(fs, settings.asConfig()).analyse(null, null);
+
+		assertEquals(0, project.getMisses());
+		assertFalse(project.getEsqlModuleIndex().getFileModules(new File(BASE_DIR, "Compute.esql").getAbsolutePath()).isEmpty());
+	}
+}
@@ -0,0 +1,284 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.exxeta.iss.sonar.msgflow.model.FileDeadline;
+import com.exxeta.iss.sonar.msgflow.model.FileTimeoutException;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlow;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowNode;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowStaxParser;
+import com.exxeta.iss.sonar.msgflow.model.NodeKind;
+
+/**
+ * The class tests the dispatching of message flows and nodes to the checks.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class MessageFlowSensorTest {
+
+	/**
+	 * a context that records the rule keys of the reported issues
+	 */
+	private static class RecordingContext implements MessageFlowContext {
+		private final String path;
+		private final List<String> ruleKeys = new ArrayList<String>();
+		private final List<Integer> lines = new ArrayList<Integer>();
+
+		RecordingContext(String path) {
+			this.path = path;
+		}
+
+		@Override
+		public String getAbsolutePath() {
+			return path;
+		}
+
+		@Override
+		public String getRelativePath() {
+			return path;
+		}
+
+		@Override
+		public void addIssue(String ruleKey, String message) {
+			ruleKeys.add(ruleKey);
+			lines.add(0);
+		}
+
+		@Override
+		public void addIssue(String ruleKey, String message, int line) {
+			ruleKeys.add(ruleKey);
+			lines.add(line);
+		}
+	}
+
+	/**
+	 * a check that counts the visited nodes
+	 */
+	private static class CountingVisitor extends MessageFlowVisitor {
+		private int flows;
+		private int nodes;
+
+		@Override
+		public void visitMessageFlow(MessageFlowContext context, MessageFlow messageFlow) {
+			flows++;
+		}
+
+		@Override
+		public void visitComputeNode(MessageFlowContext context, MessageFlowNode node) {
+			nodes++;
+		}
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitorPlan#visitMessageFlow(MessageFlowContext, MessageFlow)}.
+	 */
+	@Test
+	public final void testVisitMessageFlow() {
+		String path = "src/test/resources/Compute.msgflow";
+		MessageFlow mf = new MessageFlow(path, new MessageFlowStaxParser());
+		CountingVisitor counter = new CountingVisitor();
+
+		new MessageFlowVisitorPlan(new MessageFlowVisitor[] { counter }, null).visitMessageFlow(new RecordingContext(path), mf);
+
+		assertEquals(1, counter.flows);
+		assertEquals(mf.getComputeNodes().size(), counter.nodes);
+	}
+
+	/**
+	 * The test checks that the issues of a node are reported on its line.
+	 */
+	@Test
+	public final void testIssueLines() {
+		String path = "src/test/resources/Compute.msgflow";
+		MessageFlow mf = new MessageFlow(path, new MessageFlowStaxParser());
+		RecordingContext context = new RecordingContext(path);
+
+		new MessageFlowVisitorPlan(new MessageFlowVisitor[] { new ComputeNodeSensor() }, null).visitMessageFlow(context, mf);
+
+		assertFalse(context.lines.isEmpty());
+		assertEquals(Collections.nCopies(context.lines.size(), 9), context.lines);
+	}
+
+	/**
+	 * The test checks that a module referenced by a second Database or Filter
+	 * node is reported on the line of that node, like for the Compute nodes.
+	 */
+	@Test
+	public final void testOneModuleMultipleNodesLines() {
+		String path = "src/test/resources/Database.msgflow";
+		MessageFlowNode database = new MessageFlow(path, new MessageFlowStaxParser()).getDatabaseNodes().get(0);
+		DatabaseNodeSensor databaseSensor = new DatabaseNodeSensor();
+		RecordingContext context = new RecordingContext(path);
+		databaseSensor.visitMessageFlow(context, null);
+		databaseSensor.visitDatabaseNode(context, database);
+		assertFalse(context.ruleKeys.contains("OneModuleMultipleNodes"));
+		databaseSensor.visitDatabaseNode(context, database);
+		int index = context.ruleKeys.indexOf("OneModuleMultipleNodes");
+		assertEquals(Integer.valueOf(database.getLine()), context.lines.get(index));
+		assertTrue(database.getLine() > 0);
+
+		path = "src/test/resources/FilterNode.msgflow";
+		MessageFlowNode filter = new MessageFlow(path, new MessageFlowStaxParser()).getFilterNodes().get(0);
+		FilterNodeSensor filterSensor = new FilterNodeSensor();
+		context = new RecordingContext(path);
+		filterSensor.visitMessageFlow(context, null);
+		filterSensor.visitFilterNode(context, filter);
+		filterSensor.visitFilterNode(context, filter);
+		index = context.ruleKeys.indexOf("OneModuleMultipleNodes");
+		assertEquals(Integer.valueOf(filter.getLine()), context.lines.get(index));
+		assertTrue(filter.getLine() > 0);
+	}
+
+	/**
+	 * The test checks that the checks of a file are cancelled once the time
+	 * budget of the file is spent.
+	 */
+	@Test
+	public final void testTimeout() throws InterruptedException {
+		String path = "src/test/resources/Compute.msgflow";
+		MessageFlow mf = new MessageFlow(path, new MessageFlowStaxParser());
+		CountingVisitor counter = new CountingVisitor();
+
+		FileDeadline.setTimeout(1);
+		try {
+			FileDeadline.start(path);
+			Thread.sleep(10);
+			new MessageFlowVisitorPlan(new MessageFlowVisitor[] { counter }, null).visitMessageFlow(new RecordingContext(path),
+					mf);
+			fail("The checks have not been cancelled.");
+		} catch (FileTimeoutException e) {
+			assertEquals(path, e.getFileName());
+		} finally {
+			FileDeadline.stop();
+			FileDeadline.setTimeout(0);
+		}
+		assertEquals(1, counter.flows);
+		assertEquals(0, counter.nodes);
+	}
+
+	/**
+	 * The test checks that only the sub flows without a reference in the
+	 * sub flow index are reported.
+	 */
+	@Test
+	public final void testUnusedSubFlow() {
+		MessageFlowProject project = MessageFlowProject.open(new MessageFlowStaxParser());
+		MessageFlowVisitor generic = new MessageFlowGenericSensor();
+		MessageFlowVisitorPlan plan = new MessageFlowVisitorPlan(new MessageFlowVisitor[] { generic },
+				Collections.singleton("UnusedSubFlow"));
+		List<RecordingContext> contexts = new ArrayList<RecordingContext>();
+
+		try {
+			generic.visitProject();
+			for (String name : Arrays.asList("Main.msgflow", "com/exxeta/Wrapper.subflow",
+					"com/exxeta/Validate.subflow", "com/exxeta/Unused.subflow")) {
+				String path = new File("src/test/resources/subflows/" + name).getAbsolutePath();
+				RecordingContext context = new RecordingContext(path);
+				plan.visitMessageFlow(context, project.getMessageFlow(path));
+				contexts.add(context);
+			}
+			generic.leaveProject();
+		} finally {
+			MessageFlowProject.close();
+		}
+
+		assertEquals(Collections.emptyList(), contexts.get(0).ruleKeys);
+		assertEquals(Collections.emptyList(), contexts.get(1).ruleKeys);
+		assertEquals(Collections.emptyList(), contexts.get(2).ruleKeys);
+		assertEquals(Collections.singletonList("UnusedSubFlow"), contexts.get(3).ruleKeys);
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitor#visitProject()}.
+	 */
+	@Test
+	public final void testProjectState() {
+		String path = "src/test/resources/Compute.msgflow";
+		MessageFlow mf = new MessageFlow(path, new MessageFlowStaxParser());
+		MessageFlowVisitor[] visitors = new MessageFlowVisitor[] { new ComputeNodeSensor() };
+		MessageFlowVisitorPlan plan = new MessageFlowVisitorPlan(visitors, null);
+
+		visitors[0].visitProject();
+		RecordingContext first = new RecordingContext(path);
+		plan.visitMessageFlow(first, mf);
+		assertFalse(first.ruleKeys.contains("OneModuleMultipleNodes"));
+
+		// the modules are collected over all files of a project ...
+		RecordingContext second = new RecordingContext(path);
+		plan.visitMessageFlow(second, mf);
+		assertTrue(second.ruleKeys.contains("OneModuleMultipleNodes"));
+
+		// ... and reset for the next one
+		visitors[0].visitProject();
+		RecordingContext third = new RecordingContext(path);
+		plan.visitMessageFlow(third, mf);
+		assertEquals(first.ruleKeys, third.ruleKeys);
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.batch.MessageFlowVisitorPlan}.
+	 */
+	@Test
+	public final void testPlan() {
+		MessageFlowVisitor compute = new ComputeNodeSensor();
+		MessageFlowVisitor connection = new MessageFlowConnectionSensor();
+		MessageFlowVisitor map = new MessageMapSensor();
+		MessageFlowVisitor[] visitors = new MessageFlowVisitor[] { compute, connection, map };
+
+		Set<String> activeRuleKeys = new HashSet<String>();
+		activeRuleKeys.add("SelfConnectingNodes");
+		MessageFlowVisitorPlan plan = new MessageFlowVisitorPlan(visitors, activeRuleKeys);
+
+		assertEquals(1, plan.getVisitors().length);
+		assertEquals(0, plan.getVisitors("visitComputeNode").length);
+		assertEquals(1, plan.getVisitors("visitMessageFlow").length);
+		assertTrue(plan.visitsMessageFlows());
+		assertFalse(plan.visitsMessageMaps());
+
+		// a single active rule is enough to execute a check
+		activeRuleKeys.add("ComputeNodeOutTerminal");
+		plan = new MessageFlowVisitorPlan(visitors, activeRuleKeys);
+		assertEquals(2, plan.getVisitors().length);
+		assertEquals(1, plan.getVisitors("visitComputeNode").length);
+		assertEquals(1, plan.getVisitors(NodeKind.COMPUTE).length);
+		assertEquals(0, plan.getVisitors(NodeKind.MQ_INPUT).length);
+		assertEquals("visitMqInputNode", MessageFlowVisitorPlan.getVisitMethodName(NodeKind.MQ_INPUT));
+		assertTrue(compute.isActive("ComputeNodeOutTerminal"));
+		assertFalse(compute.isActive("ComputeNodeFailureTerminal"));
+
+		plan = new MessageFlowVisitorPlan(visitors, Collections.<String>emptySet());
+		assertEquals(0, plan.getVisitors().length);
+		assertFalse(plan.visitsMessageFlows());
+	}
+}
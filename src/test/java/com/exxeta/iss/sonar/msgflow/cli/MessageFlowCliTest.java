@@ -0,0 +1,196 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowStaxParser;
+import com.google.common.base.Charsets;
+
+/**
+ * The class tests the command line analyzer on the sub flow example.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class MessageFlowCliTest {
+
+	private static final String DIRECTORY = "src/test/resources/subflows";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+	private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+	@After
+	public void tearDown() {
+		MessageFlowProject.close();
+	}
+
+	private int run(String... args) {
+		return MessageFlowCli.run(args, out, new PrintStream(err));
+	}
+
+	@Test
+	public void testJson() {
+		assertEquals(MessageFlowCli.EXIT_ISSUES, run("--threads", "2", DIRECTORY));
+
+		String output = new String(out.toByteArray(), Charsets.UTF_8);
+		assertTrue(output, output.contains("{\"file\":\"com/exxeta/Unused.subflow\",\"rule\":\"UnusedSubFlow\""));
+		assertFalse(output, output.contains("\"file\":\"com/exxeta/Wrapper.subflow\",\"rule\":\"UnusedSubFlow\""));
+		for (String line : output.split("\n")) {
+			assertTrue(line, line.startsWith("{\"file\":") && line.endsWith("}"));
+		}
+	}
+
+	@Test
+	public void testSarifWithCache() throws Exception {
+		File cache = folder.newFolder("cache");
+		File output = new File(folder.getRoot(), "issues.sarif");
+
+		assertEquals(MessageFlowCli.EXIT_ISSUES, run("--format", "sarif", "--cache", cache.getPath(), "--output",
+				output.getPath(), DIRECTORY));
+		String first = FileUtils.readFileToString(output, Charsets.UTF_8);
+		assertTrue(first, first.contains("\"version\":\"2.1.0\""));
+		assertTrue(first, first.contains("{\"id\":\"UnusedSubFlow\"}"));
+		assertTrue(first, first.contains("\"uri\":\"com/exxeta/Unused.subflow\""));
+		assertTrue(first.trim().endsWith("]}]}"));
+
+		// the second run reads the models from the cache
+		assertEquals(MessageFlowCli.EXIT_ISSUES, run("--format", "sarif", "--cache", cache.getPath(), "--output",
+				output.getPath(), DIRECTORY));
+		assertEquals(first, FileUtils.readFileToString(output, Charsets.UTF_8));
+	}
+
+	@Test
+	public void testRules() {
+		assertEquals(MessageFlowCli.EXIT_ISSUES, run("--rules", "UnusedSubFlow", DIRECTORY));
+
+		String output = new String(out.toByteArray(), Charsets.UTF_8);
+		assertEquals(output, 1, output.split("\n").length);
+	}
+
+	@Test
+	public void testArchive() throws Exception {
+		File archive = new File(folder.getRoot(), "subflows.bar");
+		File directory = new File(DIRECTORY);
+		ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive));
+		try {
+			Collection<File> files = FileUtils.listFiles(directory, null, true);
+			for (File file : files) {
+				zip.putNextEntry(new ZipEntry(directory.toURI().relativize(file.toURI()).getPath()));
+				zip.write(FileUtils.readFileToByteArray(file));
+				zip.closeEntry();
+			}
+		} finally {
+			zip.close();
+		}
+
+		assertEquals(MessageFlowCli.EXIT_ISSUES, run("--threads", "2", archive.getPath()));
+		String output = new String(out.toByteArray(), Charsets.UTF_8);
+		assertTrue(output, output.contains("{\"file\":\"subflows.bar!/com/exxeta/Unused.subflow\",\"rule\":\"UnusedSubFlow\""));
+		assertFalse(output, output.contains("\"file\":\"subflows.bar!/com/exxeta/Wrapper.subflow\",\"rule\":\"UnusedSubFlow\""));
+
+		assertEquals(MessageFlowCli.EXIT_ERROR, run("--daemon", "0", archive.getPath()));
+	}
+
+	@Test
+	public void testArchiveWithoutProject() throws Exception {
+		// the naming conventions of a '_MF' flow need the Eclipse project, an archive has none
+		File archive = new File(folder.getRoot(), "app.bar");
+		ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive));
+		try {
+			zip.putNextEntry(new ZipEntry("com/exxeta/Order_MF.msgflow"));
+			zip.write(FileUtils.readFileToByteArray(new File("src/test/resources/Compute.msgflow")));
+			zip.closeEntry();
+		} finally {
+			zip.close();
+		}
+
+		int exitCode = run("--rules", "MavenProjectNamingConventions", archive.getPath());
+		String errors = new String(err.toByteArray(), Charsets.UTF_8);
+		assertEquals(errors, MessageFlowCli.EXIT_OK, exitCode);
+		assertTrue(errors, errors.startsWith("0 issues"));
+	}
+
+	@Test
+	public void testErrors() {
+		assertEquals(MessageFlowCli.EXIT_ERROR, run("--format", "xml", DIRECTORY));
+		assertEquals(MessageFlowCli.EXIT_ERROR, run("--threads"));
+		assertEquals(MessageFlowCli.EXIT_ERROR, run(DIRECTORY + "/missing"));
+	}
+
+	@Test
+	public void testInternalError() throws Exception {
+		// a failing check skips the file, the other files are analysed
+		File unused = new File(DIRECTORY, "com/exxeta/Unused.subflow").getAbsoluteFile();
+		MessageFlowProject project = MessageFlowProject.open(new MessageFlowStaxParser());
+		int issues = new MessageFlowAnalyzer(null, 1).analyse(new File(DIRECTORY).toPath(), new IssueWriter() {
+			@Override
+			public void begin(Set<String> ruleKeys) {
+				// nothing to write
+			}
+
+			@Override
+			public void write(Issue issue) {
+				if ("com/exxeta/Unused.subflow".equals(issue.getPath())) {
+					throw new IllegalStateException("The check failed");
+				}
+			}
+
+			@Override
+			public void end() {
+				// nothing to write
+			}
+		});
+		assertTrue(issues > 0);
+		assertEquals(Collections.singletonList(unused.getPath()), project.getSkippedFiles());
+		MessageFlowProject.close();
+
+		// an error escaping the analysis is not taken for issues
+		assertEquals(MessageFlowCli.EXIT_ERROR, run("--threads", "100000", DIRECTORY));
+		String errors = new String(err.toByteArray(), Charsets.UTF_8);
+		assertTrue(errors, errors.startsWith("The analysis failed: java.lang.IllegalArgumentException"));
+	}
+
+	@Test
+	public void testQuote() {
+		assertEquals("\"a\\\"b\\\\c\\nd\\u0001\"", JsonIssueWriter.quote("a\"b\\c\nd\u0001"));
+		assertEquals("null", JsonIssueWriter.quote(null));
+	}
+}
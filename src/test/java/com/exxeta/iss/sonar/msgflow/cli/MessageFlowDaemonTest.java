@@ -0,0 +1,148 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowProject;
+import com.exxeta.iss.sonar.msgflow.model.MessageFlowStaxParser;
+import com.google.common.base.Charsets;
+
+/**
+ * The class tests the daemon on a copy of the sub flow example with a
+ * minimal client.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class MessageFlowDaemonTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File baseDir;
+
+	private MessageFlowDaemon daemon;
+
+	@Before
+	public void setUp() throws IOException {
+		baseDir = folder.newFolder("subflows");
+		FileUtils.copyDirectory(new File("src/test/resources/subflows"), baseDir);
+		MessageFlowProject.open(new MessageFlowStaxParser());
+		daemon = new MessageFlowDaemon(baseDir.toPath(), null, 2);
+		daemon.start(0);
+	}
+
+	@After
+	public void tearDown() {
+		daemon.close();
+		MessageFlowProject.close();
+	}
+
+	/**
+	 * The method sends a request and returns the lines of the answer.
+	 */
+	private List<String> request(String request) throws IOException {
+		Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort());
+		try {
+			Writer out = new OutputStreamWriter(socket.getOutputStream(), Charsets.UTF_8);
+			out.write(request + "\n");
+			out.flush();
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), Charsets.UTF_8));
+			List<String> lines = new ArrayList<String>();
+			String line;
+			while ((line = in.readLine()) != null && !line.isEmpty()) {
+				lines.add(line);
+			}
+			return lines;
+		} finally {
+			socket.close();
+		}
+	}
+
+	private static boolean contains(List<String> lines, String text) {
+		for (String line : lines) {
+			if (line.contains(text)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Test
+	public void testIssues() throws IOException {
+		List<String> unused = request("ISSUES com/exxeta/Unused.subflow");
+		assertTrue(unused.toString(), contains(unused, "\"rule\":\"UnusedSubFlow\""));
+		assertTrue(contains(unused, "\"file\":\"com/exxeta/Unused.subflow\""));
+		assertFalse(contains(request("ISSUES com/exxeta/Wrapper.subflow"), "UnusedSubFlow"));
+		assertEquals(Collections.<String>emptyList(), request("ISSUES com/exxeta/Missing.subflow"));
+		assertTrue(contains(request("HELLO"), "\"error\""));
+	}
+
+	@Test
+	public void testUpdate() throws IOException {
+		File main = new File(baseDir, "Main.msgflow");
+		FileUtils.writeStringToFile(main, FileUtils.readFileToString(main, Charsets.UTF_8).replace("Wrapper", "Unused"),
+				Charsets.UTF_8);
+
+		// the request analyses the changed file without waiting for the watcher
+		assertFalse(contains(request("ISSUES com/exxeta/Unused.subflow"), "UnusedSubFlow"));
+		assertTrue(contains(request("ISSUES com/exxeta/Wrapper.subflow"), "UnusedSubFlow"));
+		assertTrue(contains(request("ISSUES " + main.getAbsolutePath()), "\"file\":\"Main.msgflow\""));
+	}
+
+	@Test
+	public void testWatch() throws Exception {
+		long analyses = daemon.getAnalyses();
+		FileUtils.forceDelete(new File(baseDir, "Main.msgflow"));
+
+		long end = System.currentTimeMillis() + 10000;
+		while (daemon.getAnalyses() == analyses && System.currentTimeMillis() < end) {
+			Thread.sleep(20);
+		}
+		assertTrue(daemon.getAnalyses() > analyses);
+		assertTrue(contains(request("ISSUES com/exxeta/Wrapper.subflow"), "UnusedSubFlow"));
+		assertEquals(Collections.<String>emptyList(), request("ISSUES Main.msgflow"));
+	}
+
+	@Test
+	public void testStop() throws Exception {
+		request("STOP");
+		daemon.awaitClose();
+	}
+}
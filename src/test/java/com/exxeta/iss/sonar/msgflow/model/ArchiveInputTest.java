@@ -0,0 +1,213 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.SAXException;
+
+/**
+ * The class tests the input of the entries of archives.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class ArchiveInputTest {
+
+	private static final String[] ENTRIES = { "Compute.msgflow", "Mapping.map", "Compute.esql" };
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File archive;
+
+	@Before
+	public void setUp() throws IOException {
+		archive = new File(folder.getRoot(), "test.bar");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive));
+		try {
+			for (String name : ENTRIES) {
+				out.putNextEntry(new ZipEntry("com/exxeta/" + name));
+				out.write(FileUtils.readFileToByteArray(new File("src/test/resources", name)));
+				out.closeEntry();
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	@After
+	public void resetLimits() {
+		XmlInput.setLimits(0, 0, 0);
+	}
+
+	private String getEntryName(String name) {
+		return archive.getAbsolutePath() + ArchiveInput.SEPARATOR + "/com/exxeta/" + name;
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.ArchiveInput#open(Path)}.
+	 */
+	@Test
+	public final void testOpenArchive() throws IOException {
+		ArchiveInput input = ArchiveInput.open(archive.toPath());
+		try {
+			Path entry = input.getRoot().resolve("com/exxeta/Compute.msgflow");
+			assertEquals(getEntryName("Compute.msgflow"), ArchiveInput.getFileName(entry));
+			assertEquals(archive.getPath(), ArchiveInput.getFileName(archive.toPath()));
+
+			// the parsers read the entries like the files
+			MessageFlow plain = new MessageFlow("src/test/resources/Compute.msgflow", new MessageFlowStaxParser());
+			MessageFlow packed = new MessageFlow(getEntryName("Compute.msgflow"), new MessageFlowStaxParser());
+			assertEquals(plain.getNodes().size(), packed.getNodes().size());
+			assertEquals(plain.getNodes().size(),
+					new MessageFlow(getEntryName("Compute.msgflow"), new MessageFlowParser()).getNodes().size());
+			assertEquals(new MessageMap("src/test/resources/Mapping.map", new MessageMapParser()).getMappings().size(),
+					new MessageMap(getEntryName("Mapping.map"), new MessageMapParser()).getMappings().size());
+			assertFalse(new EsqlModuleParser().parse(getEntryName("Compute.esql")).isEmpty());
+
+			try {
+				ArchiveInput.open(archive.toPath());
+				fail("The archive has been opened twice.");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+		} finally {
+			input.close();
+		}
+		// nothing has been extracted
+		assertEquals(Arrays.asList(archive), Arrays.asList(folder.getRoot().listFiles()));
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.ArchiveInput#newInputStream(String)}.
+	 */
+	@Test
+	public final void testClosedArchive() throws IOException {
+		byte[] content = FileUtils.readFileToByteArray(new File("src/test/resources/Compute.esql"));
+		assertArrayEquals(content, ArchiveInput.readAllBytes(getEntryName("Compute.esql")));
+		assertEquals(content.length, ArchiveInput.size(getEntryName("Compute.esql")));
+		assertEquals(0, ArchiveInput.size(getEntryName("Missing.esql")));
+		try {
+			ArchiveInput.readAllBytes(getEntryName("Missing.esql"));
+			fail("A missing entry has been read.");
+		} catch (FileNotFoundException e) {
+			// expected
+		}
+
+		// a name with a separator but without an archive is a file
+		File file = new File(folder.newFolder("directory!"), "Compute.esql");
+		FileUtils.writeByteArrayToFile(file, content);
+		assertArrayEquals(content, ArchiveInput.readAllBytes(file.getPath()));
+		assertTrue(ArchiveInput.isArchive(archive.toPath()));
+		assertFalse(ArchiveInput.isArchive(new File("Compute.msgflow").toPath()));
+	}
+
+	/**
+	 * The test checks that an entry inflating beyond the maximum file size is
+	 * rejected while it is read, even if the archive declares a small size.
+	 */
+	@Test(timeout = 30000)
+	public final void testOversizedEntry() throws IOException {
+		XmlInput.setLimits(1024 * 1024, 0, 0);
+		File bomb = new File(folder.getRoot(), "bomb.bar");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(bomb));
+		try {
+			// an element that is never closed, the parser reads until the end
+			byte[] spaces = new byte[64 * 1024];
+			Arrays.fill(spaces, (byte) ' ');
+			for (String name : new String[] { "Bomb.esql", "Bomb.msgflow" }) {
+				out.putNextEntry(new ZipEntry(name));
+				out.write("<a>".getBytes("UTF-8"));
+				for (int i = 0; i < 256; i++) {
+					out.write(spaces);
+				}
+				out.closeEntry();
+			}
+		} finally {
+			out.close();
+		}
+		// 16 MB of content in a few kilobytes
+		assertTrue(bomb.length() < 100 * 1024);
+		declareSize(bomb, 100);
+
+		ArchiveInput input = ArchiveInput.open(bomb.toPath());
+		try {
+			String esql = bomb.getAbsolutePath() + ArchiveInput.SEPARATOR + "/Bomb.esql";
+			String msgflow = bomb.getAbsolutePath() + ArchiveInput.SEPARATOR + "/Bomb.msgflow";
+			assertEquals(100, ArchiveInput.size(msgflow));
+			try {
+				ArchiveInput.readAllBytes(esql);
+				fail("The entry has been read beyond the maximum size.");
+			} catch (XmlLimitException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains(esql));
+			}
+			assertTrue(new EsqlModuleParser().parse(esql).isEmpty());
+			try {
+				XmlInput.parseDocument(msgflow);
+				fail("The entry has been parsed beyond the maximum size.");
+			} catch (XmlLimitException e) {
+				// expected
+			} catch (SAXException e) {
+				assertTrue(e.getMessage(), e.getException() instanceof XmlLimitException);
+			}
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * The method overwrites the uncompressed sizes in the central directory
+	 * of an archive.
+	 */
+	private static void declareSize(File archive, int size) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(archive, "rw");
+		try {
+			byte[] content = new byte[(int) file.length()];
+			file.readFully(content);
+			for (int i = 0; i + 46 <= content.length; i++) {
+				// the signature of a central directory header, the size is at offset 24
+				if (content[i] == 'P' && content[i + 1] == 'K' && content[i + 2] == 1 && content[i + 3] == 2) {
+					file.seek(i + 24);
+					file.write(new byte[] { (byte) size, (byte) (size >> 8), (byte) (size >> 16), (byte) (size >> 24) });
+				}
+			}
+		} finally {
+			file.close();
+		}
+	}
+}
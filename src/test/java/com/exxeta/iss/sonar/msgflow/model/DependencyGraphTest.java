@@ -0,0 +1,145 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+
+/**
+ * The class tests the persistent dependency graph of the incremental
+ * analysis.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class DependencyGraphTest {
+
+	private static final String MAIN = "/p/Main.msgflow";
+	private static final String OTHER = "/p/Other.msgflow";
+	private static final String LONELY = "/p/Lonely.msgflow";
+	private static final String WRAPPER = "/p/com/exxeta/Wrapper.subflow";
+	private static final String VALIDATE = "/p/com/exxeta/Validate.subflow";
+	private static final String UNUSED = "/p/com/exxeta/Unused.subflow";
+	private static final String ESQL = "/p/com/exxeta/Validate.esql";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private DependencyGraph graph;
+
+	@Before
+	public void setUp() {
+		graph = new DependencyGraph("test");
+		put(MAIN, DependencyGraph.SUBFLOW + "com_exxeta_Wrapper.subflow", DependencyGraph.MODULE + "Main_Compute");
+		put(OTHER, DependencyGraph.MODULE + "Main_Compute");
+		put(LONELY, DependencyGraph.MODULE + "Lonely_Compute");
+		put(WRAPPER, DependencyGraph.SUBFLOW + "com_exxeta_Validate.subflow");
+		put(VALIDATE, DependencyGraph.getRoutineKey("com.exxeta", "Validate_Compute"), DependencyGraph.FILE + ESQL);
+		put(UNUSED);
+		graph.putFileHash(ESQL, "hash");
+	}
+
+	private void put(String fileName, String... dependencies) {
+		graph.put(fileName, "hash", new LinkedHashSet<String>(Arrays.asList(dependencies)),
+				Collections.singletonList(new DependencyGraph.Issue("rule", fileName, 1)));
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.DependencyGraph#save(File)}.
+	 */
+	@Test
+	public final void testSaveAndLoad() throws Exception {
+		File file = new File(folder.getRoot(), "graph/dependency-graph.bin");
+		graph.save(file);
+
+		DependencyGraph loaded = DependencyGraph.load(file, "test");
+		assertEquals(graph.getFiles(), loaded.getFiles());
+		assertEquals(graph.getDependencies(VALIDATE), loaded.getDependencies(VALIDATE));
+		assertEquals("hash", loaded.getHash(MAIN));
+		assertEquals(MAIN, loaded.getIssues(MAIN).get(0).getMessage());
+		assertEquals(1, loaded.getIssues(MAIN).get(0).getLine());
+		assertEquals(Collections.singletonMap(ESQL, "hash"), loaded.getFileHashes());
+
+		assertTrue(DependencyGraph.load(file, "other").getFiles().isEmpty());
+		FileUtils.writeStringToFile(file, "corrupt", Charsets.UTF_8);
+		assertTrue(DependencyGraph.load(file, "test").getFiles().isEmpty());
+		assertTrue(DependencyGraph.load(new File(folder.getRoot(), "missing"), "test").getFiles().isEmpty());
+	}
+
+	/**
+	 * The test checks that a changed ESQL file affects the flows using it,
+	 * the flows referencing them and the flows sharing a Compute module.
+	 */
+	@Test
+	public final void testChangedDependency() {
+		Set<String> affected = graph.getAffectedFiles(Collections.<String>emptySet(),
+				Collections.<String, Set<String>>emptyMap(), Collections.singleton(DependencyGraph.FILE + ESQL));
+
+		assertEquals(new HashSet<String>(Arrays.asList(VALIDATE, WRAPPER, MAIN, OTHER)), affected);
+
+		affected = graph.getAffectedFiles(Collections.<String>emptySet(), Collections.<String, Set<String>>emptyMap(),
+				Collections.singleton(DependencyGraph.getRoutineKey("com.exxeta", "VALIDATE_compute")));
+		assertEquals(new HashSet<String>(Arrays.asList(VALIDATE, WRAPPER, MAIN, OTHER)), affected);
+	}
+
+	/**
+	 * The test checks that the sub flows referenced by a changed flow before
+	 * and after the change are affected, but not their own sub flows.
+	 */
+	@Test
+	public final void testChangedReferences() {
+		Map<String, Set<String>> current = new HashMap<String, Set<String>>();
+		current.put(MAIN, Collections.singleton(DependencyGraph.SUBFLOW + "com_exxeta_Unused.subflow"));
+
+		Set<String> affected = graph.getAffectedFiles(Collections.singleton(MAIN), current, Collections.<String>emptySet());
+
+		assertEquals(new HashSet<String>(Arrays.asList(MAIN, WRAPPER, UNUSED, OTHER)), affected);
+	}
+
+	/**
+	 * The test checks that removed and added files are affected.
+	 */
+	@Test
+	public final void testAddedAndRemovedFiles() {
+		assertEquals(Collections.singleton(LONELY), graph.getAffectedFiles(Collections.singleton(LONELY),
+				Collections.<String, Set<String>>emptyMap(), Collections.<String>emptySet()));
+
+		// a new sub flow with the type referenced by the wrapper
+		String added = "/q/com/exxeta/Validate.subflow";
+		Map<String, Set<String>> current = new HashMap<String, Set<String>>();
+		current.put(added, Collections.<String>emptySet());
+		assertEquals(new HashSet<String>(Arrays.asList(added, WRAPPER, MAIN, OTHER)),
+				graph.getAffectedFiles(Collections.singleton(added), current, Collections.<String>emptySet()));
+	}
+}
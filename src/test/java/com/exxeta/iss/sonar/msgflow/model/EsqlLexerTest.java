@@ -0,0 +1,74 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.exxeta.iss.sonar.msgflow.model.EsqlLexer.TokenType;
+
+/**
+ * The class tests the ESQL lexer.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class EsqlLexerTest {
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.EsqlLexer#next()}.
+	 */
+	@Test
+	public final void testNext() {
+		EsqlLexer lexer = new EsqlLexer("SET x = /* a\r\n comment */ 'it''s' || \"y\";\n"
+				+ "-- SELECT\n"
+				+ "\tIF x <> 1.5 THEN");
+
+		assertEquals(TokenType.IDENTIFIER, lexer.next());
+		assertTrue(lexer.is("set"));
+		assertEquals(TokenType.IDENTIFIER, lexer.next());
+		assertEquals("x", lexer.getText());
+		assertEquals(TokenType.PUNCTUATOR, lexer.next());
+		assertTrue(lexer.is('='));
+
+		assertEquals(TokenType.STRING, lexer.next());
+		assertEquals("'it''s'", lexer.getText());
+		assertEquals(2, lexer.getLine());
+		assertEquals(13, lexer.getColumn());
+		assertEquals(TokenType.PUNCTUATOR, lexer.next());
+		assertEquals("||", lexer.getText());
+		assertEquals(TokenType.QUOTED_IDENTIFIER, lexer.next());
+		assertEquals(TokenType.PUNCTUATOR, lexer.next());
+		assertTrue(lexer.is(';'));
+
+		assertEquals(TokenType.IDENTIFIER, lexer.next());
+		assertTrue(lexer.is("IF"));
+		assertEquals(4, lexer.getLine());
+		assertEquals(2, lexer.getColumn());
+		lexer.next();
+		assertEquals(TokenType.PUNCTUATOR, lexer.next());
+		assertEquals("<>", lexer.getText());
+		assertEquals(TokenType.NUMBER, lexer.next());
+		assertEquals("1.5", lexer.getText());
+		lexer.next();
+		assertTrue(lexer.is("THEN"));
+		assertEquals(TokenType.EOF, lexer.next());
+		assertEquals(TokenType.EOF, lexer.next());
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * The class tests the index of the ESQL modules.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class EsqlModuleIndexTest {
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.EsqlModuleParser#parse(java.lang.String)}.
+	 */
+	@Test
+	public final void testParse() {
+		List<EsqlModule> modules = new EsqlModuleParser().parse("src/test/resources/Compute.esql");
+		assertEquals(3, modules.size());
+
+		EsqlModule compute = modules.get(0);
+		assertEquals("", compute.getSchema());
+		assertEquals("Compute_Compute", compute.getName());
+		assertEquals("COMPUTE", compute.getType());
+		assertEquals(1, compute.getStartLine());
+		assertEquals(14, compute.getEndLine());
+		assertTrue(compute.hasDatabaseCall());
+		assertEquals(6, compute.getDatabaseCallLine());
+		assertEquals(1, compute.getCalledProcedures().size());
+		assertEquals("COPYENTIREMESSAGE", compute.getCalledProcedures().get(0));
+
+		EsqlModule filter = modules.get(1);
+		assertEquals("FilterNode_Filter", filter.getName());
+		assertEquals("FILTER", filter.getType());
+		assertFalse(filter.hasDatabaseCall());
+
+		// string literals and comments spanning lines do not end the module
+		EsqlModule database = modules.get(2);
+		assertEquals("Database_Database", database.getName());
+		assertEquals(29, database.getStartLine());
+		assertEquals(38, database.getEndLine());
+		assertEquals(35, database.getDatabaseCallLine());
+		assertEquals("COM.EXXETA.LOG", database.getCalledProcedures().get(0));
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.EsqlModuleIndex#resolve(java.lang.String)}.
+	 */
+	@Test
+	public final void testResolve() {
+		EsqlModuleIndex index = new EsqlModuleIndex(new EsqlModuleParser());
+		index.add("src/test/resources/Compute.esql");
+		index.add(new File("src/test/resources/Compute.esql").getAbsolutePath());
+		assertEquals(3, index.size());
+
+		assertEquals(1, index.resolve("esql://routine/#Compute_Compute.Main").size());
+		assertEquals(1, index.resolve("esql://routine/#FILTERNODE_FILTER.Main").size());
+		assertTrue(index.resolve("esql://routine/#Commented_Compute.Main").isEmpty());
+		assertTrue(index.resolve("esql://routine/com.exxeta#Compute_Compute.Main").isEmpty());
+
+		assertEquals("com.exxeta", EsqlModuleIndex.getSchema("esql://routine/com.exxeta#Compute_Compute.Main"));
+		assertEquals("Compute_Compute", EsqlModuleIndex.getModuleName("esql://routine/com.exxeta#Compute_Compute.Main"));
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.EsqlModuleIndex#addDirectory(java.io.File)}.
+	 */
+	@Test
+	public final void testAddDirectory() {
+		EsqlModuleIndex index = new EsqlModuleIndex(new EsqlModuleParser());
+		index.addDirectory(new File("src/test/resources"));
+		index.addDirectory(new File("src/test/resources"));
+		assertEquals(3, index.size());
+		assertEquals(new File("src/test/resources/Compute.esql").getPath(),
+				index.getModules("", "Compute_Compute").get(0).getFileName());
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * The class tests the time budget of the analysis of a file.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class FileDeadlineTest {
+
+	private static final String FILE_NAME = "src/test/resources/Compute.msgflow";
+
+	/**
+	 * a parser that is slower than the time budget
+	 */
+	private static class SlowParser extends MessageFlowStaxParser {
+		@Override
+		public void parse(String fileName, EnumMap<NodeKind, ArrayList<MessageFlowNode>> nodes,
+				ArrayList<MessageFlowConnection> connections, ArrayList<MessageFlowCommentNote> comments,
+				StringBuilder shortDescription, StringBuilder longDescription) {
+			sleep(50);
+			super.parse(fileName, nodes, connections, comments, shortDescription, longDescription);
+		}
+	}
+
+	@After
+	public void reset() {
+		FileDeadline.stop();
+		FileDeadline.setTimeout(0);
+		MessageFlowProject.close();
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.FileDeadline#start(String)}.
+	 */
+	@Test
+	public final void testStart() {
+		assertFalse(FileDeadline.start(FILE_NAME));
+
+		FileDeadline.setTimeout(60000);
+		assertTrue(FileDeadline.start(FILE_NAME));
+		assertFalse(FileDeadline.start("other.msgflow"));
+		FileDeadline.check();
+		FileDeadline.stop();
+		assertTrue(FileDeadline.start(FILE_NAME));
+	}
+
+	/**
+	 * The test checks that both parsers are cancelled once the budget is spent.
+	 */
+	@Test
+	public final void testParsersAreCancelled() {
+		FileDeadline.setTimeout(1);
+		for (MessageFlowParser parser : new MessageFlowParser[] { new MessageFlowStaxParser(), new MessageFlowParser() }) {
+			FileDeadline.start(FILE_NAME);
+			sleep(10);
+			try {
+				new MessageFlow(FILE_NAME, parser);
+				fail("The parse has not been cancelled.");
+			} catch (FileTimeoutException e) {
+				assertEquals(FILE_NAME, e.getFileName());
+				assertTrue(e.getMessage().contains("1 ms"));
+			} finally {
+				FileDeadline.stop();
+			}
+		}
+
+		// without a running budget the file is parsed
+		assertEquals(1, new MessageFlow(FILE_NAME, new MessageFlowStaxParser()).getComputeNodes().size());
+	}
+
+	/**
+	 * The test checks that a file exceeding the budget is recorded as skipped
+	 * and that the next file is analysed.
+	 */
+	@Test
+	public final void testSkippedFile() {
+		FileDeadline.setTimeout(10);
+		MessageFlowProject project = MessageFlowProject.open(new SlowParser());
+
+		try {
+			project.getMessageFlow(FILE_NAME);
+			fail("The parse has not been cancelled.");
+		} catch (FileTimeoutException e) {
+			assertTrue(project.isSkipped(FILE_NAME));
+		}
+		assertEquals(Collections.singletonList(FILE_NAME), project.getSkippedFiles());
+
+		FileDeadline.setTimeout(60000);
+		assertFalse(project.getMessageFlow("src/test/resources/Route.msgflow").getNodes().isEmpty());
+		assertEquals(1, project.getSkippedFiles().size());
+	}
+
+	/**
+	 * The test checks that a model loaded under the expired budget of another
+	 * file, e.g. a sub flow loaded by the checks of its parent flow, is not
+	 * recorded as skipped.
+	 */
+	@Test
+	public final void testNestedLoad() {
+		FileDeadline.setTimeout(1);
+		MessageFlowProject project = MessageFlowProject.open(new MessageFlowStaxParser());
+		String parent = "src/test/resources/subflows/Main.msgflow";
+
+		assertTrue(FileDeadline.start(parent));
+		sleep(10);
+		try {
+			project.getMessageFlow(FILE_NAME);
+			fail("The parse has not been cancelled.");
+		} catch (FileTimeoutException e) {
+			assertEquals(parent, e.getFileName());
+		}
+		try {
+			project.getMessageMap("src/test/resources/Mapping.map");
+			fail("The parse has not been cancelled.");
+		} catch (FileTimeoutException e) {
+			assertEquals(parent, e.getFileName());
+		} finally {
+			FileDeadline.stop();
+		}
+		assertEquals(Collections.<String>emptyList(), project.getSkippedFiles());
+
+		// the model is built by the next analysis of the file
+		FileDeadline.setTimeout(60000);
+		assertEquals(1, project.getMessageFlow(FILE_NAME).getComputeNodes().size());
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+
+/**
+ * The class compares decoding the binary encoding of the message flows
+ * with parsing the message flow files. It is not part of the unit tests,
+ * run it with the test class path and optionally the directory of the
+ * message flow files as argument:
+ *
+ * java -cp target/classes:target/test-classes:... com.exxeta.iss.sonar.msgflow.model.MessageFlowCodecBenchmark [directory]
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public final class MessageFlowCodecBenchmark {
+
+	private static final int ITERATIONS = 200;
+
+	private MessageFlowCodecBenchmark() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		File[] files = new File(args.length > 0 ? args[0] : "src/test/resources").listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(".msgflow") || name.endsWith(".subflow");
+			}
+		});
+		MessageFlowCodec codec = new MessageFlowCodec();
+		MessageFlowParser parser = new MessageFlowStaxParser();
+		byte[][] encoded = new byte[files.length][];
+		long xmlBytes = 0;
+		long binaryBytes = 0;
+		for (int i = 0; i < files.length; i++) {
+			encoded[i] = codec.encode(new MessageFlow(files[i].getPath(), parser));
+			xmlBytes += files[i].length();
+			binaryBytes += encoded[i].length;
+		}
+
+		// warm up
+		run(files, encoded, codec, parser, ITERATIONS / 4);
+
+		long start = System.nanoTime();
+		for (int n = 0; n < ITERATIONS; n++) {
+			for (File file : files) {
+				new MessageFlow(file.getPath(), parser);
+			}
+		}
+		long parse = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int n = 0; n < ITERATIONS; n++) {
+			for (int i = 0; i < files.length; i++) {
+				codec.decodeMessageFlow(files[i].getPath(), encoded[i]);
+			}
+		}
+		long decode = System.nanoTime() - start;
+
+		long models = (long) ITERATIONS * files.length;
+		System.out.println(files.length + " files, " + xmlBytes + " bytes XML, " + binaryBytes + " bytes encoded");
+		System.out.println("parse:  " + parse / models / 1000 + " us per file");
+		System.out.println("decode: " + decode / models / 1000 + " us per file");
+	}
+
+	private static void run(File[] files, byte[][] encoded, MessageFlowCodec codec, MessageFlowParser parser,
+			int iterations) throws IOException {
+		for (int n = 0; n < iterations; n++) {
+			for (int i = 0; i < files.length; i++) {
+				new MessageFlow(files[i].getPath(), parser);
+				codec.decodeMessageFlow(files[i].getPath(), encoded[i]);
+			}
+		}
+	}
+}
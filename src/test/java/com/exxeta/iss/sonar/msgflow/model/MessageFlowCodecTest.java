@@ -0,0 +1,109 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * The class tests the binary encoding of the models.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class MessageFlowCodecTest {
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.MessageFlowCodec#decodeMessageFlow(java.lang.String, byte[])}.
+	 */
+	@Test
+	public final void testMessageFlowRoundTrip() throws IOException {
+		File[] files = new File("src/test/resources").listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(".msgflow") || name.endsWith(".subflow");
+			}
+		});
+		assertTrue("No message flow files found.", files.length > 0);
+
+		MessageFlowCodec codec = new MessageFlowCodec();
+		for (File file : files) {
+			for (MessageFlowParser parser : new MessageFlowParser[] { new MessageFlowParser(), new MessageFlowStaxParser() }) {
+				MessageFlow expected = new MessageFlow(file.getPath(), parser);
+				byte[] bytes = codec.encode(expected);
+				MessageFlow actual = codec.decodeMessageFlow(file.getPath(), bytes);
+
+				assertEquals(file.getName(), MessageFlowStaxParserTest.describe(expected),
+						MessageFlowStaxParserTest.describe(actual));
+				assertTrue(file.getName(), Arrays.equals(bytes, codec.encode(actual)));
+				assertTrue(file.getName(), bytes.length < file.length());
+			}
+		}
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.MessageFlowCodec#decodeMessageMap(java.lang.String, byte[])}.
+	 */
+	@Test
+	public final void testMessageMapRoundTrip() throws IOException {
+		String path = "src/test/resources/Mapping.map";
+		MessageFlowCodec codec = new MessageFlowCodec();
+		MessageMap expected = new MessageMap(path, new MessageMapParser());
+		MessageMap actual = codec.decodeMessageMap(path, codec.encode(expected));
+
+		assertEquals(expected.getMappings().size(), actual.getMappings().size());
+		for (int i = 0; i < expected.getMappings().size(); i++) {
+			assertEquals(expected.getMappings().get(i).getInputPath(), actual.getMappings().get(i).getInputPath());
+			assertEquals(expected.getMappings().get(i).getOutputPath(), actual.getMappings().get(i).getOutputPath());
+		}
+		assertEquals(expected.getInputVar().toString(), actual.getInputVar().toString());
+		assertEquals(expected.getOutputVar().toString(), actual.getOutputVar().toString());
+		assertEquals(expected.getTodoCount().get(), actual.getTodoCount().get());
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.MessageFlowCodec#decodeMessageFlow(java.lang.String, byte[])}.
+	 */
+	@Test
+	public final void testCorruptInput() {
+		MessageFlowCodec codec = new MessageFlowCodec();
+		byte[] bytes = codec.encode(new MessageFlow("src/test/resources/Route.msgflow", new MessageFlowStaxParser()));
+
+		for (byte[] corrupt : new byte[][] { "<xml/>".getBytes(), Arrays.copyOf(bytes, bytes.length / 2) }) {
+			try {
+				codec.decodeMessageFlow("Route.msgflow", corrupt);
+				fail("Corrupt input has been decoded.");
+			} catch (IOException e) {
+				// expected
+			}
+		}
+		try {
+			codec.decodeMessageMap("Route.msgflow", bytes);
+			fail("A message flow has been decoded as message map.");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The class tests the persistent model cache.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class MessageFlowModelCacheTest {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.MessageFlowModelCache#getMessageFlow(java.lang.String, com.exxeta.iss.sonar.msgflow.model.MessageFlowParser)}.
+	 */
+	@Test
+	public final void testGetMessageFlow() throws IOException {
+		File directory = temp.newFolder("cache");
+		String path = "src/test/resources/Route.msgflow";
+
+		MessageFlowModelCache cache = new MessageFlowModelCache(directory, "1");
+		MessageFlow parsed = cache.getMessageFlow(path, new MessageFlowStaxParser());
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		// the next analysis reads the model from the cache
+		cache = new MessageFlowModelCache(directory, "1");
+		MessageFlow cached = cache.getMessageFlow(path, new MessageFlowStaxParser());
+		assertEquals(1, cache.getHits());
+		assertEquals(0, cache.getMisses());
+		assertEquals(parsed.getRouteNodes().size(), cached.getRouteNodes().size());
+		assertEquals(parsed.getRouteNodes().get(0).getProperties(), cached.getRouteNodes().get(0).getProperties());
+		assertEquals(parsed.getConnections().size(), cached.getConnections().size());
+		assertEquals(MessageFlowStaxParserTest.describe(parsed), MessageFlowStaxParserTest.describe(cached));
+
+		// a new fingerprint clears the cache
+		cache = new MessageFlowModelCache(directory, "2");
+		cache.getMessageFlow(path, new MessageFlowStaxParser());
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	/**
+	 * The test checks that a corrupt entry is parsed again, whatever the
+	 * decoder fails with.
+	 */
+	@Test
+	public final void testCorruptEntry() throws IOException {
+		File directory = temp.newFolder("cache");
+		String path = "src/test/resources/Route.msgflow";
+		String expected = MessageFlowStaxParserTest.describe(
+				new MessageFlowModelCache(directory, "1").getMessageFlow(path, new MessageFlowStaxParser()));
+		File entry = directory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(".msgflow");
+			}
+		})[0];
+		byte[] bytes = Files.readAllBytes(entry.toPath());
+
+		// every byte after the header is corrupted once
+		for (int i = 5; i < bytes.length; i++) {
+			byte[] corrupt = bytes.clone();
+			corrupt[i] = (byte) 0xFE;
+			Files.write(entry.toPath(), corrupt);
+			MessageFlowModelCache cache = new MessageFlowModelCache(directory, "1");
+			MessageFlow messageFlow = cache.getMessageFlow(path, new MessageFlowStaxParser());
+			if (cache.getErrors() > 0) {
+				assertEquals(1, cache.getMisses());
+				assertEquals(expected, MessageFlowStaxParserTest.describe(messageFlow));
+			}
+		}
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.MessageFlowModelCache#getMessageMap(java.lang.String, com.exxeta.iss.sonar.msgflow.model.MessageMapParser)}.
+	 */
+	@Test
+	public final void testGetMessageMap() throws IOException {
+		File directory = temp.newFolder("cache");
+		String path = "src/test/resources/Mapping.map";
+
+		MessageMap parsed = new MessageFlowModelCache(directory, "1").getMessageMap(path, new MessageMapParser());
+		MessageFlowModelCache cache = new MessageFlowModelCache(directory, "1");
+		MessageMap cached = cache.getMessageMap(path, new MessageMapParser());
+		assertEquals(1, cache.getHits());
+		assertEquals(parsed.getMappings().size(), cached.getMappings().size());
+		assertEquals(parsed.getTodoCount().get(), cached.getTodoCount().get());
+		assertEquals(parsed.getInputVar().toString(), cached.getInputVar().toString());
+	}
+}
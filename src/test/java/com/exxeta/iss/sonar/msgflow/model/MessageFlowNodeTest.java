@@ -22,7 +22,15 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
 
 /**
  * The class ... TODO: add comment
@@ -31,6 +39,9 @@ import org.junit.Test;
  */
 public class MessageFlowNodeTest {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	/**
 	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.MessageFlowNode#getId()}.
 	 */
@@ -251,6 +262,90 @@ public class MessageFlowNodeTest {
 		assertTrue("No InTerminal.control found.", mf.getCollectorNodes().get(0).getInputTerminals().contains("InTerminal.control"));
 	}
 
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.MessageFlowNode#isInputTerminalConnected(int)}
+	 * and {@link com.exxeta.iss.sonar.msgflow.model.MessageFlowNode#isOutputTerminalConnected(int)}.
+	 */
+	@Test
+	public final void testIsTerminalConnected() {
+		MessageFlow mf = new MessageFlow("src/test/resources/Collector.msgflow", new MessageFlowStaxParser());
+		MessageFlowNode collector = mf.getCollectorNodes().get(0);
+		
+		assertTrue(collector.isInputTerminalConnected(TerminalDictionary.IN_CONTROL));
+		assertFalse(collector.isInputTerminalConnected(TerminalDictionary.IN));
+		assertTrue(collector.isOutputTerminalConnected(TerminalDictionary.OUT_EXPIRE));
+		assertTrue(collector.isOutputTerminalConnected("OutTerminal.catch"));
+		assertFalse(collector.isOutputTerminalConnected("OutTerminal.unconnected"));
+		assertEquals(-1, TerminalDictionary.forKind(NodeKind.COLLECTOR).indexOf("OutTerminal.unconnected"));
+		assertEquals("OutTerminal.failure", TerminalDictionary.forKind(NodeKind.ROUTE).getTerminal(TerminalDictionary.OUT_FAILURE));
+		
+		/* the bit sets agree with the terminal lists */
+		mf = new MessageFlow("src/test/resources/Route.msgflow", new MessageFlowStaxParser());
+		for (MessageFlowNode node : mf.getNodes()) {
+			TerminalDictionary terminals = TerminalDictionary.forKind(node.getKind());
+			for (int i = 0; i < terminals.size(); i++) {
+				assertEquals(node.getInputTerminals().contains(terminals.getTerminal(i)), node.isInputTerminalConnected(i));
+				assertEquals(node.getOutputTerminals().contains(terminals.getTerminal(i)), node.isOutputTerminalConnected(i));
+			}
+		}
+	}
+
+	/**
+	 * The test checks that the dictionary of a kind stops growing when it is
+	 * full and that the terminals found afterwards are still connected.
+	 */
+	@Test
+	public final void testFullTerminalDictionary() throws IOException {
+		TerminalDictionary terminals = TerminalDictionary.forKind(NodeKind.ROUTE);
+		for (int i = 0; terminals.size() < TerminalDictionary.MAX_SIZE; i++) {
+			terminals.index("OutTerminal.label" + i);
+		}
+		assertEquals(-1, terminals.index("OutTerminal.overflow"));
+		assertEquals(TerminalDictionary.MAX_SIZE, terminals.size());
+		assertEquals(TerminalDictionary.OUT, terminals.index("OutTerminal.out"));
+
+		/* a label not seen before is not added to the full dictionary */
+		String label = "Out" + System.nanoTime();
+		File file = new File(folder.getRoot(), "Route.msgflow");
+		FileUtils.writeStringToFile(file, FileUtils.readFileToString(new File("src/test/resources/Route.msgflow"),
+				Charsets.UTF_8).replace("\"Out1\"", "\"" + label + "\""), Charsets.UTF_8);
+		MessageFlowNode route = new MessageFlow(file.getPath(), new MessageFlowStaxParser()).getRouteNodes().get(0);
+		assertEquals(-1, terminals.indexOf(label));
+		assertTrue(route.getOutputTerminals().contains(label));
+		assertTrue(route.isOutputTerminalConnected(label));
+		assertFalse(route.isOutputTerminalConnected("OutTerminal.overflow"));
+		assertEquals(TerminalDictionary.MAX_SIZE, terminals.size());
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.MessageFlowNode#getAttributes()}.
+	 */
+	@Test
+	public final void testGetAttributes() {
+		MessageFlow mf = new MessageFlow("src/test/resources/IMSRequest.msgflow", new MessageFlowStaxParser());
+		NodeAttributes attributes = mf.getImsRequestNodes().get(0).getAttributes();
+		
+		assertEquals("localhost", attributes.getString("hostname"));
+		assertEquals(970, attributes.getInt("portNumber", 0));
+		assertEquals(-1, attributes.getInt("hostname", -1));
+		assertFalse(attributes.getBoolean("useNodeProperties", true));
+		assertTrue(attributes.getBoolean("unknown", true));
+		assertEquals("IMS Request", attributes.getString("translation.string"));
+		assertEquals("Long Description goes here", attributes.getString("longDescription.string"));
+		assertFalse(attributes.contains("translation.type"));
+		assertEquals(null, attributes.getString("unknown"));
+		assertEquals("", attributes.getString("unknown", ""));
+		
+		/* the keys and values are shared by all nodes */
+		MessageFlow other = new MessageFlow("src/test/resources/IMSRequest.msgflow", new MessageFlowParser());
+		NodeAttributes otherAttributes = other.getImsRequestNodes().get(0).getAttributes();
+		assertEquals(attributes.asMap(), otherAttributes.asMap());
+		for (int i = 0; i < attributes.size(); i++) {
+			assertTrue(attributes.getKey(i) == otherAttributes.getKey(i));
+			assertTrue(attributes.getValue(i) == otherAttributes.getValue(i));
+		}
+	}
+
 	/**
 	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.MessageFlowNode#getOutputTerminals()}.
 	 */
@@ -18,9 +18,19 @@
 package com.exxeta.iss.sonar.msgflow.model;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Test;
 
 /**
@@ -62,4 +72,110 @@ public class MessageFlowProjectTest {
 		assertTrue(diff1 > diff2);
 	}
 
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.MessageFlowProject#open(MessageFlowParser)}.
+	 */
+	@Test
+	public final void testOpenAndClose() {
+		MessageFlowProject mfp = MessageFlowProject.open(new MessageFlowParser());
+		assertSame(mfp, MessageFlowProject.getInstance());
+		
+		MessageFlow mf = mfp.getMessageFlow("src/test/resources/Collector.msgflow");
+		assertSame(mf, MessageFlowProject.getInstance().getMessageFlow("src/test/resources/Collector.msgflow"));
+		
+		MessageFlowProject.close();
+		assertNotSame(mfp, MessageFlowProject.getInstance());
+		assertNotSame(mf, MessageFlowProject.getInstance().getMessageFlow("src/test/resources/Collector.msgflow"));
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.MessageFlowProject#getMessageFlow(java.lang.String)}.
+	 */
+	@Test
+	public final void testGetMessageFlowConcurrently() throws Exception {
+		final MessageFlowProject mfp = MessageFlowProject.open(new MessageFlowStaxParser());
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<MessageFlow>> futures = new ArrayList<Future<MessageFlow>>();
+			for (int i = 0; i < 16; i++) {
+				futures.add(executor.submit(new Callable<MessageFlow>() {
+					@Override
+					public MessageFlow call() {
+						return mfp.getMessageFlow("src/test/resources/Route.msgflow");
+					}
+				}));
+			}
+			
+			MessageFlow mf = futures.get(0).get();
+			for (Future<MessageFlow> future : futures) {
+				assertSame(mf, future.get());
+			}
+		} finally {
+			executor.shutdown();
+			MessageFlowProject.close();
+		}
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.MessageFlowProject#open(MessageFlowParser, MessageFlowModelCache, long, long)}.
+	 */
+	@Test
+	public final void testBoundedModels() {
+		MessageFlowProject mfp = MessageFlowProject.open(new MessageFlowStaxParser(), null, 1, 0);
+		try {
+			assertTrue(mfp.isBounded());
+			mfp.getMessageFlow("src/test/resources/Route.msgflow");
+			mfp.getMessageFlow("src/test/resources/Route.msgflow");
+			mfp.getMessageFlow("src/test/resources/Collector.msgflow");
+			MessageFlow mf = mfp.getMessageFlow("src/test/resources/Route.msgflow");
+
+			assertEquals(1, mf.getRouteNodes().size());
+			assertEquals(1, mfp.getHits());
+			assertEquals(3, mfp.getMisses());
+			assertEquals(2, mfp.getEvictions());
+			assertEquals(1, mfp.getRebuilds());
+		} finally {
+			MessageFlowProject.close();
+		}
+
+		mfp = MessageFlowProject.open(new MessageFlowStaxParser(), null, 0, 1);
+		try {
+			MessageFlow mf = mfp.getMessageFlow("src/test/resources/Route.msgflow");
+			assertTrue(MessageFlowProject.estimateSize(mf) > 1);
+			mfp.getMessageFlow("src/test/resources/Route.msgflow");
+			assertEquals(0, mfp.getHits());
+			assertEquals(1, mfp.getRebuilds());
+		} finally {
+			MessageFlowProject.close();
+		}
+		assertFalse(MessageFlowProject.getInstance().isBounded());
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.MessageFlowProject#open(MessageFlowParser, MessageFlowModelCache, long, long, boolean)}.
+	 */
+	@Test
+	public final void testStrongModels() {
+		// without a bound a model is built once per session, also after a garbage collection
+		MessageFlowProject mfp = MessageFlowProject.open(new MessageFlowStaxParser(), null, 0, 0);
+		try {
+			int hash = System.identityHashCode(mfp.getMessageFlow("src/test/resources/Route.msgflow"));
+			System.gc();
+			assertEquals(hash, System.identityHashCode(mfp.getMessageFlow("src/test/resources/Route.msgflow")));
+			assertEquals(1, mfp.getMisses());
+			assertEquals(0, mfp.getRebuilds());
+		} finally {
+			MessageFlowProject.close();
+		}
+
+		mfp = MessageFlowProject.open(new MessageFlowStaxParser(), null, 0, 0, true);
+		try {
+			assertFalse(mfp.isBounded());
+			MessageFlow mf = mfp.getMessageFlow("src/test/resources/Route.msgflow");
+			assertSame(mf, mfp.getMessageFlow("src/test/resources/Route.msgflow"));
+		} finally {
+			MessageFlowProject.close();
+		}
+	}
+
 }
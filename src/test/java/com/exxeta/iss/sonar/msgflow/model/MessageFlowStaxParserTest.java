@@ -0,0 +1,165 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * The class tests that the StAX parser creates the same message flow model
+ * as the XPath based parser.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class MessageFlowStaxParserTest {
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.MessageFlowStaxParser}.
+	 */
+	@Test
+	public final void testEquivalenceWithXPathParser() {
+		File[] files = new File("src/test/resources").listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(".msgflow") || name.endsWith(".subflow");
+			}
+		});
+		assertTrue("No message flow files found.", files.length > 0);
+
+		for (File file : files) {
+			MessageFlow expected = new MessageFlow(file.getPath(), new MessageFlowParser());
+			MessageFlow actual = new MessageFlow(file.getPath(), new MessageFlowStaxParser());
+
+			assertEquals(file.getName(), describe(expected), describe(actual));
+		}
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.MessageFlowStaxParser}.
+	 */
+	@Test
+	public final void testRouteAndComments() {
+		MessageFlow mf = new MessageFlow("src/test/resources/Route.msgflow", new MessageFlowStaxParser());
+		assertEquals(1, mf.getRouteNodes().size());
+		assertTrue(((List<?>) mf.getRouteNodes().get(0).getProperties().get("routeTerminals")).contains("Match"));
+
+		mf = new MessageFlow("src/test/resources/MessageFlowComment.msgflow", new MessageFlowStaxParser());
+		assertEquals(1, mf.getComments().size());
+		assertEquals(3, mf.getComments().get(0).getAssociation().size());
+		assertEquals(113, mf.getComments().get(0).getLocationX());
+		assertEquals(231, mf.getComments().get(0).getLocationY());
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.MessageFlowNode#getLine()}.
+	 */
+	@Test
+	public final void testPositions() throws Exception {
+		String fileName = "src/test/resources/Compute.msgflow";
+		MessageFlow mf = new MessageFlow(fileName, new MessageFlowStaxParser());
+		MessageFlowNode compute = mf.getComputeNodes().get(0);
+		assertEquals(9, compute.getLine());
+		assertEquals(7, compute.getColumn());
+		assertEquals(15, mf.getFileOutputNodes().get(0).getLine());
+		// reverse document order
+		assertEquals(20, mf.getConnections().get(0).getLine());
+		assertEquals(18, mf.getConnections().get(2).getLine());
+		assertEquals(7, mf.getConnections().get(2).getColumn());
+
+		MessageFlowCodec codec = new MessageFlowCodec();
+		MessageFlow decoded = codec.decodeMessageFlow(fileName, codec.encode(mf));
+		assertEquals(9, decoded.getComputeNodes().get(0).getLine());
+		assertEquals(7, decoded.getComputeNodes().get(0).getColumn());
+		assertEquals(20, decoded.getConnections().get(0).getLine());
+
+		mf = new MessageFlow("src/test/resources/MessageFlowComment.msgflow", new MessageFlowStaxParser());
+		assertEquals(29, mf.getComments().get(0).getLine());
+		assertEquals(7, mf.getComments().get(0).getColumn());
+
+		// the XPath based parser does not know the positions
+		mf = new MessageFlow(fileName, new MessageFlowParser());
+		assertEquals(0, mf.getComputeNodes().get(0).getLine());
+	}
+
+	static String describe(MessageFlow mf) {
+		StringBuilder sb = new StringBuilder();
+		describe(sb, "collector", mf.getCollectorNodes());
+		describe(sb, "compute", mf.getComputeNodes());
+		describe(sb, "fileInput", mf.getFileInputNodes());
+		describe(sb, "fileOutput", mf.getFileOutputNodes());
+		describe(sb, "httpInput", mf.getHttpInputNodes());
+		describe(sb, "httpRequest", mf.getHttpRequestNodes());
+		describe(sb, "httpReply", mf.getHttpReplyNodes());
+		describe(sb, "mqInput", mf.getMqInputNodes());
+		describe(sb, "mqOutput", mf.getMqOutputNodes());
+		describe(sb, "mqGet", mf.getMqGetNodes());
+		describe(sb, "mqHeader", mf.getMqHeaderNodes());
+		describe(sb, "mqReply", mf.getMqReplyNodes());
+		describe(sb, "resetContentDescriptor", mf.getResetContentDescriptorNodes());
+		describe(sb, "soapInput", mf.getSoapInputNodes());
+		describe(sb, "soapRequest", mf.getSoapRequestNodes());
+		describe(sb, "timeoutControl", mf.getTimeoutControlNodes());
+		describe(sb, "timeoutNotification", mf.getTimeoutNotificationNodes());
+		describe(sb, "tryCatch", mf.getTryCatchNodes());
+		describe(sb, "imsRequest", mf.getImsRequestNodes());
+		describe(sb, "filter", mf.getFilterNodes());
+		describe(sb, "trace", mf.getTraceNodes());
+		describe(sb, "label", mf.getLabelNodes());
+		describe(sb, "routeToLabel", mf.getRouteToLabelNodes());
+		describe(sb, "aggregateControl", mf.getAggregateControlNodes());
+		describe(sb, "database", mf.getDatabaseNodes());
+		describe(sb, "route", mf.getRouteNodes());
+		describe(sb, "miscellaneous", mf.getMiscellaneousNodes());
+		for (MessageFlowConnection con : mf.getConnections()) {
+			sb.append("connection ").append(con.getSrcNode()).append('|').append(con.getSrcNodeName()).append('|')
+			  .append(con.getSrcTerminal()).append('|').append(con.getTargetNode()).append('|')
+			  .append(con.getTargetNodeName()).append('|').append(con.getTargetTerminal()).append('\n');
+		}
+		for (MessageFlowCommentNote note : mf.getComments()) {
+			sb.append("comment ").append(note.getAssociation()).append('|').append(note.getComment()).append('|')
+			  .append(note.getLocationX()).append('|').append(note.getLocationY()).append('\n');
+		}
+		sb.append("shortDescription ").append(mf.getShortDescription()).append('\n');
+		sb.append("longDescription ").append(mf.getLongDescription()).append('\n');
+		return sb.toString();
+	}
+
+	private static void describe(StringBuilder sb, String kind, List<MessageFlowNode> nodes) {
+		for (MessageFlowNode node : nodes) {
+			sb.append(kind).append(' ').append(node.getId()).append('|').append(node.getName()).append('|')
+			  .append(node.getType()).append('|').append(node.isBuildTreeUsingSchema()).append('|')
+			  .append(node.isMixedContentRetainMode()).append('|').append(node.isCommentsRetainMode()).append('|')
+			  .append(node.isValidateMaster()).append('|').append(node.getMessageDomainProperty()).append('|')
+			  .append(node.getMessageSetProperty()).append('|').append(node.getRequestMsgLocationInTree()).append('|')
+			  .append(node.getMessageDomain()).append('|').append(node.getMessageSet()).append('|')
+			  .append(node.getRecordDefinition()).append('|').append(node.isResetMessageDomain()).append('|')
+			  .append(node.isResetMessageSet()).append('|').append(node.isResetMessageType()).append('|')
+			  .append(node.isResetMessageFormat()).append('|').append(node.areMonitoringEventsEnabled()).append('|')
+			  .append(node.getInputTerminals()).append('|').append(node.getOutputTerminals()).append('|')
+			  .append(new TreeMap<String, Object>(node.getProperties())).append('|')
+			  .append(node.getAttributes()).append('\n');
+		}
+	}
+}
@@ -290,6 +290,45 @@ public class MessageFlowTest {
 		MessageFlow mf = new MessageFlow("src/test/resources/Route.msgflow", new MessageFlowParser());
 		assertEquals(1, mf.getRouteNodes().size());
 	}
+	@Test
+	public final void testGetGraph(){
+		MessageFlow mf = new MessageFlow("src/test/resources/Compute.msgflow", new MessageFlowParser());
+		MessageFlowGraph graph = mf.getGraph();
+		assertEquals(mf.getComputeNodes().get(0), graph.getNode("FCMComposite_1_1"));
+		assertEquals(2, graph.getOutDegree("FCMComposite_1_1"));
+		assertEquals(1, graph.getInDegree("FCMComposite_1_1"));
+		assertEquals(1, graph.getOutgoingConnections("FCMComposite_1_1", "OutTerminal.failure").size());
+		assertEquals("FCMComposite_1_3", graph.getOutgoingConnections("FCMComposite_1_1", "OutTerminal.failure").get(0).getTargetNode());
+		assertTrue(graph.getOutgoingConnections("FCMComposite_1_1", "OutTerminal.catch").isEmpty());
+		assertEquals(2, graph.getIncomingConnections("FCMComposite_1_3", "InTerminal.in").size());
+		assertEquals(2, graph.getPredecessors("FCMComposite_1_3").size());
+		assertTrue(graph.getSuccessors("FCMComposite_1_3").isEmpty());
+		assertEquals(0, graph.getOutDegree("unknown"));
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.MessageFlow#getNodes(NodeKind)}.
+	 */
+	@Test
+	public final void testGetNodesByKind() {
+		MessageFlow mf = new MessageFlow("src/test/resources/MQNodes.msgflow", new MessageFlowStaxParser());
+		
+		int size = 0;
+		for (NodeKind kind : NodeKind.values()) {
+			for (MessageFlowNode node : mf.getNodes(kind)) {
+				assertEquals(kind, node.getKind());
+				assertEquals(node, mf.getNodes().get(size++));
+			}
+		}
+		assertEquals(mf.getNodes().size(), size);
+		assertEquals(mf.getGraph().getNodes().size(), size);
+		assertTrue(mf.getNodes(NodeKind.MQ_GET) == mf.getMqGetNodes());
+		assertFalse(mf.getMqGetNodes().isEmpty());
+		
+		assertEquals(NodeKind.HTTP_INPUT, NodeKind.forType("WSInput"));
+		assertEquals(NodeKind.MISCELLANEOUS, NodeKind.forType("SF_Test.subflow"));
+		assertEquals(NodeKind.MISCELLANEOUS, NodeKind.forType(null));
+	}
 }
 
 
@@ -0,0 +1,125 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * The class tests the lazy decoding of the node specific properties.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class NodePropertiesTest {
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.NodeProperties#get(Object)}.
+	 */
+	@Test
+	public final void testGet() {
+		MessageFlow mf = new MessageFlow("src/test/resources/Compute.msgflow", new MessageFlowStaxParser());
+		NodeProperties properties = (NodeProperties) mf.getComputeNodes().get(0).getProperties();
+
+		assertEquals(0, properties.getDecodedCount());
+		assertEquals(3, properties.size());
+		assertTrue(properties.containsKey("dataSource"));
+
+		assertEquals("Compute_Compute", properties.get("computeExpression"));
+		assertEquals(1, properties.getDecodedCount());
+		assertSame(properties.get("computeExpression"), properties.get("computeExpression"));
+		assertEquals("esql://routine/#Compute_Compute.Main", properties.get("computeExpressionFull"));
+		assertNull(properties.get("queueName"));
+		assertEquals(2, properties.getDecodedCount());
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.NodeProperties#get(Object)}.
+	 */
+	@Test
+	public final void testGetRouteTerminals() {
+		MessageFlow mf = new MessageFlow("src/test/resources/Route.msgflow", new MessageFlowStaxParser());
+		MessageFlowNode node = mf.getNodes(NodeKind.ROUTE).get(0);
+
+		assertEquals(Arrays.asList("Out1", "Match"), node.getProperties().get("routeTerminals"));
+		assertEquals(Arrays.asList("Match", "Out1"), ((NodeProperties) node.getProperties()).getRouteTerminals());
+	}
+
+	/**
+	 * The test checks that the properties of a parsed flow are not decoded
+	 * and that the cache keeps them raw.
+	 */
+	@Test
+	public final void testUnusedPropertiesAreNotDecoded() throws Exception {
+		MessageFlow mf = new MessageFlow("src/test/resources/Collector.msgflow", new MessageFlowStaxParser());
+		MessageFlowCodec codec = new MessageFlowCodec();
+		MessageFlow decoded = codec.decodeMessageFlow("src/test/resources/Collector.msgflow", codec.encode(mf));
+		MessageFlowProject.estimateSize(mf);
+
+		for (MessageFlow flow : Arrays.asList(mf, decoded)) {
+			for (MessageFlowNode node : flow.getNodes()) {
+				assertEquals(0, ((NodeProperties) node.getProperties()).getDecodedCount());
+			}
+		}
+		assertEquals(mf.getComputeNodes().get(0).getProperties(), decoded.getComputeNodes().get(0).getProperties());
+	}
+
+	/**
+	 * The test measures the bytes allocated for the properties of many
+	 * nodes. Without an access only the map itself is allocated.
+	 */
+	@Test
+	public final void testAllocation() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+		Map<String, String> map = new HashMap<String, String>();
+		map.put("computeExpression", "esql://routine/#Compute_Compute.Main");
+		map.put("dataSource", "DSN");
+		NodeAttributes attributes = new NodeAttributes(map);
+		NodeProperties[] properties = new NodeProperties[10000];
+
+		long id = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(id);
+		for (int i = 0; i < properties.length; i++) {
+			properties[i] = new NodeProperties(NodeKind.COMPUTE, attributes, Collections.<String>emptyList());
+		}
+		long unused = threads.getThreadAllocatedBytes(id) - before;
+
+		before = threads.getThreadAllocatedBytes(id);
+		for (NodeProperties property : properties) {
+			property.get("computeExpression");
+		}
+		long used = threads.getThreadAllocatedBytes(id) - before;
+
+		assertTrue("allocated " + unused + " bytes", unused / properties.length <= 48);
+		assertTrue("allocated " + used + " bytes", used > unused);
+	}
+}
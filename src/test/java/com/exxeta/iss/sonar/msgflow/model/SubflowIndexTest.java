@@ -0,0 +1,137 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Function;
+
+/**
+ * The class tests the index of the sub flow references and the flattened
+ * graphs.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class SubflowIndexTest {
+
+	private static final String MAIN = new File("src/test/resources/subflows/Main.msgflow").getAbsolutePath();
+	private static final String WRAPPER = new File("src/test/resources/subflows/com/exxeta/Wrapper.subflow").getAbsolutePath();
+	private static final String VALIDATE = new File("src/test/resources/subflows/com/exxeta/Validate.subflow").getAbsolutePath();
+	private static final String UNUSED = new File("src/test/resources/subflows/com/exxeta/Unused.subflow").getAbsolutePath();
+
+	private SubflowIndex index;
+
+	@Before
+	public void setUp() {
+		MessageFlowProject project = MessageFlowProject.open(new MessageFlowStaxParser());
+		for (String fileName : Arrays.asList(MAIN, WRAPPER, VALIDATE, UNUSED)) {
+			project.getMessageFlow(fileName);
+		}
+		index = project.getSubflowIndex();
+	}
+
+	@After
+	public void tearDown() {
+		MessageFlowProject.close();
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.SubflowIndex#getSubflowFile(String)}.
+	 */
+	@Test
+	public final void testGetSubflowFile() {
+		assertEquals(WRAPPER, index.getSubflowFile("com_exxeta_Wrapper.subflow"));
+		assertEquals(WRAPPER, index.getSubflowFile("Wrapper.subflow"));
+		assertNull(index.getSubflowFile("org_Wrapper.subflow"));
+		assertEquals(Arrays.asList("SF.subflow", "b_SF.subflow", "a_b_SF.subflow"), SubflowIndex.getTypes("a/b/SF.subflow"));
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.SubflowIndex#getTransitiveSubflows(String)}.
+	 */
+	@Test
+	public final void testReferences() {
+		assertEquals(Collections.singletonList(WRAPPER), index.getReferencedSubflows(MAIN));
+		assertEquals(Arrays.asList(WRAPPER, VALIDATE), Arrays.asList(index.getTransitiveSubflows(MAIN).toArray()));
+		assertSame(index.getTransitiveSubflows(MAIN), index.getTransitiveSubflows(MAIN));
+		assertTrue(index.getTransitiveSubflows(VALIDATE).isEmpty());
+
+		assertTrue(index.isReferenced(WRAPPER));
+		assertTrue(index.isReferenced(VALIDATE));
+		assertFalse(index.isReferenced(UNUSED));
+		assertFalse(index.isReferenced(MAIN));
+	}
+
+	/**
+	 * Test method for {@link com.exxeta.iss.sonar.msgflow.model.SubflowIndex#getFlattenedGraph(String)}.
+	 */
+	@Test
+	public final void testGetFlattenedGraph() {
+		MessageFlowGraph graph = index.getFlattenedGraph(MAIN);
+		String compute = "FCMComposite_1_2/FCMComposite_1_1/FCMComposite_1_1";
+
+		assertEquals(3, graph.getNodes().size());
+		assertEquals(NodeKind.COMPUTE, graph.getNode(compute).getKind());
+		assertEquals(Collections.singletonList(compute), graph.getSuccessors("FCMComposite_1_1"));
+		assertEquals(Collections.singletonList("FCMComposite_1_3"), graph.getSuccessors(compute));
+
+		List<MessageFlowConnection> incoming = graph.getIncomingConnections(compute, "InTerminal.in");
+		assertEquals(1, incoming.size());
+		assertEquals("OutTerminal.out", incoming.get(0).getSrcTerminal());
+		assertEquals(Collections.singletonList("OutTerminal.out"), Arrays.asList(graph.getOutputTerminals(compute).toArray()));
+		assertTrue(incoming.get(0).getLine() > 0);
+
+		assertSame(graph, index.getFlattenedGraph(MAIN));
+	}
+
+	/**
+	 * The test checks that a sub flow referencing itself is kept as a node
+	 * and does not count as referenced.
+	 */
+	@Test
+	public final void testRecursiveSubflow() {
+		// the model of the Wrapper sub flow stored as the Validate sub flow references itself
+		final MessageFlow recursive = MessageFlowProject.getInstance().getMessageFlow(WRAPPER);
+		SubflowIndex recursiveIndex = new SubflowIndex(new Function<String, MessageFlow>() {
+			@Override
+			public MessageFlow apply(String fileName) {
+				return recursive;
+			}
+		});
+		recursiveIndex.add(VALIDATE, recursive);
+
+		assertTrue(recursiveIndex.getTransitiveSubflows(VALIDATE).isEmpty());
+		assertFalse(recursiveIndex.isReferenced(VALIDATE));
+		MessageFlowGraph graph = recursiveIndex.getFlattenedGraph(VALIDATE);
+		assertEquals(3, graph.getNodes().size());
+		assertEquals(NodeKind.MISCELLANEOUS, graph.getNode("FCMComposite_1_1").getKind());
+	}
+}
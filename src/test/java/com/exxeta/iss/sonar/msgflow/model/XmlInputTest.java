@@ -0,0 +1,207 @@
+/*
+ * Sonar Message Flow Plugin
+ * Copyright (C) 2015 Hendrik Scholz and EXXETA AG
+ * http://www.exxeta.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exxeta.iss.sonar.msgflow.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.SAXException;
+
+/**
+ * The class tests the hardened and bounded input of the XML files.
+ *
+ * @author Hendrik Scholz (EXXETA AG)
+ */
+public class XmlInputTest {
+
+	/**
+	 * a document expanding a few bytes into gigabytes ('billion laughs')
+	 */
+	private static final String ENTITY_EXPANSION = "<?xml version=\"1.0\"?>\n"
+			+ "<!DOCTYPE lolz [\n"
+			+ " <!ENTITY lol \"lol\">\n"
+			+ " <!ENTITY lol1 \"&lol;&lol;&lol;&lol;&lol;&lol;&lol;&lol;&lol;&lol;\">\n"
+			+ " <!ENTITY lol2 \"&lol1;&lol1;&lol1;&lol1;&lol1;&lol1;&lol1;&lol1;&lol1;&lol1;\">\n"
+			+ " <!ENTITY lol3 \"&lol2;&lol2;&lol2;&lol2;&lol2;&lol2;&lol2;&lol2;&lol2;&lol2;\">\n"
+			+ " <!ENTITY lol4 \"&lol3;&lol3;&lol3;&lol3;&lol3;&lol3;&lol3;&lol3;&lol3;&lol3;\">\n"
+			+ " <!ENTITY lol5 \"&lol4;&lol4;&lol4;&lol4;&lol4;&lol4;&lol4;&lol4;&lol4;&lol4;\">\n"
+			+ " <!ENTITY lol6 \"&lol5;&lol5;&lol5;&lol5;&lol5;&lol5;&lol5;&lol5;&lol5;&lol5;\">\n"
+			+ " <!ENTITY lol7 \"&lol6;&lol6;&lol6;&lol6;&lol6;&lol6;&lol6;&lol6;&lol6;&lol6;\">\n"
+			+ " <!ENTITY lol8 \"&lol7;&lol7;&lol7;&lol7;&lol7;&lol7;&lol7;&lol7;&lol7;&lol7;\">\n"
+			+ " <!ENTITY lol9 \"&lol8;&lol8;&lol8;&lol8;&lol8;&lol8;&lol8;&lol8;&lol8;&lol8;\">\n"
+			+ "]>\n"
+			+ "<lolz a=\"&lol9;\">&lol9;</lolz>\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void resetLimits() {
+		XmlInput.setLimits(0, 0, 0);
+	}
+
+	/**
+	 * The test checks that documents with entity declarations are rejected
+	 * by both parsers without expanding them.
+	 */
+	@Test(timeout = 10000)
+	public final void testEntityExpansion() throws Exception {
+		String fileName = write("lolz.xml", ENTITY_EXPANSION);
+
+		try {
+			XmlInput.parseDocument(fileName);
+			fail("The document type declaration has been accepted.");
+		} catch (SAXException e) {
+			assertNotNull(e.getMessage());
+		}
+
+		XmlLimitException limit = readFully(fileName);
+		assertNotNull(limit);
+		assertTrue(limit.getMessage().contains(fileName));
+
+		MessageFlow mf = new MessageFlow(fileName, new MessageFlowStaxParser());
+		assertEquals(0, mf.getNodes().size());
+	}
+
+	/**
+	 * The test checks the maximum depth of the elements.
+	 */
+	@Test
+	public final void testMaxDepth() throws Exception {
+		StringBuilder xml = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			xml.append("<e>");
+		}
+		for (int i = 0; i < 20; i++) {
+			xml.append("</e>");
+		}
+		String fileName = write("deep.xml", xml.toString());
+
+		XmlInput.parseDocument(fileName);
+		assertEquals(null, readFully(fileName));
+
+		XmlInput.setLimits(0, 10, 0);
+		try {
+			XmlInput.parseDocument(fileName);
+			fail("The depth has not been checked.");
+		} catch (XmlLimitException e) {
+			assertTrue(e.getMessage().contains("maximum depth of 10"));
+		}
+		assertTrue(readFully(fileName).getMessage().contains("maximum depth of 10"));
+	}
+
+	/**
+	 * The test checks the maximum size of the files.
+	 */
+	@Test
+	public final void testMaxFileSize() throws Exception {
+		XmlInput.setLimits(100, 0, 0);
+		String fileName = write("large.xml", "<a>" + new String(new char[200]).replace('\0', 'x') + "</a>");
+
+		try {
+			XmlInput.parseDocument(fileName);
+			fail("The size has not been checked.");
+		} catch (XmlLimitException e) {
+			assertTrue(e.getMessage().contains("maximum size of 100 bytes"));
+		}
+		try {
+			XmlInput.createStreamReader(fileName);
+			fail("The size has not been checked.");
+		} catch (XmlLimitException e) {
+			assertTrue(e.getMessage().contains(fileName));
+		}
+
+		XmlInput.setLimits(0, 0, 0);
+		assertEquals(XmlInput.DEFAULT_MAX_FILE_SIZE, XmlInput.getMaxFileSize());
+		assertNotNull(XmlInput.parseDocument(fileName));
+	}
+
+	/**
+	 * The test checks the maximum length of the attribute values.
+	 */
+	@Test
+	public final void testMaxAttributeLength() throws Exception {
+		String fileName = write("attribute.xml", "<a><b value=\"" + new String(new char[64]).replace('\0', 'x')
+				+ "\"/></a>");
+		XmlInput.setLimits(0, 0, 32);
+
+		try {
+			XmlInput.parseDocument(fileName);
+			fail("The attribute length has not been checked.");
+		} catch (XmlLimitException e) {
+			assertTrue(e.getMessage().contains("'value'"));
+		}
+		assertTrue(readFully(fileName).getMessage().contains("'value'"));
+	}
+
+	/**
+	 * The test checks that the parsers still read the message flows with the
+	 * default limits.
+	 */
+	@Test
+	public final void testMessageFlow() {
+		MessageFlow stax = new MessageFlow("src/test/resources/Compute.msgflow", new MessageFlowStaxParser());
+		MessageFlow xpath = new MessageFlow("src/test/resources/Compute.msgflow", new MessageFlowParser());
+
+		assertEquals(1, stax.getComputeNodes().size());
+		assertEquals(xpath.getNodes().size(), stax.getNodes().size());
+	}
+
+	private String write(String name, String content) throws IOException {
+		File file = folder.newFile(name);
+		FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8);
+		return file.getPath();
+	}
+
+	/**
+	 * The method reads a file with a StAX reader.
+	 *
+	 * @return the limit violation, null if the file has been read
+	 */
+	private static XmlLimitException readFully(String fileName) throws IOException, XMLStreamException {
+		XMLStreamReader reader = XmlInput.createStreamReader(fileName);
+		try {
+			while (reader.hasNext()) {
+				reader.next();
+			}
+			return null;
+		} catch (XMLStreamException e) {
+			XmlLimitException limit = XmlInput.getLimitException(e);
+			if (limit == null) {
+				throw e;
+			}
+			return limit;
+		} finally {
+			reader.close();
+		}
+	}
+}